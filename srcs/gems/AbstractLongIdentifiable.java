@@ -0,0 +1,67 @@
+package gems;
+
+/**
+ * A skeleton implementation of {@code LongIdentifiable} interface. The ID is kept as a primitive
+ * value, so it is boxed only when {@code getId()} is called. Equality is defined the same way as
+ * in {@code AbstractIdentifiable}.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public abstract class AbstractLongIdentifiable implements LongIdentifiable {
+
+	/**
+	 * An object ID.
+	 */
+	private final long id;
+
+	/**
+	 * Creates a new object with a given ID. The ID is immutable after the object creation.
+	 *
+	 * @param id an ID.
+	 */
+	protected AbstractLongIdentifiable(final long id) {
+		this.id = id;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override public final long getLongId() {
+		return id;
+	}
+
+	/**
+	 * {@inheritDoc} The ID is boxed, so this method never returns {@code null}.
+	 */
+	@Override public final Long getId() {
+		return id;
+	}
+
+	/**
+	 * Defines an equality of two identifiable objects. Two objects are considered to
+	 * be equal if and only if they are the same type and their IDs are the same.
+	 *
+	 * @param o a compared object.
+	 *
+	 * @return {@code true} if {@code o} is an objects of the same type and with the same ID, {@code false} otherwise.
+	 */
+	@Override public final boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		return id == ((AbstractLongIdentifiable) o).id;
+	}
+
+	/**
+	 * Returns a hash code of the object, which is the hash code of the boxed ID.
+	 *
+	 * @return a hash code of the object.
+	 */
+	@Override public final int hashCode() {
+		return Long.hashCode(id);
+	}
+
+}
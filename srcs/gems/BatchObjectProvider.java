@@ -0,0 +1,29 @@
+package gems;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An object provider able to provide many objects at once. It suits providers
+ * backed by a remote resource like a database, where providing of many objects
+ * in a single round trip is much cheaper than providing them one by one.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <T> type of provided objects.
+ * @param <C> type of context.
+ */
+@Experimental public interface BatchObjectProvider<T, C> extends ObjectProvider<T, C> {
+
+	/**
+	 * Returns objects according to given contexts at once. The returned map holds only
+	 * provided objects, keyed by contexts they were provided for; contexts for which no
+	 * object can be provided are simply missing. This method should never return
+	 * {@code null}; an empty map should be returned if no object can be provided.
+	 *
+	 * @param contexts contexts helping to create properly customized objects.
+	 *
+	 * @return a map of provided objects by their contexts.
+	 */
+	Map<C, T> provideAll(Collection<? extends C> contexts);
+
+}
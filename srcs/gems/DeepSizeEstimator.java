@@ -0,0 +1,338 @@
+package gems;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Estimates sizes of objects in bytes by walking their object graphs via reflection. A shallow
+ * layout of each class, i.e. its instance size and its reference fields, is computed once and
+ * cached, so estimating an object costs a few field reads per reachable object. Each reachable
+ * object is counted once even if it is shared or a part of a cycle. Classes and enum constants
+ * are shared by the whole JVM, so they are not counted at all.
+ * <p/>
+ * Sizes are estimated for a 64-bit JVM with compressed references: object headers take 12 bytes,
+ * array headers 16 bytes, references 4 bytes, and objects are aligned to 8 bytes. Fields of
+ * classes which cannot be made accessible, e.g. JDK classes in modules not open to reflection,
+ * are not walked; elements of collections and maps of such classes are walked via their public
+ * interfaces instead, and their internal structure is approximated.
+ * <p/>
+ * A walk has a depth budget and a time budget. Objects deeper than the depth budget are not
+ * counted, and the walk stops with the size estimated so far when the time budget is exceeded.
+ * So the result is a lower bound if any budget is exhausted. The estimator is thread-safe.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+@Experimental public final class DeepSizeEstimator implements SizeEstimator<Object> {
+
+	/**
+	 * A default depth budget.
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 64;
+
+	/**
+	 * A default time budget in nanoseconds.
+	 */
+	public static final long DEFAULT_MAX_TIME = 1000000L;
+
+	/**
+	 * A size of an object header.
+	 */
+	private static final int OBJECT_HEADER = 12;
+
+	/**
+	 * A size of an array header.
+	 */
+	private static final int ARRAY_HEADER = 16;
+
+	/**
+	 * A size of a reference.
+	 */
+	private static final int REFERENCE = 4;
+
+	/**
+	 * An alignment of objects.
+	 */
+	private static final int ALIGNMENT = 8;
+
+	/**
+	 * An approximated size of an entry of a map whose fields cannot be walked.
+	 */
+	private static final long MAP_ENTRY = align(OBJECT_HEADER + 4 + 3 * REFERENCE);
+
+	/**
+	 * Number of objects walked between checks of the time budget.
+	 */
+	private static final int CLOCK_PERIOD = 64;
+
+	/**
+	 * Shallow layouts of classes.
+	 */
+	private final ConcurrentMap<Class<?>, Layout> layouts = new ConcurrentHashMap<Class<?>, Layout>();
+
+	/**
+	 * A depth budget.
+	 */
+	private final int maxDepth;
+
+	/**
+	 * A time budget in nanoseconds.
+	 */
+	private final long maxTime;
+
+	/**
+	 * Creates a new estimator with default budgets.
+	 */
+	public DeepSizeEstimator() {
+		this(DEFAULT_MAX_DEPTH, DEFAULT_MAX_TIME);
+	}
+
+	/**
+	 * Creates a new estimator with given budgets.
+	 *
+	 * @param maxDepth a maximal depth of counted objects; the estimated object itself has depth zero.
+	 * @param maxTime a maximal time of a walk in nanoseconds.
+	 *
+	 * @throws NumericValueOutOfRangeException if {@code maxDepth} is negative or {@code maxTime} is not positive.
+	 */
+	public DeepSizeEstimator(final int maxDepth, final long maxTime) {
+		this.maxDepth = Checks.ensureNonNegative(maxDepth);
+		this.maxTime = Checks.ensurePositive(maxTime);
+	}
+
+	/**
+	 * Estimates a size of a given object and all objects reachable from it in bytes.
+	 *
+	 * @param object an object.
+	 *
+	 * @return estimated deep size of a given object.
+	 *
+	 * @throws UnexpectedNullException if {@code object} is {@code null}.
+	 */
+	@Override public long estimate(final Object object) {
+		if (object == null) {
+			throw new UnexpectedNullException();
+		}
+		final long deadline = System.nanoTime() + maxTime;
+		final Map<Object, Object> visited = new IdentityHashMap<Object, Object>();
+		List<Object> level = new ArrayList<Object>();
+		level.add(object);
+		visited.put(object, object);
+		long result = 0L;
+		int walked = 0;
+		for (int depth = 0; depth <= maxDepth && !level.isEmpty(); depth++) {
+			final List<Object> next = new ArrayList<Object>();
+			for (final Object current : level) {
+				if (++walked % CLOCK_PERIOD == 0 && System.nanoTime() - deadline > 0L) {
+					return result;
+				}
+				result += shallowSize(current, next, visited);
+			}
+			level = next;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a shallow size of an object and adds objects referenced by it and not visited yet to a given list.
+	 *
+	 * @param object an object.
+	 * @param next objects to walk next.
+	 * @param visited already visited objects.
+	 *
+	 * @return a shallow size of the object.
+	 */
+	private long shallowSize(final Object object, final List<Object> next, final Map<Object, Object> visited) {
+		final Class<?> type = object.getClass();
+		if (type.isArray()) {
+			final int length = Array.getLength(object);
+			final Class<?> component = type.getComponentType();
+			if (component.isPrimitive()) {
+				return align(ARRAY_HEADER + (long) length * sizeOf(component));
+			}
+			for (final Object element : (Object[]) object) {
+				visit(element, next, visited);
+			}
+			return align(ARRAY_HEADER + (long) length * REFERENCE);
+		}
+		if (object instanceof String) {
+			// the value array of strings is not accessible since Java 9
+			return getLayout(type).size + align(ARRAY_HEADER + 2L * ((String) object).length());
+		}
+		final Layout layout = getLayout(type);
+		for (final Field field : layout.references) {
+			try {
+				visit(field.get(object), next, visited);
+			} catch (final IllegalAccessException e) {
+				throw new ShouldNeverHappenException(e);
+			}
+		}
+		return layout.opaque ? layout.size + opaqueSize(object, next, visited) : layout.size;
+	}
+
+	/**
+	 * Returns an approximated size of internal structures of a collection or a map whose fields cannot
+	 * be walked, and adds its elements not visited yet to a given list. Other objects are not walked.
+	 *
+	 * @param object an object.
+	 * @param next objects to walk next.
+	 * @param visited already visited objects.
+	 *
+	 * @return an approximated size of internal structures.
+	 */
+	private static long opaqueSize(final Object object, final List<Object> next, final Map<Object, Object> visited) {
+		if (object instanceof Collection) {
+			final Collection<?> collection = (Collection<?>) object;
+			for (final Object element : collection) {
+				visit(element, next, visited);
+			}
+			return align(ARRAY_HEADER + (long) collection.size() * REFERENCE);
+		}
+		if (object instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) object;
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				visit(entry.getKey(), next, visited);
+				visit(entry.getValue(), next, visited);
+			}
+			return align(ARRAY_HEADER + (long) map.size() * REFERENCE) + map.size() * MAP_ENTRY;
+		}
+		return 0L;
+	}
+
+	/**
+	 * Adds a referenced object to a given list, unless it is {@code null}, shared, or already visited.
+	 *
+	 * @param object a referenced object, or {@code null}.
+	 * @param next objects to walk next.
+	 * @param visited already visited objects.
+	 */
+	private static void visit(final Object object, final List<Object> next, final Map<Object, Object> visited) {
+		if (object == null || isShared(object) || visited.put(object, object) != null) {
+			return;
+		}
+		next.add(object);
+	}
+
+	/**
+	 * Checks whether an object is shared by the whole JVM and should not be counted.
+	 *
+	 * @param object an object.
+	 *
+	 * @return {@code true} if the object is shared, {@code false} otherwise.
+	 */
+	private static boolean isShared(final Object object) {
+		return object instanceof Class || object instanceof Enum;
+	}
+
+	/**
+	 * Returns a cached shallow layout of a given class, computing it if necessary. This method never returns {@code null}.
+	 *
+	 * @param type a class.
+	 *
+	 * @return a shallow layout of a given class.
+	 */
+	private Layout getLayout(final Class<?> type) {
+		final Layout cached = layouts.get(type);
+		if (cached != null) {
+			return cached;
+		}
+		final Layout layout = new Layout(type);
+		final Layout previous = layouts.putIfAbsent(type, layout);
+		return previous == null ? layout : previous;
+	}
+
+	/**
+	 * Returns a size of a value of a given primitive type.
+	 *
+	 * @param type a primitive type.
+	 *
+	 * @return a size of a value of a given primitive type.
+	 */
+	private static int sizeOf(final Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		}
+		if (type == int.class || type == float.class) {
+			return 4;
+		}
+		if (type == char.class || type == short.class) {
+			return 2;
+		}
+		return 1;
+	}
+
+	/**
+	 * Aligns a given size to the alignment of objects.
+	 *
+	 * @param size a size.
+	 *
+	 * @return an aligned size.
+	 */
+	private static long align(final long size) {
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	/**
+	 * A shallow layout of a class: the size of its instances and its accessible
+	 * reference fields, including inherited ones.
+	 */
+	private static final class Layout {
+
+		/**
+		 * A shallow size of instances.
+		 */
+		private final long size;
+
+		/**
+		 * Reference fields.
+		 */
+		private final Field[] references;
+
+		/**
+		 * A flag indicating that some reference fields cannot be made accessible.
+		 */
+		private final boolean opaque;
+
+		/**
+		 * Computes a shallow layout of a given class.
+		 *
+		 * @param type a class.
+		 */
+		private Layout(final Class<?> type) {
+			final List<Field> fields = new ArrayList<Field>();
+			long fieldsSize = 0L;
+			boolean accessible = true;
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (final Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers())) {
+						continue;
+					}
+					if (field.getType().isPrimitive()) {
+						fieldsSize += sizeOf(field.getType());
+						continue;
+					}
+					fieldsSize += REFERENCE;
+					try {
+						field.setAccessible(true);
+						fields.add(field);
+					} catch (final RuntimeException e) {
+						// the field is in a module not open to reflection
+						accessible = false;
+					}
+				}
+			}
+			size = align(OBJECT_HEADER + fieldsSize);
+			references = fields.toArray(new Field[fields.size()]);
+			opaque = !accessible;
+		}
+
+	}
+
+}
@@ -0,0 +1,19 @@
+package gems;
+
+/**
+ * Defines an object identified by a primitive {@code long} ID. It is still an {@code Identifiable}
+ * object identified by the boxed ID, but code aware of primitive IDs can avoid boxing by calling
+ * {@code getLongId()} instead of {@code getId()}. Both methods have to return the same ID.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public interface LongIdentifiable extends Identifiable<Long> {
+
+	/**
+	 * Returns an ID of the object without boxing it.
+	 *
+	 * @return an ID of the object.
+	 */
+	long getLongId();
+
+}
@@ -1,23 +1,103 @@
 package gems.caching;
 
 import gems.Identifiable;
+import gems.Option;
+import gems.UnexpectedNullException;
 import gems.filtering.Filter;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.List;
 
+/**
+ * A skeleton implementation of {@code Storage} interface. It keeps secondary indexes up to date
+ * on writes and answers searches from them when possible; subclasses just store and discard values.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ */
 abstract class AbstractStorage<K, V extends Identifiable<K>> implements Storage<K, V> {
 
+	/**
+	 * Secondary indexes.
+	 */
+	private final Indexes<K, V> indexes = new Indexes<K, V>();
+
+	/**
+	 * {@inheritDoc} Stored value is indexed by all indexes of the storage.
+	 *
+	 * @throws IllegalArgumentException if {@code value} is {@code null}.
+	 */
+	@Override public final void put(final V value) {
+		if (value == null) {
+			throw new IllegalArgumentException();
+		}
+		store(value);
+		indexes.add(value);
+	}
+
+	/**
+	 * {@inheritDoc} The key is unindexed by all indexes of the storage.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}.
+	 */
+	@Override public final void remove(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		discard(key);
+		indexes.remove(key);
+	}
+
+	/**
+	 * Inserts a given value into the storage, replacing a value of the same key.
+	 *
+	 * @param value an inserted value; it is never {@code null}.
+	 */
+	abstract void store(V value);
+
+	/**
+	 * Removes a value of a given key from the storage. Nothing happens if there is no such value.
+	 *
+	 * @param key a key of a removed value; it is never {@code null}.
+	 */
+	abstract void discard(K key);
+
 	/**
 	 * {@inheritDoc}
 	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 */
+	@Override public final <A> void index(final Attribute<? super V, A> attribute, final IndexType type) {
+		if (attribute == null || type == null) {
+			throw new UnexpectedNullException();
+		}
+		indexes.create(attribute, type, this);
+	}
+
+	/**
+	 * {@inheritDoc} A search answered from an index takes a time proportional to the number of
+	 * found values, plus a logarithmic time for a sorted index; otherwise all values are scanned.
+	 *
 	 * @throws IllegalArgumentException if {@code filter} is {@code null}.
 	 */
 	@Override public final Collection<V> search(final Filter<? super V> filter) {
 		if (filter == null) {
 			throw new IllegalArgumentException();
 		}
-		final Collection<V> result = new LinkedList<V>();
+		final Collection<K> keys = indexes.lookup(filter);
+		if (keys != null) {
+			final List<V> result = new ArrayList<V>(keys.size());
+			for (final K key : keys) {
+				final Option<V> value = provide(new Option<K>(key));
+				if (value.hasValue()) {
+					result.add(value.getValue());
+				}
+			}
+			return result;
+		}
+		final List<V> result = new ArrayList<V>();
 		for (final V value : this) {
 			if (filter.allows(value)) {
 				result.add(value);
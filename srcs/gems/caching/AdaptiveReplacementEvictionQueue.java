@@ -0,0 +1,243 @@
+package gems.caching;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An eviction queue implementing the <em>Adaptive Replacement Cache</em> policy. Cached items are kept
+ * in two lists ordered by recency: items seen once recently, and items seen at least twice recently.
+ * Keys evicted from either list are remembered in a ghost list of the same kind, without their values.
+ * The policy keeps a target size of the first list and adapts it on its own: a new item whose key is
+ * found in the first ghost list shows that the first list is too short, so the target grows, while
+ * a key found in the second ghost list shrinks it. Victims are the least-recently used items of the
+ * first list while it is longer than the target, and of the second list otherwise. The cache thus
+ * moves between recency-heavy and frequency-heavy behaviour as the workload changes, and items
+ * used only once never flush the second list.
+ * <p/>
+ * Ghost lists hold at most as many keys as the cache holds items; this bound holds even if the cache is
+ * limited by total size of items rather than by their number. The queue does not distinguish
+ * evicted items from items removed for another reason; keys of both are remembered.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+final class AdaptiveReplacementEvictionQueue<K> extends EvictionQueue<K> {
+
+	/**
+	 * A list of items seen once recently.
+	 */
+	private static final int RECENT = 0;
+
+	/**
+	 * A list of items seen at least twice recently.
+	 */
+	private static final int FREQUENT = 1;
+
+	/**
+	 * A ghost list of keys evicted from the list of items seen once.
+	 */
+	private static final int RECENT_GHOSTS = 2;
+
+	/**
+	 * A ghost list of keys evicted from the list of items seen at least twice.
+	 */
+	private static final int FREQUENT_GHOSTS = 3;
+
+	/**
+	 * Lists of nodes indexed by list.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final NodeList<K>[] lists = new NodeList[]{new NodeList<K>(), new NodeList<K>(), new NodeList<K>(), new NodeList<K>()};
+
+	/**
+	 * Ghost nodes by their keys.
+	 */
+	private final Map<K, ListNode<K>> ghosts = new HashMap<K, ListNode<K>>();
+
+	/**
+	 * Maximal number of items; unknown until the queue is adapted for the first time.
+	 */
+	private long capacity = Long.MAX_VALUE;
+
+	/**
+	 * A target size of the list of items seen once.
+	 */
+	private long target;
+
+	/**
+	 * Returns the current target size of the list of items seen once.
+	 *
+	 * @return the target size.
+	 */
+	synchronized long getTarget() {
+		return target;
+	}
+
+	/**
+	 * Returns the current number of keys remembered in ghost lists.
+	 *
+	 * @return number of ghost keys.
+	 */
+	synchronized int getGhostCount() {
+		return ghosts.size();
+	}
+
+	/**
+	 * Records a given capacity, which bounds the target and ghost lists.
+	 *
+	 * @param capacity maximal number of items.
+	 */
+	@Override protected void adapt(final long capacity) {
+		this.capacity = Math.max(1L, capacity);
+		target = Math.min(target, this.capacity);
+		trimGhosts();
+	}
+
+	@Override protected Node<K> newNode(final K key) {
+		return new ListNode<K>(key);
+	}
+
+	/**
+	 * {@inheritDoc} A new item enters the list of items seen once, unless its key is found in a ghost
+	 * list; then the target is adapted and the item enters the list of items seen at least twice.
+	 */
+	@Override protected void link(final Node<K> node) {
+		final ListNode<K> ghost = ghosts.remove(node.getKey());
+		if (ghost == null) {
+			append((ListNode<K>) node, RECENT);
+			trimGhosts();
+			return;
+		}
+		final long recentGhosts = lists[RECENT_GHOSTS].size();
+		final long frequentGhosts = lists[FREQUENT_GHOSTS].size();
+		if (ghost.list == RECENT_GHOSTS) {
+			target = Math.min(bound(), target + Math.max(1L, frequentGhosts / recentGhosts));
+		} else {
+			target = Math.max(0L, target - Math.max(1L, recentGhosts / frequentGhosts));
+		}
+		lists[ghost.list].remove(ghost);
+		append((ListNode<K>) node, FREQUENT);
+	}
+
+	/**
+	 * {@inheritDoc} The key is remembered in the ghost list corresponding to the list of the node.
+	 */
+	@Override protected void unlink(final Node<K> node) {
+		final ListNode<K> listNode = (ListNode<K>) node;
+		lists[listNode.list].remove(listNode);
+		final ListNode<K> ghost = new ListNode<K>(node.getKey());
+		append(ghost, listNode.list == RECENT ? RECENT_GHOSTS : FREQUENT_GHOSTS);
+		ghosts.put(ghost.getKey(), ghost);
+		trimGhosts();
+	}
+
+	@Override protected void access(final Node<K> node) {
+		final ListNode<K> listNode = (ListNode<K>) node;
+		lists[listNode.list].remove(listNode);
+		append(listNode, FREQUENT);
+	}
+
+	/**
+	 * Appends a node to the tail of a given list.
+	 *
+	 * @param node a node.
+	 * @param list a list.
+	 */
+	private void append(final ListNode<K> node, final int list) {
+		node.list = list;
+		lists[list].append(node);
+	}
+
+	/**
+	 * Returns a bound of lists: the capacity, or number of enqueued items if the cache is kept smaller
+	 * by another limit than the capacity, but at least one.
+	 *
+	 * @return a bound of lists.
+	 */
+	private long bound() {
+		return Math.max(1L, Math.min(capacity, count()));
+	}
+
+	/**
+	 * Forgets the oldest ghost keys so that the list of items seen once together with its ghosts does not
+	 * exceed the bound, and all lists together do not exceed twice the bound.
+	 */
+	private void trimGhosts() {
+		final long bound = bound();
+		while (!lists[RECENT_GHOSTS].isEmpty() && (long) lists[RECENT].size() + lists[RECENT_GHOSTS].size() > bound) {
+			forget(RECENT_GHOSTS);
+		}
+		while (!ghosts.isEmpty() && count() + ghosts.size() > 2L * bound) {
+			forget(lists[FREQUENT_GHOSTS].isEmpty() ? RECENT_GHOSTS : FREQUENT_GHOSTS);
+		}
+	}
+
+	/**
+	 * Forgets the oldest key of a given ghost list.
+	 *
+	 * @param list a ghost list.
+	 */
+	private void forget(final int list) {
+		final Node<K> oldest = lists[list].head();
+		lists[list].remove(oldest);
+		ghosts.remove(oldest.getKey());
+	}
+
+	/**
+	 * Returns an iterator taking the least-recently used items of the list of items seen once while
+	 * the rest of the list is longer than the target, and of the list of items seen at least twice
+	 * otherwise. When one of the lists runs out, the rest of the other is returned.
+	 *
+	 * @return an iterator over enqueued nodes in eviction order.
+	 */
+	@Override protected Iterator<Node<K>> victims() {
+		return new Iterator<Node<K>>() {
+
+			private final Iterator<Node<K>> recent = lists[RECENT].iterator();
+
+			private final Iterator<Node<K>> frequent = lists[FREQUENT].iterator();
+
+			private long remaining = lists[RECENT].size();
+
+			@Override public boolean hasNext() {
+				return recent.hasNext() || frequent.hasNext();
+			}
+
+			@Override public Node<K> next() {
+				if (recent.hasNext() && (remaining > target || !frequent.hasNext())) {
+					remaining--;
+					return recent.next();
+				}
+				return frequent.next();
+			}
+
+			@Override public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * A node remembering its list.
+	 */
+	private static final class ListNode<K> extends Node<K> {
+
+		/**
+		 * A list the node belongs to.
+		 */
+		private int list;
+
+		/**
+		 * Creates a new node for a given key.
+		 *
+		 * @param key a key.
+		 */
+		private ListNode(final K key) {
+			super(key);
+		}
+
+	}
+
+}
@@ -0,0 +1,29 @@
+package gems.caching;
+
+/**
+ * Provides <em>Adaptive Replacement Cache</em> evictors. Cached items are split between items
+ * seen once recently and items seen at least twice recently, and keys of recently evicted items
+ * are remembered in ghost lists. A miss on a remembered key shifts the balance between both kinds
+ * of items, so the evictor adapts to recency-heavy and frequency-heavy workloads on its own.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+public final class AdaptiveReplacementEvictorFactory<K> implements CacheEvictorFactory<K> {
+
+	/**
+	 * Returns an <em>Adaptive Replacement Cache</em> evictor. This method never returns {@code null}.
+	 *
+	 * @return an <em>Adaptive Replacement Cache</em> evictor.
+	 */
+	public CacheEvictor<K> get() {
+		return new QueueingCacheEvictor<K>(new LeastRecentlyUsedEvictorFactory<K>().get()) {
+
+			@Override EvictionQueue<K> newQueue() {
+				return new AdaptiveReplacementEvictionQueue<K>();
+			}
+
+		};
+	}
+
+}
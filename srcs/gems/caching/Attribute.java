@@ -0,0 +1,24 @@
+package gems.caching;
+
+/**
+ * An attribute of stored values, e.g. a tenant of an item. Attributes are used by secondary
+ * indexes of storages and by filters which can be answered from these indexes. Attribute
+ * values of the same object have to be stable while the object is stored; indexes are
+ * updated only when an object is put into a storage or removed from it.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> type of values.
+ * @param <A> type of attribute values.
+ */
+public interface Attribute<V, A> {
+
+	/**
+	 * Returns the attribute value of a given object. It may be {@code null}.
+	 *
+	 * @param object an object.
+	 *
+	 * @return the attribute value of the object.
+	 */
+	A get(V object);
+
+}
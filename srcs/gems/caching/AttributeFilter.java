@@ -0,0 +1,79 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.UnexpectedNullException;
+import gems.filtering.Filter;
+
+import java.util.Collection;
+
+/**
+ * A filter deciding by an attribute of filtered objects. Such a filter can be used anywhere,
+ * but a storage with an index of the same attribute answers searches using the filter from
+ * the index instead of scanning all stored values. Attributes are matched by {@code equals()},
+ * so the same attribute instance is usually used both for indexing and for filtering.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of filtered objects.
+ * @param <A> a type of attribute values.
+ */
+public abstract class AttributeFilter<V, A> implements Filter<V> {
+
+	/**
+	 * A filtered attribute.
+	 */
+	private final Attribute<? super V, A> attribute;
+
+	/**
+	 * Initializes a new filter of a given attribute.
+	 *
+	 * @param attribute a filtered attribute.
+	 *
+	 * @throws UnexpectedNullException if {@code attribute} is {@code null}.
+	 */
+	AttributeFilter(final Attribute<? super V, A> attribute) {
+		this.attribute = Checks.ensureNotNull(attribute);
+	}
+
+	/**
+	 * Returns the filtered attribute. This method never returns {@code null}.
+	 *
+	 * @return the filtered attribute.
+	 */
+	public final Attribute<? super V, A> getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * Checks if the attribute of a given object satisfies the filter.
+	 *
+	 * @param object a checked object.
+	 *
+	 * @return {@code true} if the attribute of the object satisfies the filter, {@code false} otherwise.
+	 *
+	 * @throws UnexpectedNullException if {@code object} is {@code null}.
+	 */
+	@Override public final boolean allows(final V object) {
+		return matches(attribute.get(Checks.ensureNotNull(object)));
+	}
+
+	/**
+	 * Checks if a given attribute value satisfies the filter.
+	 *
+	 * @param value an attribute value; it may be {@code null}.
+	 *
+	 * @return {@code true} if the value satisfies the filter, {@code false} otherwise.
+	 */
+	abstract boolean matches(A value);
+
+	/**
+	 * Returns keys of values satisfying the filter according to a given index of the filtered
+	 * attribute, or {@code null} if the index cannot answer the filter.
+	 *
+	 * @param index an index of the filtered attribute.
+	 * @param <K> type of keys.
+	 *
+	 * @return keys of values satisfying the filter, or {@code null}.
+	 */
+	abstract <K> Collection<K> lookup(Index<K, ?, A> index);
+
+}
@@ -0,0 +1,23 @@
+package gems.caching;
+
+import java.util.Collection;
+
+/**
+ * A writer of objects to a backing store, typically a slow one like a database, where writing
+ * many objects in a single round trip is much cheaper than writing them one by one. It is
+ * a counterpart of {@code gems.BatchObjectProvider} used by {@code WriteBehindCache}.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> type of written objects.
+ */
+public interface BatchWriter<V> {
+
+	/**
+	 * Writes given objects to a backing store at once. Objects are written by a single thread
+	 * at a time. If the method throws an exception, none of objects is considered written.
+	 *
+	 * @param objects objects to be written; never {@code null} nor empty.
+	 */
+	void write(Collection<? extends V> objects);
+
+}
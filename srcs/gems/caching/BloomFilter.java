@@ -0,0 +1,109 @@
+package gems.caching;
+
+import gems.Checks;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A probabilistic set of keys. It answers whether a key <em>might</em> have been added, so
+ * a negative answer means the key has definitely not been added, while a positive answer
+ * may be false with a probability given when the filter is created, as long as the number
+ * of added keys does not exceed the expected one. Keys cannot be removed. Bit positions
+ * of a key are derived from its mixed hash code by double hashing. <em>The implementation
+ * is thread-safe and lock-free.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class BloomFilter {
+
+	/**
+	 * A seed of the second hash function.
+	 */
+	private static final int SEED = 0x9e3779b9;
+
+	/**
+	 * Bits of the filter.
+	 */
+	private final AtomicLongArray bits;
+
+	/**
+	 * Number of bits of the filter.
+	 */
+	private final int size;
+
+	/**
+	 * Number of bits set per key.
+	 */
+	private final int hashes;
+
+	/**
+	 * Number of added keys.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Creates a new filter for a given number of keys and a given probability of false positive answers.
+	 *
+	 * @param keys an expected number of keys.
+	 * @param falsePositiveRate a probability of false positive answers, greater than zero and less than one.
+	 */
+	BloomFilter(final long keys, final double falsePositiveRate) {
+		Checks.assertPositive(keys);
+		assert falsePositiveRate > 0.0 && falsePositiveRate < 1.0;
+		final double optimal = -keys * Math.log(falsePositiveRate) / (Math.log(2.0) * Math.log(2.0));
+		final long words = Math.min(Integer.MAX_VALUE / Long.SIZE, Math.max(1L, ((long) Math.ceil(optimal) + Long.SIZE - 1) / Long.SIZE));
+		bits = new AtomicLongArray((int) words);
+		size = (int) words * Long.SIZE;
+		hashes = (int) Math.max(1L, Math.round((double) size / keys * Math.log(2.0)));
+	}
+
+	/**
+	 * Adds a key with a given hash code.
+	 *
+	 * @param hash a hash code of the key.
+	 */
+	void add(final int hash) {
+		final int first = Hashing.spread(hash);
+		final int second = Hashing.spread(first ^ SEED) | 1;
+		for (int i = 0; i < hashes; i++) {
+			final int bit = Hashing.index(first + i * second, size);
+			final int word = bit >>> 6;
+			final long mask = 1L << bit;
+			long current = bits.get(word);
+			while ((current & mask) == 0L && !bits.compareAndSet(word, current, current | mask)) {
+				current = bits.get(word);
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Checks whether a key with a given hash code might have been added.
+	 *
+	 * @param hash a hash code of the key.
+	 *
+	 * @return {@code false} if the key has definitely not been added, {@code true} otherwise.
+	 */
+	boolean mightContain(final int hash) {
+		final int first = Hashing.spread(hash);
+		final int second = Hashing.spread(first ^ SEED) | 1;
+		for (int i = 0; i < hashes; i++) {
+			final int bit = Hashing.index(first + i * second, size);
+			if ((bits.get(bit >>> 6) & 1L << bit) == 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns number of added keys, counting repeated additions.
+	 *
+	 * @return number of added keys.
+	 */
+	long getCount() {
+		return count.get();
+	}
+
+}
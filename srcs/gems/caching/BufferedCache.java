@@ -0,0 +1,785 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.Limits;
+import gems.Option;
+import gems.filtering.Filter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A flat cache whose policy maintenance is amortized and done in the background. Cached objects are kept
+ * in a concurrent hash table, and neither reads nor writes take any lock: a read records its access into
+ * a striped lossy ring buffer, and a write puts a new entry into the table and records it into a bounded
+ * write buffer. A single maintainer, holding the maintenance lock acquired by a try-lock, drains both
+ * buffers in batches, applies recorded events to the eviction policy, removes expired entries, and evicts
+ * entries as necessary for satisfying cache limits. Maintenance is scheduled on the thread pool of cache
+ * properties; if the pool rejects it, it is done by the calling thread, unless another thread does it.
+ * <p/>
+ * Latency of {@code offer()} therefore does not depend on the cache size or on the evictor. A writer does
+ * maintenance on its own thread only if the write buffer is full, i.e. if the maintainer lags behind;
+ * then it waits for the maintenance lock. Cache limits may be exceeded until pending events are applied.
+ * Accesses dropped by full read buffers are not applied to the eviction queue, so ordering by recency
+ * or frequency is approximate; statistics of entries record all accesses in a relaxed manner like
+ * {@code ConcurrentCache} does. {@code trim()} applies all pending events immediately.
+ * <p/>
+ * Secondary indexes are kept up to date by the maintainer as writes are applied, so a search answered
+ * from an index takes the maintenance lock and applies pending events first; other searches scan the
+ * table without any lock.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+final class BufferedCache<V extends Identifiable<K>, K> extends AbstractCacheComponent<V, K> implements ExtractableCache<V, K> {
+
+	/**
+	 * Capacity of the write buffer.
+	 */
+	static final int WRITE_BUFFER_CAPACITY = 1024;
+
+	/**
+	 * Cached entries, including entries written but not applied to the policy yet.
+	 */
+	private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<K, Entry<K, V>>();
+
+	/**
+	 * Accessed entries not applied to the eviction queue yet.
+	 */
+	private final StripedRingBuffer<Entry<K, V>> reads = new StripedRingBuffer<Entry<K, V>>();
+
+	/**
+	 * Written entries not applied to the policy yet.
+	 */
+	private final BlockingQueue<Entry<K, V>> writes = new ArrayBlockingQueue<Entry<K, V>>(WRITE_BUFFER_CAPACITY);
+
+	/**
+	 * A lock held by the maintainer.
+	 */
+	private final Lock lock = new ReentrantLock();
+
+	/**
+	 * A flag indicating that maintenance is scheduled on the thread pool and has not started yet.
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/**
+	 * A task doing maintenance if no other thread does it.
+	 */
+	private final Runnable maintenance = new Runnable() {
+
+		@Override public void run() {
+			scheduled.set(false);
+			tryMaintain();
+		}
+
+	};
+
+	/**
+	 * A recorder of cache-wide statistics.
+	 */
+	private final StatisticsCounter recorder;
+
+	/**
+	 * An eviction queue if a queueing evictor is used; {@code null} otherwise. Guarded by {@code lock}.
+	 */
+	private final EvictionQueue<K> queue;
+
+	/**
+	 * Timers of entries which may expire. Guarded by {@code lock}.
+	 */
+	private final TimingWheel<K> timers = new TimingWheel<K>(System.currentTimeMillis());
+
+	/**
+	 * Secondary indexes of objects applied to the policy. Guarded by {@code lock}.
+	 */
+	private final Indexes<K, V> indexes = new Indexes<K, V>();
+
+	/**
+	 * Number of entries applied to the policy. Guarded by {@code lock}.
+	 */
+	private long count;
+
+	/**
+	 * Total size of entries applied to the policy. Guarded by {@code lock}.
+	 */
+	private long weight;
+
+	/**
+	 * Creates a new cache configured according given properties. Cached objects are always kept
+	 * in the concurrent hash table of the cache, so the storage factory of properties is not used.
+	 *
+	 * @param properties cache properties.
+	 */
+	BufferedCache(final CacheProperties<V, K> properties) {
+		super(properties);
+		recorder = new StatisticsCounter(getProperties().getLimits());
+		final CacheEvictor<K> evictor = getProperties().getEvictor();
+		queue = evictor instanceof QueueingCacheEvictor ? ((QueueingCacheEvictor<K>) evictor).newQueue() : null;
+	}
+
+	/**
+	 * {@inheritDoc} This method takes no locks; the access is recorded into a read buffer.
+	 */
+	@Override public Option<V> get(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		final Entry<K, V> entry = entries.get(key);
+		if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+			recorder.recordMiss();
+			return new Option<V>(null);
+		}
+		entry.recordAccess();
+		if (queue != null && !reads.offer(entry)) {
+			schedule();
+		}
+		recorder.recordHit();
+		return new Option<V>(entry.value);
+	}
+
+	@Override public CacheStatistics getStatistics() {
+		return recorder.snapshot();
+	}
+
+	/**
+	 * {@inheritDoc} This method takes no locks.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<K, V> getAll(final Collection<? extends K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<K, V> result = new HashMap<K, V>();
+		for (final K key : keys) {
+			final Option<V> cached = get(key);
+			if (cached.hasValue()) {
+				result.put(key, cached.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code object} is {@code null}.
+	 */
+	@Override public void offer(final V object) {
+		if (object == null) {
+			throw new IllegalArgumentException();
+		}
+		offerAll(Collections.singletonList(object));
+	}
+
+	/**
+	 * {@inheritDoc} Objects are put into the table and recorded into the write buffer without taking any lock,
+	 * and maintenance is scheduled once for all objects. The maintenance lock is taken only if the write buffer
+	 * is full.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		final ExpirationPolicy<? super V> policy = getProperties().getExpirationPolicy();
+		final List<Entry<K, V>> offered = new ArrayList<Entry<K, V>>(objects.size());
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+			offered.add(new Entry<K, V>(object, getProperties().getSizer().estimate(object), policy.getTimeToLive(object), policy.getTimeToIdle(object)));
+		}
+		for (final Entry<K, V> entry : offered) {
+			entry.replaced = entries.put(entry.value.getId(), entry);
+			while (!writes.offer(entry)) {
+				// the maintainer lags behind, so the writer helps it
+				lock.lock();
+				try {
+					maintain();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+		schedule();
+	}
+
+	/**
+	 * {@inheritDoc} The maintenance lock is taken and the objects are applied to the policy at once.
+	 */
+	@Override public void restore(final Collection<Map.Entry<V, CacheItemStatistics<K>>> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		final ExpirationPolicy<? super V> policy = getProperties().getExpirationPolicy();
+		final List<Entry<K, V>> restored = new ArrayList<Entry<K, V>>(objects.size());
+		for (final Map.Entry<V, CacheItemStatistics<K>> object : objects) {
+			if (object == null || object.getKey() == null || object.getValue() == null) {
+				throw new IllegalArgumentException();
+			}
+			final V value = object.getKey();
+			final Entry<K, V> entry = new Entry<K, V>(
+					value, getProperties().getSizer().estimate(value), object.getValue().getDateOfBirth(), policy.getTimeToLive(value), policy.getTimeToIdle(value)
+			);
+			entry.restore(object.getValue());
+			restored.add(entry);
+		}
+		lock.lock();
+		try {
+			for (final Entry<K, V> entry : restored) {
+				entry.replaced = entries.put(entry.value.getId(), entry);
+				while (!writes.offer(entry)) {
+					drainWrites();
+				}
+			}
+			drainWrites();
+			if (queue != null) {
+				for (final Entry<K, V> entry : restored) {
+					if (entry.accounted && entry.hits > 0L) {
+						queue.touch(entry.node);
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The maintenance lock is taken; a pending write of the object, if any, is never applied.
+	 */
+	@Override public void invalidate(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			final Entry<K, V> entry = entries.remove(key);
+			if (entry == null) {
+				return;
+			}
+			final boolean accounted = entry.accounted;
+			retire(entry);
+			if (!accounted) {
+				return;
+			}
+			if (entry.isExpired(System.currentTimeMillis())) {
+				recorder.recordEviction(EvictionCause.EXPIRED, entry.size);
+			} else {
+				recorder.recordRemoval(entry.size);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The maintenance lock is taken and pending events are applied first.
+	 */
+	@Override public Collection<V> extract(final Filter<? super K> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		final long now = System.currentTimeMillis();
+		final List<V> result = new ArrayList<V>();
+		lock.lock();
+		try {
+			maintain();
+			for (final Iterator<Entry<K, V>> i = entries.values().iterator(); i.hasNext(); ) {
+				final Entry<K, V> entry = i.next();
+				if (!filter.allows(entry.value.getId()) || !entries.remove(entry.value.getId(), entry)) {
+					continue;
+				}
+				final boolean accounted = entry.accounted;
+				retire(entry);
+				if (entry.isExpired(now)) {
+					if (accounted) {
+						recorder.recordEviction(EvictionCause.EXPIRED, entry.size);
+					}
+				} else {
+					if (accounted) {
+						recorder.recordRemoval(entry.size);
+					}
+					result.add(entry.value);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} No lock is taken, so the snapshot does not have to be consistent with concurrent writes.
+	 */
+	@Override public Collection<Map.Entry<V, CacheItemStatistics<K>>> snapshot() {
+		final long now = System.currentTimeMillis();
+		final List<Map.Entry<V, CacheItemStatistics<K>>> result = new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>(entries.size());
+		for (final Entry<K, V> entry : entries.values()) {
+			if (!entry.isExpired(now)) {
+				result.add(new AbstractMap.SimpleImmutableEntry<V, CacheItemStatistics<K>>(entry.value, entry.getStatisticsSnapshot()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} The maintenance lock is taken and pending events are applied first.
+	 *
+	 * @throws IllegalArgumentException if any of arguments is {@code null}.
+	 */
+	@Override public <A> void index(final Attribute<? super V, A> attribute, final IndexType type) {
+		if (attribute == null || type == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			maintain();
+			final List<V> values = new ArrayList<V>(entries.size());
+			for (final Entry<K, V> entry : entries.values()) {
+				if (entry.accounted) {
+					values.add(entry.value);
+				}
+			}
+			indexes.create(attribute, type, values);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} A search by an attribute filter takes the maintenance lock, applies pending events and
+	 * looks up an index of the attribute. If there is no such index, the lock is released and all cached
+	 * objects are scanned, so the result does not have to be consistent with concurrent writes.
+	 */
+	@Override public Collection<V> search(final Filter<? super V> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		final long now = System.currentTimeMillis();
+		final List<V> result = new ArrayList<V>();
+		if (filter instanceof AttributeFilter) {
+			lock.lock();
+			try {
+				maintain();
+				final Collection<K> keys = indexes.lookup(filter);
+				if (keys != null) {
+					for (final K key : keys) {
+						// the object may have been replaced by a write not applied yet
+						final Entry<K, V> entry = entries.get(key);
+						if (!entry.isExpired(now) && filter.allows(entry.value)) {
+							result.add(entry.value);
+						}
+					}
+					return result;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		for (final Entry<K, V> entry : entries.values()) {
+			if (!entry.isExpired(now) && filter.allows(entry.value)) {
+				result.add(entry.value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} The maintenance lock is taken and all pending events are applied.
+	 */
+	@Override public void trim() {
+		lock.lock();
+		try {
+			maintain();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Schedules maintenance on the thread pool unless it is already scheduled. If the pool rejects
+	 * it, maintenance is tried on the calling thread.
+	 */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			try {
+				getProperties().getThreadPool().execute(maintenance);
+			} catch (final RejectedExecutionException e) {
+				scheduled.set(false);
+				tryMaintain();
+			}
+		}
+	}
+
+	/**
+	 * Does maintenance unless another thread holds the maintenance lock. Writes recorded while
+	 * the lock was held by another thread are not lost; maintenance is scheduled again for them.
+	 */
+	private void tryMaintain() {
+		if (lock.tryLock()) {
+			try {
+				maintain();
+			} finally {
+				lock.unlock();
+			}
+		}
+		if (!writes.isEmpty()) {
+			schedule();
+		}
+	}
+
+	/**
+	 * Applies pending events to the policy, removes expired entries, and evicts entries as necessary
+	 * for satisfying cache limits. Has to be called with the maintenance lock held.
+	 */
+	private void maintain() {
+		drainReads();
+		drainWrites();
+		expire();
+		evict();
+	}
+
+	/**
+	 * Applies recorded accesses to the eviction queue. Has to be called with the maintenance lock held.
+	 */
+	private void drainReads() {
+		if (queue == null) {
+			return;
+		}
+		final List<Entry<K, V>> accessed = new ArrayList<Entry<K, V>>();
+		reads.drainTo(accessed);
+		for (final Entry<K, V> entry : accessed) {
+			if (entry.accounted) {
+				queue.touch(entry.node);
+			}
+		}
+	}
+
+	/**
+	 * Applies recorded writes to the policy. Has to be called with the maintenance lock held.
+	 *
+	 * @return number of applied writes.
+	 */
+	private int drainWrites() {
+		final List<Entry<K, V>> written = new ArrayList<Entry<K, V>>();
+		writes.drainTo(written);
+		for (final Entry<K, V> entry : written) {
+			final Entry<K, V> replaced = entry.replaced;
+			entry.replaced = null;
+			final boolean accounted = replaced != null && replaced.accounted;
+			if (replaced != null) {
+				retire(replaced);
+			}
+			if (entry.retired) {
+				// the entry was replaced or extracted before its write was applied
+				if (accounted) {
+					recorder.recordRemoval(replaced.size);
+				}
+				continue;
+			}
+			admit(entry);
+			if (accounted) {
+				recorder.recordWeight(entry.size - replaced.size);
+			} else {
+				recorder.recordAddition(entry.size);
+			}
+		}
+		return written.size();
+	}
+
+	/**
+	 * Applies a given entry to the policy. Has to be called with the maintenance lock held.
+	 *
+	 * @param entry an entry.
+	 */
+	private void admit(final Entry<K, V> entry) {
+		entry.accounted = true;
+		count++;
+		weight += entry.size;
+		if (queue != null) {
+			entry.node = queue.add(entry.value.getId(), entry.size);
+		}
+		indexes.add(entry.value);
+		final long deadline = entry.deadline();
+		if (deadline != Long.MAX_VALUE) {
+			entry.timer = timers.schedule(entry.value.getId(), deadline);
+		}
+	}
+
+	/**
+	 * Removes a given entry from the policy, if it was applied, and marks it as retired, so its
+	 * pending write, if any, is never applied. Has to be called with the maintenance lock held.
+	 *
+	 * @param entry an entry.
+	 */
+	private void retire(final Entry<K, V> entry) {
+		entry.retired = true;
+		if (!entry.accounted) {
+			return;
+		}
+		entry.accounted = false;
+		count--;
+		weight -= entry.size;
+		indexes.remove(entry.value.getId());
+		if (queue != null) {
+			queue.remove(entry.node);
+		}
+		if (entry.timer != null) {
+			timers.cancel(entry.timer);
+		}
+	}
+
+	/**
+	 * Removes entries whose timers fired. An entry accessed since its timer was scheduled
+	 * does not have to be expired yet; its timer is scheduled again in that case. Has to
+	 * be called with the maintenance lock held.
+	 */
+	private void expire() {
+		final long now = System.currentTimeMillis();
+		for (final K key : timers.advance(now)) {
+			final Entry<K, V> entry = entries.get(key);
+			if (entry == null || !entry.accounted) {
+				// the entry has been replaced meantime and the replacement has its own timer
+				continue;
+			}
+			if (!entry.isExpired(now)) {
+				timers.reschedule(entry.timer, entry.deadline());
+			} else if (entries.remove(key, entry)) {
+				retire(entry);
+				recorder.recordEviction(EvictionCause.EXPIRED, entry.size);
+			}
+		}
+	}
+
+	/**
+	 * Evicts entries as necessary for satisfying cache limits. Eviction stops early if an entry selected
+	 * for eviction is being replaced by a write not recorded yet; the write schedules maintenance again.
+	 * Has to be called with the maintenance lock held.
+	 */
+	private void evict() {
+		final Limits<CacheLimit> limits = getProperties().getLimits();
+		if (queue != null) {
+			while (queue.exceeds(limits)) {
+				final EvictionQueue.Node<K> node = queue.head();
+				final Entry<K, V> entry = entries.get(node.getKey());
+				if (entry == null || entry.node != node || !evict(entry)) {
+					if (drainWrites() == 0) {
+						return;
+					}
+				}
+			}
+		} else if (count > limits.getLimit(CacheLimit.ITEMS).longValue() || weight > limits.getLimit(CacheLimit.SIZE).longValue()) {
+			final List<CacheItemStatistics<K>> statistics = new ArrayList<CacheItemStatistics<K>>(entries.size());
+			for (final Entry<K, V> entry : entries.values()) {
+				if (entry.accounted) {
+					statistics.add(entry.getStatisticsSnapshot());
+				}
+			}
+			for (final K key : getProperties().getEvictor().evict(statistics, limits)) {
+				final Entry<K, V> entry = entries.get(key);
+				if (entry != null && entry.accounted) {
+					evict(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evicts a given entry applied to the policy unless it is being replaced. Has to be called
+	 * with the maintenance lock held.
+	 *
+	 * @param entry an entry.
+	 *
+	 * @return {@code true} if the entry was evicted, {@code false} if it is being replaced.
+	 */
+	private boolean evict(final Entry<K, V> entry) {
+		if (!entries.remove(entry.value.getId(), entry)) {
+			return false;
+		}
+		retire(entry);
+		recorder.recordEviction(EvictionCause.SIZE, entry.size);
+		getProperties().getEvictionHandler().handle(entry.value);
+		return true;
+	}
+
+	/**
+	 * A cache entry holding a cached object together with its relaxed access statistics. An entry is never
+	 * changed by writes; an offered object always gets a new entry replacing the previous one. Fields related
+	 * to the policy are accessed only by the maintainer holding the maintenance lock.
+	 */
+	private static final class Entry<K, V extends Identifiable<K>> {
+
+		/**
+		 * An updater for relaxed recording of the last access.
+		 */
+		@SuppressWarnings({"rawtypes"})
+		private static final AtomicLongFieldUpdater<Entry> LAST_ACCESS = AtomicLongFieldUpdater.newUpdater(Entry.class, "lastAccess");
+
+		/**
+		 * An updater for relaxed recording of hits.
+		 */
+		@SuppressWarnings({"rawtypes"})
+		private static final AtomicLongFieldUpdater<Entry> HITS = AtomicLongFieldUpdater.newUpdater(Entry.class, "hits");
+
+		/**
+		 * A cached object.
+		 */
+		private final V value;
+
+		/**
+		 * Size of the cached object.
+		 */
+		private final long size;
+
+		/**
+		 * A timestamp indicating when the entry was created.
+		 */
+		private final long dateOfBirth;
+
+		/**
+		 * A time the entry expires at regardless of accesses, or {@code Long.MAX_VALUE}.
+		 */
+		private final long liveUntil;
+
+		/**
+		 * Time to idle in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 */
+		private final long timeToIdle;
+
+		/**
+		 * A timestamp of the latest access.
+		 */
+		private volatile long lastAccess;
+
+		/**
+		 * A counter of hits.
+		 */
+		private volatile long hits;
+
+		/**
+		 * An entry replaced by this one in the table, until the write is applied. It is set by the writer
+		 * before the write is recorded, so the maintainer sees it.
+		 */
+		private Entry<K, V> replaced;
+
+		/**
+		 * A flag indicating that the entry is applied to the policy.
+		 */
+		private boolean accounted;
+
+		/**
+		 * A flag indicating that the entry has been removed from the policy or that it must never be applied.
+		 */
+		private boolean retired;
+
+		/**
+		 * A node of the eviction queue, if any.
+		 */
+		private EvictionQueue.Node<K> node;
+
+		/**
+		 * A timer of the entry, if any.
+		 */
+		private TimingWheel.Timer<K> timer;
+
+		/**
+		 * Creates a new entry for a given object.
+		 *
+		 * @param value a cached object.
+		 * @param size size of the object.
+		 * @param timeToLive time to live in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 * @param timeToIdle time to idle in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 */
+		private Entry(final V value, final long size, final long timeToLive, final long timeToIdle) {
+			this(value, size, System.currentTimeMillis(), timeToLive, timeToIdle);
+		}
+
+		/**
+		 * Creates a new entry for a given object of a given size, created at a given time.
+		 *
+		 * @param value a cached object.
+		 * @param size size of the object.
+		 * @param dateOfBirth a time the entry is considered created at.
+		 * @param timeToLive time to live in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 * @param timeToIdle time to idle in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 */
+		private Entry(final V value, final long size, final long dateOfBirth, final long timeToLive, final long timeToIdle) {
+			this.value = Checks.assertNotNull(value);
+			this.size = Checks.ensureNonNegative(size);
+			this.dateOfBirth = dateOfBirth;
+			this.timeToIdle = timeToIdle;
+			liveUntil = TimingWheel.deadline(dateOfBirth, timeToLive);
+			lastAccess = dateOfBirth;
+		}
+
+		/**
+		 * Takes over the last access and hits from given statistics.
+		 *
+		 * @param statistics statistics of the key in another cache.
+		 */
+		private void restore(final CacheItemStatistics<K> statistics) {
+			LAST_ACCESS.lazySet(this, statistics.getLastAccess());
+			HITS.lazySet(this, statistics.getHits());
+		}
+
+		/**
+		 * Returns a time the entry expires at unless accessed again, or {@code Long.MAX_VALUE}.
+		 *
+		 * @return a time the entry expires at.
+		 */
+		private long deadline() {
+			return Math.min(liveUntil, TimingWheel.deadline(lastAccess, timeToIdle));
+		}
+
+		/**
+		 * Checks whether the entry is expired at a given time.
+		 *
+		 * @param now a current time.
+		 *
+		 * @return {@code true} if the entry is expired, {@code false} otherwise.
+		 */
+		private boolean isExpired(final long now) {
+			return now >= deadline();
+		}
+
+		/**
+		 * Records an access to the entry. Concurrent accesses may be lost.
+		 */
+		private void recordAccess() {
+			LAST_ACCESS.lazySet(this, System.currentTimeMillis());
+			HITS.lazySet(this, hits + 1L);
+		}
+
+		/**
+		 * Returns a snapshot of the entry statistics. This method never returns {@code null}.
+		 *
+		 * @return a snapshot of the entry statistics.
+		 */
+		private CacheItemStatistics<K> getStatisticsSnapshot() {
+			return CacheItemStatistics.snapshot(value.getId(), dateOfBirth, lastAccess, hits, size);
+		}
+
+	}
+
+}
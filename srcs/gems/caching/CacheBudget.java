@@ -0,0 +1,25 @@
+package gems.caching;
+
+/**
+ * An enumeration of ways how cache limits are distributed among segments of a segmented cache.
+ * A way is chosen by cache properties.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public enum CacheBudget {
+
+	/**
+	 * Cache limits are split evenly among segments, and each segment evicts its objects as soon
+	 * as it exceeds its share, regardless of other segments. This is the default way.
+	 */
+	SPLIT,
+
+	/**
+	 * All segments draw on cache limits as on one global budget, so a segment with many hot keys
+	 * may use the budget not used by other segments. When the budget is exhausted, objects are
+	 * evicted from the segment using the largest part of the budget. This way recovers the hit
+	 * rate lost when keys are not spread to segments uniformly; see {@code gems.caching.SharedBudget}.
+	 */
+	SHARED
+
+}
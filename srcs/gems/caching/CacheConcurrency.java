@@ -0,0 +1,58 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+/**
+ * An enumeration of concurrency strategies of flat caches, i.e. of caches or cache segments
+ * which are not split into segments any further. A strategy is chosen by cache properties.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public enum CacheConcurrency {
+
+	/**
+	 * Reads and writes are guarded by a fair read-write lock. Each read records statistics
+	 * of the accessed item immediately, so evictors always see exact statistics. This is
+	 * the default strategy.
+	 */
+	LOCKED_READS {
+		@Override <V extends Identifiable<K>, K> ExtractableCache<V, K> newCache(final CacheProperties<V, K> properties) {
+			return new FlatCache<V, K>(properties);
+		}
+	},
+
+	/**
+	 * Reads take no locks at all. Cached objects are kept in a concurrent hash table and reads
+	 * record accesses in a relaxed manner, i.e. some of concurrent accesses of the same item
+	 * may be lost. Writes and eviction are serialized by a lock. This strategy scales well for
+	 * read-mostly workloads with many reading threads; see {@code gems.caching.ConcurrentCache}.
+	 */
+	LOCK_FREE_READS {
+		@Override <V extends Identifiable<K>, K> ExtractableCache<V, K> newCache(final CacheProperties<V, K> properties) {
+			return new ConcurrentCache<V, K>(properties);
+		}
+	},
+
+	/**
+	 * Neither reads nor writes take locks, and eviction is done in the background. Reads and writes
+	 * record events into buffers, and a single maintainer applies them to the eviction policy in
+	 * batches and evicts objects, preferably on the thread pool of cache properties. Latency of writes
+	 * then does not depend on the cache size, but cache limits may be exceeded for a short time and
+	 * ordering of eviction queues is approximate; see {@code gems.caching.BufferedCache}.
+	 */
+	BUFFERED_MAINTENANCE {
+		@Override <V extends Identifiable<K>, K> ExtractableCache<V, K> newCache(final CacheProperties<V, K> properties) {
+			return new BufferedCache<V, K>(properties);
+		}
+	};
+
+	/**
+	 * Creates a new flat cache using the strategy. This method never returns {@code null}.
+	 *
+	 * @param properties cache properties.
+	 *
+	 * @return a new flat cache.
+	 */
+	abstract <V extends Identifiable<K>, K> ExtractableCache<V, K> newCache(CacheProperties<V, K> properties);
+
+}
@@ -26,17 +26,32 @@ public final class CacheFactory<V extends Identifiable<K>, K> implements ObjectP
 	 * @throws IllegalArgumentException if {@code properties} is {@code null}.
 	 */
 	public Option<Cache<V, K>> provide(final Option<CacheProperties<V, K>> properties) {
+		final Option<ManagedCache<V, K>> result = provideManaged(properties);
+		return new Option<Cache<V, K>>(result.hasValue() ? result.getValue() : null);
+	}
+
+	/**
+	 * Creates a new cache configured according given cache properties, just like {@code provide()},
+	 * but the returned cache provides bulk operations and cache-wide statistics, too.
+	 *
+	 * @param properties a cache properties encapsulated in {@code Option} object.
+	 *
+	 * @return a new instance of cache encapsulated in {@code Option} object.
+	 *
+	 * @throws IllegalArgumentException if {@code properties} is {@code null}.
+	 */
+	public Option<ManagedCache<V, K>> provideManaged(final Option<CacheProperties<V, K>> properties) {
 		if (properties == null) {
 			throw new IllegalArgumentException();
 		}
 		if (properties.hasValue()) {
 			final CacheProperties<V, K> props = properties.getValue();
 			if (props.getSegmenter().equals(CacheSegmenter.NULL_SEGMENTER)) {
-				return new Option<Cache<V, K>>(new FlatCache<V, K>(props));
+				return new Option<ManagedCache<V, K>>(props.getConcurrency().newCache(props));
 			}
-			return new Option<Cache<V, K>>(new SegmentedCache<V, K>(props));
+			return new Option<ManagedCache<V, K>>(new SegmentedCache<V, K>(props));
 		}
-		return new Option<Cache<V, K>>(new NullCache<V, K>());
+		return new Option<ManagedCache<V, K>>(new NullCache<V, K>());
 	}
 
 }
@@ -2,6 +2,7 @@ package gems.caching;
 
 import gems.AbstractIdentifiable;
 import gems.Checks;
+import gems.UnexpectedNullException;
 
 /**
  * This class holds statistics about a cached item. The statistics object can be in
@@ -87,6 +88,53 @@ public final class CacheItemStatistics<T> extends AbstractIdentifiable<T> {
 		this.isSnapshot = isSnapshot;
 	}
 
+	/**
+	 * Creates a new snapshot holding given values. This is intended for caches which record
+	 * statistics of cached items by their own means and use statistics objects only to pass
+	 * them to evictors. This method never returns {@code null}.
+	 *
+	 * @param id an ID of cached item.
+	 * @param dateOfBirth a timestamp indicating when the item was added to the cache.
+	 * @param lastAccess a timestamp of the latest access.
+	 * @param hits number of cache hits.
+	 * @param size size of cached item.
+	 *
+	 * @return a new snapshot.
+	 *
+	 * @throws UnexpectedNullException if {@code id} is {@code null}.
+	 */
+	static <T> CacheItemStatistics<T> snapshot(final T id, final long dateOfBirth, final long lastAccess, final long hits, final long size) {
+		return snapshot(id, dateOfBirth, lastAccess, hits, 0L, 0L, size);
+	}
+
+	/**
+	 * Creates a new snapshot holding given values, including misses and evictions. This method
+	 * never returns {@code null}.
+	 *
+	 * @param id an ID of cached item.
+	 * @param dateOfBirth a timestamp indicating when the item was added to the cache.
+	 * @param lastAccess a timestamp of the latest access.
+	 * @param hits number of cache hits.
+	 * @param misses number of cache misses.
+	 * @param evictions number of evictions.
+	 * @param size size of cached item.
+	 *
+	 * @return a new snapshot.
+	 *
+	 * @throws UnexpectedNullException if {@code id} is {@code null}.
+	 */
+	static <T> CacheItemStatistics<T> snapshot(
+			final T id, final long dateOfBirth, final long lastAccess, final long hits, final long misses, final long evictions, final long size
+	) {
+		final CacheItemStatistics<T> result = new CacheItemStatistics<T>(id, dateOfBirth, true);
+		result.lastAccess = lastAccess;
+		result.hits = hits;
+		result.misses = misses;
+		result.evictions = evictions;
+		result.size = size;
+		return result;
+	}
+
 	/**
 	 * Returns an immutable snapshot of the current cache item statistics object.
 	 * If the object is already a snapshot, the same object is returned. A snapshot
@@ -42,11 +42,26 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 	 */
 	private final EvictionHandler<? super V> evictionHandler;
 
+	/**
+	 * A concurrency strategy of flat caches.
+	 */
+	private final CacheConcurrency concurrency;
+
+	/**
+	 * A way of distributing cache limits among segments.
+	 */
+	private final CacheBudget budget;
+
 	/**
 	 * A size estimator.
 	 */
 	private final SizeEstimator<? super V> sizer;
 
+	/**
+	 * An expiration policy.
+	 */
+	private final ExpirationPolicy<? super V> expirationPolicy;
+
 	/**
 	 * A cache storage factory.
 	 */
@@ -67,7 +82,10 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 			final CacheEvictor<K> evictor,
 			final EvictionHandler<? super V> evictionHandler,
 			final CacheSegmenter<? super K> segmenter,
+			final CacheConcurrency concurrency,
+			final CacheBudget budget,
 			final SizeEstimator<? super V> sizer,
+			final ExpirationPolicy<? super V> expirationPolicy,
 			final StorageFactory<K, V> storageFactory,
 			final ExecutorService threadPool,
 			final Logger logger
@@ -76,7 +94,10 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 		this.evictor = Checks.assertNotNull(evictor);
 		this.evictionHandler = Checks.assertNotNull(evictionHandler);
 		this.segmenter = Checks.assertNotNull(segmenter);
+		this.concurrency = Checks.assertNotNull(concurrency);
+		this.budget = Checks.assertNotNull(budget);
 		this.sizer = Checks.assertNotNull(sizer);
+		this.expirationPolicy = Checks.assertNotNull(expirationPolicy);
 		this.storageFactory = Checks.assertNotNull(storageFactory);
 		this.threadPool = Checks.assertNotNull(threadPool);
 		this.logger = Checks.assertNotNull(logger);
@@ -125,10 +146,71 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 		return segmenter;
 	}
 
+	/**
+	 * Returns a concurrency strategy of flat caches associated with the properties object.
+	 * This method never returns {@code null}. If no strategy was set,
+	 * {@code CacheConcurrency.LOCKED_READS} is returned.
+	 *
+	 * @return a concurrency strategy associated with the properties object.
+	 */
+	CacheConcurrency getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Returns a way of distributing cache limits among segments associated with the properties
+	 * object. This method never returns {@code null}. If no way was set, {@code CacheBudget.SPLIT}
+	 * is returned.
+	 *
+	 * @return a way of distributing cache limits among segments.
+	 */
+	CacheBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Returns a copy of the properties object with a given eviction handler
+	 * instead of the original one. This method never returns {@code null}.
+	 *
+	 * @param evictionHandler an eviction handler.
+	 *
+	 * @return a copy of the properties object with a given eviction handler.
+	 */
+	CacheProperties<V, K> withEvictionHandler(final EvictionHandler<? super V> evictionHandler) {
+		return new CacheProperties<V, K>(
+				limits, evictor, Checks.ensureNotNull(evictionHandler), segmenter, concurrency, budget, sizer, expirationPolicy, storageFactory, threadPool, logger
+		);
+	}
+
+	/**
+	 * Returns a copy of the properties object with given cache limits instead
+	 * of the original ones. This method never returns {@code null}.
+	 *
+	 * @param limits cache limits.
+	 *
+	 * @return a copy of the properties object with given cache limits.
+	 */
+	CacheProperties<V, K> withLimits(final Limits<CacheLimit> limits) {
+		return new CacheProperties<V, K>(
+				Checks.ensureNotNull(limits), evictor, evictionHandler, segmenter, concurrency, budget, sizer, expirationPolicy, storageFactory, threadPool, logger
+		);
+	}
+
 	SizeEstimator<? super V> getSizer() {
 		return sizer;
 	}
 
+	/**
+	 * Returns an expiration policy associated with the properties object.
+	 * This method never returns {@code null}. If no expiration policy was set,
+	 * {@code ExpirationPolicy.NULL_EXPIRATION_POLICY} is returned.
+	 *
+	 * @return an expiration policy associated with the properties object.
+	 */
+	ExpirationPolicy<? super V> getExpirationPolicy() {
+		return expirationPolicy;
+	}
+
 	StorageFactory<K, V> getStorageFactory() {
 		return storageFactory;
 	}
@@ -158,6 +240,16 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 		 */
 		private volatile CacheSegmenter<? super K> segmenter = CacheSegmenter.NULL_SEGMENTER;
 
+		/**
+		 * A concurrency strategy of flat caches.
+		 */
+		private volatile CacheConcurrency concurrency = CacheConcurrency.LOCKED_READS;
+
+		/**
+		 * A way of distributing cache limits among segments.
+		 */
+		private volatile CacheBudget budget = CacheBudget.SPLIT;
+
 		/**
 		 * An eviction handler.
 		 */
@@ -168,6 +260,11 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 		 */
 		private volatile SizeEstimator<? super V> sizer = SizeEstimator.ZERO_ESTIMATOR;
 
+		/**
+		 * An expiration policy.
+		 */
+		private volatile ExpirationPolicy<? super V> expirationPolicy = ExpirationPolicy.NULL_EXPIRATION_POLICY;
+
 		/**
 		 * A cache storage factory.
 		 */
@@ -190,14 +287,16 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 		/**
 		 * Creates a new cache properties from the builder. It is safe to call
 		 * this method more than once. This method never returns {@code null}.
+		 * Cache limits are split among segments, unless the budget is shared.
 		 *
 		 * @return a newly created cache properties object.
 		 */
 		public CacheProperties<V, K> build() {
+			final int shares = budget == CacheBudget.SHARED ? 1 : segmenter.maxSegments();
 			final StaticLimits<CacheLimit> cl = new StaticLimits<CacheLimit>(CacheLimit.class); // TODO: CHECK THIS
-			cl.setLimit(CacheLimit.ITEMS, limits.getLimit(CacheLimit.ITEMS).longValue() / segmenter.maxSegments());
-			cl.setLimit(CacheLimit.SIZE, limits.getLimit(CacheLimit.SIZE).longValue() / segmenter.maxSegments());
-			return new CacheProperties<V, K>(cl, evictor, evictionHandler, segmenter, sizer, storageFactory, threadPool, logger);
+			cl.setLimit(CacheLimit.ITEMS, limits.getLimit(CacheLimit.ITEMS).longValue() / shares);
+			cl.setLimit(CacheLimit.SIZE, limits.getLimit(CacheLimit.SIZE).longValue() / shares);
+			return new CacheProperties<V, K>(cl, evictor, evictionHandler, segmenter, concurrency, budget, sizer, expirationPolicy, storageFactory, threadPool, logger);
 		}
 
 		/**
@@ -228,6 +327,34 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 			return this;
 		}
 
+		/**
+		 * Sets a new concurrency strategy of flat caches.
+		 *
+		 * @param concurrency a new concurrency strategy.
+		 *
+		 * @return this {@code Builder object} enabling fluent interface usage.
+		 *
+		 * @throws UnexpectedNullException if {@code concurrency} is {@code null}.
+		 */
+		public Builder<V, K> with(final CacheConcurrency concurrency) {
+			this.concurrency = Checks.ensureNotNull(concurrency);
+			return this;
+		}
+
+		/**
+		 * Sets a new way of distributing cache limits among segments.
+		 *
+		 * @param budget a new way of distributing cache limits.
+		 *
+		 * @return this {@code Builder object} enabling fluent interface usage.
+		 *
+		 * @throws UnexpectedNullException if {@code budget} is {@code null}.
+		 */
+		public Builder<V, K> with(final CacheBudget budget) {
+			this.budget = Checks.ensureNotNull(budget);
+			return this;
+		}
+
 		/**
 		 * Sets a new eviction handler.
 		 *
@@ -237,7 +364,7 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 		 *
 		 * @throws UnexpectedNullException if {@code handler} is {@code null}.
 		 */
-		Builder<V, K> with(final EvictionHandler<? super V> evictionHandler) { // TODO: MAKE PUBLIC WHEN HANDLER IS UNCOVERED
+		public Builder<V, K> with(final EvictionHandler<? super V> evictionHandler) {
 			this.evictionHandler = Checks.ensureNotNull(evictionHandler);
 			return this;
 		}
@@ -256,6 +383,20 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 			return this;
 		}
 
+		/**
+		 * Sets a new expiration policy.
+		 *
+		 * @param expirationPolicy a new expiration policy.
+		 *
+		 * @return this {@code Builder} enabling fluent interface usage.
+		 *
+		 * @throws UnexpectedNullException if {@code expirationPolicy} is {@code null}.
+		 */
+		public Builder<V, K> with(final ExpirationPolicy<? super V> expirationPolicy) {
+			this.expirationPolicy = Checks.ensureNotNull(expirationPolicy);
+			return this;
+		}
+
 		/**
 		 * Sets a new storage factory.
 		 *
@@ -265,7 +406,7 @@ public final class CacheProperties<V extends Identifiable<K>, K> { // todo: revi
 		 *
 		 * @throws UnexpectedNullException if {@code factory} is {@code null}.
 		 */
-		Builder<V, K> with(final StorageFactory<K, V> factory) { // TODO: MAKE PUBLIC WHEN STORAGE FACTORY IS UNCOVERED
+		public Builder<V, K> with(final StorageFactory<K, V> factory) {
 			this.storageFactory = Checks.ensureNotNull(factory);
 			return this;
 		}
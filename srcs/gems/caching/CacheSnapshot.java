@@ -0,0 +1,377 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.UnexpectedNullException;
+import gems.io.RuntimeIOException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Saves contents of a cache to a file and restores them back, so a restarted application does not
+ * start with an empty cache. A snapshot is a compact sequential file holding cached objects encoded
+ * by a codec together with their access statistics, i.e. the time they were stored, the last access and
+ * hits, and times they expire at, regardless of accesses and unless accessed. Objects are written segment
+ * by segment, and objects of a segment in order of their last accesses, the least recently used first.
+ * <p/>
+ * A snapshot is saved in the background, using a given thread pool. Cached objects of a segment and their
+ * statistics are read without recording any access; then they are written to a temporary file without
+ * holding any cache lock before the next segment is read, and the temporary file replaces the snapshot
+ * file when complete, so a snapshot file is never partially written.
+ * <p/>
+ * A snapshot is restored by bulk offers, so current cache limits and the eviction policy apply: if the
+ * snapshot holds more objects than the cache can hold now, the eviction policy decides which objects stay.
+ * Objects expired meantime are skipped. Objects restored to a cache created by {@code CacheFactory} keep
+ * their access statistics and expire by the expiration policy of that cache, counted from the time they
+ * were stored and from the last access; they do not get a fresh time to live, and unless the policy never
+ * expires them, they expire no later than they would in the saved cache. An access after restoring gives
+ * them the full time to idle of the policy again. Objects are offered in their order in the file, so
+ * recently used objects are offered last. The file is streamed: objects are decoded by the calling thread
+ * and offered in batches by tasks of the thread pool.
+ * Objects of a segmented cache are batched by segments, and batches of different segments are offered
+ * in parallel, while batches of the same segment are offered one after another in file order.
+ * <p/>
+ * Only caches created by {@code CacheFactory} for given cache properties can be saved; any cache can
+ * be restored. <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+public final class CacheSnapshot<V extends Identifiable<K>, K> {
+
+	/**
+	 * A number identifying snapshot files of this format.
+	 */
+	private static final int MAGIC = 0x47435333;
+
+	/**
+	 * Number of objects offered in a batch on restoring.
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * A comparator of cached objects by last accesses of their keys, the least recent first. Segmented
+	 * caches use it for keeping the order of objects migrated among segments too.
+	 */
+	static final Comparator<Map.Entry<?, ? extends CacheItemStatistics<?>>> BY_LAST_ACCESS =
+			new Comparator<Map.Entry<?, ? extends CacheItemStatistics<?>>>() {
+
+				@Override public int compare(
+						final Map.Entry<?, ? extends CacheItemStatistics<?>> first,
+						final Map.Entry<?, ? extends CacheItemStatistics<?>> second
+				) {
+					final long firstAccess = first.getValue().getLastAccess();
+					final long secondAccess = second.getValue().getLastAccess();
+					return firstAccess < secondAccess ? -1 : firstAccess == secondAccess ? 0 : 1;
+				}
+
+			};
+
+	/**
+	 * A codec of cached objects.
+	 */
+	private final Codec<V> codec;
+
+	/**
+	 * A thread pool saving snapshots and offering restored objects.
+	 */
+	private final ExecutorService threadPool;
+
+	/**
+	 * Creates a new snapshot facility.
+	 *
+	 * @param codec a codec of cached objects.
+	 * @param threadPool a thread pool saving snapshots and offering restored objects.
+	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 */
+	public CacheSnapshot(final Codec<V> codec, final ExecutorService threadPool) {
+		this.codec = Checks.ensureNotNull(codec);
+		this.threadPool = Checks.ensureNotNull(threadPool);
+	}
+
+	/**
+	 * Saves contents of a given cache to a given file in the background. The returned future provides
+	 * number of saved objects, or throws {@code ExecutionException} caused by {@code RuntimeIOException}
+	 * if the file cannot be written. This method never returns {@code null}.
+	 *
+	 * @param cache a cache.
+	 * @param file a snapshot file.
+	 *
+	 * @return a future number of saved objects.
+	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 * @throws IllegalArgumentException if the cache was not created by {@code CacheFactory}.
+	 */
+	public Future<Long> save(final Cache<V, K> cache, final File file) {
+		Checks.ensureNotNull(cache);
+		Checks.ensureNotNull(file);
+		final List<ExtractableCache<V, K>> segments;
+		if (cache instanceof SegmentedCache) {
+			segments = ((SegmentedCache<V, K>) cache).getSegmentList();
+		} else if (cache instanceof ExtractableCache) {
+			segments = Collections.singletonList((ExtractableCache<V, K>) cache);
+		} else {
+			throw new IllegalArgumentException();
+		}
+		final ExpirationPolicy<? super V> policy = getExpirationPolicy(cache);
+		return threadPool.submit(new Callable<Long>() {
+
+			@Override public Long call() {
+				return write(segments, policy, file);
+			}
+
+		});
+	}
+
+	/**
+	 * Writes objects of given segments to a given file, segment by segment, each segment in order of
+	 * last accesses of its objects. Each object is written together with its access statistics and
+	 * the times it expires at according to a given expiration policy.
+	 *
+	 * @param segments segments.
+	 * @param policy an expiration policy of the saved cache.
+	 * @param file a snapshot file.
+	 *
+	 * @return number of written objects.
+	 *
+	 * @throws RuntimeIOException if the file cannot be written.
+	 */
+	private long write(final List<ExtractableCache<V, K>> segments, final ExpirationPolicy<? super V> policy, final File file) {
+		final File temporary = new File(file.getPath() + ".tmp");
+		long count = 0L;
+		try {
+			final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+			try {
+				output.writeInt(MAGIC);
+				output.writeInt(segments.size());
+				for (final ExtractableCache<V, K> segment : segments) {
+					final List<Map.Entry<V, CacheItemStatistics<K>>> sorted = new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>(segment.snapshot());
+					Collections.sort(sorted, BY_LAST_ACCESS);
+					output.writeInt(sorted.size());
+					for (final Map.Entry<V, CacheItemStatistics<K>> entry : sorted) {
+						final V object = entry.getKey();
+						final CacheItemStatistics<K> statistics = entry.getValue();
+						final byte[] bytes = codec.encode(object);
+						output.writeLong(statistics.getDateOfBirth());
+						output.writeLong(statistics.getLastAccess());
+						output.writeLong(statistics.getHits());
+						output.writeLong(TimingWheel.deadline(statistics.getDateOfBirth(), policy.getTimeToLive(object)));
+						output.writeLong(TimingWheel.deadline(statistics.getLastAccess(), policy.getTimeToIdle(object)));
+						output.writeInt(bytes.length);
+						output.write(bytes);
+					}
+					count += sorted.size();
+				}
+			} finally {
+				output.close();
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (final IOException e) {
+			throw new RuntimeIOException(file.getPath(), e);
+		}
+		return count;
+	}
+
+	/**
+	 * Restores objects from a given snapshot file into a given cache and waits until all of them are offered.
+	 * Objects expired meantime are skipped.
+	 *
+	 * @param cache a cache.
+	 * @param file a snapshot file.
+	 *
+	 * @return number of restored objects.
+	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 * @throws RuntimeIOException if the file cannot be read or it is not a snapshot file.
+	 */
+	public long restore(final Cache<V, K> cache, final File file) {
+		Checks.ensureNotNull(cache);
+		Checks.ensureNotNull(file);
+		final SegmentedCache<V, K> segmented = cache instanceof SegmentedCache ? (SegmentedCache<V, K>) cache : null;
+		final ExpirationPolicy<? super V> policy = getExpirationPolicy(cache);
+		final int lanes = segmented == null ? 1 : segmented.getSegments();
+		final List<List<Map.Entry<V, CacheItemStatistics<K>>>> batches = new ArrayList<List<Map.Entry<V, CacheItemStatistics<K>>>>(lanes);
+		final List<Future<?>> offers = new ArrayList<Future<?>>(lanes);
+		for (int i = 0; i < lanes; i++) {
+			batches.add(new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>(BATCH_SIZE));
+			offers.add(null);
+		}
+		long count = 0L;
+		try {
+			final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (input.readInt() != MAGIC) {
+					throw new RuntimeIOException(file.getPath());
+				}
+				final int segments = input.readInt();
+				for (int segment = 0; segment < segments; segment++) {
+					final int objects = input.readInt();
+					for (int i = 0; i < objects; i++) {
+						final long dateOfBirth = input.readLong();
+						final long lastAccess = input.readLong();
+						final long hits = input.readLong();
+						final long liveUntil = input.readLong();
+						final long idleUntil = input.readLong();
+						final byte[] bytes = new byte[input.readInt()];
+						input.readFully(bytes);
+						if (System.currentTimeMillis() >= Math.min(liveUntil, idleUntil)) {
+							continue;
+						}
+						final V object = codec.decode(bytes);
+						final int lane = segmented == null ? 0 : segmented.getSegmentNumber(object.getId()) % lanes;
+						batches.get(lane).add(new AbstractMap.SimpleImmutableEntry<V, CacheItemStatistics<K>>(object, CacheItemStatistics.snapshot(
+								object.getId(),
+								since(dateOfBirth, liveUntil, policy.getTimeToLive(object)),
+								since(lastAccess, idleUntil, policy.getTimeToIdle(object)),
+								hits,
+								0L
+						)));
+						if (batches.get(lane).size() == BATCH_SIZE) {
+							offer(cache, batches, offers, lane);
+						}
+						count++;
+					}
+				}
+				for (int lane = 0; lane < lanes; lane++) {
+					if (!batches.get(lane).isEmpty()) {
+						offer(cache, batches, offers, lane);
+					}
+				}
+				for (int lane = 0; lane < lanes; lane++) {
+					await(offers.get(lane));
+				}
+				return count;
+			} finally {
+				input.close();
+			}
+		} catch (final IOException e) {
+			throw new RuntimeIOException(file.getPath(), e);
+		}
+	}
+
+	/**
+	 * Returns an expiration policy of a given cache, or {@code ExpirationPolicy.NULL_EXPIRATION_POLICY}
+	 * if the cache was not created by {@code CacheFactory}.
+	 *
+	 * @param cache a cache.
+	 *
+	 * @return an expiration policy of the cache.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private static <V extends Identifiable<K>, K> ExpirationPolicy<? super V> getExpirationPolicy(final Cache<V, K> cache) {
+		if (cache instanceof SegmentedCache || cache instanceof ExtractableCache) {
+			return ((AbstractCacheComponent<V, K>) cache).getProperties().getExpirationPolicy();
+		}
+		return ExpirationPolicy.NULL_EXPIRATION_POLICY;
+	}
+
+	/**
+	 * Offers a batch of a given lane to a given cache by a task of the thread pool, after the previous
+	 * batch of the lane is offered. If the cache was created by {@code CacheFactory}, the batch is restored
+	 * at once together with access statistics of its objects, and objects are evicted as necessary for
+	 * satisfying current cache limits afterwards. Otherwise, the batch is offered at once if the cache is
+	 * a {@code ManagedCache}. A new batch of the lane is started.
+	 *
+	 * @param cache a cache.
+	 * @param batches current batches of lanes.
+	 * @param offers the latest offers of lanes.
+	 * @param lane a lane.
+	 */
+	private void offer(final Cache<V, K> cache, final List<List<Map.Entry<V, CacheItemStatistics<K>>>> batches, final List<Future<?>> offers, final int lane) {
+		await(offers.get(lane));
+		final List<Map.Entry<V, CacheItemStatistics<K>>> batch = batches.get(lane);
+		batches.set(lane, new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>(BATCH_SIZE));
+		offers.set(lane, threadPool.submit(new Runnable() {
+
+			@SuppressWarnings({"unchecked"})
+			@Override public void run() {
+				if (cache instanceof SegmentedCache) {
+					((SegmentedCache<V, K>) cache).restore(batch);
+				} else if (cache instanceof ExtractableCache) {
+					((ExtractableCache<V, K>) cache).restore(batch);
+					((ExtractableCache<V, K>) cache).trim();
+				} else {
+					final List<V> objects = new ArrayList<V>(batch.size());
+					for (final Map.Entry<V, CacheItemStatistics<K>> entry : batch) {
+						objects.add(entry.getKey());
+					}
+					if (cache instanceof ManagedCache) {
+						((ManagedCache<V, K>) cache).offerAll(objects);
+					} else {
+						for (final V object : objects) {
+							cache.offer(object);
+						}
+					}
+				}
+			}
+
+		}));
+	}
+
+	/**
+	 * Returns a time an expiration duration is counted from, so an object expires no later than at a given
+	 * deadline recorded in the snapshot. The recorded time of the object is returned if the deadline is never
+	 * reached sooner, or if the duration is {@code NEVER}. The duration itself is kept, so an access after
+	 * restoring gives the object the full duration again.
+	 *
+	 * @param time a recorded time the duration is counted from, i.e. the date of birth or the last access.
+	 * @param deadline a recorded deadline, or {@code Long.MAX_VALUE}.
+	 * @param duration a duration of the expiration policy of the restoring cache.
+	 *
+	 * @return a time the duration is counted from.
+	 */
+	private static long since(final long time, final long deadline, final long duration) {
+		if (deadline == Long.MAX_VALUE || duration == ExpirationPolicy.NEVER) {
+			return time;
+		}
+		return Math.min(time, deadline - duration);
+	}
+
+	/**
+	 * Waits for a given offer to finish, propagating its failure.
+	 *
+	 * @param offer an offer, or {@code null}.
+	 */
+	private static void await(final Future<?> offer) {
+		if (offer == null) {
+			return;
+		}
+		try {
+			offer.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+package gems.caching;
+
+import gems.Checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable snapshot of cache-wide statistics: hits and misses of requests, loads of
+ * missing objects, evictions by their causes, and total size of cached objects as estimated
+ * by the size estimator of cache properties. Statistics of a segmented or tiered cache are
+ * sums of statistics of its parts, which are available as a breakdown, too. Loads are
+ * recorded only by {@code CachingObjectProvider}, so statistics of caches alone have zero
+ * loads. <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class CacheStatistics {
+
+	/**
+	 * Statistics with all values equal to zero.
+	 */
+	public static final CacheStatistics EMPTY_STATISTICS = new CacheStatistics(0L, 0L, 0L, 0L, new long[EvictionCause.values().length], 0L);
+
+	/**
+	 * Number of hits.
+	 */
+	private final long hits;
+
+	/**
+	 * Number of misses.
+	 */
+	private final long misses;
+
+	/**
+	 * Number of loads.
+	 */
+	private final long loads;
+
+	/**
+	 * Total time spent by loads in nanoseconds.
+	 */
+	private final long loadTime;
+
+	/**
+	 * Numbers of evictions indexed by ordinal numbers of their causes.
+	 */
+	private final long[] evictions;
+
+	/**
+	 * Total size of cached objects.
+	 */
+	private final long weight;
+
+	/**
+	 * Statistics of parts of the cache.
+	 */
+	private final List<CacheStatistics> parts;
+
+	/**
+	 * Creates new statistics with given values and no parts.
+	 *
+	 * @param hits number of hits.
+	 * @param misses number of misses.
+	 * @param loads number of loads.
+	 * @param loadTime total time spent by loads in nanoseconds.
+	 * @param evictions numbers of evictions indexed by ordinal numbers of their causes.
+	 * @param weight total size of cached objects.
+	 */
+	CacheStatistics(final long hits, final long misses, final long loads, final long loadTime, final long[] evictions, final long weight) {
+		this(hits, misses, loads, loadTime, evictions, weight, Collections.<CacheStatistics>emptyList());
+	}
+
+	/**
+	 * Creates new statistics with given values and parts.
+	 *
+	 * @param hits number of hits.
+	 * @param misses number of misses.
+	 * @param loads number of loads.
+	 * @param loadTime total time spent by loads in nanoseconds.
+	 * @param evictions numbers of evictions indexed by ordinal numbers of their causes.
+	 * @param weight total size of cached objects.
+	 * @param parts statistics of parts of the cache.
+	 */
+	private CacheStatistics(
+			final long hits,
+			final long misses,
+			final long loads,
+			final long loadTime,
+			final long[] evictions,
+			final long weight,
+			final List<CacheStatistics> parts
+	) {
+		this.hits = hits;
+		this.misses = misses;
+		this.loads = loads;
+		this.loadTime = loadTime;
+		this.evictions = Checks.assertNotNull(evictions).clone();
+		this.weight = weight;
+		this.parts = Collections.unmodifiableList(new ArrayList<CacheStatistics>(parts));
+	}
+
+	/**
+	 * Returns statistics summing given statistics of parts of a cache, which are kept as a breakdown.
+	 *
+	 * @param parts statistics of parts of a cache.
+	 *
+	 * @return summed statistics.
+	 */
+	static CacheStatistics sum(final List<CacheStatistics> parts) {
+		long hits = 0L;
+		long misses = 0L;
+		long loads = 0L;
+		long loadTime = 0L;
+		final long[] evictions = new long[EvictionCause.values().length];
+		long weight = 0L;
+		for (final CacheStatistics part : parts) {
+			hits += part.hits;
+			misses += part.misses;
+			loads += part.loads;
+			loadTime += part.loadTime;
+			for (int i = 0; i < evictions.length; i++) {
+				evictions[i] += part.evictions[i];
+			}
+			weight += part.weight;
+		}
+		return new CacheStatistics(hits, misses, loads, loadTime, evictions, weight, parts);
+	}
+
+	/**
+	 * Returns a copy of the statistics with given hits and misses instead of the original ones.
+	 *
+	 * @param hits number of hits.
+	 * @param misses number of misses.
+	 *
+	 * @return a copy of the statistics.
+	 */
+	CacheStatistics withRequests(final long hits, final long misses) {
+		return new CacheStatistics(hits, misses, loads, loadTime, evictions, weight, parts);
+	}
+
+	/**
+	 * Returns a copy of the statistics with given evictions instead of the original ones.
+	 *
+	 * @param evictions numbers of evictions indexed by ordinal numbers of their causes.
+	 *
+	 * @return a copy of the statistics.
+	 */
+	CacheStatistics withEvictions(final long[] evictions) {
+		return new CacheStatistics(hits, misses, loads, loadTime, evictions, weight, parts);
+	}
+
+	/**
+	 * Returns a copy of the statistics with given loads added.
+	 *
+	 * @param loads number of loads.
+	 * @param loadTime total time spent by loads in nanoseconds.
+	 *
+	 * @return a copy of the statistics.
+	 */
+	CacheStatistics plusLoads(final long loads, final long loadTime) {
+		return new CacheStatistics(hits, misses, this.loads + loads, this.loadTime + loadTime, evictions, weight, parts);
+	}
+
+	/**
+	 * Returns number of requests satisfied by the cache.
+	 *
+	 * @return number of hits.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns number of requests not satisfied by the cache.
+	 *
+	 * @return number of misses.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns number of all requests.
+	 *
+	 * @return number of requests.
+	 */
+	public long getRequests() {
+		return hits + misses;
+	}
+
+	/**
+	 * Returns a ratio of hits to all requests, or {@code 1.0} if there were not any requests.
+	 *
+	 * @return a hit rate.
+	 */
+	public double getHitRate() {
+		final long requests = getRequests();
+		return requests == 0L ? 1.0 : (double) hits / requests;
+	}
+
+	/**
+	 * Returns number of objects loaded after misses.
+	 *
+	 * @return number of loads.
+	 */
+	public long getLoads() {
+		return loads;
+	}
+
+	/**
+	 * Returns total time spent by loads in nanoseconds.
+	 *
+	 * @return total time spent by loads.
+	 */
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+	/**
+	 * Returns number of objects removed for a given cause.
+	 *
+	 * @param cause a cause of eviction.
+	 *
+	 * @return number of evictions.
+	 */
+	public long getEvictions(final EvictionCause cause) {
+		return evictions[cause.ordinal()];
+	}
+
+	/**
+	 * Returns number of objects removed for any cause.
+	 *
+	 * @return number of evictions.
+	 */
+	public long getEvictions() {
+		long result = 0L;
+		for (final long count : evictions) {
+			result += count;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns total size of cached objects.
+	 *
+	 * @return total size of cached objects.
+	 */
+	public long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Returns statistics of parts of the cache, i.e. of segments or tiers, or an empty list
+	 * for caches not split into parts. This method never returns {@code null}.
+	 *
+	 * @return an unmodifiable list of statistics of parts of the cache.
+	 */
+	public List<CacheStatistics> getParts() {
+		return parts;
+	}
+
+	@Override public String toString() {
+		final StringBuilder result = new StringBuilder(getClass().getSimpleName())
+				.append("[hits=").append(hits)
+				.append(", misses=").append(misses)
+				.append(", loads=").append(loads)
+				.append(", loadTime=").append(loadTime);
+		for (final EvictionCause cause : EvictionCause.values()) {
+			result.append(", evictions.").append(cause).append('=').append(getEvictions(cause));
+		}
+		return result.append(", weight=").append(weight).append(", parts=").append(parts.size()).append(']').toString();
+	}
+
+}
@@ -1,9 +1,12 @@
 package gems.caching;
 
 import gems.Identifiable;
+import gems.Limits;
 import gems.Option;
+import gems.filtering.Filter;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * This interface provides a contract for interaction between
@@ -31,6 +34,16 @@ interface CacheStorage<K, V extends Identifiable<K>> {
 	 */
 	void put(V value);
 
+	/**
+	 * Puts given value into the storage, taking over statistics of its key from another storage. The value
+	 * is considered stored at the date of birth in statistics, so its expiration times are computed from
+	 * that time and from the last access in statistics by the expiration policy of cache properties.
+	 *
+	 * @param value a new cached value.
+	 * @param statistics statistics of the key of the value in another storage.
+	 */
+	void restore(V value, CacheItemStatistics<K> statistics);
+
 	/**
 	 * Returns a collection of all cached items suitable for eviction.
 	 * In another words, already evicted cache items should not be
@@ -42,6 +55,18 @@ interface CacheStorage<K, V extends Identifiable<K>> {
 	 */
 	Collection<CacheItemStatistics<K>> itemsForEviction();
 
+	/**
+	 * Selects keys of cached items which have to be evicted for satisfying given
+	 * cache limits, using the cache evictor from cache properties. This method
+	 * should never return {@code null}. If no items have to be evicted, an empty
+	 * collection should be returned.
+	 *
+	 * @param limits cache limits to satisfy.
+	 *
+	 * @return a collection of keys of cached items selected for eviction.
+	 */
+	Collection<K> selectForEviction(Limits<CacheLimit> limits);
+
 	/**
 	 * Evicts all cached items identified by keys in a given collection.
 	 * If a collection contains a key which is not contained in the storage
@@ -54,4 +79,53 @@ interface CacheStorage<K, V extends Identifiable<K>> {
 	 */
 	int evict(Collection<K> keys);
 
+	/**
+	 * Removes all cached items identified by keys allowed by a given filter and returns their values.
+	 * Removed items are not evicted, i.e. neither their eviction is recorded nor the eviction handler
+	 * is called; expired items are discarded instead of being returned. This method should never
+	 * return {@code null}.
+	 *
+	 * @param filter a filter of keys.
+	 *
+	 * @return values of removed items.
+	 */
+	Collection<V> extract(Filter<? super K> filter);
+
+	/**
+	 * Removes a cached item identified by a given key, if any, together with statistics of the key.
+	 * The item is not evicted, i.e. neither its eviction is recorded nor the eviction handler is called.
+	 *
+	 * @param key a key of removed item.
+	 */
+	void invalidate(K key);
+
+	/**
+	 * Returns all cached values together with statistics of their keys. No access is recorded,
+	 * and expired items are skipped. The date of birth in statistics is the time the value was
+	 * stored. This method should never return {@code null}.
+	 *
+	 * @return cached values with statistics of their keys.
+	 */
+	Collection<Map.Entry<V, CacheItemStatistics<K>>> snapshot();
+
+	/**
+	 * Creates a secondary index of a given attribute of cached values. Values already cached are
+	 * indexed immediately, and the index is kept up to date by later writes.
+	 *
+	 * @param attribute an indexed attribute.
+	 * @param type a type of the index.
+	 * @param <A> a type of attribute values.
+	 */
+	<A> void index(Attribute<? super V, A> attribute, IndexType type);
+
+	/**
+	 * Returns all cached values allowed by a given filter. No access is recorded, and expired
+	 * items are skipped. This method should never return {@code null}.
+	 *
+	 * @param filter a filter of cached values.
+	 *
+	 * @return cached values allowed by the filter.
+	 */
+	Collection<V> search(Filter<? super V> filter);
+
 }
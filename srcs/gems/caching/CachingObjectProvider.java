@@ -1,12 +1,30 @@
 package gems.caching;
 
+import gems.BatchObjectProvider;
 import gems.Checks;
+import gems.ExceptionHandler;
 import gems.Identifiable;
+import gems.NumericValueOutOfRangeException;
 import gems.ObjectProvider;
 import gems.Option;
 import gems.UnexpectedNullException;
 import gems.filtering.Filter;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A service providing objects and caching them. It implements quite common use
  * case when client code wants to get an object from the cache or retrieve a new
@@ -25,12 +43,45 @@ import gems.filtering.Filter;
  * result for the same key/object when invoked for it many times. If you are about
  * implementing non-idempotent filters, consult source code of this class and
  * consider possible consequences.
+ * <p/>
+ * Optionally, a load timeout can be given, which turns on single-flight loading: concurrent
+ * misses of the same key wait for a single in-flight load instead of calling the underlying
+ * object provider each. The loaded object, or an exception thrown by the underlying object
+ * provider, is then passed to all waiting callers. Callers waiting longer than the timeout
+ * give up with {@code LoadTimeoutException}, while the load itself goes on.
+ * <p/>
+ * Single-flight loading can be combined with refresh-ahead loading set by {@code RefreshAhead}
+ * settings: objects requested shortly before their time to live elapses are reloaded in the
+ * background, while the current objects are still provided from the cache. A refresh takes part
+ * in single-flight loading, so an object is never refreshed by more threads at once, and misses
+ * during a refresh wait for it. If a refresh fails, the object is not refreshed ahead anymore
+ * until it is loaded again. Refreshes rejected by the thread pool are run by the caller.
+ * <p/>
+ * Many objects can be provided at once. The cache is asked for all of them at once, and
+ * if the underlying object provider is a {@code gems.BatchObjectProvider}, all misses are
+ * loaded by a single call of it. Loaded objects are offered to the cache at once. Batch
+ * loads are always direct, i.e. they do not take part in single-flight loading.
+ * <p/>
+ * Optionally, misses of the underlying object provider can be cached by a {@code NegativeCache},
+ * with or without single-flight and refresh-ahead loading. Keys allowed to be cached for which the
+ * provider returned no object are then answered as missing without calling the provider again, until
+ * their time to live in the negative cache elapses.
  *
  * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
  * @param <V> type of provided objects.
  * @param <K> type of object keys.
  */
-public final class CachingObjectProvider<V extends Identifiable<K>, K> implements ObjectProvider<V, K> {
+public final class CachingObjectProvider<V extends Identifiable<K>, K> implements BatchObjectProvider<V, K> {
+
+	/**
+	 * A load timeout value turning single-flight loading off.
+	 */
+	public static final long DIRECT_LOADING = 0L;
+
+	/**
+	 * Number of recorded loads between removals of stale expiration times.
+	 */
+	private static final int SWEEP_PERIOD = 1024;
 
 	/**
 	 * An underlying cache.
@@ -52,6 +103,41 @@ public final class CachingObjectProvider<V extends Identifiable<K>, K> implement
 	 */
 	private final Filter<? super V> valueFilter;
 
+	/**
+	 * A load timeout in milliseconds, or {@code DIRECT_LOADING} if single-flight loading is off.
+	 */
+	private final long loadTimeout;
+
+	/**
+	 * Loads in flight by keys.
+	 */
+	private final ConcurrentMap<K, Load<V>> loads = new ConcurrentHashMap<K, Load<V>>();
+
+	/**
+	 * Refresh-ahead settings, or {@code null} if refresh-ahead loading is off.
+	 */
+	private final RefreshAhead<V, K> refresh;
+
+	/**
+	 * A cache of keys the underlying provider has no object for, or {@code null} if negative caching is off.
+	 */
+	private final NegativeCache<K> negative;
+
+	/**
+	 * Expiration times and load durations of loaded objects by keys, if refresh-ahead loading is on.
+	 */
+	private final ConcurrentMap<K, Freshness> freshness = new ConcurrentHashMap<K, Freshness>();
+
+	/**
+	 * A counter of recorded loads.
+	 */
+	private final AtomicInteger recorded = new AtomicInteger();
+
+	/**
+	 * A recorder of loads.
+	 */
+	private final StatisticsCounter statistics = new StatisticsCounter();
+
 	/**
 	 * Creates a new caching object provider using given attributes. All created objects are accepted for caching.
 	 *
@@ -80,42 +166,504 @@ public final class CachingObjectProvider<V extends Identifiable<K>, K> implement
 			final ObjectProvider<V, K> provider,
 			final Filter<? super K> keyFilter,
 			final Filter<? super V> valueFilter
+	) {
+		this(cache, provider, keyFilter, valueFilter, DIRECT_LOADING, null, null);
+	}
+
+	/**
+	 * Creates a new caching object provider using given attributes, loading objects in a single-flight mode.
+	 *
+	 * @param cache an underlying cache used for caching objects.
+	 * @param provider an underlying object provider used for creating new objects.
+	 * @param keyFilter a caching-acceptance filter based on object keys analysis.
+	 * @param valueFilter a caching-acceptance filter based on objects analysis.
+	 * @param loadTimeout maximal time in milliseconds a caller waits for a load started by another caller.
+	 *
+	 * @throws UnexpectedNullException if any of attributes is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code loadTimeout} is not positive.
+	 */
+	public CachingObjectProvider(
+			final Cache<V, K> cache,
+			final ObjectProvider<V, K> provider,
+			final Filter<? super K> keyFilter,
+			final Filter<? super V> valueFilter,
+			final long loadTimeout
+	) {
+		this(cache, provider, keyFilter, valueFilter, Checks.ensurePositive(loadTimeout), null, null);
+	}
+
+	/**
+	 * Creates a new caching object provider using given attributes, loading objects in a single-flight mode
+	 * and refreshing them ahead of their expiration.
+	 *
+	 * @param cache an underlying cache used for caching objects.
+	 * @param provider an underlying object provider used for creating new objects.
+	 * @param keyFilter a caching-acceptance filter based on object keys analysis.
+	 * @param valueFilter a caching-acceptance filter based on objects analysis.
+	 * @param loadTimeout maximal time in milliseconds a caller waits for a load started by another caller.
+	 * @param refresh refresh-ahead settings, which should be created from properties of the cache,
+	 *        or {@code null} if objects are not refreshed ahead.
+	 *
+	 * @throws UnexpectedNullException if any of attributes but {@code refresh} is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code loadTimeout} is not positive.
+	 */
+	public CachingObjectProvider(
+			final Cache<V, K> cache,
+			final ObjectProvider<V, K> provider,
+			final Filter<? super K> keyFilter,
+			final Filter<? super V> valueFilter,
+			final long loadTimeout,
+			final RefreshAhead<V, K> refresh
+	) {
+		this(cache, provider, keyFilter, valueFilter, Checks.ensurePositive(loadTimeout), refresh, null);
+	}
+
+	/**
+	 * Creates a new caching object provider using given attributes. All other constructors delegate to this one.
+	 *
+	 * @param cache an underlying cache used for caching objects.
+	 * @param provider an underlying object provider used for creating new objects.
+	 * @param keyFilter a caching-acceptance filter based on object keys analysis.
+	 * @param valueFilter a caching-acceptance filter based on objects analysis.
+	 * @param loadTimeout maximal time in milliseconds a caller waits for a load started by another caller,
+	 *        or {@code DIRECT_LOADING} if objects are not loaded in a single-flight mode.
+	 * @param refresh refresh-ahead settings, which should be created from properties of the cache,
+	 *        or {@code null} if objects are not refreshed ahead.
+	 * @param negative a negative cache of keys the underlying provider has no object for,
+	 *        or {@code null} if misses are not cached.
+	 *
+	 * @throws UnexpectedNullException if any of attributes but {@code refresh} and {@code negative} is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code loadTimeout} is negative.
+	 */
+	public CachingObjectProvider(
+			final Cache<V, K> cache,
+			final ObjectProvider<V, K> provider,
+			final Filter<? super K> keyFilter,
+			final Filter<? super V> valueFilter,
+			final long loadTimeout,
+			final RefreshAhead<V, K> refresh,
+			final NegativeCache<K> negative
 	) {
 		this.cache = Checks.ensureNotNull(cache);
 		this.provider = Checks.ensureNotNull(provider);
 		this.keyFilter = Checks.ensureNotNull(keyFilter);
 		this.valueFilter = Checks.ensureNotNull(valueFilter);
+		this.loadTimeout = Checks.ensureNonNegative(loadTimeout);
+		this.refresh = refresh;
+		this.negative = negative;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 *
 	 * @throws NullPointerException if {@code key} is {@code null}.
+	 * @throws LoadTimeoutException if a load in flight did not finish in time.
 	 */
 	@Override public Option<V> provide(final Option<K> key) {
 		if (key.hasValue()) {
 			final K realKey = key.getValue();
-			if (keyFilter.allows(realKey)) {
-				final Option<V> cached = cache.get(realKey);
-				if (cached.hasValue()) {
-					return new Option<V>(cached.getValue());
+			final Option<V> cached = getFromCache(realKey);
+			if (cached.hasValue()) {
+				refreshIfDue(realKey);
+				return new Option<V>(cached.getValue());
+			}
+			if (isKnownMissing(realKey)) {
+				return new Option<V>(null);
+			}
+			if (loadTimeout == DIRECT_LOADING) {
+				return new Option<V>(load(realKey));
+			}
+			final Load<V> load = new Load<V>();
+			final Load<V> inFlight = loads.putIfAbsent(realKey, load);
+			if (inFlight != null) {
+				return new Option<V>(inFlight.await(loadTimeout));
+			}
+			try {
+				// another load could finish between the cache lookup and the registration
+				final Option<V> loaded = getFromCache(realKey);
+				final V value = loaded.hasValue() ? loaded.getValue() : load(realKey);
+				load.complete(value, null);
+				return new Option<V>(value);
+			} catch (final RuntimeException e) {
+				load.complete(null, e);
+				throw e;
+			} catch (final Error e) {
+				load.complete(null, e);
+				throw e;
+			} finally {
+				loads.remove(realKey, load);
+			}
+		}
+		return new Option<V>(null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<K, V> provideAll(final Collection<? extends K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
+		}
+		final Set<K> missing = new LinkedHashSet<K>();
+		final List<K> cacheable = new ArrayList<K>();
+		for (final K key : keys) {
+			if (key == null) {
+				throw new IllegalArgumentException();
+			}
+			missing.add(key);
+			if (keyFilter.allows(key)) {
+				cacheable.add(key);
+			}
+		}
+		final Map<K, V> result = getAllFromCache(cacheable);
+		missing.removeAll(result.keySet());
+		if (negative != null) {
+			for (final Iterator<K> i = missing.iterator(); i.hasNext();) {
+				if (isKnownMissing(i.next())) {
+					i.remove();
+				}
+			}
+		}
+		if (!missing.isEmpty()) {
+			final long started = System.nanoTime();
+			final Map<K, V> loaded = loadAll(missing);
+			final List<V> accepted = new ArrayList<V>(loaded.size());
+			for (final V value : loaded.values()) {
+				if (keyFilter.allows(value.getId()) && valueFilter.allows(value)) {
+					accepted.add(value);
+				}
+			}
+			offerAllToCache(accepted);
+			for (final V value : accepted) {
+				recordLoad(value, started);
+			}
+			result.putAll(loaded);
+			if (negative != null) {
+				final List<K> absent = new ArrayList<K>();
+				for (final K key : missing) {
+					if (!loaded.containsKey(key) && keyFilter.allows(key)) {
+						absent.add(key);
+					}
 				}
+				negative.addAll(absent);
 			}
-			final Option<V> provided = provider.provide(key);
+		}
+		return result;
+	}
+
+	/**
+	 * Loads objects identified by given keys from the underlying provider, in a single
+	 * call if the provider is able to provide many objects at once.
+	 *
+	 * @param keys keys.
+	 *
+	 * @return a map of loaded objects by their keys.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private Map<K, V> loadAll(final Collection<K> keys) {
+		final long started = System.nanoTime();
+		if (provider instanceof BatchObjectProvider) {
+			final Map<K, V> result = ((BatchObjectProvider<V, K>) provider).provideAll(keys);
+			statistics.recordLoads(keys.size(), System.nanoTime() - started);
+			return result;
+		}
+		final Map<K, V> result = new HashMap<K, V>();
+		for (final K key : keys) {
+			final Option<V> provided = provider.provide(new Option<K>(key));
 			if (provided.hasValue()) {
-				final V value = provided.getValue();
-				conditionallyOfferToCache(value);
-				return new Option<V>(value);
+				result.put(key, provided.getValue());
+			}
+		}
+		statistics.recordLoads(keys.size(), System.nanoTime() - started);
+		return result;
+	}
 
+	/**
+	 * Returns a snapshot of statistics of the underlying cache together with loads done by
+	 * the provider, i.e. calls of the underlying object provider. Load times include offering
+	 * to the cache neither for single nor for batch loads. If the underlying cache is not
+	 * a {@code ManagedCache}, only loads are reported. This method never returns {@code null}.
+	 *
+	 * @return a snapshot of statistics.
+	 */
+	@SuppressWarnings({"unchecked"})
+	public CacheStatistics getStatistics() {
+		final CacheStatistics loads = statistics.snapshot();
+		final CacheStatistics cached = cache instanceof ManagedCache
+				? ((ManagedCache<V, K>) cache).getStatistics()
+				: CacheStatistics.EMPTY_STATISTICS;
+		return cached.plusLoads(loads.getLoads(), loads.getLoadTime());
+	}
+
+	/**
+	 * Returns objects identified by given keys from the cache, in a single call if the cache
+	 * is a {@code ManagedCache}.
+	 *
+	 * @param keys keys allowed to be cached.
+	 *
+	 * @return a map of cached objects by their keys.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private Map<K, V> getAllFromCache(final Collection<K> keys) {
+		if (cache instanceof ManagedCache) {
+			return ((ManagedCache<V, K>) cache).getAll(keys);
+		}
+		final Map<K, V> result = new HashMap<K, V>();
+		for (final K key : keys) {
+			final Option<V> cached = cache.get(key);
+			if (cached.hasValue()) {
+				result.put(key, cached.getValue());
 			}
 		}
-		return new Option<V>(null);
+		return result;
+	}
+
+	/**
+	 * Offers given objects to the cache, in a single call if the cache is a {@code ManagedCache}.
+	 *
+	 * @param values objects accepted for caching.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private void offerAllToCache(final Collection<V> values) {
+		if (cache instanceof ManagedCache) {
+			((ManagedCache<V, K>) cache).offerAll(values);
+			return;
+		}
+		for (final V value : values) {
+			cache.offer(value);
+		}
+	}
+
+	/**
+	 * Returns an object identified by a given key from the cache, if the key is allowed to be cached.
+	 *
+	 * @param key a key.
+	 *
+	 * @return a cached object, if any.
+	 */
+	private Option<V> getFromCache(final K key) {
+		return keyFilter.allows(key) ? cache.get(key) : new Option<V>(null);
+	}
+
+	/**
+	 * Loads an object identified by a given key from the underlying provider and offers it to the cache.
+	 *
+	 * @param key a key.
+	 *
+	 * @return a loaded object or {@code null}, if there is not any.
+	 */
+	private V load(final K key) {
+		final long started = System.nanoTime();
+		final Option<V> provided = provider.provide(new Option<K>(key));
+		statistics.recordLoads(1, System.nanoTime() - started);
+		if (provided.hasValue()) {
+			final V value = provided.getValue();
+			if (conditionallyOfferToCache(value)) {
+				recordLoad(value, started);
+			}
+			return value;
+		}
+		freshness.remove(key);
+		if (negative != null && keyFilter.allows(key)) {
+			negative.add(key);
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether a given key is known to be missing in the underlying provider, if negative caching is on.
+	 *
+	 * @param key a key.
+	 *
+	 * @return {@code true} if the key is known to be missing, {@code false} otherwise.
+	 */
+	private boolean isKnownMissing(final K key) {
+		return negative != null && keyFilter.allows(key) && negative.contains(key);
 	}
 
-	private void conditionallyOfferToCache(final V value) {
+	private boolean conditionallyOfferToCache(final V value) {
 		if (keyFilter.allows(value.getId()) && valueFilter.allows(value)) {
 			cache.offer(value);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records expiration time and load duration of a given cached object, if refresh-ahead
+	 * loading is on. Expiration times elapsed meantime are removed from time to time.
+	 *
+	 * @param value a loaded and cached object.
+	 * @param started a value of {@code System.nanoTime()} when the load started.
+	 */
+	private void recordLoad(final V value, final long started) {
+		if (refresh == null) {
+			return;
 		}
+		final long now = System.currentTimeMillis();
+		final long expiration = refresh.expiration(value, now);
+		if (expiration == Long.MAX_VALUE) {
+			freshness.remove(value.getId());
+		} else {
+			freshness.put(value.getId(), new Freshness(expiration, (System.nanoTime() - started) / 1e6));
+		}
+		if (recorded.incrementAndGet() % SWEEP_PERIOD == 0) {
+			for (final Iterator<Freshness> i = freshness.values().iterator(); i.hasNext();) {
+				if (i.next().expiration <= now) {
+					i.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a refresh of an object identified by a given key, if refresh-ahead loading is on,
+	 * the object is close to its expiration, and it is not being loaded already.
+	 *
+	 * @param key a key.
+	 */
+	private void refreshIfDue(final K key) {
+		if (refresh == null) {
+			return;
+		}
+		final Freshness current = freshness.get(key);
+		if (current == null || !refresh.isDue(current.expiration, current.delta, System.currentTimeMillis())) {
+			return;
+		}
+		final Load<V> load = new Load<V>();
+		if (loads.putIfAbsent(key, load) != null) {
+			return;
+		}
+		final Runnable task = new Runnable() {
+
+			@Override public void run() {
+				try {
+					load.complete(load(key), null);
+				} catch (final RuntimeException e) {
+					freshness.remove(key);
+					load.complete(null, e);
+					ExceptionHandler.NULL_HANDLER.handle(e);
+				} catch (final Error e) {
+					freshness.remove(key);
+					load.complete(null, e);
+					throw e;
+				} finally {
+					loads.remove(key, load);
+				}
+			}
+
+		};
+		try {
+			refresh.getThreadPool().execute(task);
+		} catch (final RejectedExecutionException e) {
+			task.run();
+		}
+	}
+
+	/**
+	 * An expiration time and a load duration of a cached object.
+	 */
+	private static final class Freshness {
+
+		/**
+		 * A time the object expires at.
+		 */
+		private final long expiration;
+
+		/**
+		 * Duration of the latest load of the object in milliseconds.
+		 */
+		private final double delta;
+
+		/**
+		 * Creates a new record.
+		 *
+		 * @param expiration a time the object expires at.
+		 * @param delta duration of the latest load of the object in milliseconds.
+		 */
+		private Freshness(final long expiration, final double delta) {
+			this.expiration = expiration;
+			this.delta = delta;
+		}
+
+	}
+
+	/**
+	 * A load in flight, passing its result to waiting callers.
+	 *
+	 * @param <V> type of loaded objects.
+	 */
+	private static final class Load<V> {
+
+		/**
+		 * A latch released when the load finishes.
+		 */
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		/**
+		 * A loaded object or {@code null}.
+		 */
+		private volatile V value;
+
+		/**
+		 * A failure of the load or {@code null}.
+		 */
+		private volatile Throwable failure;
+
+		/**
+		 * Finishes the load with a given result.
+		 *
+		 * @param value a loaded object or {@code null}.
+		 * @param failure a failure of the load or {@code null}.
+		 */
+		private void complete(final V value, final Throwable failure) {
+			this.value = value;
+			this.failure = failure;
+			finished.countDown();
+		}
+
+		/**
+		 * Waits for the load to finish and returns its result.
+		 *
+		 * @param timeout maximal waiting time in milliseconds.
+		 *
+		 * @return a loaded object or {@code null}.
+		 *
+		 * @throws LoadTimeoutException if the load did not finish in time or the waiting thread was interrupted.
+		 */
+		private V await(final long timeout) {
+			try {
+				if (!finished.await(timeout, TimeUnit.MILLISECONDS)) {
+					throw new LoadTimeoutException();
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new LoadTimeoutException();
+			}
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			return value;
+		}
+
+	}
+
+	/**
+	 * This exception is thrown when a caller gives up waiting for a load started by another caller.
+	 */
+	public static final class LoadTimeoutException extends IllegalStateException {
+
+		private static final long serialVersionUID = -3327162485203761548L;
+
+		private LoadTimeoutException() {
+			// really nothing here
+		}
+
 	}
 
 }
@@ -0,0 +1,262 @@
+package gems.caching;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An eviction queue implementing the <em>CLOCK-Pro</em> policy. Cached items are either hot or cold,
+ * and only cold items are evicted while there are any. A new item starts cold in its test period; if it
+ * is accessed again during the test period, it becomes hot. The test period of an evicted cold item goes
+ * on after its eviction: its key is remembered as a non-resident cold item, and if the key is added again
+ * before the test period ends, the item becomes hot immediately. A test period ends once the item is
+ * older than every hot item, i.e. once its reuse distance could no longer beat the recency of hot items.
+ * Hot items are limited to the capacity minus a target number of cold items, and the least-recently used
+ * hot items beyond the limit become cold.
+ * <p/>
+ * The target number of cold items adapts on its own: it grows when a non-resident cold item is added again,
+ * which shows that cold items are evicted too early, and it shrinks when the test period of a non-resident
+ * cold item ends without any access. Non-resident items are limited to the capacity; the oldest ones end their
+ * test periods early when the limit is exceeded.
+ * <p/>
+ * The original policy sweeps a circular list with three clock hands. Since victims of an eviction queue
+ * are selected without changing the queue, this implementation performs the transitions of a hand
+ * passing a referenced item eagerly on access instead, and keeps hot, cold and non-resident items in
+ * separate lists ordered by their last transition; victims are cold items from the oldest one.
+ * <p/>
+ * Hot items are limited by the number of items only. If a cache is kept below that limit by another
+ * limit, e.g. by total size of items, all items stay hot and the queue behaves as a plain LRU queue.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+final class ClockProEvictionQueue<K> extends EvictionQueue<K> {
+
+	/**
+	 * A list of hot items.
+	 */
+	private static final int HOT = 0;
+
+	/**
+	 * A list of cold resident items.
+	 */
+	private static final int COLD = 1;
+
+	/**
+	 * A list of keys of cold non-resident items in their test periods.
+	 */
+	private static final int NON_RESIDENT = 2;
+
+	/**
+	 * Lists of nodes indexed by list.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final NodeList<K>[] lists = new NodeList[]{new NodeList<K>(), new NodeList<K>(), new NodeList<K>()};
+
+	/**
+	 * Non-resident nodes by their keys.
+	 */
+	private final Map<K, PageNode<K>> nonResident = new HashMap<K, PageNode<K>>();
+
+	/**
+	 * Maximal number of items; unknown until the queue is adapted for the first time.
+	 */
+	private long capacity = Long.MAX_VALUE;
+
+	/**
+	 * A target number of cold items.
+	 */
+	private long coldTarget = 1L;
+
+	/**
+	 * A logical clock ticking on each addition and access.
+	 */
+	private long clock;
+
+	/**
+	 * Returns the current target number of cold items.
+	 *
+	 * @return the target number of cold items.
+	 */
+	synchronized long getColdTarget() {
+		return coldTarget;
+	}
+
+	/**
+	 * Records a given capacity and turns the least-recently used hot items beyond their limit cold,
+	 * like the hot hand does.
+	 *
+	 * @param capacity maximal number of items.
+	 */
+	@Override protected void adapt(final long capacity) {
+		this.capacity = Math.max(1L, capacity);
+		coldTarget = Math.min(coldTarget, this.capacity);
+		while (lists[HOT].size() > this.capacity - coldTarget) {
+			final PageNode<K> demoted = (PageNode<K>) lists[HOT].head();
+			demoted.test = false;
+			move(demoted, COLD);
+		}
+		endTestPeriods();
+	}
+
+	@Override protected Node<K> newNode(final K key) {
+		return new PageNode<K>(key);
+	}
+
+	/**
+	 * {@inheritDoc} A new item is hot while hot items do not fill their limit. Otherwise it is cold in its test
+	 * period, unless its key is remembered as a non-resident item in its test period; then the target number
+	 * of cold items grows and the item is hot.
+	 */
+	@Override protected void link(final Node<K> node) {
+		final PageNode<K> page = (PageNode<K>) node;
+		final PageNode<K> remembered = nonResident.remove(node.getKey());
+		if (remembered != null) {
+			lists[NON_RESIDENT].remove(remembered);
+		}
+		page.stamp = ++clock;
+		if (remembered != null && inTestPeriod(remembered)) {
+			coldTarget = Math.min(capacity, coldTarget + 1L);
+			append(page, HOT);
+		} else if (lists[HOT].size() < capacity - coldTarget) {
+			append(page, HOT);
+		} else {
+			page.test = true;
+			append(page, COLD);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The key of a cold item in its test period is remembered as a non-resident item.
+	 */
+	@Override protected void unlink(final Node<K> node) {
+		final PageNode<K> page = (PageNode<K>) node;
+		lists[page.list].remove(page);
+		if (page.list == COLD && page.test) {
+			final PageNode<K> remembered = new PageNode<K>(node.getKey());
+			remembered.test = true;
+			remembered.stamp = page.stamp;
+			append(remembered, NON_RESIDENT);
+			nonResident.put(remembered.getKey(), remembered);
+			endTestPeriods();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} A hot item stays hot, a cold item in its test period becomes hot, and
+	 * another cold item starts a new test period.
+	 */
+	@Override protected void access(final Node<K> node) {
+		final PageNode<K> page = (PageNode<K>) node;
+		final boolean promoted = page.list == HOT || inTestPeriod(page);
+		page.stamp = ++clock;
+		page.test = true;
+		move(page, promoted ? HOT : COLD);
+	}
+
+	/**
+	 * Checks whether a given cold item is in its test period, i.e. it was added or accessed in its test
+	 * period after the least-recently used hot item was accessed for the last time.
+	 *
+	 * @param page a cold node.
+	 *
+	 * @return {@code true} if the item is in its test period, {@code false} otherwise.
+	 */
+	private boolean inTestPeriod(final PageNode<K> page) {
+		return page.test && (lists[HOT].isEmpty() || page.stamp > ((PageNode<K>) lists[HOT].head()).stamp);
+	}
+
+	/**
+	 * Appends a node to the tail of a given list.
+	 *
+	 * @param node a node.
+	 * @param list a list.
+	 */
+	private void append(final PageNode<K> node, final int list) {
+		node.list = list;
+		lists[list].append(node);
+	}
+
+	/**
+	 * Moves a node to the tail of a given list.
+	 *
+	 * @param node a node.
+	 * @param list a target list.
+	 */
+	private void move(final PageNode<K> node, final int list) {
+		lists[node.list].remove(node);
+		append(node, list);
+	}
+
+	/**
+	 * Forgets the oldest non-resident items whose test periods ended, or which exceed the capacity;
+	 * each of them shrinks the target number of cold items.
+	 */
+	private void endTestPeriods() {
+		while (!nonResident.isEmpty() && (nonResident.size() > capacity || !inTestPeriod((PageNode<K>) lists[NON_RESIDENT].head()))) {
+			final Node<K> oldest = lists[NON_RESIDENT].head();
+			lists[NON_RESIDENT].remove(oldest);
+			nonResident.remove(oldest.getKey());
+			coldTarget = Math.max(1L, coldTarget - 1L);
+		}
+	}
+
+	/**
+	 * Returns an iterator over cold items from the oldest one, followed by hot items from the least-recently used one.
+	 *
+	 * @return an iterator over enqueued nodes in eviction order.
+	 */
+	@Override protected Iterator<Node<K>> victims() {
+		return new Iterator<Node<K>>() {
+
+			private final Iterator<Node<K>> cold = lists[COLD].iterator();
+
+			private final Iterator<Node<K>> hot = lists[HOT].iterator();
+
+			@Override public boolean hasNext() {
+				return cold.hasNext() || hot.hasNext();
+			}
+
+			@Override public Node<K> next() {
+				return cold.hasNext() ? cold.next() : hot.next();
+			}
+
+			@Override public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * A node remembering its list and its test period.
+	 */
+	private static final class PageNode<K> extends Node<K> {
+
+		/**
+		 * A list the node belongs to.
+		 */
+		private int list;
+
+		/**
+		 * A flag indicating that a cold item is in its test period.
+		 */
+		private boolean test;
+
+		/**
+		 * A logical time of the last addition or access.
+		 */
+		private long stamp;
+
+		/**
+		 * Creates a new node for a given key.
+		 *
+		 * @param key a key.
+		 */
+		private PageNode(final K key) {
+			super(key);
+		}
+
+	}
+
+}
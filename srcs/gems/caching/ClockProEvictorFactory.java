@@ -0,0 +1,29 @@
+package gems.caching;
+
+/**
+ * Provides <em>CLOCK-Pro</em> evictors. Cached items are hot or cold, and only cold items are
+ * evicted while there are any. Keys of recently evicted cold items are remembered for a test
+ * period; a cold item accessed again during its test period becomes hot, and the target number
+ * of cold items adapts to how often that happens.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+public final class ClockProEvictorFactory<K> implements CacheEvictorFactory<K> {
+
+	/**
+	 * Returns a <em>CLOCK-Pro</em> evictor. This method never returns {@code null}.
+	 *
+	 * @return a <em>CLOCK-Pro</em> evictor.
+	 */
+	public CacheEvictor<K> get() {
+		return new QueueingCacheEvictor<K>(new LeastRecentlyUsedEvictorFactory<K>().get()) {
+
+			@Override EvictionQueue<K> newQueue() {
+				return new ClockProEvictionQueue<K>();
+			}
+
+		};
+	}
+
+}
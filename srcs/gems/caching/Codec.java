@@ -0,0 +1,32 @@
+package gems.caching;
+
+/**
+ * Converts objects of some type to bytes and back. Codecs are used by storages keeping
+ * cached objects out of the heap. Decoding of encoded object has to return an object
+ * equal to the original one, at least with the same identifier. Please note that
+ * <em>implementations have to be thread-safe</em>.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <T> type of encoded objects.
+ */
+public interface Codec<T> {
+
+	/**
+	 * Encodes a given object to bytes. This method should never return {@code null}.
+	 *
+	 * @param object an object.
+	 *
+	 * @return bytes representing the object.
+	 */
+	byte[] encode(T object);
+
+	/**
+	 * Decodes an object from given bytes. This method should never return {@code null}.
+	 *
+	 * @param bytes bytes representing an object, previously returned by {@code encode()}.
+	 *
+	 * @return a decoded object.
+	 */
+	T decode(byte[] bytes);
+
+}
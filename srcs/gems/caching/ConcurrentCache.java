@@ -0,0 +1,690 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.Option;
+import gems.filtering.Filter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A flat cache with a lock-free read path. Cached objects are kept in a concurrent hash table,
+ * so a read is a single hash table lookup followed by a relaxed recording of the access into
+ * the entry itself: the last access timestamp and the hits counter are written by lazy sets,
+ * so concurrent accesses of the same entry may be lost, but no reader ever waits for another
+ * thread. Writes and eviction are serialized by a lock held only by writers.
+ * <p/>
+ * If a queueing evictor is used, reads do not reorder the eviction queue. Instead, each entry
+ * counts its accesses not yet applied to the queue and the writer applies them lazily: when
+ * a victim taken from the head of the queue has pending accesses, they are applied as a single
+ * access, so the cost of a write does not grow with the number of reads, and the entry gets
+ * another chance, but only once per eviction round, so a steady stream of reads cannot keep
+ * the writer cycling over the same entries. Other evictors are given statistics snapshots of
+ * all entries, exactly like in other caches.
+ * <p/>
+ * Expired entries are never returned by reads, but only the writer removes them, driven by
+ * a timing wheel advanced on each write.
+ * <p/>
+ * Secondary indexes are kept up to date by the writer, so a search answered from an index
+ * takes the lock; other searches scan the table without any lock.
+ * <p/>
+ * Objects are always kept on the heap, so only {@code MemoryStorageFactory} is supported as
+ * the storage factory. The thread pool of cache properties is not used by the cache itself,
+ * since there are no storage partitions for gathering eviction candidates in parallel; it is
+ * still used by components built on top of the cache, e.g. for demotions of a tiered cache.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+final class ConcurrentCache<V extends Identifiable<K>, K> extends AbstractCacheComponent<V, K> implements ExtractableCache<V, K> {
+
+	/**
+	 * Cached entries.
+	 */
+	private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<K, Entry<K, V>>();
+
+	/**
+	 * A lock serializing writers.
+	 */
+	private final Lock lock = new ReentrantLock();
+
+	/**
+	 * A recorder of cache-wide statistics.
+	 */
+	private final StatisticsCounter recorder;
+
+	/**
+	 * An eviction queue if a queueing evictor is used; {@code null} otherwise. Guarded by {@code lock}.
+	 */
+	private final EvictionQueue<K> queue;
+
+	/**
+	 * Timers of entries which may expire.
+	 */
+	private final TimingWheel<K> timers = new TimingWheel<K>(System.currentTimeMillis());
+
+	/**
+	 * Secondary indexes of cached objects. Guarded by {@code lock}.
+	 */
+	private final Indexes<K, V> indexes = new Indexes<K, V>();
+
+	/**
+	 * A counter of eviction rounds. Guarded by {@code lock}.
+	 */
+	private long rounds;
+
+	/**
+	 * Creates a new cache configured according given properties.
+	 *
+	 * @param properties cache properties.
+	 *
+	 * @throws IllegalArgumentException if properties specify a storage factory other than {@code MemoryStorageFactory}.
+	 */
+	ConcurrentCache(final CacheProperties<V, K> properties) {
+		super(properties);
+		if (!(properties.getStorageFactory() instanceof MemoryStorageFactory)) {
+			throw new IllegalArgumentException();
+		}
+		recorder = new StatisticsCounter(getProperties().getLimits());
+		final CacheEvictor<K> evictor = getProperties().getEvictor();
+		queue = evictor instanceof QueueingCacheEvictor ? ((QueueingCacheEvictor<K>) evictor).newQueue() : null;
+	}
+
+	/**
+	 * {@inheritDoc} This method takes no locks.
+	 */
+	@Override public Option<V> get(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		final Entry<K, V> entry = entries.get(key);
+		if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+			recorder.recordMiss();
+			return new Option<V>(null);
+		}
+		entry.recordAccess();
+		recorder.recordHit();
+		return new Option<V>(entry.value);
+	}
+
+	@Override public CacheStatistics getStatistics() {
+		return recorder.snapshot();
+	}
+
+	/**
+	 * {@inheritDoc} This method takes no locks.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<K, V> getAll(final Collection<? extends K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<K, V> result = new HashMap<K, V>();
+		for (final K key : keys) {
+			final Option<V> cached = get(key);
+			if (cached.hasValue()) {
+				result.put(key, cached.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code object} is {@code null}.
+	 */
+	@Override public void offer(final V object) {
+		if (object == null) {
+			throw new IllegalArgumentException();
+		}
+		offerAll(Collections.singletonList(object));
+	}
+
+	/**
+	 * {@inheritDoc} Sizes and expiration times are computed before the lock is taken,
+	 * then the lock is taken, and timers are advanced and eviction is performed once
+	 * for all objects.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		final ExpirationPolicy<? super V> policy = getProperties().getExpirationPolicy();
+		final List<Entry<K, V>> offered = new ArrayList<Entry<K, V>>(objects.size());
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+			final Entry<K, V> entry = new Entry<K, V>(object, getProperties().getSizer().estimate(object));
+			entry.expireAfter(policy.getTimeToLive(object), policy.getTimeToIdle(object));
+			offered.add(entry);
+		}
+		lock.lock();
+		try {
+			expire();
+			for (final Entry<K, V> created : offered) {
+				put(created);
+			}
+			evict();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} Sizes and expiration times are computed before the lock is taken.
+	 */
+	@Override public void restore(final Collection<Map.Entry<V, CacheItemStatistics<K>>> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		final ExpirationPolicy<? super V> policy = getProperties().getExpirationPolicy();
+		final List<Entry<K, V>> restored = new ArrayList<Entry<K, V>>(objects.size());
+		for (final Map.Entry<V, CacheItemStatistics<K>> object : objects) {
+			if (object == null || object.getKey() == null || object.getValue() == null) {
+				throw new IllegalArgumentException();
+			}
+			final V value = object.getKey();
+			final Entry<K, V> entry = new Entry<K, V>(value, getProperties().getSizer().estimate(value), object.getValue().getDateOfBirth());
+			entry.restore(object.getValue(), policy.getTimeToLive(value), policy.getTimeToIdle(value));
+			restored.add(entry);
+		}
+		lock.lock();
+		try {
+			expire();
+			for (final Entry<K, V> created : restored) {
+				put(created);
+				if (queue != null && created.node != null && created.hits > 0L) {
+					queue.touch(created.node);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The lock is taken.
+	 */
+	@Override public void invalidate(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			final Entry<K, V> entry = entries.remove(key);
+			if (entry == null) {
+				return;
+			}
+			indexes.remove(key);
+			if (queue != null) {
+				queue.remove(entry.node);
+			}
+			if (entry.timer != null) {
+				timers.cancel(entry.timer);
+			}
+			if (entry.isExpired(System.currentTimeMillis())) {
+				recorder.recordEviction(EvictionCause.EXPIRED, entry.size);
+			} else {
+				recorder.recordRemoval(entry.size);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The lock is taken.
+	 */
+	@Override public Collection<V> extract(final Filter<? super K> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		final long now = System.currentTimeMillis();
+		final List<V> result = new ArrayList<V>();
+		lock.lock();
+		try {
+			for (final Iterator<Entry<K, V>> i = entries.values().iterator(); i.hasNext(); ) {
+				final Entry<K, V> entry = i.next();
+				if (!filter.allows(entry.value.getId())) {
+					continue;
+				}
+				i.remove();
+				indexes.remove(entry.value.getId());
+				if (queue != null) {
+					queue.remove(entry.node);
+				}
+				if (entry.timer != null) {
+					timers.cancel(entry.timer);
+				}
+				if (entry.isExpired(now)) {
+					recorder.recordEviction(EvictionCause.EXPIRED, entry.size);
+				} else {
+					recorder.recordRemoval(entry.size);
+					result.add(entry.value);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} No lock is taken, so the snapshot does not have to be consistent with concurrent writes.
+	 */
+	@Override public Collection<Map.Entry<V, CacheItemStatistics<K>>> snapshot() {
+		final long now = System.currentTimeMillis();
+		final List<Map.Entry<V, CacheItemStatistics<K>>> result = new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>(entries.size());
+		for (final Entry<K, V> entry : entries.values()) {
+			if (!entry.isExpired(now)) {
+				result.add(new AbstractMap.SimpleImmutableEntry<V, CacheItemStatistics<K>>(entry.value, entry.getStatisticsSnapshot()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} The lock is taken.
+	 *
+	 * @throws IllegalArgumentException if any of arguments is {@code null}.
+	 */
+	@Override public <A> void index(final Attribute<? super V, A> attribute, final IndexType type) {
+		if (attribute == null || type == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			final List<V> values = new ArrayList<V>(entries.size());
+			for (final Entry<K, V> entry : entries.values()) {
+				values.add(entry.value);
+			}
+			indexes.create(attribute, type, values);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} A search by an attribute filter takes the lock for looking up an index of the attribute.
+	 * If there is no such index, the lock is released and all cached objects are scanned, so the result
+	 * does not have to be consistent with concurrent writes.
+	 */
+	@Override public Collection<V> search(final Filter<? super V> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		final long now = System.currentTimeMillis();
+		final List<V> result = new ArrayList<V>();
+		if (filter instanceof AttributeFilter) {
+			lock.lock();
+			try {
+				final Collection<K> keys = indexes.lookup(filter);
+				if (keys != null) {
+					for (final K key : keys) {
+						final Entry<K, V> entry = entries.get(key);
+						if (!entry.isExpired(now)) {
+							result.add(entry.value);
+						}
+					}
+					return result;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		for (final Entry<K, V> entry : entries.values()) {
+			if (!entry.isExpired(now) && filter.allows(entry.value)) {
+				result.add(entry.value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} The lock is taken.
+	 */
+	@Override public void trim() {
+		lock.lock();
+		try {
+			expire();
+			evict();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Puts a given new entry into the table, or copies it into an existing entry with
+	 * the same key. Has to be called with the lock held.
+	 *
+	 * @param created a new entry.
+	 */
+	private void put(final Entry<K, V> created) {
+		final K key = created.value.getId();
+		final Entry<K, V> entry = entries.get(key);
+		if (entry == null) {
+			if (queue != null) {
+				created.node = queue.add(key, created.size);
+			}
+			schedule(created);
+			entries.put(key, created);
+			indexes.add(created.value);
+			recorder.recordAddition(created.size);
+		} else {
+			entry.value = created.value;
+			indexes.add(created.value);
+			recorder.recordWeight(created.size - entry.size);
+			entry.size = created.size;
+			if (queue != null) {
+				queue.update(entry.node, created.size);
+			}
+			entry.copyExpiration(created);
+			schedule(entry);
+		}
+	}
+
+	/**
+	 * Removes entries whose timers fired. An entry accessed since its timer was scheduled
+	 * does not have to be expired yet; its timer is scheduled again in that case, so reads
+	 * never touch timers. Has to be called with the lock held.
+	 */
+	private void expire() {
+		final long now = System.currentTimeMillis();
+		for (final K key : timers.advance(now)) {
+			final Entry<K, V> entry = entries.get(key);
+			if (entry == null) {
+				continue;
+			}
+			if (entry.isExpired(now)) {
+				if (queue != null) {
+					queue.remove(entry.node);
+				}
+				entries.remove(key);
+				indexes.remove(key);
+				recorder.recordEviction(EvictionCause.EXPIRED, entry.size);
+			} else {
+				schedule(entry);
+			}
+		}
+	}
+
+	/**
+	 * Schedules a timer of a given entry to the time the entry expires at, if any.
+	 * Has to be called with the lock held.
+	 *
+	 * @param entry an entry.
+	 */
+	private void schedule(final Entry<K, V> entry) {
+		final long deadline = entry.deadline();
+		if (deadline == Long.MAX_VALUE) {
+			if (entry.timer != null) {
+				timers.cancel(entry.timer);
+			}
+		} else if (entry.timer == null) {
+			entry.timer = timers.schedule(entry.value.getId(), deadline);
+		} else {
+			timers.reschedule(entry.timer, deadline);
+		}
+	}
+
+	/**
+	 * Evicts entries as necessary for satisfying cache limits. Has to be called with the lock held.
+	 */
+	private void evict() {
+		if (queue != null) {
+			final long round = ++rounds;
+			while (queue.exceeds(getProperties().getLimits())) {
+				final EvictionQueue.Node<K> node = queue.head();
+				final Entry<K, V> entry = entries.get(node.getKey());
+				int pending = entry.drainPendingAccesses();
+				if (entry.round == round) {
+					pending = 0;
+				}
+				entry.round = round;
+				if (pending == 0) {
+					queue.remove(node);
+					entries.remove(node.getKey());
+					indexes.remove(node.getKey());
+					recorder.recordEviction(EvictionCause.SIZE, entry.size);
+					if (entry.timer != null) {
+						timers.cancel(entry.timer);
+					}
+					getProperties().getEvictionHandler().handle(entry.value);
+				}
+				if (pending > 0) {
+					queue.touch(node);
+				}
+			}
+		} else {
+			final List<CacheItemStatistics<K>> statistics = new ArrayList<CacheItemStatistics<K>>(entries.size());
+			for (final Entry<K, V> entry : entries.values()) {
+				statistics.add(entry.getStatisticsSnapshot());
+			}
+			final Collection<K> keysToEvict = getProperties().getEvictor().evict(statistics, getProperties().getLimits());
+			for (final K key : keysToEvict) {
+				final Entry<K, V> entry = entries.remove(key);
+				if (entry != null) {
+					indexes.remove(key);
+					recorder.recordEviction(EvictionCause.SIZE, entry.size);
+					if (entry.timer != null) {
+						timers.cancel(entry.timer);
+					}
+					getProperties().getEvictionHandler().handle(entry.value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A cache entry holding a cached object together with its relaxed access statistics.
+	 * Only the writer holding the cache lock changes the value, the size and the node.
+	 */
+	private static final class Entry<K, V extends Identifiable<K>> {
+
+		/**
+		 * An updater for relaxed recording of the last access.
+		 */
+		@SuppressWarnings({"rawtypes"})
+		private static final AtomicLongFieldUpdater<Entry> LAST_ACCESS = AtomicLongFieldUpdater.newUpdater(Entry.class, "lastAccess");
+
+		/**
+		 * An updater for relaxed recording of hits.
+		 */
+		@SuppressWarnings({"rawtypes"})
+		private static final AtomicLongFieldUpdater<Entry> HITS = AtomicLongFieldUpdater.newUpdater(Entry.class, "hits");
+
+		/**
+		 * An updater for relaxed recording of accesses not applied to the eviction queue yet.
+		 */
+		@SuppressWarnings({"rawtypes"})
+		private static final AtomicIntegerFieldUpdater<Entry> PENDING = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "pending");
+
+		/**
+		 * A timestamp indicating when the entry was created.
+		 */
+		private final long dateOfBirth;
+
+		/**
+		 * A cached object.
+		 */
+		private volatile V value;
+
+		/**
+		 * Size of the cached object.
+		 */
+		private volatile long size;
+
+		/**
+		 * A timestamp of the latest access.
+		 */
+		private volatile long lastAccess;
+
+		/**
+		 * A counter of hits.
+		 */
+		private volatile long hits;
+
+		/**
+		 * Number of accesses not applied to the eviction queue yet.
+		 */
+		private volatile int pending;
+
+		/**
+		 * A node of the eviction queue, if any.
+		 */
+		private EvictionQueue.Node<K> node;
+
+		/**
+		 * The latest eviction round the entry got another chance in. Guarded by the cache lock.
+		 */
+		private long round;
+
+		/**
+		 * A time the entry expires at regardless of accesses, or {@code Long.MAX_VALUE}.
+		 */
+		private volatile long liveUntil = Long.MAX_VALUE;
+
+		/**
+		 * Time to idle in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 */
+		private volatile long timeToIdle = ExpirationPolicy.NEVER;
+
+		/**
+		 * A timer of the entry, if any.
+		 */
+		private TimingWheel.Timer<K> timer;
+
+		/**
+		 * Creates a new entry for a given object of a given size.
+		 *
+		 * @param value a cached object.
+		 * @param size size of the object.
+		 */
+		private Entry(final V value, final long size) {
+			this(value, size, System.currentTimeMillis());
+		}
+
+		/**
+		 * Creates a new entry for a given object of a given size, created at a given time.
+		 *
+		 * @param value a cached object.
+		 * @param size size of the object.
+		 * @param dateOfBirth a time the entry is considered created at.
+		 */
+		private Entry(final V value, final long size, final long dateOfBirth) {
+			this.value = Checks.assertNotNull(value);
+			this.size = Checks.ensureNonNegative(size);
+			this.dateOfBirth = dateOfBirth;
+			lastAccess = dateOfBirth;
+		}
+
+		/**
+		 * Takes over the last access and hits from given statistics, and sets durations the entry
+		 * expires after, counted from its date of birth and from the last access.
+		 *
+		 * @param statistics statistics of the key in another cache.
+		 * @param timeToLive time to live in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 * @param timeToIdle time to idle in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 */
+		private void restore(final CacheItemStatistics<K> statistics, final long timeToLive, final long timeToIdle) {
+			LAST_ACCESS.lazySet(this, statistics.getLastAccess());
+			HITS.lazySet(this, statistics.getHits());
+			this.timeToIdle = timeToIdle;
+			liveUntil = TimingWheel.deadline(dateOfBirth, timeToLive);
+		}
+
+		/**
+		 * Sets durations the entry expires after, counted from now.
+		 *
+		 * @param timeToLive time to live in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 * @param timeToIdle time to idle in milliseconds, or {@code ExpirationPolicy.NEVER}.
+		 */
+		private void expireAfter(final long timeToLive, final long timeToIdle) {
+			final long now = System.currentTimeMillis();
+			LAST_ACCESS.lazySet(this, now);
+			this.timeToIdle = timeToIdle;
+			liveUntil = TimingWheel.deadline(now, timeToLive);
+		}
+
+		/**
+		 * Copies expiration times of a given entry offered for the same key.
+		 *
+		 * @param other another entry.
+		 */
+		private void copyExpiration(final Entry<K, V> other) {
+			LAST_ACCESS.lazySet(this, other.lastAccess);
+			timeToIdle = other.timeToIdle;
+			liveUntil = other.liveUntil;
+		}
+
+		/**
+		 * Returns a time the entry expires at unless accessed again, or {@code Long.MAX_VALUE}.
+		 *
+		 * @return a time the entry expires at.
+		 */
+		private long deadline() {
+			return Math.min(liveUntil, TimingWheel.deadline(lastAccess, timeToIdle));
+		}
+
+		/**
+		 * Checks whether the entry is expired at a given time.
+		 *
+		 * @param now a current time.
+		 *
+		 * @return {@code true} if the entry is expired, {@code false} otherwise.
+		 */
+		private boolean isExpired(final long now) {
+			return now >= deadline();
+		}
+
+		/**
+		 * Records an access to the entry. Concurrent accesses may be lost.
+		 */
+		private void recordAccess() {
+			LAST_ACCESS.lazySet(this, System.currentTimeMillis());
+			HITS.lazySet(this, hits + 1L);
+			if (node != null) {
+				PENDING.lazySet(this, pending + 1);
+			}
+		}
+
+		/**
+		 * Returns number of accesses not applied to the eviction queue yet and resets it to zero.
+		 *
+		 * @return number of accesses not applied to the eviction queue yet.
+		 */
+		private int drainPendingAccesses() {
+			return PENDING.getAndSet(this, 0);
+		}
+
+		/**
+		 * Returns a snapshot of the entry statistics. This method never returns {@code null}.
+		 *
+		 * @return a snapshot of the entry statistics.
+		 */
+		private CacheItemStatistics<K> getStatisticsSnapshot() {
+			return CacheItemStatistics.snapshot(value.getId(), dateOfBirth, lastAccess, hits, size);
+		}
+
+	}
+
+}
@@ -0,0 +1,122 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.UnexpectedNullException;
+
+import java.util.Arrays;
+
+/**
+ * A cache segmenter based on consistent hashing. Each segment owns a number of points,
+ * so called virtual nodes, on a ring of 32-bit hash codes, and a key belongs to the segment
+ * owning the first point following the spread hash code of the key. Points of a segment do
+ * not depend on the number of segments, so adding a segment moves only keys taken over by
+ * points of the new segment, and removing a segment moves only its own keys. More virtual
+ * nodes spread keys to segments more uniformly at the cost of a larger ring.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cached object keys.
+ */
+public final class ConsistentHashSegmenter<K> extends AbstractCacheSegmenter<K> implements ResizableSegmenter<K>, HashSegmenter<K> {
+
+	/**
+	 * A default number of virtual nodes per segment.
+	 */
+	public static final int DEFAULT_VIRTUAL_NODES = 64;
+
+	/**
+	 * A golden ratio constant for deriving points of virtual nodes.
+	 */
+	private static final int GOLDEN_RATIO = 0x9e3779b9;
+
+	/**
+	 * Number of virtual nodes per segment.
+	 */
+	private final int virtualNodes;
+
+	/**
+	 * Sorted points of the ring.
+	 */
+	private final int[] points;
+
+	/**
+	 * Segments owning points of the ring.
+	 */
+	private final int[] owners;
+
+	/**
+	 * Creates a new segmenter for a given number of segments with the default number of virtual nodes.
+	 *
+	 * @param segments number of segments.
+	 *
+	 * @throws gems.NumericValueOutOfRangeException if {@code segments} is less than 1.
+	 */
+	public ConsistentHashSegmenter(final int segments) {
+		this(segments, DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * Creates a new segmenter for a given number of segments and virtual nodes per segment.
+	 *
+	 * @param segments number of segments.
+	 * @param virtualNodes number of virtual nodes per segment.
+	 *
+	 * @throws gems.NumericValueOutOfRangeException if {@code segments} or {@code virtualNodes} is less than 1.
+	 */
+	public ConsistentHashSegmenter(final int segments, final int virtualNodes) {
+		super(segments);
+		this.virtualNodes = Checks.ensurePositive(virtualNodes);
+		final long[] ring = new long[segments * virtualNodes];
+		for (int segment = 0; segment < segments; segment++) {
+			for (int node = 0; node < virtualNodes; node++) {
+				// a point is kept in the high half and its owner in the low half, so sorting keeps them together
+				ring[segment * virtualNodes + node] = (long) point(segment, node) << 32 | segment;
+			}
+		}
+		Arrays.sort(ring);
+		points = new int[ring.length];
+		owners = new int[ring.length];
+		for (int i = 0; i < ring.length; i++) {
+			points[i] = (int) (ring[i] >> 32);
+			owners[i] = (int) ring[i];
+		}
+	}
+
+	/**
+	 * Returns a point of a given virtual node of a given segment.
+	 *
+	 * @param segment a segment.
+	 * @param node a virtual node.
+	 *
+	 * @return a point on the ring.
+	 */
+	private static int point(final int segment, final int node) {
+		return Hashing.spread(Hashing.spread(segment) + node * GOLDEN_RATIO);
+	}
+
+	/**
+	 * Returns segment number for a given key.
+	 *
+	 * @param key an analyzed key.
+	 *
+	 * @return segment number for a given key.
+	 *
+	 * @throws UnexpectedNullException if {@code key} is {@code null}.
+	 */
+	@Override public int getSegment(final K key) {
+		return getSegmentOfHash(Checks.ensureNotNull(key).hashCode());
+	}
+
+	@Override public int getSegmentOfHash(final int hash) {
+		final int found = Arrays.binarySearch(points, Hashing.spread(hash));
+		final int index = found < 0 ? -found - 1 : found;
+		return owners[index == points.length ? 0 : index];
+	}
+
+	/**
+	 * {@inheritDoc} The returned segmenter uses the same number of virtual nodes.
+	 */
+	@Override public ConsistentHashSegmenter<K> resize(final int segments) {
+		return new ConsistentHashSegmenter<K>(segments, virtualNodes);
+	}
+
+}
@@ -0,0 +1,43 @@
+package gems.caching;
+
+import gems.UnexpectedNullException;
+
+import java.util.Collection;
+
+/**
+ * A filter allowing objects whose attribute equals a given value, e.g. all items of a tenant.
+ * Searches using this filter are answered by indexes of any type.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of filtered objects.
+ * @param <A> a type of attribute values.
+ */
+public final class EqualityFilter<V, A> extends AttributeFilter<V, A> {
+
+	/**
+	 * A required attribute value.
+	 */
+	private final A value;
+
+	/**
+	 * Creates a new filter.
+	 *
+	 * @param attribute a filtered attribute.
+	 * @param value a required attribute value; it may be {@code null}.
+	 *
+	 * @throws UnexpectedNullException if {@code attribute} is {@code null}.
+	 */
+	public EqualityFilter(final Attribute<? super V, A> attribute, final A value) {
+		super(attribute);
+		this.value = value;
+	}
+
+	@Override boolean matches(final A value) {
+		return this.value == null ? value == null : this.value.equals(value);
+	}
+
+	@Override <K> Collection<K> lookup(final Index<K, ?, A> index) {
+		return index.equalTo(value);
+	}
+
+}
@@ -0,0 +1,20 @@
+package gems.caching;
+
+/**
+ * An enumeration of reasons why cached objects are removed from a cache.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public enum EvictionCause {
+
+	/**
+	 * An object was evicted for satisfying cache limits.
+	 */
+	SIZE,
+
+	/**
+	 * An object was removed because its time to live or time to idle elapsed.
+	 */
+	EXPIRED
+
+}
@@ -3,12 +3,14 @@ package gems.caching;
 import java.awt.*;
 
 /**
- * Defines an action executed upon an evicted item.
+ * Defines an action executed upon an evicted item. Handlers are called synchronously by
+ * the cache evicting the item, likely with cache locks held, so they should be fast and
+ * they must not access the same cache. Handlers are not called for expired items.
  *
  * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
  * @param <T> type of evicted value.
  */
-interface EvictionHandler<T> {
+public interface EvictionHandler<T> {
 
 	/**
 	 * A null-implementation of the interface. It effectively does nothing.
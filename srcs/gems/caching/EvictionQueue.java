@@ -0,0 +1,379 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Limits;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * An eviction queue keeps cached items ordered by their suitability for eviction, so victims
+ * can be selected without investigating statistics of all cached items. The queue is intrusive:
+ * it hands out a node for each enqueued item and the cache storage keeps that node together
+ * with the cached item, so no lookup is needed when an item is accessed, updated or removed.
+ * All operations are constant-time; selection of victims is linear to number of selected items.
+ * The queue also tracks number and total size of enqueued items. <em>The implementation is
+ * thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+abstract class EvictionQueue<K> {
+
+	/**
+	 * Number of enqueued items.
+	 */
+	private long count;
+
+	/**
+	 * Total size of enqueued items.
+	 */
+	private long weight;
+
+	/**
+	 * Enqueues an item identified by a given key with a given size. This method never returns {@code null}.
+	 *
+	 * @param key a key of enqueued item.
+	 * @param size a size of enqueued item.
+	 *
+	 * @return a node representing enqueued item in the queue.
+	 *
+	 * @throws IllegalArgumentException if {@code size} is negative.
+	 */
+	final synchronized Node<K> add(final K key, final long size) {
+		final Node<K> node = newNode(Checks.assertNotNull(key));
+		node.size = Checks.ensureNonNegative(size);
+		link(node);
+		node.linked = true;
+		count++;
+		weight += size;
+		return node;
+	}
+
+	/**
+	 * Records a new size of an enqueued item. It is considered to be an access to the item, too.
+	 * Nothing happens if the node has been already removed from the queue.
+	 *
+	 * @param node a node of updated item.
+	 * @param size a new size of the item.
+	 *
+	 * @return {@code true} if the item was updated, {@code false} if the node is not enqueued anymore.
+	 *
+	 * @throws IllegalArgumentException if {@code size} is negative.
+	 */
+	final synchronized boolean update(final Node<K> node, final long size) {
+		Checks.ensureNonNegative(size);
+		if (!node.linked) {
+			return false;
+		}
+		weight += size - node.size;
+		node.size = size;
+		access(node);
+		return true;
+	}
+
+	/**
+	 * Records an access to an enqueued item. Nothing happens if the node has been already removed from the queue.
+	 *
+	 * @param node a node of accessed item.
+	 */
+	final synchronized void touch(final Node<K> node) {
+		if (node.linked) {
+			access(node);
+		}
+	}
+
+	/**
+	 * Removes an item from the queue. Nothing happens if the node has been already removed from the queue.
+	 *
+	 * @param node a node of removed item.
+	 */
+	final synchronized void remove(final Node<K> node) {
+		if (node.linked) {
+			unlink(node);
+			node.linked = false;
+			count--;
+			weight -= node.size;
+		}
+	}
+
+	/**
+	 * Selects keys of items which have to be evicted for satisfying given cache limits. Selected items
+	 * are not removed from the queue; they are expected to be removed as soon as they are really evicted.
+	 * This method never returns {@code null}.
+	 *
+	 * @param limits cache limits to satisfy.
+	 *
+	 * @return a collection - possibly an empty one - of keys selected for eviction.
+	 */
+	final synchronized Collection<K> select(final Limits<CacheLimit> limits) {
+		adapt(limits.getLimit(CacheLimit.ITEMS).longValue());
+		long excessItems = count - limits.getLimit(CacheLimit.ITEMS).longValue();
+		long excessSize = weight - limits.getLimit(CacheLimit.SIZE).longValue();
+		if (excessItems <= 0L && excessSize <= 0L) {
+			return Collections.emptyList();
+		}
+		final Collection<K> result = new LinkedList<K>();
+		final Iterator<Node<K>> victims = victims();
+		while ((excessItems > 0L || excessSize > 0L) && victims.hasNext()) {
+			final Node<K> victim = victims.next();
+			result.add(victim.key);
+			excessItems--;
+			excessSize -= victim.size;
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether enqueued items exceed given cache limits.
+	 *
+	 * @param limits cache limits.
+	 *
+	 * @return {@code true} if number or total size of enqueued items exceeds limits, {@code false} otherwise.
+	 */
+	final synchronized boolean exceeds(final Limits<CacheLimit> limits) {
+		adapt(limits.getLimit(CacheLimit.ITEMS).longValue());
+		return count > limits.getLimit(CacheLimit.ITEMS).longValue() || weight > limits.getLimit(CacheLimit.SIZE).longValue();
+	}
+
+	/**
+	 * Returns a node of the most suitable victim or {@code null} if the queue is empty.
+	 *
+	 * @return a node of the most suitable victim or {@code null} if the queue is empty.
+	 */
+	final synchronized Node<K> head() {
+		final Iterator<Node<K>> victims = victims();
+		return victims.hasNext() ? victims.next() : null;
+	}
+
+	/**
+	 * Returns number of enqueued items.
+	 *
+	 * @return number of enqueued items.
+	 */
+	final synchronized long count() {
+		return count;
+	}
+
+	/**
+	 * Returns total size of enqueued items.
+	 *
+	 * @return total size of enqueued items.
+	 */
+	final synchronized long weight() {
+		return weight;
+	}
+
+	/**
+	 * Adapts the queue to a given maximal number of items before victims are selected. This
+	 * implementation does nothing; queues which divide items into regions of relative sizes
+	 * may override it. Called with the queue lock held.
+	 *
+	 * @param capacity maximal number of items.
+	 */
+	protected void adapt(final long capacity) {
+		// nothing by default
+	}
+
+	/**
+	 * Creates a new unlinked node for a given key. Called with the queue lock held.
+	 *
+	 * @param key a key.
+	 *
+	 * @return a new node.
+	 */
+	protected abstract Node<K> newNode(K key);
+
+	/**
+	 * Links a newly added node into the queue. Called with the queue lock held.
+	 *
+	 * @param node a node.
+	 */
+	protected abstract void link(Node<K> node);
+
+	/**
+	 * Unlinks a node from the queue. Called with the queue lock held.
+	 *
+	 * @param node a node.
+	 */
+	protected abstract void unlink(Node<K> node);
+
+	/**
+	 * Reorders the queue after an access to a given node. Called with the queue lock held.
+	 *
+	 * @param node an accessed node.
+	 */
+	protected abstract void access(Node<K> node);
+
+	/**
+	 * Returns an iterator over enqueued nodes starting with the most suitable victim.
+	 * Called with the queue lock held; the queue is not modified during iteration.
+	 *
+	 * @return an iterator over enqueued nodes in eviction order.
+	 */
+	protected abstract Iterator<Node<K>> victims();
+
+	/**
+	 * A node of the intrusive queue. It holds a key and a size of an enqueued item and links
+	 * to its neighbours. Subclasses may extend nodes with information they need for ordering.
+	 */
+	static class Node<K> {
+
+		/**
+		 * A key of the enqueued item.
+		 */
+		private final K key;
+
+		/**
+		 * A size of the enqueued item.
+		 */
+		private long size;
+
+		/**
+		 * A flag indicating that the node is linked in the queue.
+		 */
+		private boolean linked;
+
+		/**
+		 * A previous node, i.e. the node more suitable for eviction.
+		 */
+		Node<K> prev;
+
+		/**
+		 * A next node, i.e. the node less suitable for eviction.
+		 */
+		Node<K> next;
+
+		/**
+		 * Creates a new unlinked node for a given key.
+		 *
+		 * @param key a key.
+		 */
+		Node(final K key) {
+			this.key = key;
+		}
+
+		/**
+		 * Returns a key of the enqueued item.
+		 *
+		 * @return a key of the enqueued item.
+		 */
+		final K getKey() {
+			return key;
+		}
+
+	}
+
+	/**
+	 * A doubly-linked list of nodes with a sentinel. Nodes are appended
+	 * at the tail; the head is the oldest node in the list.
+	 */
+	static final class NodeList<K> {
+
+		/**
+		 * A sentinel; its next node is the head, its previous node is the tail.
+		 */
+		private final Node<K> sentinel = new Node<K>(null);
+
+		/**
+		 * Number of nodes in the list.
+		 */
+		private int size;
+
+		/**
+		 * Creates a new empty list.
+		 */
+		NodeList() {
+			sentinel.prev = sentinel;
+			sentinel.next = sentinel;
+		}
+
+		/**
+		 * Appends a node at the tail of the list.
+		 *
+		 * @param node an appended node.
+		 */
+		void append(final Node<K> node) {
+			node.prev = sentinel.prev;
+			node.next = sentinel;
+			sentinel.prev.next = node;
+			sentinel.prev = node;
+			size++;
+		}
+
+		/**
+		 * Removes a node from the list.
+		 *
+		 * @param node a removed node.
+		 */
+		void remove(final Node<K> node) {
+			node.prev.next = node.next;
+			node.next.prev = node.prev;
+			node.prev = null;
+			node.next = null;
+			size--;
+		}
+
+		/**
+		 * Checks whether the list is empty.
+		 *
+		 * @return {@code true} if the list is empty, {@code false} otherwise.
+		 */
+		boolean isEmpty() {
+			return sentinel.next == sentinel;
+		}
+
+		/**
+		 * Returns number of nodes in the list.
+		 *
+		 * @return number of nodes in the list.
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Returns the head of the list, or {@code null} if the list is empty.
+		 *
+		 * @return the head of the list, or {@code null} if the list is empty.
+		 */
+		Node<K> head() {
+			return isEmpty() ? null : sentinel.next;
+		}
+
+		/**
+		 * Returns an unmodifiable iterator over the list from head to tail.
+		 *
+		 * @return an iterator over the list.
+		 */
+		Iterator<Node<K>> iterator() {
+			return new Iterator<Node<K>>() {
+
+				private Node<K> current = sentinel.next;
+
+				@Override public boolean hasNext() {
+					return current != sentinel;
+				}
+
+				@Override public Node<K> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					final Node<K> result = current;
+					current = current.next;
+					return result;
+				}
+
+				@Override public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+			};
+		}
+
+	}
+
+}
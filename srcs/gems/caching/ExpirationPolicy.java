@@ -0,0 +1,83 @@
+package gems.caching;
+
+import gems.UnexpectedNullException;
+
+/**
+ * Defines how long cached objects stay valid. An object expires when its <em>time to live</em>
+ * has passed since it was put into the cache, or when its <em>time to idle</em> has passed since
+ * its last access, whatever comes first. Expired objects are never returned from the cache and
+ * they are removed from it without taking part in eviction. Both durations are given for each
+ * cached object separately and they are evaluated when the object is put into the cache, so a
+ * policy may assign different durations to different objects. Please note that <em>implementations
+ * have to be thread-safe</em>.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <T> type of cached objects.
+ */
+public interface ExpirationPolicy<T> {
+
+	/**
+	 * A duration meaning that an object does not expire.
+	 */
+	long NEVER = Long.MAX_VALUE;
+
+	/**
+	 * A null-implementation of the interface. Cached objects never expire.
+	 */
+	ExpirationPolicy<Object> NULL_EXPIRATION_POLICY = new ExpirationPolicy<Object>() {
+
+		/**
+		 * Always returns {@code NEVER}.
+		 *
+		 * @param object ignored.
+		 *
+		 * @return always {@code NEVER}.
+		 *
+		 * @throws UnexpectedNullException if {@code object} is {@code null}.
+		 */
+		@Override public long getTimeToLive(final Object object) {
+			if (object == null) {
+				throw new UnexpectedNullException();
+			}
+			return NEVER;
+		}
+
+		/**
+		 * Always returns {@code NEVER}.
+		 *
+		 * @param object ignored.
+		 *
+		 * @return always {@code NEVER}.
+		 *
+		 * @throws UnexpectedNullException if {@code object} is {@code null}.
+		 */
+		@Override public long getTimeToIdle(final Object object) {
+			if (object == null) {
+				throw new UnexpectedNullException();
+			}
+			return NEVER;
+		}
+
+	};
+
+	/**
+	 * Returns time to live of a given object in milliseconds, or {@code NEVER}. This method
+	 * should always return a positive number.
+	 *
+	 * @param object a cached object.
+	 *
+	 * @return time to live of a given object.
+	 */
+	long getTimeToLive(T object);
+
+	/**
+	 * Returns time to idle of a given object in milliseconds, or {@code NEVER}. This method
+	 * should always return a positive number.
+	 *
+	 * @param object a cached object.
+	 *
+	 * @return time to idle of a given object.
+	 */
+	long getTimeToIdle(T object);
+
+}
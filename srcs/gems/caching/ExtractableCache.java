@@ -0,0 +1,62 @@
+package gems.caching;
+
+import gems.Identifiable;
+import gems.filtering.Filter;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A flat cache which can hand its cached objects over to another cache, and which can be asked
+ * to satisfy its cache limits when they change. Segmented caches use this for migrating objects among
+ * segments when the number of segments changes, and for evicting objects from segments using
+ * the largest part of a shared budget. Cache snapshots read cached objects with their statistics from segments
+ * and restore them together with the statistics.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+interface ExtractableCache<V extends Identifiable<K>, K> extends InvalidatableCache<V, K>, SearchableCache<V, K> {
+
+	/**
+	 * Removes all cached objects identified by keys allowed by a given filter and returns them.
+	 * Removed objects are neither evicted nor passed to the eviction handler; expired objects are
+	 * discarded instead of being returned. This method never returns {@code null}.
+	 *
+	 * @param filter a filter of keys.
+	 *
+	 * @return removed objects.
+	 *
+	 * @throws IllegalArgumentException if {@code filter} is {@code null}.
+	 */
+	Collection<V> extract(Filter<? super K> filter);
+
+	/**
+	 * Offers given objects for a caching at once, taking over statistics of their keys from another cache.
+	 * The date of birth, the last access and hits are kept, so the objects expire as they would in the other
+	 * cache. Queueing evictors get the objects in the given order, with a single access recorded for objects
+	 * hit before. Nothing is evicted, so {@code trim()} should be called afterwards. Segmented caches use this
+	 * for migrating objects among segments, and cache snapshots for restoring saved objects.
+	 *
+	 * @param objects objects together with statistics of their keys.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	void restore(Collection<Map.Entry<V, CacheItemStatistics<K>>> objects);
+
+	/**
+	 * Evicts cached objects as necessary for satisfying current cache limits.
+	 */
+	void trim();
+
+	/**
+	 * Returns all cached objects together with statistics of their keys. No access is recorded,
+	 * and expired objects are skipped. The date of birth in statistics is the time the object was
+	 * stored. This method never returns {@code null}.
+	 *
+	 * @return cached objects with statistics of their keys.
+	 */
+	Collection<Map.Entry<V, CacheItemStatistics<K>>> snapshot();
+
+}
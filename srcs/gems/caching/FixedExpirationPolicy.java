@@ -0,0 +1,59 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.NumericValueOutOfRangeException;
+import gems.UnexpectedNullException;
+
+/**
+ * An expiration policy assigning the same time to live and time to idle to all cached objects.
+ * <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <T> type of cached objects.
+ */
+public final class FixedExpirationPolicy<T> implements ExpirationPolicy<T> {
+
+	/**
+	 * Time to live in milliseconds.
+	 */
+	private final long timeToLive;
+
+	/**
+	 * Time to idle in milliseconds.
+	 */
+	private final long timeToIdle;
+
+	/**
+	 * Creates a new policy with given durations. Use {@code NEVER} for an unlimited duration.
+	 *
+	 * @param timeToLive time to live in milliseconds.
+	 * @param timeToIdle time to idle in milliseconds.
+	 *
+	 * @throws NumericValueOutOfRangeException if any of durations is not positive.
+	 */
+	public FixedExpirationPolicy(final long timeToLive, final long timeToIdle) {
+		this.timeToLive = Checks.ensurePositive(timeToLive);
+		this.timeToIdle = Checks.ensurePositive(timeToIdle);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UnexpectedNullException if {@code object} is {@code null}.
+	 */
+	@Override public long getTimeToLive(final T object) {
+		Checks.ensureNotNull(object);
+		return timeToLive;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UnexpectedNullException if {@code object} is {@code null}.
+	 */
+	@Override public long getTimeToIdle(final T object) {
+		Checks.ensureNotNull(object);
+		return timeToIdle;
+	}
+
+}
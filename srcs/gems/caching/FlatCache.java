@@ -2,13 +2,16 @@ package gems.caching;
 
 import gems.Identifiable;
 import gems.Option;
+import gems.filtering.Filter;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-final class FlatCache<V extends Identifiable<K>, K> extends AbstractCacheComponent<V, K> implements Cache<V, K> {
+final class FlatCache<V extends Identifiable<K>, K> extends AbstractCacheComponent<V, K> implements ExtractableCache<V, K> {
 
 	/**
 	 * A lock controlling access to storage.
@@ -17,9 +20,15 @@ final class FlatCache<V extends Identifiable<K>, K> extends AbstractCacheCompone
 
 	private final CacheStorage<K, V> storage;
 
+	/**
+	 * A recorder of cache-wide statistics.
+	 */
+	private final StatisticsCounter statistics;
+
 	FlatCache(final CacheProperties<V, K> properties) {
 		super(properties);
-		storage = new ParallelCacheStorage<K, V>(properties);
+		statistics = new StatisticsCounter(getProperties().getLimits());
+		storage = new ParallelCacheStorage<K, V>(properties, statistics);
 	}
 
 	/**
@@ -40,11 +49,142 @@ final class FlatCache<V extends Identifiable<K>, K> extends AbstractCacheCompone
 		}
 	}
 
+	/**
+	 * {@inheritDoc} The write lock is taken and eviction is performed once for all objects.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		lock.writeLock().lock();
+		try {
+			for (final V object : objects) {
+				storage.put(object);
+			}
+			evict();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The write lock is taken once for all objects.
+	 */
+	@Override public void restore(final Collection<Map.Entry<V, CacheItemStatistics<K>>> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final Map.Entry<V, CacheItemStatistics<K>> object : objects) {
+			if (object == null || object.getKey() == null || object.getValue() == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		lock.writeLock().lock();
+		try {
+			for (final Map.Entry<V, CacheItemStatistics<K>> object : objects) {
+				storage.restore(object.getKey(), object.getValue());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The write lock is taken.
+	 */
+	@Override public Collection<V> extract(final Filter<? super K> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.writeLock().lock();
+		try {
+			return storage.extract(filter);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The write lock is taken.
+	 */
+	@Override public void invalidate(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.writeLock().lock();
+		try {
+			storage.invalidate(key);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The write lock is taken.
+	 */
+	@Override public void trim() {
+		lock.writeLock().lock();
+		try {
+			evict();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The read lock is taken.
+	 */
+	@Override public Collection<Map.Entry<V, CacheItemStatistics<K>>> snapshot() {
+		lock.readLock().lock();
+		try {
+			return storage.snapshot();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The write lock is taken.
+	 */
+	@Override public <A> void index(final Attribute<? super V, A> attribute, final IndexType type) {
+		if (attribute == null || type == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.writeLock().lock();
+		try {
+			storage.index(attribute, type);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The read lock is taken.
+	 */
+	@Override public Collection<V> search(final Filter<? super V> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		lock.readLock().lock();
+		try {
+			return storage.search(filter);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	/**
 	 * Performs eviction on storage.
 	 */
 	private void evict() {
-		final Collection<K> keysToEvict = getProperties().getEvictor().evict(storage.itemsForEviction(), getProperties().getLimits());
+		final Collection<K> keysToEvict = storage.selectForEviction(getProperties().getLimits());
 		if (!keysToEvict.isEmpty()) {
 			final int itemsEvicted = storage.evict(Collections.unmodifiableCollection(keysToEvict));
 			assert keysToEvict.size() == itemsEvicted : "keys to evict: " + keysToEvict.size() + " evicted keys: " + itemsEvicted;
@@ -60,10 +200,57 @@ final class FlatCache<V extends Identifiable<K>, K> extends AbstractCacheCompone
 		}
 		lock.readLock().lock();
 		try {
-			return storage.get(key);
+			return record(storage.get(key));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records a hit or a miss according to a given result of a request.
+	 *
+	 * @param cached a result of a request.
+	 *
+	 * @return the given result.
+	 */
+	private Option<V> record(final Option<V> cached) {
+		if (cached.hasValue()) {
+			statistics.recordHit();
+		} else {
+			statistics.recordMiss();
+		}
+		return cached;
+	}
+
+	@Override public CacheStatistics getStatistics() {
+		return statistics.snapshot();
+	}
+
+	/**
+	 * {@inheritDoc} The read lock is taken once for all keys.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<K, V> getAll(final Collection<? extends K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<K, V> result = new HashMap<K, V>();
+		lock.readLock().lock();
+		try {
+			for (final K key : keys) {
+				if (key == null) {
+					throw new IllegalArgumentException();
+				}
+				final Option<V> cached = record(storage.get(key));
+				if (cached.hasValue()) {
+					result.put(key, cached.getValue());
+				}
+			}
 		} finally {
 			lock.readLock().unlock();
 		}
+		return result;
 	}
 
 }
@@ -1,268 +1,936 @@
 package gems.caching;
 
-import gems.AbstractIdentifiable;
 import gems.Checks;
 import gems.Identifiable;
+import gems.Limits;
 import gems.Option;
+import gems.filtering.Filter;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A cache storage keeping cached objects in a storage created by the storage factory from cache
+ * properties, and their metadata in a compact open-addressing table. The table is a set of parallel
+ * primitive arrays indexed by slot: a key, its hash code, a state packed together with a counter of
+ * evictions, timestamps, counters of hits and misses, a size, and optionally expiration times, timers,
+ * and nodes of the eviction queue. So there are no per-item objects beyond the key itself, and statistics
+ * snapshots are created only when items are handed to a generic evictor.
+ * <p/>
+ * A key stays in the table after its object is evicted, so its statistics survive until the object
+ * is cached again; the key is dropped when it expires, or when the table is rebuilt while keys of evicted
+ * objects outnumber cached objects, so the table does not grow with keys evicted long ago.
+ * <p/>
+ * Objects found in a reopened persistent storage are evicted down to cache limits right away. Their
+ * statistics and expiration times are not persisted, so they are considered stored at the time
+ * the storage is reopened, and their expiration starts over. <em>The implementation is not thread-safe
+ * for writes.</em> The owner has to serialize writes with respect to all other operations, while
+ * reads may run concurrently with each other; statistics recorded by reads are exact.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of key identifying cached objects.
+ * @param <V> type of cached objects.
+ */
 final class FlatCacheStorage<K, V extends Identifiable<K>> extends AbstractCacheComponent<V, K> implements CacheStorage<K, V> {
 
+	/**
+	 * A state of a slot never used.
+	 */
+	private static final int EMPTY = 0;
+
+	/**
+	 * A state of a slot holding a key of a cached object.
+	 */
+	private static final int LIVE = 1;
+
+	/**
+	 * A state of a slot holding a key whose object was evicted.
+	 */
+	private static final int EVICTED = 2;
+
+	/**
+	 * A state of a slot whose key was removed.
+	 */
+	private static final int DELETED = 3;
+
+	/**
+	 * Number of bits of a packed state taken by the state itself; the rest is a counter of evictions.
+	 */
+	private static final int STATE_BITS = 2;
+
+	/**
+	 * A mask of the state in a packed state.
+	 */
+	private static final int STATE_MASK = (1 << STATE_BITS) - 1;
+
+	/**
+	 * An initial number of slots.
+	 */
+	private static final int INITIAL_SLOTS = 16;
+
 	/**
 	 * This is the storage for cached objects.
 	 */
 	private final Storage<K, V> values;
 
-	private final Storage<K, CacheItem> items = new MemoryStorage<K, CacheItem>();
+	/**
+	 * An eviction queue kept up to date if a queueing evictor is used; {@code null} otherwise.
+	 */
+	private final EvictionQueue<K> queue;
+
+	/**
+	 * A flag indicating that cached objects may expire.
+	 */
+	private final boolean expiring;
+
+	/**
+	 * Timers of cached objects which may expire.
+	 */
+	private final TimingWheel<K> timers = new TimingWheel<K>(System.currentTimeMillis());
+
+	/**
+	 * A recorder of cache-wide statistics.
+	 */
+	private final StatisticsCounter recorder;
+
+	/**
+	 * The table of keys and their metadata.
+	 */
+	private Table table;
 
-	FlatCacheStorage(final CacheProperties<V, K> properties) {
+	/**
+	 * Number of slots holding keys.
+	 */
+	private int size;
+
+	/**
+	 * Number of slots whose keys were removed.
+	 */
+	private int deleted;
+
+	/**
+	 * Number of cached objects.
+	 */
+	private int live;
+
+	/**
+	 * Total size of cached objects.
+	 */
+	private long weight;
+
+	FlatCacheStorage(final CacheProperties<V, K> properties, final StatisticsCounter recorder) {
+		this(properties, recorder, newQueue(properties.getEvictor()), properties.getStorageFactory().getStorage());
+		if (live > 0) {
+			evict(selectForEviction(getProperties().getLimits()));
+		}
+	}
+
+	/**
+	 * Creates a new storage using a given eviction queue, which may be shared with other storages, and
+	 * a given storage of cached objects. Objects found in a reopened persistent storage are not evicted;
+	 * the owner of the storage has to evict them down to cache limits of all storages together.
+	 *
+	 * @param properties cache properties.
+	 * @param recorder a recorder of cache-wide statistics.
+	 * @param queue an eviction queue if a queueing evictor is used; {@code null} otherwise.
+	 * @param values a storage of cached objects.
+	 */
+	FlatCacheStorage(final CacheProperties<V, K> properties, final StatisticsCounter recorder, final EvictionQueue<K> queue, final Storage<K, V> values) {
 		super(properties);
-		values = Checks.assertNotNull(getProperties().getStorageFactory().getStorage());
+		this.recorder = Checks.assertNotNull(recorder);
+		this.values = Checks.assertNotNull(values);
+		this.queue = queue;
+		expiring = getProperties().getExpirationPolicy() != ExpirationPolicy.NULL_EXPIRATION_POLICY;
+		table = new Table(INITIAL_SLOTS);
+		// A persistent storage may be reopened with values already stored, maybe more than current limits allow.
+		final long now = System.currentTimeMillis();
+		for (final V value : values) {
+			record(insert(value.getId(), now), value, getProperties().getSizer().estimate(value), now);
+		}
+	}
+
+	/**
+	 * Creates a new empty eviction queue if a given evictor is a queueing one.
+	 *
+	 * @param evictor a cache evictor.
+	 * @param <K> type of key identifying cached objects.
+	 *
+	 * @return a new empty eviction queue, or {@code null} if the evictor is not a queueing one.
+	 */
+	static <K> EvictionQueue<K> newQueue(final CacheEvictor<K> evictor) {
+		return evictor instanceof QueueingCacheEvictor ? ((QueueingCacheEvictor<K>) evictor).newQueue() : null;
 	}
 
 	@Override public Option<V> get(final K key) {
 		if (key == null) {
 			throw new IllegalArgumentException();
 		}
-		final Option<CacheItem> cachedOption = items.provide(new Option<K>(key));
-		if (!cachedOption.hasValue()) {
+		final Table current = table;
+		final int slot = current.slotOf(key, Hashing.spread(key.hashCode()));
+		if (slot < 0) {
 			return new Option<V>(null);
 		}
-		final FlatCacheStorage<K, V>.CacheItem cachedValue = cachedOption.getValue();
-		if (cachedValue.isExpired()) { // TODO: What about synchronization?
-			items.remove(key);
-			values.remove(key);
+		final long now = System.currentTimeMillis();
+		if (current.state(slot) == LIVE && isExpired(current, slot, now)) {
+			// Expired key is removed by the next expire() call. Readers may run concurrently,
+			// so the table is not modified here.
 			return new Option<V>(null);
 		}
-		// todo: conditionally return an empty option, when 'evicted' status is stored in cache item; at the moment, trying to get value directly is more efficient.
-		return new Option<V>(cachedValue.getValue());
+		current.lastAccess.set(slot, now);
+		final Option<V> value = current.state(slot) == LIVE ? values.provide(new Option<K>(key)) : new Option<V>(null);
+		if (value.hasValue()) {
+			current.hits.incrementAndGet(slot);
+			if (queue != null) {
+				queue.touch(current.node(slot));
+			}
+			return new Option<V>(value.getValue());
+		}
+		current.misses.incrementAndGet(slot);
+		return new Option<V>(null);
 	}
 
 	@Override public void put(final V value) {
 		if (value == null) {
 			throw new IllegalArgumentException();
 		}
-		final Option<CacheItem> cachedOption = items.provide(new Option<K>(value.getId()));
-		if (cachedOption.hasValue()) {
-			cachedOption.getValue().update(value, getProperties().getSizer().estimate(value));
-		} else {
-			items.put(new CacheItem(value, getProperties().getSizer().estimate(value))); // TODO: What about synchronization?
+		store(value, System.currentTimeMillis());
+	}
+
+	/**
+	 * {@inheritDoc} A single access is recorded to the eviction queue if the key has been hit.
+	 */
+	@Override public void restore(final V value, final CacheItemStatistics<K> statistics) {
+		if (value == null || statistics == null) {
+			throw new IllegalArgumentException();
+		}
+		final int slot = store(value, statistics.getDateOfBirth());
+		table.lastAccess.set(slot, statistics.getLastAccess());
+		table.hits.set(slot, statistics.getHits());
+		if (queue != null && statistics.getHits() > 0L) {
+			queue.touch(table.node(slot));
 		}
+		if (expiring) {
+			schedule(slot);
+		}
+	}
 
+	/**
+	 * Stores a given value as if it was stored at a given time.
+	 *
+	 * @param value a value.
+	 * @param stored a time the value is considered stored at.
+	 *
+	 * @return a slot of the value.
+	 */
+	private int store(final V value, final long stored) {
+		final long size = Checks.ensureNonNegative(getProperties().getSizer().estimate(value));
+		int slot = table.slotOf(value.getId(), Hashing.spread(value.getId().hashCode()));
+		if (slot >= 0 && table.state(slot) == LIVE && isExpired(table, slot, System.currentTimeMillis())) {
+			discard(slot);
+			slot = -1;
+		}
+		if (slot < 0) {
+			slot = insert(value.getId(), stored);
+		} else {
+			values.remove(value.getId()); // remove old value, if any
+		}
+		values.put(value);
+		record(slot, value, size, stored);
+		return slot;
 	}
 
+	/**
+	 * {@inheritDoc} Expired items are removed from the storage instead.
+	 */
 	@Override public Collection<CacheItemStatistics<K>> itemsForEviction() {
+		expire();
+		final long now = System.currentTimeMillis();
 		final List<CacheItemStatistics<K>> result = new LinkedList<CacheItemStatistics<K>>();
-		for (final CacheItem item : items) {
-			if (item.isExpired()) {
-				// todo: expire
-			} else {
-				if (item.isEvictable()) {
-					result.add(item.getStatisticsSnapshot());
+		final List<Integer> expired = new ArrayList<Integer>();
+		for (int slot = 0; slot < table.keys.length; slot++) {
+			if (table.state(slot) == LIVE) {
+				if (isExpired(table, slot, now)) {
+					expired.add(slot);
+				} else {
+					result.add(table.snapshot(slot));
 				}
 			}
 		}
+		// discarding does not move other keys, so remaining slots stay valid
+		for (final int slot : expired) {
+			discard(slot);
+		}
 		return result;
 	}
 
+	/**
+	 * Removes keys whose timers fired. An object accessed since its timer was scheduled
+	 * does not have to be expired yet; its timer is scheduled again in that case. This
+	 * way reads never touch timers and a timer fires at most once per time to idle.
+	 * Keys of evicted objects are dropped together with their statistics.
+	 */
+	void expire() {
+		final long now = System.currentTimeMillis();
+		for (final K key : timers.advance(now)) {
+			final int slot = table.slotOf(key, Hashing.spread(key.hashCode()));
+			if (slot < 0) {
+				continue;
+			}
+			if (table.state(slot) == EVICTED) {
+				remove(slot);
+			} else if (isExpired(table, slot, now)) {
+				discard(slot);
+			} else {
+				schedule(slot);
+			}
+		}
+	}
+
+	@Override public Collection<K> selectForEviction(final Limits<CacheLimit> limits) {
+		if (limits == null) {
+			throw new IllegalArgumentException();
+		}
+		if (queue != null) {
+			expire();
+			return queue.select(limits);
+		}
+		final CacheEvictor<K> evictor = getProperties().getEvictor();
+		if (evictor instanceof SamplingCacheEvictor) {
+			expire();
+			return ((SamplingCacheEvictor<K>) evictor).select(new SamplingCacheEvictor.Sampler<K>() {
+
+				@Override public CacheItemStatistics<K> sample(final ThreadLocalRandom random) {
+					return FlatCacheStorage.this.sample(random.nextInt(live));
+				}
+
+			}, live, weight, limits);
+		}
+		return evictor.evict(itemsForEviction(), limits);
+	}
+
+	/**
+	 * Returns number of cached objects.
+	 *
+	 * @return number of cached objects.
+	 */
+	int count() {
+		return live;
+	}
+
+	/**
+	 * Returns total size of cached objects.
+	 *
+	 * @return total size of cached objects.
+	 */
+	long weight() {
+		return weight;
+	}
+
+	/**
+	 * Returns statistics of a cached object at a given position among cached objects. Positions
+	 * are in no particular order and they change as objects are cached and evicted. This method
+	 * never returns {@code null}.
+	 *
+	 * @param index a position; it has to be less than {@code count()}.
+	 *
+	 * @return statistics of the key of the cached object.
+	 */
+	CacheItemStatistics<K> sample(final int index) {
+		return table.snapshot(table.liveSlots[index]);
+	}
+
 	@Override public int evict(final Collection<K> keys) {
 		if (keys == null) {
 			throw new IllegalArgumentException();
 		}
+		final long now = System.currentTimeMillis();
 		int counter = 0;
 		for (final K key : keys) {
-			final Option<CacheItem> cachedOption = items.provide(new Option<K>(key));
-			if (cachedOption.hasValue()) {
-				cachedOption.getValue().evict();
+			final int slot = table.slotOf(key, Hashing.spread(key.hashCode()));
+			if (slot >= 0 && table.state(slot) == LIVE) {
+				if (isExpired(table, slot, now)) {
+					discard(slot);
+				} else {
+					evict(slot);
+				}
 				counter++;
 			}
 		}
 		return counter;
 	}
 
+	@SuppressWarnings({"unchecked"})
+	@Override public Collection<V> extract(final Filter<? super K> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		final long now = System.currentTimeMillis();
+		final List<V> result = new ArrayList<V>();
+		for (int slot = 0; slot < table.keys.length; slot++) {
+			final int state = table.state(slot);
+			if ((state != LIVE && state != EVICTED) || !filter.allows((K) table.keys[slot])) {
+				continue;
+			}
+			if (state == EVICTED) {
+				remove(slot);
+			} else if (isExpired(table, slot, now)) {
+				discard(slot);
+			} else {
+				final Option<V> value = values.provide(new Option<K>((K) table.keys[slot]));
+				drop(slot);
+				if (value.hasValue()) {
+					result.add(value.getValue());
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override public void invalidate(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		final int slot = table.slotOf(key, Hashing.spread(key.hashCode()));
+		if (slot < 0) {
+			return;
+		}
+		if (table.state(slot) != LIVE) {
+			remove(slot);
+		} else if (isExpired(table, slot, System.currentTimeMillis())) {
+			discard(slot);
+		} else {
+			drop(slot);
+		}
+	}
+
 	/**
-	 * This is a holder for the unit of cached information. It encapsulates an identifier
-	 * of the cached object and various statistics like cache hits, cache misses, last access
-	 * time, expiration time, and so on. The cached object itself is held out of this object,
-	 * in the dedicated storage, which is a part of encapsulating class.
+	 * {@inheritDoc} The table is not modified, so readers may run concurrently. The date of birth
+	 * in statistics is the time the object was stored, not the time its key was added.
 	 */
-	/*### private ###*/
-	final class CacheItem extends AbstractIdentifiable<K> { // TODO: MAKE READY FOR A PERSISTENT STORAGE
+	@SuppressWarnings({"unchecked"})
+	@Override public Collection<Map.Entry<V, CacheItemStatistics<K>>> snapshot() {
+		final Table current = table;
+		final long now = System.currentTimeMillis();
+		final List<Map.Entry<V, CacheItemStatistics<K>>> result = new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>(live);
+		for (int slot = 0; slot < current.keys.length; slot++) {
+			if (current.state(slot) != LIVE || isExpired(current, slot, now)) {
+				continue;
+			}
+			final Option<V> value = values.provide(new Option<K>((K) current.keys[slot]));
+			if (value.hasValue()) {
+				result.add(new AbstractMap.SimpleImmutableEntry<V, CacheItemStatistics<K>>(value.getValue(), current.snapshot(slot, current.updated[slot])));
+			}
+		}
+		return result;
+	}
+
+	@Override public <A> void index(final Attribute<? super V, A> attribute, final IndexType type) {
+		values.index(attribute, type);
+	}
+
+	/**
+	 * {@inheritDoc} The search is answered by the values storage, and values of expired keys
+	 * are dropped from its result. The table is not modified, so readers may run concurrently.
+	 */
+	@Override public Collection<V> search(final Filter<? super V> filter) {
+		final Table current = table;
+		final long now = System.currentTimeMillis();
+		final List<V> result = new ArrayList<V>();
+		for (final V value : values.search(filter)) {
+			final K key = value.getId();
+			final int slot = current.slotOf(key, Hashing.spread(key.hashCode()));
+			if (slot >= 0 && current.state(slot) == LIVE && !isExpired(current, slot, now)) {
+				result.add(value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Inserts a new key with fresh statistics into the first free slot, growing the table if necessary.
+	 *
+	 * @param key a key.
+	 * @param now a current time.
+	 *
+	 * @return a slot of the key.
+	 */
+	private int insert(final K key, final long now) {
+		if ((size + deleted + 1) * 4L > table.keys.length * 3L) {
+			final boolean reclaiming = size - live > live;
+			final int kept = reclaiming ? live : size;
+			rehash(kept * 2 >= table.keys.length ? table.keys.length * 2 : table.keys.length, reclaiming);
+		}
+		final int hash = Hashing.spread(key.hashCode());
+		final int slot = table.freeSlot(hash);
+		if (table.state(slot) == DELETED) {
+			deleted--;
+		}
+		table.keys[slot] = key;
+		table.hashes[slot] = hash;
+		table.states[slot] = EVICTED;
+		table.born[slot] = now;
+		table.lastAccess.set(slot, now);
+		table.hits.set(slot, 0L);
+		table.misses.set(slot, 0L);
+		table.sizes[slot] = 0L;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Rebuilds the table with a given number of slots, dropping removed keys and optionally
+	 * keys of evicted objects together with their statistics and timers.
+	 *
+	 * @param capacity a new number of slots; it has to be a power of two.
+	 * @param reclaiming a flag indicating whether keys of evicted objects are dropped.
+	 */
+	private void rehash(final int capacity, final boolean reclaiming) {
+		final Table previous = table;
+		table = new Table(capacity);
+		deleted = 0;
+		live = 0;
+		for (int slot = 0; slot < previous.keys.length; slot++) {
+			final int state = previous.state(slot);
+			if (state == EVICTED && reclaiming) {
+				if (expiring && previous.timer(slot) != null) {
+					timers.cancel(previous.timer(slot));
+				}
+				size--;
+			} else if (state == LIVE || state == EVICTED) {
+				final int target = table.freeSlot(previous.hashes[slot]);
+				previous.copy(slot, table, target);
+				if (state == LIVE) {
+					link(target);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records a newly stored object of a given size to statistics, the eviction queue, and timers.
+	 *
+	 * @param slot a slot of the object key.
+	 * @param value a stored object.
+	 * @param size a size estimation for the object.
+	 * @param now a current time.
+	 */
+	private void record(final int slot, final V value, final long size, final long now) {
+		if (table.state(slot) != LIVE) {
+			recorder.recordAddition(size);
+			link(slot);
+		} else {
+			recorder.recordWeight(size - table.sizes[slot]);
+		}
+		weight += size - table.sizes[slot];
+		table.sizes[slot] = size;
+		table.states[slot] = table.states[slot] & ~STATE_MASK | LIVE;
+		table.updated[slot] = now;
+		if (queue != null && (table.node(slot) == null || !queue.update(table.node(slot), size))) {
+			table.nodes[slot] = queue.add(value.getId(), size);
+		}
+		if (expiring) {
+			final ExpirationPolicy<? super V> policy = getProperties().getExpirationPolicy();
+			table.liveUntil[slot] = TimingWheel.deadline(now, policy.getTimeToLive(value));
+			table.timesToIdle[slot] = policy.getTimeToIdle(value);
+			schedule(slot);
+		}
+	}
+
+	/**
+	 * Evicts a cached object. The object is removed from the values storage and the eviction
+	 * queue, the eviction is recorded, and the object is passed to the eviction handler. The key
+	 * stays in the table with its statistics.
+	 *
+	 * @param slot a slot of the object key.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private void evict(final int slot) {
+		final K key = (K) table.keys[slot];
+		final Option<V> value = values.provide(new Option<K>(key));
+		values.remove(key);
+		table.states[slot] = (table.states[slot] & ~STATE_MASK) + (1 << STATE_BITS) | EVICTED;
+		recorder.recordEviction(EvictionCause.SIZE, table.sizes[slot]);
+		unlink(slot);
+		weight -= table.sizes[slot];
+		table.sizes[slot] = 0L;
+		if (queue != null) {
+			queue.remove(table.node(slot));
+			table.nodes[slot] = null;
+		}
+		if (value.hasValue()) {
+			getProperties().getEvictionHandler().handle(value.getValue());
+		}
+	}
+
+	/**
+	 * Discards an expired object. The object is removed from the values storage and its key
+	 * is removed from the table.
+	 *
+	 * @param slot a slot of the object key.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private void discard(final int slot) {
+		values.remove((K) table.keys[slot]);
+		recorder.recordEviction(EvictionCause.EXPIRED, table.sizes[slot]);
+		unlink(slot);
+		weight -= table.sizes[slot];
+		remove(slot);
+	}
+
+	/**
+	 * Drops a cached object which is neither evicted nor expired. The object is removed from the values
+	 * storage, its removal is recorded, and its key is removed from the table.
+	 *
+	 * @param slot a slot of the object key.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private void drop(final int slot) {
+		values.remove((K) table.keys[slot]);
+		recorder.recordRemoval(table.sizes[slot]);
+		unlink(slot);
+		weight -= table.sizes[slot];
+		remove(slot);
+	}
+
+	/**
+	 * Adds a slot of a newly cached object to the dense array of live slots.
+	 *
+	 * @param slot a slot of the object key.
+	 */
+	private void link(final int slot) {
+		table.liveSlots[live] = slot;
+		table.positions[slot] = live;
+		live++;
+	}
+
+	/**
+	 * Removes a slot of a no longer cached object from the dense array of live slots. The last
+	 * live slot takes its position, so the array stays dense.
+	 *
+	 * @param slot a slot of the object key.
+	 */
+	private void unlink(final int slot) {
+		live--;
+		final int last = table.liveSlots[live];
+		table.liveSlots[table.positions[slot]] = last;
+		table.positions[last] = table.positions[slot];
+	}
+
+	/**
+	 * Removes a key from the table together with its node and its timer.
+	 *
+	 * @param slot a slot of the key.
+	 */
+	private void remove(final int slot) {
+		if (queue != null && table.node(slot) != null) {
+			queue.remove(table.node(slot));
+		}
+		if (expiring && table.timer(slot) != null) {
+			timers.cancel(table.timer(slot));
+		}
+		table.clear(slot);
+		table.states[slot] = DELETED;
+		size--;
+		deleted++;
+	}
+
+	/**
+	 * Schedules a timer of an object to the time the object expires at, if any.
+	 *
+	 * @param slot a slot of the object key.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private void schedule(final int slot) {
+		final long deadline = table.deadline(slot);
+		final TimingWheel.Timer<K> timer = table.timer(slot);
+		if (deadline == Long.MAX_VALUE) {
+			if (timer != null) {
+				timers.cancel(timer);
+			}
+		} else if (timer == null) {
+			table.timers[slot] = timers.schedule((K) table.keys[slot], deadline);
+		} else {
+			timers.reschedule(timer, deadline);
+		}
+	}
+
+	/**
+	 * Checks whether an object is expired at a given time.
+	 *
+	 * @param current a table.
+	 * @param slot a slot of the object key.
+	 * @param now a current time.
+	 *
+	 * @return {@code true} if the object is expired, {@code false} otherwise.
+	 */
+	private boolean isExpired(final Table current, final int slot, final long now) {
+		return expiring && now >= current.deadline(slot);
+	}
+
+	/**
+	 * Parallel arrays of keys and their metadata indexed by slot. Arrays of expiration times
+	 * and timers exist only if objects may expire, and the array of nodes exists only if
+	 * an eviction queue is used. Hits, misses, and last accesses are recorded by concurrent
+	 * readers, so they are kept in atomic arrays.
+	 */
+	private final class Table {
+
+		/**
+		 * Keys.
+		 */
+		private final Object[] keys;
+
+		/**
+		 * Spread hash codes of keys.
+		 */
+		private final int[] hashes;
+
+		/**
+		 * States packed together with counters of evictions.
+		 */
+		private final int[] states;
+
+		/**
+		 * Timestamps indicating when keys were added.
+		 */
+		private final long[] born;
+
+		/**
+		 * Timestamps of the latest stores.
+		 */
+		private final long[] updated;
+
+		/**
+		 * Timestamps of the latest accesses.
+		 */
+		private final AtomicLongArray lastAccess;
+
+		/**
+		 * Counters of hits.
+		 */
+		private final AtomicLongArray hits;
 
 		/**
-		 * Cache statistics.
+		 * Counters of misses.
 		 */
-		private final CacheItemStatistics<K> statistics;
+		private final AtomicLongArray misses;
 
 		/**
-		 * A flag indicating that the cache item is expired. If a cache item is
-		 * expired, no other business operation is allowed on it and it should
-		 * be simply destroyed.
+		 * Sizes of cached objects; zero for evicted ones.
 		 */
-		private volatile boolean expired;
+		private final long[] sizes;
 
 		/**
-		 * Creates a new cached item for a given value of given size.
+		 * Times objects expire at regardless of accesses, or {@code null}.
+		 */
+		private final long[] liveUntil;
+
+		/**
+		 * Times to idle in milliseconds, or {@code null}.
+		 */
+		private final long[] timesToIdle;
+
+		/**
+		 * Timers, or {@code null}.
+		 */
+		private final Object[] timers;
+
+		/**
+		 * Nodes of the eviction queue, or {@code null}.
+		 */
+		private final Object[] nodes;
+
+		/**
+		 * Slots of cached objects in no particular order; only the first {@code live} ones are valid.
+		 */
+		private final int[] liveSlots;
+
+		/**
+		 * Positions of slots of cached objects in the array of live slots.
+		 */
+		private final int[] positions;
+
+		/**
+		 * Creates a new empty table with a given number of slots.
 		 *
-		 * @param value a cached object.
-		 * @param size a size estimation for the object.
+		 * @param capacity a number of slots; it has to be a power of two.
 		 */
-		/*### private ###*/
-		CacheItem(final V value, final long size) {
-			super(Checks.assertNotNull(value).getId());
-			statistics = new CacheItemStatistics<K>(value.getId());
-			update(value, size);
+		private Table(final int capacity) {
+			keys = new Object[capacity];
+			hashes = new int[capacity];
+			states = new int[capacity];
+			born = new long[capacity];
+			updated = new long[capacity];
+			lastAccess = new AtomicLongArray(capacity);
+			hits = new AtomicLongArray(capacity);
+			misses = new AtomicLongArray(capacity);
+			sizes = new long[capacity];
+			liveUntil = expiring ? new long[capacity] : null;
+			timesToIdle = expiring ? new long[capacity] : null;
+			timers = expiring ? new Object[capacity] : null;
+			nodes = queue != null ? new Object[capacity] : null;
+			liveSlots = new int[capacity];
+			positions = new int[capacity];
 		}
 
 		/**
-		 * Evicts the cached item. Cached object will be removed from the values
-		 * storage, and the eviction is recored to statistics of the cache item.
+		 * Returns a slot of a given key, or {@code -1} if not found.
+		 *
+		 * @param key a key.
+		 * @param hash a spread hash code of the key.
 		 *
-		 * @throws ItemAlreadyExpiredExpception if the item has been alredy expired.
+		 * @return a slot of the key or {@code -1}.
 		 */
-		/*### private ###*/
-		synchronized void evict() {
-			ensureNonExpiredStatus();
-			assert isEvictable();
-			values.remove(getId());
-			statistics.recordEviction();
+		private int slotOf(final Object key, final int hash) {
+			final int mask = keys.length - 1;
+			for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+				final int state = state(slot);
+				if (state == EMPTY) {
+					return -1;
+				}
+				if (state != DELETED && hashes[slot] == hash && key.equals(keys[slot])) {
+					return slot;
+				}
+			}
 		}
 
 		/**
-		 * Update a cache item with a new value of given size.
+		 * Returns the first slot not holding a key for a given hash code.
 		 *
-		 * @param value a new value.
-		 * @param size a size estimation for the object.
+		 * @param hash a spread hash code.
 		 *
-		 * @throws IllegalArgumentException if {@code value} is {@code null} or {@code size} is negative.
-		 * @throws KeysMismatchException if ID of the cache item and ID of given value differs.
-		 * @throws ItemAlreadyExpiredExpception if the item has been already expired.
+		 * @return a free slot.
 		 */
-		/*### private ###*/
-		synchronized void update(final V value, final long size) {
-			if (value == null) {
-				throw new IllegalArgumentException();
-			}
-			if (!value.getId().equals(getId())) {
-				throw new KeysMismatchException();
-			}
-			if (size < 0) {
-				throw new IllegalArgumentException(String.valueOf(size));
+		private int freeSlot(final int hash) {
+			final int mask = keys.length - 1;
+			int slot = hash & mask;
+			while (state(slot) == LIVE || state(slot) == EVICTED) {
+				slot = (slot + 1) & mask;
 			}
-			ensureNonExpiredStatus();
-
-			// todo: done next remove() conditionally if 'evicted' status is stored in the cache item; at the moment, direct remove() call is more efficient.
-			values.remove(getId()); // remove old value, if any
-
-			values.put(value);
-			statistics.recordSize(size);
+			return slot;
 		}
 
 		/**
-		 * Returns a cached object for the cache item or {@code null} if the item has been evicted.
+		 * Returns a state of a slot.
 		 *
-		 * @return a cached object for the cache item or {@code null} if the item has been evicted.
+		 * @param slot a slot.
 		 *
-		 * @throws ItemAlreadyExpiredExpception if the item has been already expired.
+		 * @return a state of the slot.
 		 */
-		/*### private ###*/
-		synchronized V getValue() {
-			ensureNonExpiredStatus();
-			final Option<V> value = values.provide(new Option<K>(getId()));
-			statistics.recordAccess(value.hasValue());
-			return value.getValue();
+		private int state(final int slot) {
+			return states[slot] & STATE_MASK;
 		}
 
 		/**
-		 * Checks whether the cache item is evictable. The cache item is considered
-		 * to be evictable, if its cached object is still in the cache and it has not
-		 * been evicted yet.
+		 * Returns a node of the eviction queue held in a slot.
 		 *
-		 * @return {@code true} if the cache item can be evicted, {@code false} otherwise.
+		 * @param slot a slot.
 		 *
-		 * @throws ItemAlreadyExpiredExpception if the item has been already expired.
+		 * @return a node or {@code null}.
 		 */
-		/*### private ###*/
-		synchronized boolean isEvictable() {
-			ensureNonExpiredStatus();
-			// XXX: This is the naive implementation and it can be unnecessary slow if
-			// there is a lot of values. Maybe the cache item can hold its 'evictable'
-			// or 'evicted' status itself. On the other hand this is pretty consistent
-			// in all cases.
-			return values.provide(new Option<K>(getId())).hasValue();
+		@SuppressWarnings({"unchecked"})
+		private EvictionQueue.Node<K> node(final int slot) {
+			return (EvictionQueue.Node<K>) nodes[slot];
 		}
 
 		/**
-		 * Evaluates whether this cache item has to be evicted. This method can be
-		 * called safely on already expired cahe item. The implementation ensures
-		 * that once expired item will never return back to non-expired status.
+		 * Returns a timer held in a slot.
 		 *
-		 * @return {@code true} if the cache item has to be evicted, {@cdoe false} otherwise.
+		 * @param slot a slot.
+		 *
+		 * @return a timer or {@code null}.
 		 */
-		/*### private ###*/
-		synchronized boolean isExpired() {
-			//  This method may be called for expired item.
-			if (expired) { // No way back for once expired item.
-				return true;
-			}
-			// TODO: RECOMPUTE EXPIRED STATUS HERE.
-			// This is the only place where 'expired' may be set to 'true'.
-			return expired;
+		@SuppressWarnings({"unchecked"})
+		private TimingWheel.Timer<K> timer(final int slot) {
+			return (TimingWheel.Timer<K>) timers[slot];
 		}
 
 		/**
-		 * Returns a snapshot of cache item's statistics. This method
-		 * can be called safely on already expired cahe item.
+		 * Returns a time an object expires at unless accessed again, or {@code Long.MAX_VALUE}.
 		 *
-		 * @return s a snapshot of cache item's statistics.
+		 * @param slot a slot of the object key.
+		 *
+		 * @return a time the object expires at.
 		 */
-		/*### private ###*/
-		synchronized CacheItemStatistics<K> getStatisticsSnapshot() {
-			//  This method may be called for expired item.
-			return statistics.getSnapshot();
+		private long deadline(final int slot) {
+			final long idleSince = Math.max(updated[slot], lastAccess.get(slot));
+			return Math.min(liveUntil[slot], TimingWheel.deadline(idleSince, timesToIdle[slot]));
 		}
 
 		/**
-		 * Returns silently if the cache item has not been expired yet.
+		 * Returns a snapshot of statistics of a key. This method never returns {@code null}.
+		 *
+		 * @param slot a slot of the key.
 		 *
-		 * @throws ItemAlreadyExpiredExpception if the cache item has been expired yet.
+		 * @return a snapshot of statistics.
 		 */
-		private void ensureNonExpiredStatus() {
-			// Do not call isExpired() here. At first, it has side effects
-			// of re-evaluating expired status and it can cause a deadlock,
-			// if lack of proper synchronization on upper levels.
-			if (expired) {
-				throw new ItemAlreadyExpiredExpception();
-			}
+		private CacheItemStatistics<K> snapshot(final int slot) {
+			return snapshot(slot, born[slot]);
 		}
 
-	}
-
-	/**
-	 * This exception is thrown when it is attepted to stored a value
-	 * with an ID into a cache item with a different ID.
-	 */
-	public static final class KeysMismatchException extends IllegalArgumentException {
-
-		private KeysMismatchException() {
-			// really nothing here
+		/**
+		 * Returns a snapshot of statistics of a key with a given date of birth. This method never returns {@code null}.
+		 *
+		 * @param slot a slot of the key.
+		 * @param dateOfBirth a date of birth.
+		 *
+		 * @return a snapshot of statistics.
+		 */
+		@SuppressWarnings({"unchecked"})
+		private CacheItemStatistics<K> snapshot(final int slot, final long dateOfBirth) {
+			return CacheItemStatistics.snapshot(
+					(K) keys[slot], dateOfBirth, lastAccess.get(slot), hits.get(slot), misses.get(slot), states[slot] >>> STATE_BITS, sizes[slot]
+			);
 		}
 
-	}
-
-	/**
-	 * This exception is thrown when it is manipulated from already expired cache item.
-	 */
-	public static final class ItemAlreadyExpiredExpception extends IllegalStateException {
+		/**
+		 * Copies a key and its metadata to a slot of another table.
+		 *
+		 * @param slot a slot of the key.
+		 * @param target another table.
+		 * @param targetSlot a free slot of another table.
+		 */
+		private void copy(final int slot, final Table target, final int targetSlot) {
+			target.keys[targetSlot] = keys[slot];
+			target.hashes[targetSlot] = hashes[slot];
+			target.states[targetSlot] = states[slot];
+			target.born[targetSlot] = born[slot];
+			target.updated[targetSlot] = updated[slot];
+			target.lastAccess.set(targetSlot, lastAccess.get(slot));
+			target.hits.set(targetSlot, hits.get(slot));
+			target.misses.set(targetSlot, misses.get(slot));
+			target.sizes[targetSlot] = sizes[slot];
+			if (expiring) {
+				target.liveUntil[targetSlot] = liveUntil[slot];
+				target.timesToIdle[targetSlot] = timesToIdle[slot];
+				target.timers[targetSlot] = timers[slot];
+			}
+			if (nodes != null) {
+				target.nodes[targetSlot] = nodes[slot];
+			}
+		}
 
-		private ItemAlreadyExpiredExpception() {
-			// really nothing here
+		/**
+		 * Releases references held in a slot.
+		 *
+		 * @param slot a slot.
+		 */
+		private void clear(final int slot) {
+			keys[slot] = null;
+			if (expiring) {
+				timers[slot] = null;
+			}
+			if (nodes != null) {
+				nodes[slot] = null;
+			}
 		}
 
 	}
 
-
 }
@@ -0,0 +1,143 @@
+package gems.caching;
+
+/**
+ * A probabilistic estimator of access frequencies of keys. It is a count-min sketch with four
+ * 4-bit counters per key, so it needs roughly eight bytes per expected key regardless of number
+ * of distinct keys seen. Estimates never underestimate, they may overestimate because of hash
+ * collisions. Counters are periodically halved, so the sketch keeps track of recent popularity
+ * and keys popular long ago fade away. <em>The implementation is not thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class FrequencySketch {
+
+	/**
+	 * Seeds of four hash functions.
+	 */
+	private static final int[] SEEDS = {0x97cb3127, 0xb5ad4ece, 0xdb4fe5a3, 0x6c8a4f3e};
+
+	/**
+	 * A mask for halving all counters in a single word at once.
+	 */
+	private static final long HALVING_MASK = 0x7777777777777777L;
+
+	/**
+	 * Maximal value of a counter.
+	 */
+	private static final int MAX_COUNT = 15;
+
+	/**
+	 * How many increments per expected key are recorded before counters are halved.
+	 */
+	private static final int SAMPLE_FACTOR = 10;
+
+	/**
+	 * Counters; each word holds sixteen 4-bit counters.
+	 */
+	private long[] table = new long[1];
+
+	/**
+	 * Number of increments since the last halving.
+	 */
+	private long increments;
+
+	/**
+	 * Number of increments after which counters are halved.
+	 */
+	private long sampleSize = SAMPLE_FACTOR;
+
+	/**
+	 * Ensures the sketch is large enough for a given number of keys. If it is enlarged,
+	 * the original table is repeated in the new one; as words are selected by low bits
+	 * of hash codes, each key then finds its original counters and no estimate drops.
+	 *
+	 * @param keys expected number of keys.
+	 */
+	void ensureCapacity(final long keys) {
+		final int words = (int) Math.min(1L << 30, Long.highestOneBit(Math.max(2L, keys) - 1L) << 1);
+		if (words > table.length) {
+			final long[] enlarged = new long[words];
+			for (int i = 0; i < words; i += table.length) {
+				System.arraycopy(table, 0, enlarged, i, table.length);
+			}
+			table = enlarged;
+			sampleSize = SAMPLE_FACTOR * Math.max(1L, keys);
+		}
+	}
+
+	/**
+	 * Records an access of a given key.
+	 *
+	 * @param key a key.
+	 */
+	void increment(final Object key) {
+		final int hash = Hashing.spread(key.hashCode());
+		final int start = (hash & 3) << 2;
+		boolean incremented = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			incremented |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (incremented && ++increments == sampleSize) {
+			halve();
+		}
+	}
+
+	/**
+	 * Returns estimated number of recent accesses of a given key, at most fifteen.
+	 *
+	 * @param key a key.
+	 *
+	 * @return estimated number of recent accesses of a given key.
+	 */
+	int frequency(final Object key) {
+		final int hash = Hashing.spread(key.hashCode());
+		final int start = (hash & 3) << 2;
+		int result = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			final int offset = (start + i) << 2;
+			result = Math.min(result, (int) ((table[indexOf(hash, i)] >>> offset) & MAX_COUNT));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns an index of word for a given hash code and hash function.
+	 *
+	 * @param hash a mixed hash code.
+	 * @param i an index of hash function.
+	 *
+	 * @return an index of word.
+	 */
+	private int indexOf(final int hash, final int i) {
+		return Hashing.spread(hash ^ SEEDS[i]) & (table.length - 1);
+	}
+
+	/**
+	 * Increments a counter unless it is saturated.
+	 *
+	 * @param index an index of word.
+	 * @param counter an index of counter in the word.
+	 *
+	 * @return {@code true} if the counter was incremented, {@code false} otherwise.
+	 */
+	private boolean incrementAt(final int index, final int counter) {
+		final int offset = counter << 2;
+		final long mask = (long) MAX_COUNT << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Halves all counters, so older accesses weigh less than recent ones.
+	 */
+	private void halve() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & HALVING_MASK;
+		}
+		increments /= 2L;
+	}
+
+}
@@ -5,11 +5,13 @@ import gems.Limits;
 import gems.UnexpectedNullException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * A cache evictor implementation based on a particular ordering
@@ -20,6 +22,12 @@ import java.util.List;
  */
 final class GenericCacheEvictor<K> implements CacheEvictor<K> {
 
+	/**
+	 * All items are sorted in parallel once at least {@code 1 / PARALLEL_SORT_FRACTION}
+	 * of them have to be evaluated as candidates for eviction.
+	 */
+	private static final int PARALLEL_SORT_FRACTION = 2;
+
 	/**
 	 * A comparator.
 	 */
@@ -40,7 +48,10 @@ final class GenericCacheEvictor<K> implements CacheEvictor<K> {
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} Statistics are not sorted as a whole. Only the tail of the ordering which
+	 * may overflow cache limits is selected by a bounded heap and sorted; the tail grows until
+	 * the rest of items fits into cache limits. If a large fraction of items has to be evaluated,
+	 * all statistics are sorted in parallel instead.
 	 *
 	 * @throws IllegalArgumentException if any of arguments is {@code null}.
 	 */
@@ -57,10 +68,52 @@ final class GenericCacheEvictor<K> implements CacheEvictor<K> {
 		if (statistics.isEmpty()) {
 			return Collections.emptyList();
 		}
+		final int count = statistics.size();
+		long totalSize = 0L;
+		for (final CacheItemStatistics<K> item : statistics) {
+			totalSize += item.getSize();
+		}
+		if (count <= limits.getLimit(CacheLimit.ITEMS).longValue() && satisfySizeLimit(limits, totalSize)) {
+			return Collections.emptyList();
+		}
+		int tailLength = (int) Math.max(1L, count - limits.getLimit(CacheLimit.ITEMS).longValue());
+		while ((long) tailLength * PARALLEL_SORT_FRACTION < count) {
+			final List<CacheItemStatistics<K>> tail = getTail(statistics, tailLength);
+			long tailSize = 0L;
+			for (final CacheItemStatistics<K> item : tail) {
+				tailSize += item.getSize();
+			}
+			if (satisfySizeLimit(limits, totalSize - tailSize)) {
+				// all items before the tail are kept, so only the tail has to be ordered
+				Collections.sort(tail, comparator);
+				return select(tail, limits, count - tailLength, totalSize - tailSize);
+			}
+			tailLength *= 2;
+		}
+		return select(getSorted(statistics), limits, 0, 0L);
+	}
+
+	/**
+	 * Walks given statistics in their iteration order, keeps items as long as they satisfy cache limits,
+	 * and returns keys of items which do not.
+	 *
+	 * @param statistics ordered statistics.
+	 * @param limits cache limits.
+	 * @param keptCount number of items already kept.
+	 * @param keptSize total size of items already kept.
+	 *
+	 * @return keys of items to evict.
+	 */
+	private static <K> Collection<K> select(
+			final Iterable<CacheItemStatistics<K>> statistics,
+			final Limits<CacheLimit> limits,
+			final int keptCount,
+			final long keptSize
+	) {
 		final List<K> result = new LinkedList<K>();
-		int cumulativeCount = 0;
-		long cumulativeSize = 0L;
-		for (final CacheItemStatistics<K> item : getSorted(statistics)) {
+		int cumulativeCount = keptCount;
+		long cumulativeSize = keptSize;
+		for (final CacheItemStatistics<K> item : statistics) {
 			if (satisfyLimits(item, limits, cumulativeCount, cumulativeSize)) {
 				cumulativeCount++;
 				cumulativeSize += item.getSize();
@@ -95,12 +148,36 @@ final class GenericCacheEvictor<K> implements CacheEvictor<K> {
 	 *
 	 * @return a collection of statistics with iteration order specified by the comparator.
 	 */
-	private Collection<CacheItemStatistics<K>> getSorted(final Collection<CacheItemStatistics<K>> statistics) {
-		final List<CacheItemStatistics<K>> result = new ArrayList<CacheItemStatistics<K>>(statistics);
-		if (result.size() > 1) {
-			Collections.sort(result, comparator);
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private List<CacheItemStatistics<K>> getSorted(final Collection<CacheItemStatistics<K>> statistics) {
+		final CacheItemStatistics<K>[] result = statistics.toArray(new CacheItemStatistics[statistics.size()]);
+		if (result.length > 1) {
+			Arrays.parallelSort(result, comparator);
 		}
-		return result;
+		return Arrays.asList(result);
+	}
+
+	/**
+	 * Returns a given number of items which are the last ones in the ordering specified by
+	 * the comparator. The returned list is modifiable and its order is not specified.
+	 *
+	 * @param statistics all items.
+	 * @param length a number of items to return.
+	 *
+	 * @return the last items in the ordering specified by the comparator.
+	 */
+	private List<CacheItemStatistics<K>> getTail(final Collection<CacheItemStatistics<K>> statistics, final int length) {
+		// the head of the heap is the first item of the tail, i.e. the one to be replaced
+		final PriorityQueue<CacheItemStatistics<K>> heap = new PriorityQueue<CacheItemStatistics<K>>(length, comparator);
+		for (final CacheItemStatistics<K> item : statistics) {
+			if (heap.size() < length) {
+				heap.add(item);
+			} else if (comparator.compare(item, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(item);
+			}
+		}
+		return new ArrayList<CacheItemStatistics<K>>(heap);
 	}
 
 }
@@ -9,7 +9,7 @@ import gems.UnexpectedNullException;
  * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
  * @param <K> type of cahed object keys.
  */
-public final class HashCodeBasedSegmenter<K> extends AbstractCacheSegmenter<K> {
+public final class HashCodeBasedSegmenter<K> extends AbstractCacheSegmenter<K> implements HashSegmenter<K> {
 
 	/**
 	 * Creates a new segmenter for a given number of segments.
@@ -32,7 +32,11 @@ public final class HashCodeBasedSegmenter<K> extends AbstractCacheSegmenter<K> {
 	 * @throws UnexpectedNullException if {@code key} is {@code null}.
 	 */
 	@Override public int getSegment(final K key) {
-		return Math.abs(Checks.ensureNotNull(key).hashCode() % maxSegments());
+		return getSegmentOfHash(Checks.ensureNotNull(key).hashCode());
+	}
+
+	@Override public int getSegmentOfHash(final int hash) {
+		return Math.abs(hash % maxSegments());
 	}
 
 }
@@ -0,0 +1,40 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * A secondary index keeping keys in a hash table by attribute values. It does not answer range queries.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ * @param <A> type of attribute values.
+ */
+final class HashIndex<K, V extends Identifiable<K>, A> extends Index<K, V, A> {
+
+	/**
+	 * Creates a new empty index.
+	 *
+	 * @param attribute an indexed attribute.
+	 */
+	HashIndex(final Attribute<? super V, A> attribute) {
+		super(attribute, new HashMap<A, Set<K>>());
+	}
+
+	/**
+	 * Returns {@code null}, because a hash index cannot answer range queries.
+	 *
+	 * @param from ignored.
+	 * @param to ignored.
+	 *
+	 * @return always {@code null}.
+	 */
+	@Override Collection<K> range(final A from, final A to) {
+		return null;
+	}
+
+}
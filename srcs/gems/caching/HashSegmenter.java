@@ -0,0 +1,23 @@
+package gems.caching;
+
+/**
+ * A cache segmenter mapping keys to segments according to their hash codes only. Caches of
+ * primitive keys use it for routing keys to segments without boxing them, as hash codes of
+ * primitive values can be computed without boxing.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> a type of key.
+ */
+interface HashSegmenter<K> extends CacheSegmenter<K> {
+
+	/**
+	 * Returns segment number for a key with a given hash code. It has to return the same
+	 * segment number as {@code getSegment()} returns for a key with the same hash code.
+	 *
+	 * @param hash a hash code of a key.
+	 *
+	 * @return segment number for a key with a given hash code.
+	 */
+	int getSegmentOfHash(int hash);
+
+}
@@ -0,0 +1,53 @@
+package gems.caching;
+
+/**
+ * Hashing gems used for routing keys to partitions or segments. Hash codes of many
+ * common keys - small integers, strings with a common prefix, and so on - differ only
+ * in a few low bits or follow a regular pattern, so they are mixed before use.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class Hashing {
+
+	/**
+	 * Just disables an instance creation. This is the utility class.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	private Hashing() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Spreads bits of a given hash code, so each input bit affects each output bit with
+	 * probability close to one half. This is the finalization step of MurmurHash3.
+	 *
+	 * @param hash a hash code.
+	 *
+	 * @return a mixed hash code.
+	 */
+	static int spread(final int hash) {
+		int h = hash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Maps a given mixed hash code uniformly to an integer from zero (including)
+	 * to a given bound (excluding), without a division.
+	 *
+	 * @param hash a mixed hash code.
+	 * @param bound an exclusive upper bound; it has to be positive.
+	 *
+	 * @return an integer from zero (including) to {@code bound} (excluding).
+	 */
+	static int index(final int hash, final int bound) {
+		assert bound > 0;
+		return (int) (((hash & 0xffffffffL) * bound) >>> 32);
+	}
+
+}
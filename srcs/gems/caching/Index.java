@@ -0,0 +1,143 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A secondary index of a storage. It maps attribute values to keys of stored values having them,
+ * and it remembers the attribute value of each key, so the key can be unindexed without decoding
+ * the removed value. Keys of values whose attribute is {@code null} are kept apart, so subclasses
+ * never see a {@code null} attribute value. Like storages, indexes may be read concurrently, but
+ * never concurrently with a write.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ * @param <A> type of attribute values.
+ */
+abstract class Index<K, V extends Identifiable<K>, A> {
+
+	/**
+	 * An indexed attribute.
+	 */
+	private final Attribute<? super V, A> attribute;
+
+	/**
+	 * Keys of values grouped by attribute values other than {@code null}.
+	 */
+	private final Map<A, Set<K>> postings;
+
+	/**
+	 * Keys of values whose attribute is {@code null}.
+	 */
+	private final Set<K> nulls = new HashSet<K>();
+
+	/**
+	 * Attribute values of indexed keys.
+	 */
+	private final Map<K, A> attributes = new HashMap<K, A>();
+
+	/**
+	 * Initializes a new empty index.
+	 *
+	 * @param attribute an indexed attribute.
+	 * @param postings an empty map for grouping keys by attribute values.
+	 */
+	Index(final Attribute<? super V, A> attribute, final Map<A, Set<K>> postings) {
+		this.attribute = Checks.assertNotNull(attribute);
+		this.postings = Checks.assertNotNull(postings);
+	}
+
+	/**
+	 * Indexes a given value. If its key is already indexed, it is reindexed according to the new value.
+	 *
+	 * @param value a stored value.
+	 */
+	final void add(final V value) {
+		final K key = value.getId();
+		final A current = attribute.get(value);
+		if (attributes.containsKey(key)) {
+			final A previous = attributes.get(key);
+			if (previous == null ? current == null : previous.equals(current)) {
+				return;
+			}
+			unpost(key, previous);
+		}
+		attributes.put(key, current);
+		if (current == null) {
+			nulls.add(key);
+			return;
+		}
+		Set<K> keys = postings.get(current);
+		if (keys == null) {
+			keys = new HashSet<K>();
+			postings.put(current, keys);
+		}
+		keys.add(key);
+	}
+
+	/**
+	 * Unindexes a given key. Nothing happens if the key is not indexed.
+	 *
+	 * @param key a key of a removed value.
+	 */
+	final void remove(final K key) {
+		if (attributes.containsKey(key)) {
+			unpost(key, attributes.remove(key));
+		}
+	}
+
+	/**
+	 * Removes a given key from keys having a given attribute value.
+	 *
+	 * @param key a key.
+	 * @param value an attribute value of the key.
+	 */
+	private void unpost(final K key, final A value) {
+		if (value == null) {
+			nulls.remove(key);
+			return;
+		}
+		final Set<K> keys = postings.get(value);
+		keys.remove(key);
+		if (keys.isEmpty()) {
+			postings.remove(value);
+		}
+	}
+
+	/**
+	 * Returns keys of values whose attribute equals a given value. The returned collection is a view
+	 * which must not be modified, and which is valid until the next write. This method never returns
+	 * {@code null}.
+	 *
+	 * @param value an attribute value; it may be {@code null}.
+	 *
+	 * @return keys of values having the attribute value.
+	 */
+	final Collection<K> equalTo(final A value) {
+		if (value == null) {
+			return nulls;
+		}
+		final Set<K> keys = postings.get(value);
+		return keys == null ? Collections.<K>emptySet() : keys;
+	}
+
+	/**
+	 * Returns keys of values whose attribute lies in a given range, or {@code null} if the index
+	 * cannot answer range queries. Values whose attribute is {@code null} never lie in a range.
+	 *
+	 * @param from the lowest attribute value, inclusive, or {@code null} for no lower bound.
+	 * @param to the highest attribute value, exclusive, or {@code null} for no upper bound.
+	 *
+	 * @return keys of values whose attribute lies in the range, or {@code null}.
+	 */
+	abstract Collection<K> range(A from, A to);
+
+}
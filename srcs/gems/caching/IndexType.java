@@ -0,0 +1,43 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+/**
+ * An enumeration of secondary index types of storages. An index of any type answers equality
+ * queries; only a sorted index answers range queries. See {@code Storage.index()} for details.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public enum IndexType {
+
+	/**
+	 * An index keeping keys of values in a hash table by their attribute values. It answers
+	 * equality queries in a constant time.
+	 */
+	HASH {
+		@Override <K, V extends Identifiable<K>, A> Index<K, V, A> newIndex(final Attribute<? super V, A> attribute) {
+			return new HashIndex<K, V, A>(attribute);
+		}
+	},
+
+	/**
+	 * An index keeping keys of values in a search tree ordered by their attribute values. It answers
+	 * both equality and range queries in a logarithmic time. Attribute values other than {@code null}
+	 * have to be mutually comparable, otherwise a {@code ClassCastException} is thrown on indexing.
+	 */
+	SORTED {
+		@Override <K, V extends Identifiable<K>, A> Index<K, V, A> newIndex(final Attribute<? super V, A> attribute) {
+			return new SortedIndex<K, V, A>(attribute);
+		}
+	};
+
+	/**
+	 * Creates a new empty index of a given attribute. This method never returns {@code null}.
+	 *
+	 * @param attribute an indexed attribute.
+	 *
+	 * @return a new index.
+	 */
+	abstract <K, V extends Identifiable<K>, A> Index<K, V, A> newIndex(Attribute<? super V, A> attribute);
+
+}
@@ -0,0 +1,94 @@
+package gems.caching;
+
+import gems.Identifiable;
+import gems.filtering.Filter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Secondary indexes of stored values, registered by their attributes. Added values are indexed by all
+ * indexes, and searches by filters of indexed attributes are answered from them. Like indexes themselves,
+ * they may be read concurrently, but never concurrently with a write.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ */
+final class Indexes<K, V extends Identifiable<K>> {
+
+	/**
+	 * Secondary indexes by their attributes.
+	 */
+	private final Map<Attribute<? super V, ?>, Index<K, V, ?>> indexes = new HashMap<Attribute<? super V, ?>, Index<K, V, ?>>();
+
+	/**
+	 * Creates an index of a given attribute and indexes given values by it. An index of the same
+	 * attribute created before is replaced.
+	 *
+	 * @param attribute an indexed attribute.
+	 * @param type a type of the index.
+	 * @param values values stored so far.
+	 * @param <A> type of attribute values.
+	 */
+	<A> void create(final Attribute<? super V, A> attribute, final IndexType type, final Iterable<? extends V> values) {
+		final Index<K, V, A> index = type.newIndex(attribute);
+		for (final V value : values) {
+			index.add(value);
+		}
+		indexes.put(attribute, index);
+	}
+
+	/**
+	 * Indexes a given value by all indexes. If its key is already indexed, it is reindexed.
+	 *
+	 * @param value a stored value.
+	 */
+	void add(final V value) {
+		for (final Index<K, V, ?> index : indexes.values()) {
+			index.add(value);
+		}
+	}
+
+	/**
+	 * Unindexes a given key from all indexes.
+	 *
+	 * @param key a key of a removed value.
+	 */
+	void remove(final K key) {
+		for (final Index<K, V, ?> index : indexes.values()) {
+			index.remove(key);
+		}
+	}
+
+	/**
+	 * Returns keys of values allowed by a given filter, or {@code null} if the filter is not an
+	 * {@code AttributeFilter} answerable by an index of its attribute. The returned collection is
+	 * a view which must not be modified, and which is valid until the next write.
+	 *
+	 * @param filter a filter.
+	 *
+	 * @return keys of values allowed by the filter, or {@code null}.
+	 */
+	Collection<K> lookup(final Filter<? super V> filter) {
+		return filter instanceof AttributeFilter ? lookup((AttributeFilter<? super V, ?>) filter) : null;
+	}
+
+	/**
+	 * Returns keys of values allowed by a given attribute filter, or {@code null} if there is no
+	 * index of its attribute able to answer it.
+	 *
+	 * @param filter a filter.
+	 * @param <A> type of attribute values.
+	 *
+	 * @return keys of values allowed by the filter, or {@code null}.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private <A> Collection<K> lookup(final AttributeFilter<? super V, A> filter) {
+		// indexes are registered by their attributes, so the index has the same type of attribute values
+		final Index<K, V, A> index = (Index<K, V, A>) indexes.get(filter.getAttribute());
+		return index == null ? null : filter.lookup(index);
+	}
+
+}
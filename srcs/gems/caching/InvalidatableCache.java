@@ -0,0 +1,26 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+/**
+ * A cache which can drop a single cached object on request. Tiered caches use this for keeping
+ * the secondary tier from serving an object superseded by a newer one in the primary tier.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+interface InvalidatableCache<V extends Identifiable<K>, K> extends ManagedCache<V, K> {
+
+	/**
+	 * Removes a cached object identified by a given key, if any, together with statistics of
+	 * the key. The object is not evicted, i.e. neither its eviction is recorded nor the eviction
+	 * handler is called.
+	 *
+	 * @param key a key.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}.
+	 */
+	void invalidate(K key);
+
+}
@@ -0,0 +1,165 @@
+package gems.caching;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An eviction queue ordering items by number of accesses and then by their last access. Items
+ * with the same number of accesses share a frequency bucket keeping them in access order, and
+ * buckets are kept in a doubly-linked list ordered by ascending frequency. An accessed item is
+ * moved to the next bucket, which is created on demand, so the head item of the head bucket is
+ * always the <em>least-frequently used</em> item.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+final class LeastFrequentlyUsedEvictionQueue<K> extends EvictionQueue<K> {
+
+	/**
+	 * A sentinel of bucket list; its next bucket has the lowest frequency.
+	 */
+	private final Bucket<K> sentinel = new Bucket<K>(0L);
+
+	{
+		sentinel.prev = sentinel;
+		sentinel.next = sentinel;
+	}
+
+	@Override protected Node<K> newNode(final K key) {
+		return new FrequencyNode<K>(key);
+	}
+
+	@Override protected void link(final Node<K> node) {
+		moveTo(sentinel, (FrequencyNode<K>) node);
+	}
+
+	@Override protected void unlink(final Node<K> node) {
+		final FrequencyNode<K> frequencyNode = (FrequencyNode<K>) node;
+		final Bucket<K> bucket = frequencyNode.bucket;
+		bucket.nodes.remove(frequencyNode);
+		frequencyNode.bucket = null;
+		if (bucket.nodes.isEmpty()) {
+			bucket.prev.next = bucket.next;
+			bucket.next.prev = bucket.prev;
+		}
+	}
+
+	@Override protected void access(final Node<K> node) {
+		final FrequencyNode<K> frequencyNode = (FrequencyNode<K>) node;
+		final Bucket<K> bucket = frequencyNode.bucket;
+		bucket.nodes.remove(frequencyNode);
+		moveTo(bucket, frequencyNode);
+		if (bucket.nodes.isEmpty()) {
+			bucket.prev.next = bucket.next;
+			bucket.next.prev = bucket.prev;
+		}
+	}
+
+	/**
+	 * Appends a node into the bucket following a given one, if that bucket has frequency
+	 * by one greater than the given one. Otherwise, a new bucket is created for the node.
+	 *
+	 * @param previous a bucket with frequency by one less than the new frequency of the node.
+	 * @param node a node to move.
+	 */
+	private void moveTo(final Bucket<K> previous, final FrequencyNode<K> node) {
+		final long frequency = previous.frequency + 1L;
+		Bucket<K> bucket = previous.next;
+		if (bucket == sentinel || bucket.frequency != frequency) {
+			bucket = new Bucket<K>(frequency);
+			bucket.prev = previous;
+			bucket.next = previous.next;
+			previous.next.prev = bucket;
+			previous.next = bucket;
+		}
+		bucket.nodes.append(node);
+		node.bucket = bucket;
+	}
+
+	@Override protected Iterator<Node<K>> victims() {
+		return new Iterator<Node<K>>() {
+
+			private Bucket<K> bucket = sentinel.next;
+
+			private Iterator<Node<K>> nodes = bucket.nodes.iterator();
+
+			@Override public boolean hasNext() {
+				while (!nodes.hasNext() && bucket != sentinel) {
+					bucket = bucket.next;
+					nodes = bucket.nodes.iterator();
+				}
+				return nodes.hasNext();
+			}
+
+			@Override public Node<K> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return nodes.next();
+			}
+
+			@Override public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * A node remembering its frequency bucket.
+	 */
+	private static final class FrequencyNode<K> extends Node<K> {
+
+		/**
+		 * A bucket the node belongs to.
+		 */
+		private Bucket<K> bucket;
+
+		/**
+		 * Creates a new node for a given key.
+		 *
+		 * @param key a key.
+		 */
+		private FrequencyNode(final K key) {
+			super(key);
+		}
+
+	}
+
+	/**
+	 * A bucket of nodes with the same number of accesses.
+	 */
+	private static final class Bucket<K> {
+
+		/**
+		 * Number of accesses of nodes in the bucket.
+		 */
+		private final long frequency;
+
+		/**
+		 * Nodes in access order.
+		 */
+		private final NodeList<K> nodes = new NodeList<K>();
+
+		/**
+		 * A bucket with lower frequency.
+		 */
+		private Bucket<K> prev;
+
+		/**
+		 * A bucket with higher frequency.
+		 */
+		private Bucket<K> next;
+
+		/**
+		 * Creates a new empty bucket for a given frequency.
+		 *
+		 * @param frequency a frequency.
+		 */
+		private Bucket(final long frequency) {
+			this.frequency = frequency;
+		}
+
+	}
+
+}
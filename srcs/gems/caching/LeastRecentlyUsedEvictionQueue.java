@@ -0,0 +1,41 @@
+package gems.caching;
+
+import java.util.Iterator;
+
+/**
+ * An eviction queue ordering items by their last access. It keeps items in a doubly-linked
+ * list; an accessed item is moved to the tail of the list, so the head of the list is always
+ * the <em>least-recently used</em> item.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+final class LeastRecentlyUsedEvictionQueue<K> extends EvictionQueue<K> {
+
+	/**
+	 * Enqueued nodes in access order.
+	 */
+	private final NodeList<K> nodes = new NodeList<K>();
+
+	@Override protected Node<K> newNode(final K key) {
+		return new Node<K>(key);
+	}
+
+	@Override protected void link(final Node<K> node) {
+		nodes.append(node);
+	}
+
+	@Override protected void unlink(final Node<K> node) {
+		nodes.remove(node);
+	}
+
+	@Override protected void access(final Node<K> node) {
+		nodes.remove(node);
+		nodes.append(node);
+	}
+
+	@Override protected Iterator<Node<K>> victims() {
+		return nodes.iterator();
+	}
+
+}
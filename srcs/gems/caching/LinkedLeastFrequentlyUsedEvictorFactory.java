@@ -0,0 +1,29 @@
+package gems.caching;
+
+/**
+ * Provides <em>least-frequently used</em> evictors keeping cached items in linked frequency
+ * buckets. Contrary to evictors provided by {@code LeastFrequentlyUsedEvictorFactory},
+ * selection of victims does not depend on number of cached items. Please note that number
+ * of accesses is counted only while an item is cached; it is not remembered after eviction.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+public final class LinkedLeastFrequentlyUsedEvictorFactory<K> implements CacheEvictorFactory<K> {
+
+	/**
+	 * Returns a linked <em>least-frequently used</em> evictor. This method never returns {@code null}.
+	 *
+	 * @return a linked <em>least-frequently used</em> evictor.
+	 */
+	public CacheEvictor<K> get() {
+		return new QueueingCacheEvictor<K>(new LeastFrequentlyUsedEvictorFactory<K>().get()) {
+
+			@Override EvictionQueue<K> newQueue() {
+				return new LeastFrequentlyUsedEvictionQueue<K>();
+			}
+
+		};
+	}
+
+}
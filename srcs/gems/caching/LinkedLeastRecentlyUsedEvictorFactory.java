@@ -0,0 +1,28 @@
+package gems.caching;
+
+/**
+ * Provides <em>least-recently used</em> evictors keeping cached items in an access-ordered
+ * linked queue. Contrary to evictors provided by {@code LeastRecentlyUsedEvictorFactory},
+ * selection of victims does not depend on number of cached items.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+public final class LinkedLeastRecentlyUsedEvictorFactory<K> implements CacheEvictorFactory<K> {
+
+	/**
+	 * Returns a linked <em>least-recently used</em> evictor. This method never returns {@code null}.
+	 *
+	 * @return a linked <em>least-recently used</em> evictor.
+	 */
+	public CacheEvictor<K> get() {
+		return new QueueingCacheEvictor<K>(new LeastRecentlyUsedEvictorFactory<K>().get()) {
+
+			@Override EvictionQueue<K> newQueue() {
+				return new LeastRecentlyUsedEvictionQueue<K>();
+			}
+
+		};
+	}
+
+}
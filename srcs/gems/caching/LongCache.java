@@ -0,0 +1,25 @@
+package gems.caching;
+
+import gems.LongIdentifiable;
+
+/**
+ * A cache of objects identified by primitive {@code long} IDs. Besides the generic interface, it
+ * provides a lookup by a primitive key, which neither boxes the key nor wraps the result, so reads
+ * do not allocate at all. An instance can be obtained using {@code gems.caching.LongCacheFactory}.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ */
+public interface LongCache<V extends LongIdentifiable> extends ManagedCache<V, Long> {
+
+	/**
+	 * Returns an object identified by a given key, or {@code null} if no such object is cached.
+	 * Unlike {@code get()}, this method does not allocate any object.
+	 *
+	 * @param id an ID of required object.
+	 *
+	 * @return a cached object or {@code null}.
+	 */
+	V getOrNull(long id);
+
+}
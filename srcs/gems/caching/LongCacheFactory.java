@@ -0,0 +1,51 @@
+package gems.caching;
+
+import gems.LongIdentifiable;
+import gems.ObjectProvider;
+import gems.Option;
+
+/**
+ * A factory for long-keyed cache instance creation. It interprets cache properties like
+ * {@code gems.caching.CacheFactory} does: a flat cache is created for the null segmenter and
+ * a segmented cache otherwise, and all evictors are supported. Created caches keep objects
+ * in primitive tables on the heap, and they always use a lock-free optimistic read path,
+ * so the concurrency strategy of properties is ignored.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ */
+public final class LongCacheFactory<V extends LongIdentifiable> implements ObjectProvider<LongCache<V>, CacheProperties<V, Long>> {
+
+	/**
+	 * Creates a new cache configured according given cache properties.
+	 * If no properties are given, a null-implementation of cache is
+	 * returned; see {@code gems.caching.NullLongCache} for details.
+	 *
+	 * @param properties a cache properties encapsulated in {@code Option} object.
+	 *
+	 * @return a new instance of cache encapsulated in {@code Option} object.
+	 *
+	 * @throws IllegalArgumentException if {@code properties} is {@code null}, or if properties
+	 * specify an expiration policy, a storage factory other than {@code MemoryStorageFactory},
+	 * or the shared cache budget; these are not supported by long-keyed caches.
+	 */
+	public Option<LongCache<V>> provide(final Option<CacheProperties<V, Long>> properties) {
+		if (properties == null) {
+			throw new IllegalArgumentException();
+		}
+		if (properties.hasValue()) {
+			final CacheProperties<V, Long> props = properties.getValue();
+			if (props.getExpirationPolicy() != ExpirationPolicy.NULL_EXPIRATION_POLICY
+					|| !(props.getStorageFactory() instanceof MemoryStorageFactory)
+					|| props.getBudget() == CacheBudget.SHARED) {
+				throw new IllegalArgumentException();
+			}
+			if (props.getSegmenter().equals(CacheSegmenter.NULL_SEGMENTER)) {
+				return new Option<LongCache<V>>(new LongFlatCache<V>(props));
+			}
+			return new Option<LongCache<V>>(new LongSegmentedCache<V>(props));
+		}
+		return new Option<LongCache<V>>(new NullLongCache<V>());
+	}
+
+}
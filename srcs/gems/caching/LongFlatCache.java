@@ -0,0 +1,570 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Limits;
+import gems.LongIdentifiable;
+import gems.Option;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A flat cache of objects identified by primitive keys. Keys, objects, and their metadata are kept in
+ * parallel arrays of an open-addressing hash table with linear probing, so looking up a key neither
+ * boxes the key nor allocates any entry. Reads take no lock unless they overlap a write: they validate
+ * an optimistic stamp and retry under the read lock only if a write happened meantime. Hits and last
+ * accesses are recorded in atomic arrays, so concurrent accesses are counted exactly. Writes and eviction
+ * are serialized by the write lock.
+ * <p/>
+ * If a queueing evictor is used, reads do not reorder the eviction queue. Like in {@code ConcurrentCache},
+ * each slot counts accesses not yet applied to the queue in a relaxed manner, and the writer applies them
+ * lazily: a victim taken from the head of the queue with pending accesses gets a single access instead
+ * of being evicted, but only once per eviction round. All evictors are supported. Keys are boxed only when an evictor needs them, i.e. when a key is added
+ * to an eviction queue and when victims are selected. Expiration policies and storage factories of
+ * cache properties are not supported, objects are always kept in the table on the heap.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ */
+final class LongFlatCache<V extends LongIdentifiable> extends AbstractCacheComponent<V, Long> implements LongCache<V> {
+
+	/**
+	 * An initial number of slots.
+	 */
+	private static final int INITIAL_SLOTS = 16;
+
+	/**
+	 * A state of a slot never used.
+	 */
+	private static final byte EMPTY = 0;
+
+	/**
+	 * A state of a slot holding a cached object.
+	 */
+	private static final byte LIVE = 1;
+
+	/**
+	 * A state of a slot whose object was removed.
+	 */
+	private static final byte DELETED = 2;
+
+	/**
+	 * A lock guarding the table.
+	 */
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * A recorder of cache-wide statistics.
+	 */
+	private final StatisticsCounter statistics;
+
+	/**
+	 * An eviction queue if a queueing evictor is used; {@code null} otherwise.
+	 */
+	private final EvictionQueue<Long> queue;
+
+	/**
+	 * The table of keys, objects, and their metadata.
+	 */
+	private volatile Table table;
+
+	/**
+	 * Number of cached objects.
+	 */
+	private int live;
+
+	/**
+	 * Number of slots whose objects were removed.
+	 */
+	private int deleted;
+
+	/**
+	 * Total size of cached objects.
+	 */
+	private long weight;
+
+	/**
+	 * A counter of eviction rounds.
+	 */
+	private int rounds;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param properties cache properties.
+	 */
+	LongFlatCache(final CacheProperties<V, Long> properties) {
+		super(properties);
+		statistics = new StatisticsCounter(getProperties().getLimits());
+		final CacheEvictor<Long> evictor = getProperties().getEvictor();
+		queue = evictor instanceof QueueingCacheEvictor ? ((QueueingCacheEvictor<Long>) evictor).newQueue() : null;
+		table = new Table(INITIAL_SLOTS);
+	}
+
+	/**
+	 * {@inheritDoc} No lock is taken unless a write happens concurrently.
+	 */
+	@Override public V getOrNull(final long id) {
+		long stamp = lock.tryOptimisticRead();
+		Table current = table;
+		int slot = current.slotOf(id);
+		V value = slot < 0 ? null : current.value(slot);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				current = table;
+				slot = current.slotOf(id);
+				value = slot < 0 ? null : current.value(slot);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		if (value == null) {
+			statistics.recordMiss();
+			return null;
+		}
+		// the slot may be reused meantime; then an access of another key is recorded, which is harmless
+		current.hits.incrementAndGet(slot);
+		current.lastAccess.set(slot, System.currentTimeMillis());
+		if (current.pending != null) {
+			current.pending.lazySet(slot, current.pending.get(slot) + 1);
+		}
+		statistics.recordHit();
+		return value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code id} is {@code null}.
+	 */
+	@Override public Option<V> get(final Long id) {
+		if (id == null) {
+			throw new IllegalArgumentException();
+		}
+		return new Option<V>(getOrNull(id));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code ids} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<Long, V> getAll(final Collection<? extends Long> ids) {
+		if (ids == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<Long, V> result = new HashMap<Long, V>();
+		for (final Long id : ids) {
+			if (id == null) {
+				throw new IllegalArgumentException();
+			}
+			final V value = getOrNull(id);
+			if (value != null) {
+				result.put(id, value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} The write lock is taken.
+	 *
+	 * @throws IllegalArgumentException if {@code object} is {@code null}.
+	 */
+	@Override public void offer(final V object) {
+		if (object == null) {
+			throw new IllegalArgumentException();
+		}
+		final long size = Checks.ensureNonNegative(getProperties().getSizer().estimate(object));
+		final long stamp = lock.writeLock();
+		try {
+			put(object, size);
+			evict();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} Sizes are estimated before the write lock is taken, and eviction is performed once for all objects.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		final long[] sizes = new long[objects.size()];
+		int i = 0;
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+			sizes[i++] = Checks.ensureNonNegative(getProperties().getSizer().estimate(object));
+		}
+		final long stamp = lock.writeLock();
+		try {
+			i = 0;
+			for (final V object : objects) {
+				put(object, sizes[i++]);
+			}
+			evict();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override public CacheStatistics getStatistics() {
+		return statistics.snapshot();
+	}
+
+	/**
+	 * Puts a given object of a given size into the table. Has to be called with the write lock held.
+	 *
+	 * @param object an object.
+	 * @param size size of the object.
+	 */
+	private void put(final V object, final long size) {
+		final long id = object.getLongId();
+		int slot = table.slotOf(id);
+		if (slot >= 0) {
+			statistics.recordWeight(size - table.sizes[slot]);
+			weight += size - table.sizes[slot];
+			table.values[slot] = object;
+			table.sizes[slot] = size;
+			if (queue != null) {
+				queue.update(table.node(slot), size);
+			}
+			return;
+		}
+		if ((live + deleted + 1) * 4L > table.keys.length * 3L) {
+			rehash(live * 2 >= table.keys.length ? table.keys.length * 2 : table.keys.length);
+		}
+		slot = table.freeSlot(id);
+		if (table.states[slot] == DELETED) {
+			deleted--;
+		}
+		final long now = System.currentTimeMillis();
+		table.keys[slot] = id;
+		table.values[slot] = object;
+		table.born[slot] = now;
+		table.lastAccess.set(slot, now);
+		table.hits.set(slot, 0L);
+		table.sizes[slot] = size;
+		if (queue != null) {
+			table.nodes[slot] = queue.add(id, size);
+			table.pending.set(slot, 0);
+		}
+		table.states[slot] = LIVE;
+		table.liveSlots[live] = slot;
+		table.positions[slot] = live;
+		live++;
+		weight += size;
+		statistics.recordAddition(size);
+	}
+
+	/**
+	 * Moves cached objects to a new table with a given number of slots, dropping removed ones.
+	 * Has to be called with the write lock held.
+	 *
+	 * @param capacity a new number of slots; it has to be a power of two.
+	 */
+	private void rehash(final int capacity) {
+		final Table previous = table;
+		final Table resized = new Table(capacity);
+		int position = 0;
+		for (int slot = 0; slot < previous.keys.length; slot++) {
+			if (previous.states[slot] == LIVE) {
+				final int target = resized.freeSlot(previous.keys[slot]);
+				previous.copy(slot, resized, target);
+				resized.liveSlots[position] = target;
+				resized.positions[target] = position;
+				position++;
+			}
+		}
+		deleted = 0;
+		table = resized;
+	}
+
+	/**
+	 * Evicts cached objects as necessary for satisfying cache limits. Has to be called with the write lock held.
+	 */
+	private void evict() {
+		final Limits<CacheLimit> limits = getProperties().getLimits();
+		if (queue != null) {
+			final int round = ++rounds;
+			while (queue.exceeds(limits)) {
+				final EvictionQueue.Node<Long> node = queue.head();
+				final int slot = table.slotOf(node.getKey());
+				if (table.pending.getAndSet(slot, 0) > 0 && table.rounds[slot] != round) {
+					table.rounds[slot] = round;
+					queue.touch(node);
+				} else {
+					evict(slot);
+				}
+			}
+			return;
+		}
+		if (live <= limits.getLimit(CacheLimit.ITEMS).longValue() && weight <= limits.getLimit(CacheLimit.SIZE).longValue()) {
+			return;
+		}
+		for (final Long key : selectForEviction(limits)) {
+			final int slot = table.slotOf(key);
+			if (slot >= 0) {
+				evict(slot);
+			}
+		}
+	}
+
+	/**
+	 * Evicts an object. Has to be called with the write lock held.
+	 *
+	 * @param slot a slot of the object.
+	 */
+	private void evict(final int slot) {
+		final V value = table.value(slot);
+		final long size = table.sizes[slot];
+		remove(slot);
+		statistics.recordEviction(EvictionCause.SIZE, size);
+		getProperties().getEvictionHandler().handle(value);
+	}
+
+	/**
+	 * Selects keys of cached objects which have to be evicted for satisfying given cache limits
+	 * when no eviction queue is used.
+	 *
+	 * @param limits cache limits.
+	 *
+	 * @return keys of objects to evict.
+	 */
+	private Collection<Long> selectForEviction(final Limits<CacheLimit> limits) {
+		final CacheEvictor<Long> evictor = getProperties().getEvictor();
+		if (evictor instanceof SamplingCacheEvictor) {
+			return ((SamplingCacheEvictor<Long>) evictor).select(new SamplingCacheEvictor.Sampler<Long>() {
+
+				@Override public CacheItemStatistics<Long> sample(final ThreadLocalRandom random) {
+					return table.snapshot(table.liveSlots[random.nextInt(live)]);
+				}
+
+			}, live, weight, limits);
+		}
+		final List<CacheItemStatistics<Long>> items = new ArrayList<CacheItemStatistics<Long>>(live);
+		for (int slot = 0; slot < table.keys.length; slot++) {
+			if (table.states[slot] == LIVE) {
+				items.add(table.snapshot(slot));
+			}
+		}
+		return evictor.evict(items, limits);
+	}
+
+	/**
+	 * Removes an object from the table and from the eviction queue. Has to be called with the write lock held.
+	 *
+	 * @param slot a slot of the object.
+	 */
+	private void remove(final int slot) {
+		if (queue != null) {
+			queue.remove(table.node(slot));
+			table.nodes[slot] = null;
+		}
+		live--;
+		// the last live slot takes the position of the removed one, so the array of live slots stays dense
+		final int last = table.liveSlots[live];
+		table.liveSlots[table.positions[slot]] = last;
+		table.positions[last] = table.positions[slot];
+		weight -= table.sizes[slot];
+		table.values[slot] = null;
+		table.states[slot] = DELETED;
+		deleted++;
+	}
+
+	/**
+	 * Parallel arrays of keys, objects, and their metadata indexed by slot. Arrays of
+	 * nodes, pending accesses and rounds exist only if an eviction queue is used.
+	 */
+	private final class Table {
+
+		/**
+		 * Keys.
+		 */
+		private final long[] keys;
+
+		/**
+		 * Cached objects.
+		 */
+		private final Object[] values;
+
+		/**
+		 * States of slots.
+		 */
+		private final byte[] states;
+
+		/**
+		 * Timestamps indicating when objects were added.
+		 */
+		private final long[] born;
+
+		/**
+		 * Timestamps of the latest accesses.
+		 */
+		private final AtomicLongArray lastAccess;
+
+		/**
+		 * Counters of hits.
+		 */
+		private final AtomicLongArray hits;
+
+		/**
+		 * Sizes of cached objects.
+		 */
+		private final long[] sizes;
+
+		/**
+		 * Nodes of the eviction queue, or {@code null}.
+		 */
+		private final Object[] nodes;
+
+		/**
+		 * Counters of accesses not applied to the eviction queue yet, or {@code null}.
+		 */
+		private final AtomicIntegerArray pending;
+
+		/**
+		 * The latest eviction rounds objects got another chance in, or {@code null}.
+		 */
+		private final int[] rounds;
+
+		/**
+		 * Slots of cached objects in no particular order; only the first {@code live} ones are valid.
+		 */
+		private final int[] liveSlots;
+
+		/**
+		 * Positions of slots of cached objects in the array of live slots.
+		 */
+		private final int[] positions;
+
+		/**
+		 * Creates a new empty table with a given number of slots.
+		 *
+		 * @param capacity a number of slots; it has to be a power of two.
+		 */
+		private Table(final int capacity) {
+			keys = new long[capacity];
+			values = new Object[capacity];
+			states = new byte[capacity];
+			born = new long[capacity];
+			lastAccess = new AtomicLongArray(capacity);
+			hits = new AtomicLongArray(capacity);
+			sizes = new long[capacity];
+			nodes = queue != null ? new Object[capacity] : null;
+			pending = queue != null ? new AtomicIntegerArray(capacity) : null;
+			rounds = queue != null ? new int[capacity] : null;
+			liveSlots = new int[capacity];
+			positions = new int[capacity];
+		}
+
+		/**
+		 * Returns a slot of a given key, or {@code -1} if not found.
+		 *
+		 * @param key a key.
+		 *
+		 * @return a slot of the key or {@code -1}.
+		 */
+		private int slotOf(final long key) {
+			final int mask = keys.length - 1;
+			for (int slot = Hashing.spread(Long.hashCode(key)) & mask; ; slot = (slot + 1) & mask) {
+				final byte state = states[slot];
+				if (state == EMPTY) {
+					return -1;
+				}
+				if (state == LIVE && keys[slot] == key) {
+					return slot;
+				}
+			}
+		}
+
+		/**
+		 * Returns the first slot not holding an object for a given key.
+		 *
+		 * @param key a key.
+		 *
+		 * @return a free slot.
+		 */
+		private int freeSlot(final long key) {
+			final int mask = keys.length - 1;
+			int slot = Hashing.spread(Long.hashCode(key)) & mask;
+			while (states[slot] == LIVE) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Returns an object held in a slot.
+		 *
+		 * @param slot a slot.
+		 *
+		 * @return an object or {@code null}.
+		 */
+		@SuppressWarnings({"unchecked"})
+		private V value(final int slot) {
+			return (V) values[slot];
+		}
+
+		/**
+		 * Returns a node of the eviction queue held in a slot.
+		 *
+		 * @param slot a slot.
+		 *
+		 * @return a node or {@code null}.
+		 */
+		@SuppressWarnings({"unchecked"})
+		private EvictionQueue.Node<Long> node(final int slot) {
+			return (EvictionQueue.Node<Long>) nodes[slot];
+		}
+
+		/**
+		 * Returns a snapshot of statistics of a key. This method never returns {@code null}.
+		 *
+		 * @param slot a slot of the key.
+		 *
+		 * @return a snapshot of statistics.
+		 */
+		private CacheItemStatistics<Long> snapshot(final int slot) {
+			return CacheItemStatistics.snapshot(keys[slot], born[slot], lastAccess.get(slot), hits.get(slot), sizes[slot]);
+		}
+
+		/**
+		 * Copies an object and its metadata to a slot of another table.
+		 *
+		 * @param slot a slot of the object.
+		 * @param target another table.
+		 * @param targetSlot a free slot of another table.
+		 */
+		private void copy(final int slot, final Table target, final int targetSlot) {
+			target.keys[targetSlot] = keys[slot];
+			target.values[targetSlot] = values[slot];
+			target.states[targetSlot] = states[slot];
+			target.born[targetSlot] = born[slot];
+			target.lastAccess.set(targetSlot, lastAccess.get(slot));
+			target.hits.set(targetSlot, hits.get(slot));
+			target.sizes[targetSlot] = sizes[slot];
+			if (nodes != null) {
+				target.nodes[targetSlot] = nodes[slot];
+				target.pending.set(targetSlot, pending.get(slot));
+				target.rounds[targetSlot] = rounds[slot];
+			}
+		}
+
+	}
+
+}
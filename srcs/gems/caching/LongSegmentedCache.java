@@ -0,0 +1,153 @@
+package gems.caching;
+
+import gems.LongIdentifiable;
+import gems.Option;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A segmented cache of objects identified by primitive keys. It holds a flat long-keyed cache for each
+ * segment and delegates operations to these segments. If the cache segmenter is a {@code HashSegmenter},
+ * keys are routed by their hash codes without boxing; otherwise they are boxed for the segmenter. The
+ * number of segments is fixed, and cache limits of properties are limits of each segment.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> type of cached values.
+ */
+final class LongSegmentedCache<V extends LongIdentifiable> extends AbstractCacheComponent<V, Long> implements LongCache<V> {
+
+	/**
+	 * Segments.
+	 */
+	private final List<LongFlatCache<V>> segments;
+
+	/**
+	 * The segmenter if it routes hash codes, or {@code null}.
+	 */
+	private final HashSegmenter<? super Long> hashing;
+
+	/**
+	 * Creates a new segmented cache.
+	 *
+	 * @param properties cache properties.
+	 *
+	 * @throws gems.UnexpectedNullException if {@code properties} argument is {@code null}.
+	 */
+	LongSegmentedCache(final CacheProperties<V, Long> properties) {
+		super(properties);
+		final CacheSegmenter<? super Long> segmenter = getProperties().getSegmenter();
+		final int count = segmenter.maxSegments();
+		segments = new ArrayList<LongFlatCache<V>>(count);
+		for (int i = 0; i < count; i++) {
+			segments.add(new LongFlatCache<V>(getProperties()));
+		}
+		hashing = segmenter instanceof HashSegmenter ? (HashSegmenter<? super Long>) segmenter : null;
+	}
+
+	/**
+	 * Finds appropriate segment for a given key.
+	 *
+	 * @param id a key.
+	 *
+	 * @return appropriate segment for a given key.
+	 */
+	private LongFlatCache<V> getSegment(final long id) {
+		if (hashing != null) {
+			return segments.get(hashing.getSegmentOfHash(Long.hashCode(id)));
+		}
+		return segments.get(getProperties().getSegmenter().getSegment(id));
+	}
+
+	@Override public V getOrNull(final long id) {
+		return getSegment(id).getOrNull(id);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code id} is {@code null}.
+	 */
+	@Override public Option<V> get(final Long id) {
+		if (id == null) {
+			throw new IllegalArgumentException();
+		}
+		return new Option<V>(getOrNull(id));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code object} is {@code null}.
+	 */
+	@Override public void offer(final V object) {
+		if (object == null) {
+			throw new IllegalArgumentException();
+		}
+		getSegment(object.getLongId()).offer(object);
+	}
+
+	/**
+	 * {@inheritDoc} Objects are grouped by segments, so each segment is locked once.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<LongFlatCache<V>, List<V>> groups = new HashMap<LongFlatCache<V>, List<V>>();
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+			final LongFlatCache<V> segment = getSegment(object.getLongId());
+			List<V> group = groups.get(segment);
+			if (group == null) {
+				group = new ArrayList<V>();
+				groups.put(segment, group);
+			}
+			group.add(object);
+		}
+		for (final Map.Entry<LongFlatCache<V>, List<V>> group : groups.entrySet()) {
+			group.getKey().offerAll(group.getValue());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code ids} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<Long, V> getAll(final Collection<? extends Long> ids) {
+		if (ids == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<Long, V> result = new HashMap<Long, V>();
+		for (final Long id : ids) {
+			if (id == null) {
+				throw new IllegalArgumentException();
+			}
+			final V value = getOrNull(id);
+			if (value != null) {
+				result.put(id, value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} Statistics are summed over segments, and statistics of segments are kept as a breakdown.
+	 */
+	@Override public CacheStatistics getStatistics() {
+		final List<CacheStatistics> parts = new ArrayList<CacheStatistics>(segments.size());
+		for (final LongFlatCache<V> segment : segments) {
+			parts.add(segment.getStatistics());
+		}
+		return CacheStatistics.sum(parts);
+	}
+
+}
@@ -0,0 +1,50 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A cache which supports bulk operations and reports cache-wide statistics. All caches created
+ * by {@code gems.caching.CacheFactory} and {@code gems.caching.LongCacheFactory} implement this
+ * interface; {@code CacheFactory.provideManaged()} and {@code LongCacheFactory} return caches
+ * typed by it, while {@code CacheFactory.provide()} keeps returning plain caches. Other implementations of
+ * {@code Cache} do not have to implement it.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+public interface ManagedCache<V extends Identifiable<K>, K> extends Cache<V, K> {
+
+	/**
+	 * Offers given objects for a caching at once. The effect is the same as offering
+	 * the objects one by one, but implementations may amortize their locking and
+	 * eviction over the whole collection.
+	 *
+	 * @param objects objects offered for a caching.
+	 */
+	void offerAll(Collection<? extends V> objects);
+
+	/**
+	 * Returns objects identified by given keys at once. The returned map holds
+	 * only objects found in the cache, keyed by their identifiers; keys of objects
+	 * not found are simply missing. This method should never return {@code null}.
+	 *
+	 * @param ids IDs of required objects.
+	 *
+	 * @return a map of found objects by their IDs.
+	 */
+	Map<K, V> getAll(Collection<? extends K> ids);
+
+	/**
+	 * Returns a snapshot of cache-wide statistics. Recording of statistics takes no locks, so
+	 * the snapshot does not have to be consistent with concurrent operations. This method should
+	 * never return {@code null}.
+	 *
+	 * @return a snapshot of cache-wide statistics.
+	 */
+	CacheStatistics getStatistics();
+
+}
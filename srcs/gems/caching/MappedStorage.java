@@ -0,0 +1,559 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.Option;
+import gems.io.RuntimeIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A storage keeping values in memory-mapped segment files in a directory. Values are encoded by
+ * a codec and appended as records to the active segment; when it is full, it is sealed and a new
+ * one is created. Writes are therefore sequential and reads are served from the page cache. An
+ * in-memory index maps keys to locations of their records, i.e. to segments and offsets.
+ * <p/>
+ * A record is a length of data, a state, and the data. The state is written last, so a record
+ * interrupted by a crash is never read back. Replaced or removed records are marked dead in place.
+ * When live data of a sealed segment drop below a half of it, the segment is compacted in the
+ * background: its live records are appended to the active segment and its file is deleted.
+ * <p/>
+ * When a storage is created on a directory which already contains segments, the index is rebuilt
+ * by scanning them, so cached values survive restarts. Records are scanned in order of writing and
+ * later records of the same key win. Please note that mapped files are flushed to the disk by the
+ * operating system, so values survive a restart of the virtual machine, but not necessarily a crash
+ * of the system.
+ * <p/>
+ * <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ */
+final class MappedStorage<K, V extends Identifiable<K>> extends AbstractStorage<K, V> {
+
+	/**
+	 * Size of a record header in bytes.
+	 */
+	private static final int HEADER = 8;
+
+	/**
+	 * Offset of a state in a record header.
+	 */
+	private static final int STATE = 4;
+
+	/**
+	 * A state of a record which has not been completely written.
+	 */
+	private static final int INCOMPLETE = 0;
+
+	/**
+	 * A state of a live record.
+	 */
+	private static final int LIVE = 1;
+
+	/**
+	 * A state of a replaced or removed record.
+	 */
+	private static final int DEAD = 2;
+
+	/**
+	 * Number of records compacted under a single lock acquisition.
+	 */
+	private static final int COMPACTION_BATCH = 64;
+
+	/**
+	 * A prefix of segment file names.
+	 */
+	private static final String PREFIX = "segment-";
+
+	/**
+	 * A suffix of segment file names.
+	 */
+	private static final String SUFFIX = ".dat";
+
+	/**
+	 * A directory of segment files.
+	 */
+	private final File directory;
+
+	/**
+	 * A codec of values.
+	 */
+	private final Codec<V> codec;
+
+	/**
+	 * Size of regular segments in bytes.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * An executor of compactions.
+	 */
+	private final Executor compactor;
+
+	/**
+	 * A lock guarding segments and the index; compaction holds the write lock only briefly.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Segments by their numbers.
+	 */
+	private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+	/**
+	 * Locations of records by keys.
+	 */
+	private final Map<K, Long> index = new HashMap<K, Long>();
+
+	/**
+	 * The segment new records are appended to.
+	 */
+	private Segment active;
+
+	/**
+	 * Creates a new storage in a given directory, reopening segments found there.
+	 *
+	 * @param directory a directory of segment files; it is created if it does not exist.
+	 * @param codec a codec of values.
+	 * @param segmentSize size of segments in bytes.
+	 * @param compactor an executor of compactions.
+	 *
+	 * @throws RuntimeIOException if the directory or segments cannot be accessed.
+	 */
+	MappedStorage(final File directory, final Codec<V> codec, final int segmentSize, final Executor compactor) {
+		this.directory = Checks.assertNotNull(directory);
+		this.codec = Checks.assertNotNull(codec);
+		this.segmentSize = Checks.assertPositive(segmentSize);
+		this.compactor = Checks.assertNotNull(compactor);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new RuntimeIOException(directory.getPath());
+		}
+		reopen();
+		active = segments.isEmpty() ? createSegment(1, segmentSize) : segments.lastEntry().getValue();
+		for (final Segment segment : new ArrayList<Segment>(segments.values())) {
+			scheduleCompactionIfSparse(segment);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws RuntimeIOException if a new segment cannot be created.
+	 */
+	@Override void store(final V value) {
+		final byte[] data = codec.encode(value);
+		lock.writeLock().lock();
+		try {
+			final Long previous = index.put(value.getId(), append(data));
+			if (previous != null) {
+				kill(previous);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}.
+	 */
+	@Override public Option<V> provide(final Option<K> key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		if (!key.hasValue()) {
+			return new Option<V>(null);
+		}
+		final byte[] data;
+		lock.readLock().lock();
+		try {
+			final Long location = index.get(key.getValue());
+			if (location == null) {
+				return new Option<V>(null);
+			}
+			data = read(location);
+		} finally {
+			lock.readLock().unlock();
+		}
+		return new Option<V>(codec.decode(data));
+	}
+
+	@Override void discard(final K key) {
+		lock.writeLock().lock();
+		try {
+			final Long location = index.remove(key);
+			if (location != null) {
+				kill(location);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns an unmodifiable iterator over values stored at the time of the call.
+	 * Values are decoded one by one; values removed meantime are skipped.
+	 *
+	 * @return an iterator over stored values.
+	 */
+	@Override public Iterator<V> iterator() {
+		final List<K> keys;
+		lock.readLock().lock();
+		try {
+			keys = new ArrayList<K>(index.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+		return new Iterator<V>() {
+
+			private final Iterator<K> iterator = keys.iterator();
+
+			private V next = advance();
+
+			private V advance() {
+				while (iterator.hasNext()) {
+					final Option<V> value = provide(new Option<K>(iterator.next()));
+					if (value.hasValue()) {
+						return value.getValue();
+					}
+				}
+				return null;
+			}
+
+			@Override public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override public V next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				final V result = next;
+				next = advance();
+				return result;
+			}
+
+			@Override public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * Returns number of segments.
+	 *
+	 * @return number of segments.
+	 */
+	int segments() {
+		lock.readLock().lock();
+		try {
+			return segments.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Rebuilds the index from segment files found in the directory.
+	 */
+	private void reopen() {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			throw new RuntimeIOException(directory.getPath());
+		}
+		for (final File file : files) {
+			final String name = file.getName();
+			if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+				final int number = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+				segments.put(number, mapSegment(number, file, (int) file.length()));
+			}
+		}
+		for (final Segment segment : segments.values()) {
+			int offset = 0;
+			while (offset + HEADER <= segment.capacity && segment.buffer.getInt(offset + STATE) != INCOMPLETE) {
+				final int length = segment.buffer.getInt(offset);
+				if (length < 0 || length > segment.capacity - offset - HEADER) {
+					break; // a corrupted record, nothing after it can be trusted
+				}
+				if (segment.buffer.getInt(offset + STATE) == LIVE) {
+					final long location = locationOf(segment.number, offset);
+					final Long previous = index.put(codec.decode(read(location)).getId(), location);
+					if (previous != null) {
+						markDead(previous);
+					}
+					segment.live += HEADER + length;
+				}
+				offset += HEADER + length;
+			}
+			segment.position = offset;
+		}
+	}
+
+	/**
+	 * Appends a new live record holding given data and returns its location. Has to be
+	 * called with the write lock held.
+	 *
+	 * @param data data.
+	 *
+	 * @return a location of the new record.
+	 */
+	private long append(final byte[] data) {
+		final int length = HEADER + data.length;
+		if (active.position + length > active.capacity) {
+			active = createSegment(segments.lastKey() + 1, Math.max(segmentSize, length));
+		}
+		final int offset = active.position;
+		final ByteBuffer buffer = active.buffer.duplicate();
+		buffer.position(offset + HEADER);
+		buffer.put(data);
+		active.buffer.putInt(offset, data.length);
+		active.buffer.putInt(offset + STATE, LIVE);
+		active.position += length;
+		active.live += length;
+		return locationOf(active.number, offset);
+	}
+
+	/**
+	 * Returns data of a record at a given location. Has to be called with a lock held.
+	 *
+	 * @param location a location of a record.
+	 *
+	 * @return data of the record.
+	 */
+	private byte[] read(final long location) {
+		final Segment segment = segments.get(segmentOf(location));
+		final ByteBuffer buffer = segment.buffer.duplicate();
+		buffer.position(offsetOf(location));
+		final byte[] result = new byte[buffer.getInt()];
+		buffer.position(offsetOf(location) + HEADER);
+		buffer.get(result);
+		return result;
+	}
+
+	/**
+	 * Marks a record at a given location dead. Has to be called with the write lock held.
+	 *
+	 * @param location a location of a live record.
+	 */
+	private void kill(final long location) {
+		scheduleCompactionIfSparse(markDead(location));
+	}
+
+	/**
+	 * Marks a record at a given location dead without scheduling compaction and returns its
+	 * segment. Has to be called with the write lock held.
+	 *
+	 * @param location a location of a live record.
+	 *
+	 * @return a segment of the record.
+	 */
+	private Segment markDead(final long location) {
+		final Segment segment = segments.get(segmentOf(location));
+		final int offset = offsetOf(location);
+		segment.buffer.putInt(offset + STATE, DEAD);
+		segment.live -= HEADER + segment.buffer.getInt(offset);
+		return segment;
+	}
+
+	/**
+	 * Schedules compaction of a given segment if it is sealed and less than a half of it is live.
+	 *
+	 * @param segment a segment.
+	 */
+	private void scheduleCompactionIfSparse(final Segment segment) {
+		if (segment != active && !segment.compacting && segment.live < segment.capacity / 2L) {
+			segment.compacting = true;
+			compactor.execute(new Runnable() {
+
+				@Override public void run() {
+					compact(segment);
+				}
+
+			});
+		}
+	}
+
+	/**
+	 * Moves live records of a given sealed segment to the active segment and deletes the segment.
+	 * The write lock is released after each batch of records, so readers are not blocked for long.
+	 *
+	 * @param segment a sealed segment.
+	 */
+	private void compact(final Segment segment) {
+		int offset = 0;
+		while (offset < segment.position) {
+			lock.writeLock().lock();
+			try {
+				for (int i = 0; i < COMPACTION_BATCH && offset < segment.position; i++) {
+					final int length = segment.buffer.getInt(offset);
+					if (segment.buffer.getInt(offset + STATE) == LIVE) {
+						final long location = locationOf(segment.number, offset);
+						final byte[] data = read(location);
+						index.put(codec.decode(data).getId(), append(data));
+						segment.buffer.putInt(offset + STATE, DEAD);
+					}
+					offset += HEADER + length;
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		lock.writeLock().lock();
+		try {
+			segments.remove(segment.number);
+			if (!segment.file.delete()) {
+				segment.file.deleteOnExit();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Creates a new segment file of a given number and size.
+	 *
+	 * @param number a number of segment.
+	 * @param size size of segment in bytes.
+	 *
+	 * @return a new segment.
+	 */
+	private Segment createSegment(final int number, final int size) {
+		final Segment result = mapSegment(number, new File(directory, String.format("%s%08d%s", PREFIX, number, SUFFIX)), size);
+		segments.put(number, result);
+		return result;
+	}
+
+	/**
+	 * Maps a given segment file of a given size into memory.
+	 *
+	 * @param number a number of segment.
+	 * @param file a segment file.
+	 * @param size size of segment in bytes.
+	 *
+	 * @return a mapped segment.
+	 *
+	 * @throws RuntimeIOException if the file cannot be mapped.
+	 */
+	private static Segment mapSegment(final int number, final File file, final int size) {
+		try {
+			final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				return new Segment(number, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, size));
+			} finally {
+				raf.close();
+			}
+		} catch (final IOException e) {
+			throw new RuntimeIOException(file.getPath(), e);
+		}
+	}
+
+	/**
+	 * Encodes a location of a record.
+	 *
+	 * @param segment a number of segment.
+	 * @param offset an offset in the segment.
+	 *
+	 * @return a location.
+	 */
+	private static long locationOf(final int segment, final int offset) {
+		return ((long) segment << 32) | (offset & 0xffffffffL);
+	}
+
+	/**
+	 * Returns a number of segment of a given location.
+	 *
+	 * @param location a location.
+	 *
+	 * @return a number of segment.
+	 */
+	private static int segmentOf(final long location) {
+		return (int) (location >>> 32);
+	}
+
+	/**
+	 * Returns an offset in segment of a given location.
+	 *
+	 * @param location a location.
+	 *
+	 * @return an offset in segment.
+	 */
+	private static int offsetOf(final long location) {
+		return (int) location;
+	}
+
+	/**
+	 * A memory-mapped segment file.
+	 */
+	private static final class Segment {
+
+		/**
+		 * A number of the segment.
+		 */
+		private final int number;
+
+		/**
+		 * A segment file.
+		 */
+		private final File file;
+
+		/**
+		 * Mapped content of the file.
+		 */
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * Size of the segment in bytes.
+		 */
+		private final int capacity;
+
+		/**
+		 * An offset where the next record is appended.
+		 */
+		private int position;
+
+		/**
+		 * Number of bytes of live records.
+		 */
+		private long live;
+
+		/**
+		 * A flag indicating that compaction of the segment has been scheduled.
+		 */
+		private boolean compacting;
+
+		/**
+		 * Creates a new segment.
+		 *
+		 * @param number a number of the segment.
+		 * @param file a segment file.
+		 * @param buffer mapped content of the file.
+		 */
+		private Segment(final int number, final File file, final MappedByteBuffer buffer) {
+			this.number = number;
+			this.file = file;
+			this.buffer = buffer;
+			capacity = buffer.capacity();
+		}
+
+	}
+
+}
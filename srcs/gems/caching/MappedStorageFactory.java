@@ -0,0 +1,197 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.NumericValueOutOfRangeException;
+import gems.UnexpectedNullException;
+import gems.io.RuntimeIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides storages keeping cached objects in memory-mapped segment files, so a cache can hold
+ * more data than fits into memory while reads of recently used data are served from the page
+ * cache. Storages are created for owners, i.e. flat parts of a cache, each owner having one
+ * storage per partition. Each owner gets its own numbered subdirectory of a given directory
+ * in order of creation, and each partition gets its own numbered subdirectory of it. The number
+ * of partitions of an owner is persisted in its directory, and an owner created again gets the
+ * persisted number of partitions, even if a different number is requested, e.g. because number
+ * of available processors differs. A cache created again with the same properties on the same
+ * directory therefore reopens storages with their content, routes keys to the same storages,
+ * and it does not start cold. The directory identifies the cache, so each cache needs its own
+ * factory and directory; otherwise caches could reopen storages of each other when created
+ * in a different order. Objects of reopened storages are evicted down to current cache limits,
+ * and their expiration starts over as they were stored at the time of reopening.
+ * <p/>
+ * Segments whose live data drop below a half are compacted in the background by a given executor,
+ * or by a single daemon thread shared by all storages of the factory.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys identifying cached objects.
+ * @param <V> type of cached objects.
+ */
+public final class MappedStorageFactory<K, V extends Identifiable<K>> implements StorageFactory<K, V> {
+
+	/**
+	 * Default size of segment files in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+	/**
+	 * A name of the file keeping number of partitions of an owner.
+	 */
+	private static final String PARTITIONS = "partitions";
+
+	/**
+	 * A directory of storages.
+	 */
+	private final File directory;
+
+	/**
+	 * A codec of cached objects.
+	 */
+	private final Codec<V> codec;
+
+	/**
+	 * Size of segment files in bytes.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * An executor of compactions.
+	 */
+	private final Executor compactor;
+
+	/**
+	 * A number of the next owner of storages.
+	 */
+	private final AtomicInteger owners = new AtomicInteger();
+
+	/**
+	 * Creates a new factory using segments of the default size and its own compaction thread.
+	 *
+	 * @param directory a directory of storages.
+	 * @param codec a codec of cached objects.
+	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 */
+	public MappedStorageFactory(final File directory, final Codec<V> codec) {
+		this(directory, codec, DEFAULT_SEGMENT_SIZE, newCompactor());
+	}
+
+	/**
+	 * Creates a new factory.
+	 *
+	 * @param directory a directory of storages.
+	 * @param codec a codec of cached objects.
+	 * @param segmentSize size of segment files in bytes; larger objects get their own segments.
+	 * @param compactor an executor of compactions.
+	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code segmentSize} is not positive.
+	 */
+	public MappedStorageFactory(final File directory, final Codec<V> codec, final int segmentSize, final Executor compactor) {
+		this.directory = Checks.ensureNotNull(directory);
+		this.codec = Checks.ensureNotNull(codec);
+		this.segmentSize = Checks.ensurePositive(segmentSize);
+		this.compactor = Checks.ensureNotNull(compactor);
+	}
+
+	/**
+	 * {@inheritDoc} The storage is the only partition of a new owner.
+	 *
+	 * @throws RuntimeIOException if the storage directory cannot be created or read.
+	 * @throws IllegalStateException if the directory of the owner has an unknown layout.
+	 */
+	@Override public Storage<K, V> getStorage() {
+		return getStorages(1).get(0);
+	}
+
+	/**
+	 * Returns storages of all partitions of a new owner. If the owner was created before, it gets
+	 * the persisted number of partitions instead of the requested one. This method never returns
+	 * {@code null}.
+	 *
+	 * @param partitions a requested number of partitions.
+	 *
+	 * @return storages of partitions of a new owner.
+	 *
+	 * @throws RuntimeIOException if directories or the number of partitions cannot be created or read.
+	 * @throws IllegalStateException if the directory of the owner contains data, but not a valid number of partitions.
+	 */
+	List<Storage<K, V>> getStorages(final int partitions) {
+		final File owner = new File(directory, String.valueOf(owners.getAndIncrement()));
+		final int count = layout(owner, Checks.assertPositive(partitions));
+		final List<Storage<K, V>> result = new ArrayList<Storage<K, V>>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(new MappedStorage<K, V>(new File(owner, String.valueOf(i)), codec, segmentSize, compactor));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of partitions persisted in a given directory of an owner, or persists a given number
+	 * if the directory is new or empty.
+	 *
+	 * @param owner a directory of an owner.
+	 * @param partitions a requested number of partitions.
+	 *
+	 * @return a number of partitions of the owner.
+	 *
+	 * @throws RuntimeIOException if the directory or the number of partitions cannot be created or read.
+	 * @throws IllegalStateException if the directory contains data, but not a valid number of partitions.
+	 */
+	private static int layout(final File owner, final int partitions) {
+		final File file = new File(owner, PARTITIONS);
+		try {
+			if (file.isFile()) {
+				final int result = Integer.parseInt(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim());
+				if (result <= 0) {
+					throw new IllegalStateException(file.getPath());
+				}
+				return result;
+			}
+			final String[] content = owner.list();
+			if (content != null && content.length > 0) {
+				throw new IllegalStateException(owner.getPath());
+			}
+			if (!owner.isDirectory() && !owner.mkdirs()) {
+				throw new RuntimeIOException(owner.getPath());
+			}
+			Files.write(file.toPath(), String.valueOf(partitions).getBytes(StandardCharsets.US_ASCII));
+			return partitions;
+		} catch (final NumberFormatException e) {
+			throw new IllegalStateException(file.getPath(), e);
+		} catch (final IOException e) {
+			throw new RuntimeIOException(file.getPath(), e);
+		}
+	}
+
+	/**
+	 * Creates a single-thread executor using a daemon thread.
+	 *
+	 * @return a new executor.
+	 */
+	private static ExecutorService newCompactor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override public Thread newThread(final Runnable runnable) {
+				final Thread result = new Thread(runnable, "gems-caching-compactor");
+				result.setDaemon(true);
+				return result;
+			}
+
+		});
+	}
+
+}
@@ -12,10 +12,7 @@ final class MemoryStorage<K, V extends Identifiable<K>> extends AbstractStorage<
 
 	private final Map<K, V> map = new HashMap<K, V>();
 
-	@Override public void put(final V value) {
-		if (value == null) {
-			throw new IllegalArgumentException();
-		}
+	@Override void store(final V value) {
 		map.put(value.getId(), value);
 	}
 
@@ -29,10 +26,7 @@ final class MemoryStorage<K, V extends Identifiable<K>> extends AbstractStorage<
 		return new Option<V>(null);
 	}
 
-	@Override public void remove(final K key) {
-		if (key == null) {
-			throw new IllegalArgumentException();
-		}
+	@Override void discard(final K key) {
 		map.remove(key);
 	}
 
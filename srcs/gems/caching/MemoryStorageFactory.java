@@ -2,7 +2,15 @@ package gems.caching;
 
 import gems.Identifiable;
 
-final class MemoryStorageFactory<K, V extends Identifiable<K>> implements StorageFactory<K, V> {
+/**
+ * Provides storages keeping cached objects on the heap, in hash tables. This is the default
+ * storage factory of caches.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys identifying cached objects.
+ * @param <V> type of cached objects.
+ */
+public final class MemoryStorageFactory<K, V extends Identifiable<K>> implements StorageFactory<K, V> {
 
 	@Override public Storage<K, V> getStorage() {
 		return new MemoryStorage<K, V>();
@@ -0,0 +1,238 @@
+package gems.caching;
+
+import gems.AbstractIdentifiable;
+import gems.Checks;
+import gems.NumericValueOutOfRangeException;
+import gems.Option;
+import gems.StaticLimits;
+import gems.UnexpectedNullException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of keys an object provider has no object for, used by {@code CachingObjectProvider}
+ * to avoid asking the provider for the same missing objects again and again. Keys are kept
+ * for a fixed time to live, so objects created later are provided after the time elapses at
+ * the latest, and the number of kept keys is capped; least recently used keys are evicted first.
+ * <p/>
+ * Optionally, keys are also added to a Bloom filter in front of the cache. Keys which have
+ * definitely not been added are then answered by the filter, without touching the cache at all,
+ * which is the common case when most requested objects exist. As keys cannot be removed from
+ * a Bloom filter, two generations of filters are kept, and the older one is dropped whenever
+ * the time to live elapses or the younger one is full. <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of object keys.
+ */
+public final class NegativeCache<K> {
+
+	/**
+	 * A false positive rate turning the Bloom filter off.
+	 */
+	public static final double NO_BLOOM_FILTER = 0.0;
+
+	/**
+	 * A default false positive rate of the Bloom filter.
+	 */
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+	/**
+	 * A cache of missing keys.
+	 */
+	private final ManagedCache<Miss<K>, K> cache;
+
+	/**
+	 * Time to live of kept keys in milliseconds.
+	 */
+	private final long timeToLive;
+
+	/**
+	 * Maximal number of kept keys.
+	 */
+	private final long maxKeys;
+
+	/**
+	 * A false positive rate of the Bloom filter, or {@code NO_BLOOM_FILTER}.
+	 */
+	private final double falsePositiveRate;
+
+	/**
+	 * The younger generation of the Bloom filter, or {@code null} if the filter is off.
+	 */
+	private volatile BloomFilter current;
+
+	/**
+	 * The older generation of the Bloom filter, or {@code null}.
+	 */
+	private volatile BloomFilter previous;
+
+	/**
+	 * A time the younger generation was created at.
+	 */
+	private volatile long rotated;
+
+	/**
+	 * A counter of lookups answered by the Bloom filter.
+	 */
+	private final LongAdder filtered = new LongAdder();
+
+	/**
+	 * Creates a new negative cache without a Bloom filter.
+	 *
+	 * @param timeToLive time to live of kept keys in milliseconds.
+	 * @param maxKeys maximal number of kept keys.
+	 *
+	 * @throws NumericValueOutOfRangeException if any of arguments is not positive.
+	 */
+	public NegativeCache(final long timeToLive, final long maxKeys) {
+		this(timeToLive, maxKeys, NO_BLOOM_FILTER);
+	}
+
+	/**
+	 * Creates a new negative cache with a Bloom filter of a given false positive rate.
+	 *
+	 * @param timeToLive time to live of kept keys in milliseconds.
+	 * @param maxKeys maximal number of kept keys.
+	 * @param falsePositiveRate a false positive rate of the Bloom filter, or {@code NO_BLOOM_FILTER}.
+	 *
+	 * @throws NumericValueOutOfRangeException if {@code timeToLive} or {@code maxKeys} is not positive,
+	 *         or if {@code falsePositiveRate} is negative or not less than one.
+	 */
+	public NegativeCache(final long timeToLive, final long maxKeys, final double falsePositiveRate) {
+		this.timeToLive = Checks.ensurePositive(timeToLive);
+		this.maxKeys = Checks.ensurePositive(maxKeys);
+		if (Checks.ensureNonNegative(falsePositiveRate) >= 1.0) {
+			throw new NumericValueOutOfRangeException();
+		}
+		this.falsePositiveRate = falsePositiveRate;
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, maxKeys);
+		final Option<ManagedCache<Miss<K>, K>> created = new CacheFactory<Miss<K>, K>().provideManaged(new Option<CacheProperties<Miss<K>, K>>(
+				new CacheProperties.Builder<Miss<K>, K>(limits)
+						.with(CacheConcurrency.LOCK_FREE_READS)
+						.with(new FixedExpirationPolicy<Miss<K>>(timeToLive, ExpirationPolicy.NEVER))
+						.build()
+		));
+		if (!created.hasValue()) {
+			throw new IllegalStateException();
+		}
+		cache = created.getValue();
+		if (falsePositiveRate != NO_BLOOM_FILTER) {
+			current = new BloomFilter(maxKeys, falsePositiveRate);
+			rotated = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Checks whether a given key is known to be missing.
+	 *
+	 * @param key a key.
+	 *
+	 * @return {@code true} if the key is known to be missing, {@code false} otherwise.
+	 */
+	boolean contains(final K key) {
+		final BloomFilter younger = current;
+		if (younger != null) {
+			final BloomFilter older = previous;
+			final int hash = key.hashCode();
+			if (!younger.mightContain(hash) && (older == null || !older.mightContain(hash))) {
+				filtered.increment();
+				return false;
+			}
+		}
+		return cache.get(key).hasValue();
+	}
+
+	/**
+	 * Records a given key as missing.
+	 *
+	 * @param key a key.
+	 */
+	void add(final K key) {
+		cache.offer(new Miss<K>(key));
+		addToFilter(key);
+	}
+
+	/**
+	 * Records given keys as missing at once.
+	 *
+	 * @param keys keys.
+	 */
+	void addAll(final Collection<? extends K> keys) {
+		final List<Miss<K>> misses = new ArrayList<Miss<K>>(keys.size());
+		for (final K key : keys) {
+			misses.add(new Miss<K>(key));
+		}
+		cache.offerAll(misses);
+		for (final K key : keys) {
+			addToFilter(key);
+		}
+	}
+
+	/**
+	 * Adds a given key to the Bloom filter, if it is on, dropping the older generation if necessary.
+	 * A key is added before it can be dropped, so it is always found in one of generations until
+	 * its time to live elapses, unless the younger generation gets full.
+	 *
+	 * @param key a key.
+	 */
+	private void addToFilter(final K key) {
+		if (current == null) {
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		if (now - rotated >= timeToLive || current.getCount() >= maxKeys) {
+			synchronized (this) {
+				if (now - rotated >= timeToLive || current.getCount() >= maxKeys) {
+					previous = current;
+					current = new BloomFilter(maxKeys, falsePositiveRate);
+					rotated = now;
+				}
+			}
+		}
+		current.add(key.hashCode());
+	}
+
+	/**
+	 * Returns a snapshot of statistics of the cache of missing keys; lookups answered
+	 * by the Bloom filter are not included. This method never returns {@code null}.
+	 *
+	 * @return a snapshot of statistics.
+	 */
+	public CacheStatistics getStatistics() {
+		return cache.getStatistics();
+	}
+
+	/**
+	 * Returns number of lookups answered by the Bloom filter without touching the cache.
+	 *
+	 * @return number of lookups answered by the Bloom filter.
+	 */
+	public long getFiltered() {
+		return filtered.sum();
+	}
+
+	/**
+	 * A missing key kept in the cache.
+	 *
+	 * @param <K> type of the key.
+	 */
+	private static final class Miss<K> extends AbstractIdentifiable<K> {
+
+		/**
+		 * Creates a new record of a missing key.
+		 *
+		 * @param key a key.
+		 *
+		 * @throws UnexpectedNullException if {@code key} is {@code null}.
+		 */
+		private Miss(final K key) {
+			super(key);
+		}
+
+	}
+
+}
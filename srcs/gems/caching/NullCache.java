@@ -3,6 +3,10 @@ package gems.caching;
 import gems.Identifiable;
 import gems.Option;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This is a type-safe null-implementation of {@code Cache} interface.
  * It effectively does nothing except sanity checks of input arguments,
@@ -14,7 +18,7 @@ import gems.Option;
  * @param <V> a type of cached objects.
  * @param <K> a type of keys identifying cached objects.
  */
-public final class NullCache<V extends Identifiable<K>, K> implements Cache<V, K> {
+public final class NullCache<V extends Identifiable<K>, K> implements ManagedCache<V, K> {
 
 	/**
 	 * Does nothing.
@@ -45,4 +49,48 @@ public final class NullCache<V extends Identifiable<K>, K> implements Cache<V, K
 		return new Option<V>(null);
 	}
 
+	/**
+	 * Does nothing.
+	 *
+	 * @param objects ignored except {@code null} sanity checks.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final V object : objects) {
+			offer(object);
+		}
+	}
+
+	/**
+	 * Returns an empty map.
+	 *
+	 * @param ids ignored except {@code null} sanity checks.
+	 *
+	 * @return always a new empty map.
+	 *
+	 * @throws IllegalArgumentException if {@code ids} is {@code null} or contains {@code null}.
+	 */
+	public Map<K, V> getAll(final Collection<? extends K> ids) {
+		if (ids == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final K id : ids) {
+			get(id);
+		}
+		return new HashMap<K, V>();
+	}
+
+	/**
+	 * Returns empty statistics.
+	 *
+	 * @return always {@code CacheStatistics.EMPTY_STATISTICS}.
+	 */
+	public CacheStatistics getStatistics() {
+		return CacheStatistics.EMPTY_STATISTICS;
+	}
+
 }
@@ -0,0 +1,106 @@
+package gems.caching;
+
+import gems.LongIdentifiable;
+import gems.Option;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This is a type-safe null-implementation of {@code LongCache} interface.
+ * It effectively does nothing except sanity checks of input arguments,
+ * serving as a mock object. It can be created directly for this purpose,
+ * or it is returned by {@code gems.caching.LongCacheFactory} when no cache
+ * properties is specified.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ */
+public final class NullLongCache<V extends LongIdentifiable> implements LongCache<V> {
+
+	/**
+	 * Returns {@code null}.
+	 *
+	 * @param id ignored.
+	 *
+	 * @return always {@code null}.
+	 */
+	public V getOrNull(final long id) {
+		return null;
+	}
+
+	/**
+	 * Does nothing.
+	 *
+	 * @param object ignored except {@code null} sanity check.
+	 *
+	 * @throws IllegalArgumentException if {@code object} is {@code null}.
+	 */
+	public void offer(final V object) {
+		if (object == null) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Returns an empty option.
+	 *
+	 * @param id ignored except {@code null} sanity check.
+	 *
+	 * @return always a new empty option.
+	 *
+	 * @throws IllegalArgumentException if {@code id} is {@code null}.
+	 */
+	public Option<V> get(final Long id) {
+		if (id == null) {
+			throw new IllegalArgumentException();
+		}
+		return new Option<V>(null);
+	}
+
+	/**
+	 * Does nothing.
+	 *
+	 * @param objects ignored except {@code null} sanity checks.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final V object : objects) {
+			offer(object);
+		}
+	}
+
+	/**
+	 * Returns an empty map.
+	 *
+	 * @param ids ignored except {@code null} sanity checks.
+	 *
+	 * @return always a new empty map.
+	 *
+	 * @throws IllegalArgumentException if {@code ids} is {@code null} or contains {@code null}.
+	 */
+	public Map<Long, V> getAll(final Collection<? extends Long> ids) {
+		if (ids == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final Long id : ids) {
+			get(id);
+		}
+		return new HashMap<Long, V>();
+	}
+
+	/**
+	 * Returns empty statistics.
+	 *
+	 * @return always {@code CacheStatistics.EMPTY_STATISTICS}.
+	 */
+	public CacheStatistics getStatistics() {
+		return CacheStatistics.EMPTY_STATISTICS;
+	}
+
+}
@@ -0,0 +1,308 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.Option;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A storage keeping values out of the heap. Values are encoded by a codec into chunks of
+ * direct memory provided by a slab allocator, and they are decoded again on each read, so
+ * a read returns an equal object, but not the same one. The index mapping keys to chunks is
+ * an open-addressing hash table kept in direct memory as well; each of its slots holds a spread
+ * hash code of key, a slot state, and a chunk location. Keys themselves are not stored; a value
+ * is decoded for comparing its identifier only if hash codes are equal. As a consequence, the
+ * heap footprint of the storage does not depend on number of stored values and the garbage
+ * collector never scans them.
+ * <p/>
+ * The index holds at most {@code MAX_SLOTS} slots, and at least one of them stays empty, so number
+ * of stored values is limited to {@code MAX_SLOTS - 1}.
+ * <p/>
+ * <em>The implementation is not thread-safe. Concurrent reads are safe only if there are not
+ * any concurrent writes.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ */
+final class OffHeapStorage<K, V extends Identifiable<K>> extends AbstractStorage<K, V> {
+
+	/**
+	 * Size of an index slot in bytes.
+	 */
+	private static final int SLOT = 16;
+
+	/**
+	 * Offset of a state in an index slot.
+	 */
+	private static final int STATE = 4;
+
+	/**
+	 * Offset of a chunk location in an index slot.
+	 */
+	private static final int LOCATION = 8;
+
+	/**
+	 * A state of a slot which has never been used.
+	 */
+	private static final int EMPTY = 0;
+
+	/**
+	 * A state of a slot holding a value.
+	 */
+	private static final int USED = 1;
+
+	/**
+	 * A state of a slot whose value has been removed.
+	 */
+	private static final int DELETED = 2;
+
+	/**
+	 * Initial number of index slots; it has to be a power of two.
+	 */
+	private static final int INITIAL_SLOTS = 64;
+
+	/**
+	 * Maximal number of index slots; it is the greatest power of two such that offsets of all slots
+	 * fit into an {@code int}, since the index is a single buffer.
+	 */
+	static final int MAX_SLOTS = Integer.highestOneBit(Integer.MAX_VALUE / SLOT);
+
+	/**
+	 * A codec of values.
+	 */
+	private final Codec<V> codec;
+
+	/**
+	 * An allocator of chunks holding encoded values.
+	 */
+	private final SlabAllocator allocator;
+
+	/**
+	 * The index.
+	 */
+	private ByteBuffer index;
+
+	/**
+	 * Number of index slots.
+	 */
+	private int slots;
+
+	/**
+	 * Number of stored values.
+	 */
+	private int size;
+
+	/**
+	 * Number of deleted slots.
+	 */
+	private int deleted;
+
+	/**
+	 * Creates a new storage.
+	 *
+	 * @param codec a codec of values.
+	 * @param slabSize size of slabs of direct memory in bytes.
+	 */
+	OffHeapStorage(final Codec<V> codec, final int slabSize) {
+		this.codec = Checks.assertNotNull(codec);
+		allocator = new SlabAllocator(slabSize);
+		slots = INITIAL_SLOTS;
+		index = ByteBuffer.allocateDirect(slots * SLOT);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalStateException if the index cannot grow anymore.
+	 */
+	@Override void store(final V value) {
+		final int hash = Hashing.spread(value.getId().hashCode());
+		final int slot = slotOf(value.getId(), hash);
+		if (slot >= 0) {
+			final long location = allocator.store(codec.encode(value));
+			allocator.free(index.getLong(slot * SLOT + LOCATION));
+			index.putLong(slot * SLOT + LOCATION, location);
+			return;
+		}
+		if ((size + deleted + 1) * 4L > slots * 3L) {
+			if (size * 2L < slots) {
+				rehash(slots);
+			} else if (slots < MAX_SLOTS) {
+				rehash(slots * 2);
+			} else if (size + deleted + 1 >= slots) {
+				if (deleted == 0) {
+					throw new IllegalStateException();
+				}
+				rehash(slots);
+			}
+		}
+		insert(hash, allocator.store(codec.encode(value)));
+		size++;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}.
+	 */
+	@Override public Option<V> provide(final Option<K> key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		if (!key.hasValue()) {
+			return new Option<V>(null);
+		}
+		final int hash = Hashing.spread(key.getValue().hashCode());
+		for (int slot = hash & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+			final int state = index.getInt(slot * SLOT + STATE);
+			if (state == EMPTY) {
+				return new Option<V>(null);
+			}
+			if (state == USED && index.getInt(slot * SLOT) == hash) {
+				final V value = valueAt(slot);
+				if (key.getValue().equals(value.getId())) {
+					return new Option<V>(value);
+				}
+			}
+		}
+	}
+
+	@Override void discard(final K key) {
+		final int slot = slotOf(key, Hashing.spread(key.hashCode()));
+		if (slot >= 0) {
+			allocator.free(index.getLong(slot * SLOT + LOCATION));
+			index.putInt(slot * SLOT + STATE, DELETED);
+			size--;
+			deleted++;
+		}
+	}
+
+	/**
+	 * Returns an unmodifiable iterator decoding stored values one by one.
+	 *
+	 * @return an iterator over stored values.
+	 */
+	@Override public Iterator<V> iterator() {
+		return new Iterator<V>() {
+
+			private int slot = next(0);
+
+			private int next(final int from) {
+				int result = from;
+				while (result < slots && index.getInt(result * SLOT + STATE) != USED) {
+					result++;
+				}
+				return result;
+			}
+
+			@Override public boolean hasNext() {
+				return slot < slots;
+			}
+
+			@Override public V next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				final V result = valueAt(slot);
+				slot = next(slot + 1);
+				return result;
+			}
+
+			@Override public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * Returns number of stored values.
+	 *
+	 * @return number of stored values.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns number of bytes of direct memory held by the storage.
+	 *
+	 * @return number of bytes of direct memory held by the storage.
+	 */
+	long reserved() {
+		return allocator.reserved() + index.capacity();
+	}
+
+	/**
+	 * Returns a slot of a value identified by a given key, or {@code -1} if not found.
+	 *
+	 * @param key a key.
+	 * @param hash a spread hash code of the key.
+	 *
+	 * @return a slot of a value or {@code -1}.
+	 */
+	private int slotOf(final K key, final int hash) {
+		for (int slot = hash & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+			final int state = index.getInt(slot * SLOT + STATE);
+			if (state == EMPTY) {
+				return -1;
+			}
+			if (state == USED && index.getInt(slot * SLOT) == hash && key.equals(valueAt(slot).getId())) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Decodes a value held in a given slot.
+	 *
+	 * @param slot a used slot.
+	 *
+	 * @return a decoded value.
+	 */
+	private V valueAt(final int slot) {
+		return codec.decode(allocator.load(index.getLong(slot * SLOT + LOCATION)));
+	}
+
+	/**
+	 * Inserts a new entry into the first free slot for a given hash code.
+	 *
+	 * @param hash a spread hash code.
+	 * @param location a chunk location.
+	 */
+	private void insert(final int hash, final long location) {
+		int slot = hash & (slots - 1);
+		while (index.getInt(slot * SLOT + STATE) == USED) {
+			slot = (slot + 1) & (slots - 1);
+		}
+		if (index.getInt(slot * SLOT + STATE) == DELETED) {
+			deleted--;
+		}
+		index.putInt(slot * SLOT, hash);
+		index.putInt(slot * SLOT + STATE, USED);
+		index.putLong(slot * SLOT + LOCATION, location);
+	}
+
+	/**
+	 * Rebuilds the index with a given number of slots, dropping deleted slots. Values are not decoded.
+	 *
+	 * @param capacity a new number of slots; it has to be a power of two.
+	 */
+	private void rehash(final int capacity) {
+		final ByteBuffer previous = index;
+		final int previousSlots = slots;
+		index = ByteBuffer.allocateDirect(capacity * SLOT);
+		slots = capacity;
+		deleted = 0;
+		for (int slot = 0; slot < previousSlots; slot++) {
+			if (previous.getInt(slot * SLOT + STATE) == USED) {
+				insert(previous.getInt(slot * SLOT), previous.getLong(slot * SLOT + LOCATION));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.NumericValueOutOfRangeException;
+import gems.UnexpectedNullException;
+
+/**
+ * Provides storages keeping cached objects out of the heap, in direct memory reserved in slabs.
+ * Cached objects are encoded by a given codec when put and decoded on each read, so reads are
+ * more expensive than reads of heap storages, but the heap does not grow with cached data and
+ * garbage collection pauses do not grow either. Direct memory is reused for new objects, but it
+ * is never returned to the system while the storage is reachable; please make sure the maximal
+ * direct memory size of the virtual machine is large enough.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys identifying cached objects.
+ * @param <V> type of cached objects.
+ */
+public final class OffHeapStorageFactory<K, V extends Identifiable<K>> implements StorageFactory<K, V> {
+
+	/**
+	 * Default size of slabs in bytes.
+	 */
+	public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+	/**
+	 * Minimal size of slabs in bytes.
+	 */
+	private static final int MIN_SLAB_SIZE = 64;
+
+	/**
+	 * A codec of cached objects.
+	 */
+	private final Codec<V> codec;
+
+	/**
+	 * Size of slabs in bytes.
+	 */
+	private final int slabSize;
+
+	/**
+	 * Creates a new factory using slabs of the default size.
+	 *
+	 * @param codec a codec of cached objects.
+	 *
+	 * @throws UnexpectedNullException if {@code codec} is {@code null}.
+	 */
+	public OffHeapStorageFactory(final Codec<V> codec) {
+		this(codec, DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * Creates a new factory using slabs of a given size. Objects larger than a slab are stored
+	 * in separately allocated direct memory.
+	 *
+	 * @param codec a codec of cached objects.
+	 * @param slabSize size of slabs in bytes.
+	 *
+	 * @throws UnexpectedNullException if {@code codec} is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code slabSize} is less than 64.
+	 */
+	public OffHeapStorageFactory(final Codec<V> codec, final int slabSize) {
+		this.codec = Checks.ensureNotNull(codec);
+		if (slabSize < MIN_SLAB_SIZE) {
+			throw new NumericValueOutOfRangeException(slabSize);
+		}
+		this.slabSize = slabSize;
+	}
+
+	@Override public Storage<K, V> getStorage() {
+		return new OffHeapStorage<K, V>(codec, slabSize);
+	}
+
+}
@@ -3,160 +3,132 @@ package gems.caching;
 import gems.Checks;
 import gems.ExceptionHandler;
 import gems.Identifiable;
+import gems.Limits;
 import gems.Option;
 import gems.UnexpectedNullException;
+import gems.filtering.Filter;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A cache storage split into partitions, by default one per available processor. A storage
+ * factory of mapped storages may override the number of partitions with a number persisted
+ * when the storage was created for the first time. Each key is routed to
+ * exactly one partition derived from its spread hash code, so getting and putting of a value
+ * touches only that partition and it is done on the caller thread. The thread pool from cache
+ * properties is used only for work which is really parallel, i.e. for gathering evictable
+ * items from all partitions.
+ * <p/>
+ * Cache limits bind all partitions together, not each of them separately. If a queueing evictor
+ * is used, all partitions share a single eviction queue; if a sampling evictor is used, samples
+ * are drawn from all partitions, each cached item with the same probability.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of key identifying cached objects.
+ * @param <V> type of cached objects.
+ */
 final class ParallelCacheStorage<K, V extends Identifiable<K>> extends AbstractCacheComponent<V, K> implements CacheStorage<K, V> {
 
 	/**
-	 * Stores one underlaying storage and tracks information
-	 * about number of items stored in that storage. Please
-	 * note that this class is only bean-like holder for the
-	 * storage size and it is responsibility of client code
-	 * to set right value every time the storage is changed.
+	 * Underlaying storages, i.e. partitions.
 	 */
-	private static final class StorageHolder<K, V extends Identifiable<K>> {
-
-		/**
-		 * A wrapped cache storage.
-		 */
-		private final CacheStorage<K, V> storage;
-
-		/**
-		 * Number of items actually kept in the cache storage.
-		 */
-		private volatile int size;
-
-		/**
-		 * Creates a new storage holder for the given storage and initiates
-		 * number of items stored inside to zero. In another words, it is
-		 * supposed that the storage is empty.
-		 *
-		 * @param storage a storage.
-		 *
-		 * @throws UnexpectedNullException if {@code storage} is {@code null}.
-		 */
-		private StorageHolder(final CacheStorage<K, V> storage) {
-			this.storage = Checks.ensureNotNull(storage);
-		}
+	private final List<FlatCacheStorage<K, V>> storages;
 
-		/**
-		 * Returns the wrapped cache storage. This method never returns {@code null}.
-		 *
-		 * @return the wrapped cache storage.
-		 */
-		private CacheStorage<K, V> getStorage() {
-			return storage;
-		}
-
-		/**
-		 * Returns number of items in the wrapped storage. This method never returns a negative value.
-		 *
-		 * @return number if items in the wrapped storage.
-		 */
-		private int getSize() {
-			return size;
-		}
-
-		/**
-		 * Sets a new size of the cache storage.
-		 *
-		 * @param size a new size of the cache storage.
-		 *
-		 * @throws IllegalArgumentException if {@code size} is {@code null}.
-		 */
-		private void setSize(final int size) {
-			if (size < 0) {
-				throw new IllegalArgumentException(String.valueOf(size));
-			}
-			this.size = size;
-		}
+	/**
+	 * An eviction queue shared by all partitions if a queueing evictor is used; {@code null} otherwise.
+	 */
+	private final EvictionQueue<K> queue;
 
+	/**
+	 * Creates a new storage.
+	 *
+	 * @param properties cache properties.
+	 * @param statistics a recorder of cache-wide statistics shared by all partitions.
+	 */
+	ParallelCacheStorage(final CacheProperties<V, K> properties, final StatisticsCounter statistics) {
+		this(properties, statistics, Runtime.getRuntime().availableProcessors());
 	}
 
 	/**
-	 * Underlaying storage holders.
+	 * Creates a new storage with a given number of partitions, unless a storage factory of mapped
+	 * storages persisted another one.
+	 *
+	 * @param properties cache properties.
+	 * @param statistics a recorder of cache-wide statistics shared by all partitions.
+	 * @param partitions a number of partitions.
 	 */
-	private final List<StorageHolder<K, V>> storages;
-
-	ParallelCacheStorage(final CacheProperties<V, K> properties) {
+	ParallelCacheStorage(final CacheProperties<V, K> properties, final StatisticsCounter statistics, final int partitions) {
 		super(properties);
-		final int cpus = Runtime.getRuntime().availableProcessors();
-		storages = new ArrayList<StorageHolder<K, V>>(cpus);
-		for (int i = 0; i < cpus; i++) {
-			storages.add(new StorageHolder<K, V>(new FlatCacheStorage<K, V>(properties)));
+		final StorageFactory<K, V> factory = properties.getStorageFactory();
+		final List<Storage<K, V>> values = factory instanceof MappedStorageFactory
+				? ((MappedStorageFactory<K, V>) factory).getStorages(Checks.assertPositive(partitions))
+				: null;
+		final int count = values != null ? values.size() : Checks.assertPositive(partitions);
+		storages = new ArrayList<FlatCacheStorage<K, V>>(count);
+		queue = FlatCacheStorage.newQueue(properties.getEvictor());
+		for (int i = 0; i < count; i++) {
+			storages.add(new FlatCacheStorage<K, V>(properties, statistics, queue, values != null ? values.get(i) : factory.getStorage()));
+		}
+		if (!(properties.getStorageFactory() instanceof MemoryStorageFactory)) {
+			// partitions do not evict objects of reopened storages by themselves
+			evict(selectForEviction(properties.getLimits()));
 		}
 	}
 
-	@Override public Option<V> get(final K key) {
-		final GetTaskResult<K, V> result = getImpl(key);
-		if (result != null) {
-			return new Option<V>(result.getOption().getValue());
-		}
-		return new Option<V>(null);
+	/**
+	 * Returns an index of partition for a given key.
+	 *
+	 * @param key a key.
+	 *
+	 * @return an index of partition for a given key.
+	 */
+	private int partition(final K key) {
+		return Hashing.index(Hashing.spread(key.hashCode()), storages.size());
 	}
 
-	private GetTaskResult<K, V> getImpl(final K key) {
-		final Collection<Future<GetTaskResult<K, V>>> tasks = new LinkedList<Future<GetTaskResult<K, V>>>();
-		for (final StorageHolder<K, V> storage : storages) {
-			tasks.add(getProperties().getThreadPool().submit(new GetTask<K, V>(storage, key)));
-		}
-		return getTaskResult(tasks);
+	/**
+	 * Returns a partition for a given key. This method never returns {@code null}.
+	 *
+	 * @param key a key.
+	 *
+	 * @return a partition for a given key.
+	 */
+	private FlatCacheStorage<K, V> getStorage(final K key) {
+		return storages.get(partition(key));
 	}
 
-	private static <K, V extends Identifiable<K>> GetTaskResult<K, V> getTaskResult(final Iterable<Future<GetTaskResult<K, V>>> tasks) {
-		for (final Future<GetTaskResult<K, V>> task : tasks) {
-			try {
-				final GetTaskResult<K, V> taskResult = task.get();
-				if (taskResult.getOption().hasValue()) {
-					return taskResult;
-				}
-			} catch (final InterruptedException e) {
-				ExceptionHandler.NULL_HANDLER.handle(e);
-			} catch (final ExecutionException e) {
-				ExceptionHandler.NULL_HANDLER.handle(e);
-			}
+	@Override public Option<V> get(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
 		}
-		return null;
+		return getStorage(key).get(key);
 	}
 
 	@Override public void put(final V value) {
 		if (value == null) {
 			throw new IllegalArgumentException();
 		}
-		final GetTaskResult<K, V> result = getImpl(value.getId());
-		if (result != null) {
-			result.getStorage().put(value);
-		} else {
-			final StorageHolder<K, V> storage = getEmptiestStorage();
-			storage.getStorage().put(value);
-			storage.setSize(storage.getSize() + 1);
-
-		}
+		getStorage(value.getId()).put(value);
 	}
 
-	private StorageHolder<K, V> getEmptiestStorage() {
-		StorageHolder<K, V> result = storages.get(0);
-		for (int i = 1; i < storages.size(); i++) {
-			final StorageHolder<K, V> storage = storages.get(i);
-			if (storage.getSize() < result.getSize()) {
-				result = storage;
-			}
+	@Override public void restore(final V value, final CacheItemStatistics<K> statistics) {
+		if (value == null || statistics == null) {
+			throw new IllegalArgumentException();
 		}
-		return result;
+		getStorage(value.getId()).restore(value, statistics);
 	}
 
 	@Override public Collection<CacheItemStatistics<K>> itemsForEviction() {
 		final Collection<Future<Collection<CacheItemStatistics<K>>>> tasks = new LinkedList<Future<Collection<CacheItemStatistics<K>>>>();
-		for (final StorageHolder<K, V> storage : storages) {
+		for (final FlatCacheStorage<K, V> storage : storages) {
 			tasks.add(getProperties().getThreadPool().submit(new GatheringEvictablesTask<K, V>(storage)));
 		}
 		return mergeEvictableItems(tasks);
@@ -176,131 +148,154 @@ final class ParallelCacheStorage<K, V extends Identifiable<K>> extends AbstractC
 		return result;
 	}
 
-	@Override public int evict(final Collection<K> keys) {
-		if (keys == null) {
+	/**
+	 * {@inheritDoc} If a queueing evictor is used, victims are selected from the shared eviction queue.
+	 * If a sampling evictor is used, it samples all partitions. Otherwise, evictable items are gathered
+	 * from all partitions in parallel and given to the evictor. In all cases, victims are selected for
+	 * satisfying whole cache limits by all partitions together.
+	 */
+	@Override public Collection<K> selectForEviction(final Limits<CacheLimit> limits) {
+		if (limits == null) {
 			throw new IllegalArgumentException();
 		}
-		final Collection<Future<Integer>> tasks = new LinkedList<Future<Integer>>();
-		for (final StorageHolder<K, V> storage : storages) {
-			tasks.add(getProperties().getThreadPool().submit(new EvictionTask<K, V>(storage, keys)));
+		final CacheEvictor<K> evictor = getProperties().getEvictor();
+		if (queue != null) {
+			for (final FlatCacheStorage<K, V> storage : storages) {
+				storage.expire();
+			}
+			return queue.select(limits);
+		}
+		if (evictor instanceof SamplingCacheEvictor) {
+			int count = 0;
+			long weight = 0L;
+			for (final FlatCacheStorage<K, V> storage : storages) {
+				storage.expire();
+				count += storage.count();
+				weight += storage.weight();
+			}
+			return ((SamplingCacheEvictor<K>) evictor).select(new SamplingCacheEvictor.Sampler<K>() {
+
+				@Override public CacheItemStatistics<K> sample(final ThreadLocalRandom random) {
+					int index = random.nextInt(count());
+					for (final FlatCacheStorage<K, V> storage : storages) {
+						if (index < storage.count()) {
+							return storage.sample(index);
+						}
+						index -= storage.count();
+					}
+					throw new IllegalStateException();
+				}
+
+			}, count, weight, limits);
 		}
-		return randezVousEvicters(tasks);
+		return evictor.evict(itemsForEviction(), limits);
 	}
 
-	private static int randezVousEvicters(Collection<Future<Integer>> tasks) {
+	/**
+	 * Returns number of cached objects in all partitions.
+	 *
+	 * @return number of cached objects in all partitions.
+	 */
+	private int count() {
 		int result = 0;
-		for (final Future<Integer> task : tasks) {
-			try {
-				result += task.get();
-			} catch (final InterruptedException e) {
-				ExceptionHandler.NULL_HANDLER.handle(e);
-			} catch (final ExecutionException e) {
-				ExceptionHandler.NULL_HANDLER.handle(e);
-			}
+		for (final FlatCacheStorage<K, V> storage : storages) {
+			result += storage.count();
 		}
 		return result;
 	}
 
 	/**
-	 * Abstract task executed on a cache storage. In fact, it holds only
-	 * that cache storage which is a subject of real task execution.
+	 * {@inheritDoc} Keys are grouped by their partitions, so each partition is asked
+	 * to evict only its own keys.
 	 */
-	private abstract static class AbstractStorageTask<K, V extends Identifiable<K>> {
-
-		/**
-		 * A cache storage which is a subject of task execution.
-		 */
-		private final StorageHolder<K, V> storage;
-
-		/**
-		 * Creates a new task for the given cache storage.
-		 *
-		 * @param storage a cache storage.
-		 */
-		protected AbstractStorageTask(final StorageHolder<K, V> storage) {
-			this.storage = Checks.assertNotNull(storage);
+	@Override public int evict(final Collection<K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
 		}
-
-		/**
-		 * Returns the storage which is a subject of task execution.
-		 *
-		 * @return the storage which is a subject of task execution.
-		 */
-		protected StorageHolder<K, V> getStorage() {
-			return storage;
+		if (storages.size() == 1) {
+			return storages.get(0).evict(keys);
 		}
-
+		final List<Collection<K>> groups = new ArrayList<Collection<K>>(storages.size());
+		for (int i = 0; i < storages.size(); i++) {
+			groups.add(new LinkedList<K>());
+		}
+		for (final K key : keys) {
+			groups.get(partition(key)).add(key);
+		}
+		int result = 0;
+		for (int i = 0; i < storages.size(); i++) {
+			if (!groups.get(i).isEmpty()) {
+				result += storages.get(i).evict(groups.get(i));
+			}
+		}
+		return result;
 	}
 
-	private static final class GetTaskResult<K, V extends Identifiable<K>> {
-
-		private final Option<V> option;
-
-		private final CacheStorage<K, V> storage;
-
-		private GetTaskResult(final Option<V> option, final CacheStorage<K, V> storage) {
-			this.option = option;
-			this.storage = storage;
+	@Override public Collection<V> extract(final Filter<? super K> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
 		}
+		final Collection<V> result = new ArrayList<V>();
+		for (final FlatCacheStorage<K, V> storage : storages) {
+			result.addAll(storage.extract(filter));
+		}
+		return result;
+	}
 
-		public Option<V> getOption() {
-			return option;
+	@Override public void invalidate(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
 		}
+		getStorage(key).invalidate(key);
+	}
 
-		public CacheStorage<K, V> getStorage() {
-			return storage;
+	@Override public Collection<Map.Entry<V, CacheItemStatistics<K>>> snapshot() {
+		final Collection<Map.Entry<V, CacheItemStatistics<K>>> result = new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>();
+		for (final FlatCacheStorage<K, V> storage : storages) {
+			result.addAll(storage.snapshot());
 		}
+		return result;
 	}
 
 	/**
-	 * Implements getting value from a storage.
+	 * {@inheritDoc} The index is created in all underlaying storages.
 	 */
-	private static final class GetTask<K, V extends Identifiable<K>> extends AbstractStorageTask<K, V> implements Callable<GetTaskResult<K, V>> { // todo: review documentation
-
-		/**
-		 * A key of required value.
-		 */
-		private final K key;
-
-		/**
-		 * Creates a new task for a getting value identified by {@code key} from the {@code storage}.
-		 *
-		 * @param storage a storage which is a subject of getting task.
-		 * @param key a key of required object.
-		 */
-		private GetTask(final StorageHolder<K, V> storage, final K key) {
-			super(storage);
-			assert key != null;
-			this.key = key;
+	@Override public <A> void index(final Attribute<? super V, A> attribute, final IndexType type) {
+		for (final FlatCacheStorage<K, V> storage : storages) {
+			storage.index(attribute, type);
 		}
+	}
 
-		/**
-		 * Gets a value from the cache storage.
-		 *
-		 * @return a value from the cache storage.
-		 *
-		 * @throws Exception hopefully never.
-		 */
-		@Override public GetTaskResult<K, V> call() throws Exception {
-			final CacheStorage<K, V> storage = getStorage().getStorage();
-			final Option<V> option = storage.get(key);
-			return new GetTaskResult<K, V>(option, storage);
+	/**
+	 * {@inheritDoc} Results of all underlaying storages are merged.
+	 */
+	@Override public Collection<V> search(final Filter<? super V> filter) {
+		final Collection<V> result = new ArrayList<V>();
+		for (final FlatCacheStorage<K, V> storage : storages) {
+			result.addAll(storage.search(filter));
 		}
-
+		return result;
 	}
 
 	/**
 	 * Gets evictable items from the storage.
 	 */
-	private static final class GatheringEvictablesTask<K, V extends Identifiable<K>> extends AbstractStorageTask<K, V> implements Callable<Collection<CacheItemStatistics<K>>> {
+	private static final class GatheringEvictablesTask<K, V extends Identifiable<K>> implements Callable<Collection<CacheItemStatistics<K>>> {
+
+		/**
+		 * A cache storage which is a subject of task execution.
+		 */
+		private final CacheStorage<K, V> storage;
 
 		/**
 		 * Creates a new task for the given cache storage.
 		 *
 		 * @param storage a cache storage.
+		 *
+		 * @throws UnexpectedNullException if {@code storage} is {@code null}.
 		 */
-		private GatheringEvictablesTask(final StorageHolder<K, V> storage) {
-			super(storage);
+		private GatheringEvictablesTask(final CacheStorage<K, V> storage) {
+			this.storage = Checks.ensureNotNull(storage);
 		}
 
 		/**
@@ -311,41 +306,7 @@ final class ParallelCacheStorage<K, V extends Identifiable<K>> extends AbstractC
 		 * @throws Exception hopefully never.
 		 */
 		@Override public Collection<CacheItemStatistics<K>> call() throws Exception {
-			return getStorage().getStorage().itemsForEviction();
-		}
-
-	}
-
-	/**
-	 * Runs eviction on the storage.
-	 */
-	private static final class EvictionTask<K, V extends Identifiable<K>> extends AbstractStorageTask<K, V> implements Callable<Integer> {
-
-		/**
-		 * Keys to evict.
-		 */
-		private final Collection<K> keys;
-
-		/**
-		 * Creates a new task evicting {@code keys} from {@code storage}.
-		 *
-		 * @param storage a cache storage.
-		 * @param keys keys to evict.
-		 */
-		private EvictionTask(final StorageHolder<K, V> storage, final Collection<K> keys) {
-			super(storage);
-			assert keys != null;
-			this.keys = keys;
-		}
-
-		/**
-		 * Runs eviction.
-		 */
-		@Override public Integer call() throws Exception {
-			final StorageHolder<K, V> holder = getStorage();
-			final int evictedItems = holder.getStorage().evict(keys);
-			holder.setSize(holder.getSize() - evictedItems);
-			return evictedItems;
+			return storage.itemsForEviction();
 		}
 
 	}
@@ -0,0 +1,52 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Limits;
+import gems.UnexpectedNullException;
+
+import java.util.Collection;
+
+/**
+ * A cache evictor maintaining its eviction order incrementally in an eviction queue. A cache
+ * storage recognizing this kind of evictor creates its own queue via {@code newQueue()} and
+ * keeps it up to date as items are put, accessed and evicted, so victims are selected directly
+ * from the queue and there is no need to gather statistics of all cached items on each offer.
+ * If this evictor is invoked by the generic {@code evict()} method, it delegates to a fallback
+ * evictor defining the same ordering over a collection of cache item statistics.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+abstract class QueueingCacheEvictor<K> implements CacheEvictor<K> {
+
+	/**
+	 * A fallback evictor.
+	 */
+	private final CacheEvictor<K> fallback;
+
+	/**
+	 * Creates a new queueing evictor with a given fallback evictor.
+	 *
+	 * @param fallback an evictor used when statistics of all cached items are given.
+	 *
+	 * @throws UnexpectedNullException if {@code fallback} is {@code null}.
+	 */
+	protected QueueingCacheEvictor(final CacheEvictor<K> fallback) {
+		this.fallback = Checks.ensureNotNull(fallback);
+	}
+
+	/**
+	 * {@inheritDoc} This implementation delegates to the fallback evictor.
+	 */
+	@Override public final Collection<K> evict(final Collection<CacheItemStatistics<K>> statistics, final Limits<CacheLimit> limits) {
+		return fallback.evict(statistics, limits);
+	}
+
+	/**
+	 * Creates a new empty eviction queue. Each cache storage uses its own queue. This method never returns {@code null}.
+	 *
+	 * @return a new empty eviction queue.
+	 */
+	abstract EvictionQueue<K> newQueue();
+
+}
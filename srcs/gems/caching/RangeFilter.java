@@ -0,0 +1,55 @@
+package gems.caching;
+
+import gems.UnexpectedNullException;
+
+import java.util.Collection;
+
+/**
+ * A filter allowing objects whose attribute lies in a given half-open range, i.e. it is not less than the lower
+ * bound and it is less than the upper bound. Either bound may be omitted. Objects whose attribute is {@code null}
+ * are never allowed. Searches using this filter are answered by sorted indexes only.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of filtered objects.
+ * @param <A> a type of attribute values.
+ */
+public final class RangeFilter<V, A extends Comparable<? super A>> extends AttributeFilter<V, A> {
+
+	/**
+	 * The lower bound, inclusive, or {@code null}.
+	 */
+	private final A from;
+
+	/**
+	 * The upper bound, exclusive, or {@code null}.
+	 */
+	private final A to;
+
+	/**
+	 * Creates a new filter.
+	 *
+	 * @param attribute a filtered attribute.
+	 * @param from the lower bound, inclusive, or {@code null} for no lower bound.
+	 * @param to the upper bound, exclusive, or {@code null} for no upper bound.
+	 *
+	 * @throws UnexpectedNullException if {@code attribute} is {@code null}.
+	 * @throws IllegalArgumentException if {@code from} is greater than {@code to}.
+	 */
+	public RangeFilter(final Attribute<? super V, A> attribute, final A from, final A to) {
+		super(attribute);
+		if (from != null && to != null && from.compareTo(to) > 0) {
+			throw new IllegalArgumentException();
+		}
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override boolean matches(final A value) {
+		return value != null && (from == null || value.compareTo(from) >= 0) && (to == null || value.compareTo(to) < 0);
+	}
+
+	@Override <K> Collection<K> lookup(final Index<K, ?, A> index) {
+		return index.range(from, to);
+	}
+
+}
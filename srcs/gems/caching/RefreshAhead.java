@@ -0,0 +1,135 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.NumericValueOutOfRangeException;
+import gems.UnexpectedNullException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Settings of refresh-ahead loading of {@code CachingObjectProvider}. Objects requested within
+ * a refresh window before their time to live elapses are reloaded asynchronously, using the thread
+ * pool of cache properties, while the current objects are still served. Times to live are taken
+ * from the expiration policy of the same cache properties; objects living forever are never
+ * refreshed ahead.
+ * <p/>
+ * Optionally, objects can be refreshed even earlier with a probability growing as their expiration
+ * approaches, following the <em>XFetch</em> algorithm: an object is refreshed when
+ * {@code now + window - delta * beta * ln(random)} reaches its expiration time, where {@code delta}
+ * is the duration of its latest load and {@code random} is uniformly distributed in (0, 1]. Slow
+ * loads are then started earlier, and refreshes of objects requested by many callers are spread
+ * over time. Greater values of {@code beta} favour earlier refreshes; zero turns the probabilistic
+ * refresh off. <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> type of cached objects.
+ * @param <K> type of object keys.
+ */
+public final class RefreshAhead<V extends Identifiable<K>, K> {
+
+	/**
+	 * A value of {@code beta} turning probabilistic early refresh off.
+	 */
+	public static final double NO_EARLY_REFRESH = 0.0;
+
+	/**
+	 * A value of {@code beta} recommended by the XFetch algorithm.
+	 */
+	public static final double DEFAULT_BETA = 1.0;
+
+	/**
+	 * An expiration policy providing times to live.
+	 */
+	private final ExpirationPolicy<? super V> policy;
+
+	/**
+	 * A thread pool running refreshes.
+	 */
+	private final ExecutorService threadPool;
+
+	/**
+	 * A refresh window in milliseconds.
+	 */
+	private final long window;
+
+	/**
+	 * A scaling factor of probabilistic early refresh.
+	 */
+	private final double beta;
+
+	/**
+	 * Creates new settings refreshing objects within a given window before their expiration.
+	 *
+	 * @param properties cache properties providing an expiration policy and a thread pool.
+	 * @param window a refresh window in milliseconds.
+	 *
+	 * @throws UnexpectedNullException if {@code properties} is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code window} is negative.
+	 */
+	public RefreshAhead(final CacheProperties<V, K> properties, final long window) {
+		this(properties, window, NO_EARLY_REFRESH);
+	}
+
+	/**
+	 * Creates new settings refreshing objects within a given window before their expiration,
+	 * or probabilistically earlier.
+	 *
+	 * @param properties cache properties providing an expiration policy and a thread pool.
+	 * @param window a refresh window in milliseconds.
+	 * @param beta a scaling factor of probabilistic early refresh.
+	 *
+	 * @throws UnexpectedNullException if {@code properties} is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code window} or {@code beta} is negative.
+	 */
+	public RefreshAhead(final CacheProperties<V, K> properties, final long window, final double beta) {
+		Checks.ensureNotNull(properties);
+		this.policy = properties.getExpirationPolicy();
+		this.threadPool = properties.getThreadPool();
+		this.window = Checks.ensureNonNegative(window);
+		this.beta = Checks.ensureNonNegative(beta);
+	}
+
+	/**
+	 * Returns a thread pool running refreshes. This method never returns {@code null}.
+	 *
+	 * @return a thread pool running refreshes.
+	 */
+	ExecutorService getThreadPool() {
+		return threadPool;
+	}
+
+	/**
+	 * Returns a time a given object loaded at a given time expires at, or {@code Long.MAX_VALUE}.
+	 *
+	 * @param value an object.
+	 * @param loaded a time the object was loaded at.
+	 *
+	 * @return a time the object expires at.
+	 */
+	long expiration(final V value, final long loaded) {
+		return TimingWheel.deadline(loaded, policy.getTimeToLive(value));
+	}
+
+	/**
+	 * Decides whether an object expiring at a given time should be refreshed now.
+	 *
+	 * @param expiration a time the object expires at.
+	 * @param delta duration of the latest load of the object in milliseconds.
+	 * @param now a current time.
+	 *
+	 * @return {@code true} if the object should be refreshed, {@code false} otherwise.
+	 */
+	boolean isDue(final long expiration, final double delta, final long now) {
+		if (now + window >= expiration) {
+			return true;
+		}
+		if (beta == NO_EARLY_REFRESH) {
+			return false;
+		}
+		final double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+		return now + window - delta * beta * Math.log(random) >= expiration;
+	}
+
+}
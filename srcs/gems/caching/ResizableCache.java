@@ -0,0 +1,41 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+/**
+ * A segmented cache whose number of segments can be changed at runtime, e.g. according to
+ * the number of available processors or to observed contention. Cache limits follow the number
+ * of segments according to the cache budget: with {@code CacheBudget.SPLIT} they are split evenly
+ * among current segments again, and with {@code CacheBudget.SHARED} new segments get shares of the
+ * global budget and removed segments give up their shares. Caches created by {@code CacheFactory}
+ * for a segmenter other than {@code CacheSegmenter.NULL_SEGMENTER} implement this interface.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+public interface ResizableCache<V extends Identifiable<K>, K> extends ManagedCache<V, K> {
+
+	/**
+	 * Returns the current number of segments.
+	 *
+	 * @return the current number of segments.
+	 */
+	int getSegments();
+
+	/**
+	 * Changes the number of segments. Only cached objects whose keys are mapped to another
+	 * segment by the resized segmenter are migrated. Migrated objects keep statistics of their
+	 * keys and their expiration times, so resizing does not prolong their life, and eviction
+	 * queues of new segments get them in order of their last accesses. Writes wait while the
+	 * cache is resized; reads do not wait, and they find migrated objects in their previous
+	 * segments until the resized segments are published.
+	 *
+	 * @param segments a new number of segments.
+	 *
+	 * @throws gems.NumericValueOutOfRangeException if {@code segments} is less than 1.
+	 * @throws UnsupportedOperationException if the cache segmenter is not a {@code ResizableSegmenter}.
+	 */
+	void resize(int segments);
+
+}
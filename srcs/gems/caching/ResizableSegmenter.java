@@ -0,0 +1,27 @@
+package gems.caching;
+
+/**
+ * A cache segmenter which can provide segmenters for other numbers of segments. Segmenters
+ * for different numbers of segments have to map keys consistently: if the number of segments
+ * grows, a key either stays in its segment or moves to one of new segments, and if the number
+ * of segments shrinks, only keys of removed segments move. Segmented caches use this property
+ * for resizing at runtime, because only affected keys have to be migrated then.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> a type of key.
+ */
+public interface ResizableSegmenter<K> extends CacheSegmenter<K> {
+
+	/**
+	 * Returns a segmenter mapping keys consistently with this one to a given number of segments.
+	 * This method never returns {@code null}.
+	 *
+	 * @param segments number of segments.
+	 *
+	 * @return a segmenter for a given number of segments.
+	 *
+	 * @throws gems.NumericValueOutOfRangeException if {@code segments} is less than 1.
+	 */
+	ResizableSegmenter<K> resize(int segments);
+
+}
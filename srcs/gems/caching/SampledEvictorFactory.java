@@ -0,0 +1,96 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.ComposedComparator;
+import gems.UnexpectedNullException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Provides sampling evictors. A sampling evictor does not order all cached items; it evicts
+ * the most suitable item from a small pool of randomly sampled candidates instead, so the cost
+ * of eviction depends only on the number of samples, not on the cache size. Any ordering
+ * of cache item statistics can be approximated this way, the <em>least-recently used</em>
+ * one is used by default.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+public final class SampledEvictorFactory<K> implements CacheEvictorFactory<K> {
+
+	/**
+	 * A default number of items sampled for each victim.
+	 */
+	public static final int DEFAULT_SAMPLES = 5;
+
+	/**
+	 * A comparator.
+	 */
+	private final Comparator<? super CacheItemStatistics<K>> comparator;
+
+	/**
+	 * Number of items sampled for each victim.
+	 */
+	private final int samples;
+
+	/**
+	 * Creates a new factory of <em>least-recently used</em> sampling evictors
+	 * using the default number of samples.
+	 */
+	public SampledEvictorFactory() {
+		this(leastRecentlyUsed(), DEFAULT_SAMPLES);
+	}
+
+	/**
+	 * Creates a new factory of sampling evictors approximating an ordering defined by a given
+	 * comparator using the default number of samples. The comparator should order statistics
+	 * objects so that an object most suitable for eviction is the last one.
+	 *
+	 * @param comparator a comparator.
+	 *
+	 * @throws UnexpectedNullException if {@code comparator} is {@code null}.
+	 */
+	public SampledEvictorFactory(final Comparator<? super CacheItemStatistics<K>> comparator) {
+		this(comparator, DEFAULT_SAMPLES);
+	}
+
+	/**
+	 * Creates a new factory of sampling evictors approximating an ordering defined by a given
+	 * comparator. The comparator should order statistics objects so that an object most
+	 * suitable for eviction is the last one. More samples approximate the ordering better.
+	 *
+	 * @param comparator a comparator.
+	 * @param samples number of items sampled for each victim.
+	 *
+	 * @throws UnexpectedNullException if {@code comparator} is {@code null}.
+	 * @throws gems.NumericValueOutOfRangeException if {@code samples} is not positive.
+	 */
+	public SampledEvictorFactory(final Comparator<? super CacheItemStatistics<K>> comparator, final int samples) {
+		this.comparator = Checks.ensureNotNull(comparator);
+		this.samples = Checks.ensurePositive(samples);
+	}
+
+	/**
+	 * Returns a sampling evictor. This method never returns {@code null}.
+	 *
+	 * @return a sampling evictor.
+	 */
+	public CacheEvictor<K> get() {
+		return new SamplingCacheEvictor<K>(comparator, samples);
+	}
+
+	/**
+	 * Returns a <em>least-recently used</em> ordering of cache item statistics.
+	 *
+	 * @return a <em>least-recently used</em> ordering.
+	 */
+	private static <K> Comparator<CacheItemStatistics<K>> leastRecentlyUsed() {
+		final List<Comparator<CacheItemStatistics<K>>> comparators = new ArrayList<Comparator<CacheItemStatistics<K>>>(2);
+		comparators.add(new LeastRecentlyUsedEvictionComparator<K>());
+		comparators.add(new LeastFrequentlyUsedEvictionComparator<K>());
+		return new ComposedComparator<CacheItemStatistics<K>>(comparators);
+	}
+
+}
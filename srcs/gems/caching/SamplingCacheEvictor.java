@@ -0,0 +1,194 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Limits;
+import gems.UnexpectedNullException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A cache evictor approximating a comparator-based ordering by random sampling. Instead of sorting
+ * statistics of all cached items, a few randomly chosen items are merged into a small pool of the
+ * best candidates ordered by the comparator, and the most suitable candidate of the pool is evicted.
+ * The pool is kept while further victims of the same selection are chosen, so good candidates
+ * found by earlier samples are not lost. A cache storage recognizing this kind of evictor provides samples directly via
+ * a {@code Sampler}, so the cost of selecting a victim does not depend on the cache size at all.
+ * If this evictor is invoked by the generic {@code evict()} method, it samples the given collection.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+final class SamplingCacheEvictor<K> implements CacheEvictor<K> {
+
+	/**
+	 * A size of the pool of the best candidates.
+	 */
+	static final int POOL_SIZE = 16;
+
+	/**
+	 * A minimal number of consecutive rounds sampling only already selected items before
+	 * the selection gives up. The actual number grows with the number of cached items.
+	 */
+	private static final int MAX_EMPTY_ROUNDS = 16;
+
+	/**
+	 * A comparator.
+	 */
+	private final Comparator<? super CacheItemStatistics<K>> comparator;
+
+	/**
+	 * Number of items sampled for each victim.
+	 */
+	private final int samples;
+
+	/**
+	 * Creates a new sampling evictor. The comparator should define such ordering of
+	 * {@code CacheItemStatistics} objects, that list of these statistics objects ordered
+	 * according the comparator has an object most suitable for eviction as the last one.
+	 *
+	 * @param comparator a comparator.
+	 * @param samples number of items sampled for each victim.
+	 *
+	 * @throws UnexpectedNullException if {@code comparator} is {@code null}.
+	 * @throws gems.NumericValueOutOfRangeException if {@code samples} is not positive.
+	 */
+	SamplingCacheEvictor(final Comparator<? super CacheItemStatistics<K>> comparator, final int samples) {
+		this.comparator = Checks.ensureNotNull(comparator);
+		this.samples = Checks.ensurePositive(samples);
+	}
+
+	/**
+	 * {@inheritDoc} This implementation samples the given collection.
+	 *
+	 * @throws IllegalArgumentException if any of arguments is {@code null}.
+	 */
+	@Override public Collection<K> evict(final Collection<CacheItemStatistics<K>> statistics, final Limits<CacheLimit> limits) {
+		if (statistics == null) {
+			throw new IllegalArgumentException();
+		}
+		if (limits == null) {
+			throw new IllegalArgumentException();
+		}
+		if (statistics.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final List<CacheItemStatistics<K>> items = new ArrayList<CacheItemStatistics<K>>(statistics);
+		long weight = 0L;
+		for (final CacheItemStatistics<K> item : items) {
+			weight += item.getSize();
+		}
+		return select(new Sampler<K>() {
+
+			@Override public CacheItemStatistics<K> sample(final ThreadLocalRandom random) {
+				return items.get(random.nextInt(items.size()));
+			}
+
+		}, items.size(), weight, limits);
+	}
+
+	/**
+	 * Selects keys of items which have to be evicted for satisfying given cache limits. This method
+	 * never returns {@code null}.
+	 *
+	 * @param sampler a sampler of cached items.
+	 * @param count number of cached items.
+	 * @param weight total size of cached items.
+	 * @param limits cache limits to satisfy.
+	 *
+	 * @return a collection - possibly an empty one - of keys of items selected for eviction.
+	 */
+	Collection<K> select(final Sampler<K> sampler, final int count, final long weight, final Limits<CacheLimit> limits) {
+		final long maxCount = limits.getLimit(CacheLimit.ITEMS).longValue();
+		final long maxWeight = limits.getLimit(CacheLimit.SIZE).longValue();
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final List<CacheItemStatistics<K>> pool = new ArrayList<CacheItemStatistics<K>>(POOL_SIZE + 1);
+		final Set<K> selected = new HashSet<K>();
+		final List<K> result = new LinkedList<K>();
+		int remainingCount = count;
+		long remainingWeight = weight;
+		final int maxEmptyRounds = Math.max(MAX_EMPTY_ROUNDS, count);
+		int emptyRounds = 0;
+		while (remainingCount > 0 && (remainingCount > maxCount || remainingWeight > maxWeight)) {
+			for (int i = 0; i < samples; i++) {
+				final CacheItemStatistics<K> candidate = sampler.sample(random);
+				if (!selected.contains(candidate.getId()) && !contains(pool, candidate.getId())) {
+					offer(pool, candidate);
+				}
+			}
+			if (pool.isEmpty()) {
+				// sampled items are already selected; the sampler is very likely exhausted
+				if (++emptyRounds == maxEmptyRounds) {
+					break;
+				}
+				continue;
+			}
+			emptyRounds = 0;
+			final CacheItemStatistics<K> victim = pool.remove(pool.size() - 1);
+			selected.add(victim.getId());
+			result.add(victim.getId());
+			remainingCount--;
+			remainingWeight -= victim.getSize();
+		}
+		return result;
+	}
+
+	/**
+	 * Inserts a candidate into the pool keeping the pool ordered by the comparator. If the pool
+	 * overflows, the least suitable candidate is dropped.
+	 *
+	 * @param pool a pool of candidates.
+	 * @param candidate a candidate.
+	 */
+	private void offer(final List<CacheItemStatistics<K>> pool, final CacheItemStatistics<K> candidate) {
+		final int found = Collections.binarySearch(pool, candidate, comparator);
+		pool.add(found < 0 ? -found - 1 : found, candidate);
+		if (pool.size() > POOL_SIZE) {
+			pool.remove(0);
+		}
+	}
+
+	/**
+	 * Checks whether the pool contains a candidate with a given key.
+	 *
+	 * @param pool a pool of candidates.
+	 * @param key a key.
+	 *
+	 * @return {@code true} if the pool contains such candidate, {@code false} otherwise.
+	 */
+	private static <K> boolean contains(final List<CacheItemStatistics<K>> pool, final K key) {
+		for (final CacheItemStatistics<K> candidate : pool) {
+			if (candidate.getId().equals(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A source of randomly chosen cached items.
+	 *
+	 * @param <K> type of cache objects identifiers.
+	 */
+	interface Sampler<K> {
+
+		/**
+		 * Returns statistics of a randomly chosen cached item. This method is called only
+		 * if there is at least one cached item, and it never returns {@code null}.
+		 *
+		 * @param random a random number generator.
+		 *
+		 * @return statistics of a randomly chosen cached item.
+		 */
+		CacheItemStatistics<K> sample(ThreadLocalRandom random);
+
+	}
+
+}
@@ -0,0 +1,47 @@
+package gems.caching;
+
+import gems.Identifiable;
+import gems.filtering.Filter;
+
+import java.util.Collection;
+
+/**
+ * A cache which can be searched by attributes of cached objects, e.g. for all items of a tenant.
+ * Caches created by {@code gems.caching.CacheFactory} for given cache properties implement this
+ * interface, so such a result of the factory can be safely cast to it; the {@code NullCache} returned
+ * when no cache properties are given does not implement it. A segmented cache registers indexes on all
+ * its segments, including segments created later by resizing, and merges results of searches over segments.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+public interface SearchableCache<V extends Identifiable<K>, K> extends ManagedCache<V, K> {
+
+	/**
+	 * Creates a secondary index of a given attribute of cached objects. Objects already cached are
+	 * indexed immediately, and the index is kept up to date by later writes.
+	 *
+	 * @param attribute an indexed attribute.
+	 * @param type a type of the index.
+	 * @param <A> a type of attribute values.
+	 *
+	 * @throws IllegalArgumentException if any of arguments is {@code null}.
+	 */
+	<A> void index(Attribute<? super V, A> attribute, IndexType type);
+
+	/**
+	 * Returns all cached objects allowed by a given filter. No access is recorded, and expired
+	 * objects are skipped. If the filter is an {@code AttributeFilter} and the cache has an index
+	 * of its attribute able to answer it, the search is answered from the index instead of scanning
+	 * all cached objects. This method never returns {@code null}.
+	 *
+	 * @param filter a filter of cached objects.
+	 *
+	 * @return cached objects allowed by the filter.
+	 *
+	 * @throws IllegalArgumentException if {@code filter} is {@code null}.
+	 */
+	Collection<V> search(Filter<? super V> filter);
+
+}
@@ -1,24 +1,68 @@
 package gems.caching;
 
+import gems.Checks;
 import gems.Identifiable;
+import gems.Limits;
 import gems.Option;
+import gems.filtering.Filter;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Segmented cache implementation. It holds a flat cache for each segment and delegates operations to these segments.
+ * Flat caches are created according to the concurrency strategy from cache properties. If the cache segmenter is
+ * a {@code ResizableSegmenter}, the number of segments can be changed at runtime. Cache limits are either split evenly
+ * among current segments, or shared by all segments as a global budget, according to cache properties.
  *
  * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
  * @param <V> type of cached values.
  * @param <K> type of keys.
  */
-final class SegmentedCache<V extends Identifiable<K>, K> extends AbstractCacheComponent<V, K> implements Cache<V, K> {
+final class SegmentedCache<V extends Identifiable<K>, K> extends AbstractCacheComponent<V, K> implements ResizableCache<V, K>, InvalidatableCache<V, K>, SearchableCache<V, K> {
 
 	/**
-	 * Segments.
+	 * Current segments together with the segmenter routing keys to them.
 	 */
-	private final List<Cache<V, K>> segments;
+	private volatile Layout<V, K> layout;
+
+	/**
+	 * Cache limits of each segment if cache limits are split, or {@code null}.
+	 */
+	private final SegmentLimits limits;
+
+	/**
+	 * Properties of segments if cache limits are split, or {@code null}.
+	 */
+	private final CacheProperties<V, K> segmentProperties;
+
+	/**
+	 * A budget shared by segments if cache limits are shared, or {@code null}.
+	 */
+	private final SharedBudget budget;
+
+	/**
+	 * A lock taken shared by writers and exclusively by resizing.
+	 */
+	private final ReadWriteLock resizing = new ReentrantReadWriteLock();
+
+	/**
+	 * Final statistics of segments removed by resizing.
+	 */
+	private final List<CacheStatistics> retired = new CopyOnWriteArrayList<CacheStatistics>();
+
+	/**
+	 * Indexes created in segments, so segments created by resizing get them too. It is guarded by the resizing lock.
+	 */
+	private final Map<Attribute<? super V, ?>, IndexType> indexes = new LinkedHashMap<Attribute<? super V, ?>, IndexType>();
 
 	/**
 	 * Creates a new segmented cache.
@@ -29,9 +73,68 @@ final class SegmentedCache<V extends Identifiable<K>, K> extends AbstractCacheCo
 	 */
 	SegmentedCache(final CacheProperties<V, K> properties) {
 		super(properties);
-		segments = new ArrayList<Cache<V, K>>(getProperties().getSegmenter().maxSegments());
-		for (int i = 0; i < getProperties().getSegmenter().maxSegments(); i++) {
-			segments.add(new FlatCache<V, K>(properties));
+		final int count = getProperties().getSegmenter().maxSegments();
+		if (getProperties().getBudget() == CacheBudget.SHARED) {
+			limits = null;
+			segmentProperties = null;
+			budget = new SharedBudget(getProperties().getLimits());
+		} else {
+			limits = new SegmentLimits(getProperties().getLimits(), count);
+			segmentProperties = getProperties().withLimits(limits);
+			budget = null;
+		}
+		final List<ExtractableCache<V, K>> segments = new ArrayList<ExtractableCache<V, K>>(count);
+		final List<SharedBudget.Share> shares = new ArrayList<SharedBudget.Share>(count);
+		for (int i = 0; i < count; i++) {
+			segments.add(newSegment(shares));
+		}
+		layout = new Layout<V, K>(getProperties().getSegmenter(), segments, shares);
+	}
+
+	/**
+	 * Creates a new segment. If cache limits are shared, a new share of the budget is created for
+	 * the segment and added to a given list. This method never returns {@code null}.
+	 *
+	 * @param shares shares of segments.
+	 *
+	 * @return a new segment.
+	 */
+	private ExtractableCache<V, K> newSegment(final List<SharedBudget.Share> shares) {
+		final ExtractableCache<V, K> result;
+		if (budget == null) {
+			result = getProperties().getConcurrency().newCache(segmentProperties);
+		} else {
+			final SharedBudget.Share share = budget.newShare();
+			shares.add(share);
+			result = getProperties().getConcurrency().newCache(getProperties().withLimits(share));
+		}
+		for (final Map.Entry<Attribute<? super V, ?>, IndexType> index : indexes.entrySet()) {
+			result.index(index.getKey(), index.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Evicts objects from segments using the largest part of the shared budget while the budget is exceeded.
+	 * It does nothing if cache limits are split.
+	 */
+	private void rebalance() {
+		if (budget == null) {
+			return;
+		}
+		final Layout<V, K> current = layout;
+		for (CacheLimit exceeded = budget.getExceeded(); exceeded != null; exceeded = budget.getExceeded()) {
+			final SharedBudget.Share largest = budget.getLargest(exceeded);
+			final int index = current.shares.indexOf(largest);
+			if (index < 0) {
+				return;
+			}
+			final long usage = largest.getUsage(exceeded);
+			current.segments.get(index).trim();
+			if (largest.getUsage(exceeded) >= usage) {
+				// the segment evicts nothing, e.g. it has been resized meantime
+				return;
+			}
 		}
 	}
 
@@ -42,8 +145,9 @@ final class SegmentedCache<V extends Identifiable<K>, K> extends AbstractCacheCo
 	 *
 	 * @return appropriate segment for a given key.
 	 */
-	private Cache<V, K> getSegment(final K id) {
-		return segments.get(getProperties().getSegmenter().getSegment(id));
+	private ExtractableCache<V, K> getSegment(final K id) {
+		final Layout<V, K> current = layout;
+		return current.segments.get(current.segmenter.getSegment(id));
 	}
 
 	/**
@@ -55,7 +159,13 @@ final class SegmentedCache<V extends Identifiable<K>, K> extends AbstractCacheCo
 		if (object == null) {
 			throw new IllegalArgumentException();
 		}
-		getSegment(object.getId()).offer(object);
+		resizing.readLock().lock();
+		try {
+			getSegment(object.getId()).offer(object);
+			rebalance();
+		} finally {
+			resizing.readLock().unlock();
+		}
 	}
 
 	/**
@@ -68,4 +178,378 @@ final class SegmentedCache<V extends Identifiable<K>, K> extends AbstractCacheCo
 		return getSegment(key).get(key);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override public void invalidate(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		resizing.readLock().lock();
+		try {
+			final Layout<V, K> current = layout;
+			current.segments.get(current.segmenter.getSegment(key)).invalidate(key);
+		} finally {
+			resizing.readLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} Objects are grouped by their segments, so each segment is offered
+	 * only its own objects at once.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		resizing.readLock().lock();
+		try {
+			distribute(objects);
+			rebalance();
+		} finally {
+			resizing.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Offers given objects for a caching at once, taking over statistics of their keys from another cache.
+	 * Objects are grouped by their segments as by {@code offerAll(Collection)}, each segment restores its
+	 * own objects as by {@code ExtractableCache.restore(Collection)} in the given order, and then it evicts
+	 * objects as necessary for satisfying current cache limits.
+	 *
+	 * @param objects objects together with statistics of their keys.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	void restore(final Collection<Map.Entry<V, CacheItemStatistics<K>>> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final Map.Entry<V, CacheItemStatistics<K>> object : objects) {
+			if (object == null || object.getKey() == null || object.getValue() == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		final Map<ExtractableCache<V, K>, List<Map.Entry<V, CacheItemStatistics<K>>>> groups =
+				new HashMap<ExtractableCache<V, K>, List<Map.Entry<V, CacheItemStatistics<K>>>>();
+		resizing.readLock().lock();
+		try {
+			for (final Map.Entry<V, CacheItemStatistics<K>> object : objects) {
+				final ExtractableCache<V, K> segment = getSegment(object.getKey().getId());
+				List<Map.Entry<V, CacheItemStatistics<K>>> group = groups.get(segment);
+				if (group == null) {
+					group = new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>();
+					groups.put(segment, group);
+				}
+				group.add(object);
+			}
+			for (final Map.Entry<ExtractableCache<V, K>, List<Map.Entry<V, CacheItemStatistics<K>>>> group : groups.entrySet()) {
+				group.getKey().restore(group.getValue());
+				group.getKey().trim();
+			}
+			rebalance();
+		} finally {
+			resizing.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Offers given objects to their segments, grouped by segments. Has to be called with the resizing lock held.
+	 *
+	 * @param objects objects to offer.
+	 */
+	private void distribute(final Collection<? extends V> objects) {
+		final Map<ExtractableCache<V, K>, List<V>> groups = new HashMap<ExtractableCache<V, K>, List<V>>();
+		for (final V object : objects) {
+			final ExtractableCache<V, K> segment = getSegment(object.getId());
+			List<V> group = groups.get(segment);
+			if (group == null) {
+				group = new ArrayList<V>();
+				groups.put(segment, group);
+			}
+			group.add(object);
+		}
+		for (final Map.Entry<ExtractableCache<V, K>, List<V>> group : groups.entrySet()) {
+			group.getKey().offerAll(group.getValue());
+		}
+	}
+
+	/**
+	 * {@inheritDoc} Keys are grouped by their segments, so each segment is asked
+	 * only for its own keys at once.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<K, V> getAll(final Collection<? extends K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<ExtractableCache<V, K>, List<K>> groups = new HashMap<ExtractableCache<V, K>, List<K>>();
+		for (final K key : keys) {
+			if (key == null) {
+				throw new IllegalArgumentException();
+			}
+			final ExtractableCache<V, K> segment = getSegment(key);
+			List<K> group = groups.get(segment);
+			if (group == null) {
+				group = new ArrayList<K>();
+				groups.put(segment, group);
+			}
+			group.add(key);
+		}
+		final Map<K, V> result = new HashMap<K, V>();
+		for (final Map.Entry<ExtractableCache<V, K>, List<K>> group : groups.entrySet()) {
+			result.putAll(group.getKey().getAll(group.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} Statistics are summed over segments, and statistics of segments are kept as a breakdown.
+	 * Final statistics of segments removed by resizing are included after statistics of current segments.
+	 */
+	@Override public CacheStatistics getStatistics() {
+		final List<ExtractableCache<V, K>> segments = layout.segments;
+		final List<CacheStatistics> parts = new ArrayList<CacheStatistics>(segments.size() + retired.size());
+		for (final ExtractableCache<V, K> segment : segments) {
+			parts.add(segment.getStatistics());
+		}
+		parts.addAll(retired);
+		return CacheStatistics.sum(parts);
+	}
+
+	/**
+	 * {@inheritDoc} The index is created in all segments, and it is remembered for segments created
+	 * by later resizing. Writes wait while the index is created.
+	 */
+	@Override public <A> void index(final Attribute<? super V, A> attribute, final IndexType type) {
+		if (attribute == null || type == null) {
+			throw new IllegalArgumentException();
+		}
+		resizing.writeLock().lock();
+		try {
+			for (final ExtractableCache<V, K> segment : layout.segments) {
+				segment.index(attribute, type);
+			}
+			indexes.put(attribute, type);
+		} finally {
+			resizing.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} Results of segments are merged. No lock is taken, so the search may miss objects
+	 * being migrated by a concurrent resizing.
+	 */
+	@Override public Collection<V> search(final Filter<? super V> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
+		}
+		final List<V> result = new ArrayList<V>();
+		for (final ExtractableCache<V, K> segment : layout.segments) {
+			result.addAll(segment.search(filter));
+		}
+		return result;
+	}
+
+	@Override public int getSegments() {
+		return layout.segments.size();
+	}
+
+	/**
+	 * Returns a current segment number of a given key.
+	 *
+	 * @param key a key.
+	 *
+	 * @return a segment number of the key.
+	 */
+	int getSegmentNumber(final K key) {
+		return layout.segmenter.getSegment(key);
+	}
+
+	/**
+	 * Returns current segments, so their objects can be read segment by segment. Segments removed
+	 * by a later resize do not hold any objects anymore. This method never returns {@code null}.
+	 *
+	 * @return current segments.
+	 */
+	List<ExtractableCache<V, K>> getSegmentList() {
+		return Collections.unmodifiableList(layout.segments);
+	}
+
+	/**
+	 * {@inheritDoc} Segments are numbered by the segmenter, so growing appends new segments and
+	 * shrinking removes the last ones. Migrated objects are copied into their new segments in order
+	 * of their last accesses before the new layout is published, and removed from their previous
+	 * segments afterwards. Segments then evict objects as necessary for satisfying their limits.
+	 */
+	@Override public void resize(final int segments) {
+		Checks.ensurePositive(segments);
+		resizing.writeLock().lock();
+		try {
+			final Layout<V, K> previous = layout;
+			if (!(previous.segmenter instanceof ResizableSegmenter)) {
+				throw new UnsupportedOperationException();
+			}
+			if (segments == previous.segments.size()) {
+				return;
+			}
+			final CacheSegmenter<? super K> segmenter = ((ResizableSegmenter<? super K>) previous.segmenter).resize(segments);
+			final List<ExtractableCache<V, K>> resized = new ArrayList<ExtractableCache<V, K>>(segments);
+			final List<SharedBudget.Share> shares = new ArrayList<SharedBudget.Share>(segments);
+			for (int i = 0; i < segments; i++) {
+				if (i < previous.segments.size()) {
+					resized.add(previous.segments.get(i));
+					if (budget != null) {
+						shares.add(previous.shares.get(i));
+					}
+				} else {
+					resized.add(newSegment(shares));
+				}
+			}
+			if (limits != null) {
+				limits.setShares(segments);
+			}
+			// moved objects are copied first, so reads keep finding them in previous segments until the layout is replaced
+			final List<List<Map.Entry<V, CacheItemStatistics<K>>>> moved = new ArrayList<List<Map.Entry<V, CacheItemStatistics<K>>>>(segments);
+			for (int i = 0; i < segments; i++) {
+				moved.add(new ArrayList<Map.Entry<V, CacheItemStatistics<K>>>());
+			}
+			for (int i = 0; i < previous.segments.size(); i++) {
+				for (final Map.Entry<V, CacheItemStatistics<K>> entry : previous.segments.get(i).snapshot()) {
+					final int target = segmenter.getSegment(entry.getKey().getId());
+					if (target != i) {
+						moved.get(target).add(entry);
+					}
+				}
+			}
+			for (int i = 0; i < segments; i++) {
+				Collections.sort(moved.get(i), CacheSnapshot.BY_LAST_ACCESS);
+				resized.get(i).restore(moved.get(i));
+			}
+			layout = new Layout<V, K>(segmenter, resized, shares);
+			for (int i = 0; i < previous.segments.size(); i++) {
+				final int index = i;
+				final ExtractableCache<V, K> segment = previous.segments.get(i);
+				segment.extract(new Filter<K>() {
+
+					@Override public boolean allows(final K key) {
+						return index >= segments || segmenter.getSegment(key) != index;
+					}
+
+				});
+				if (index >= segments) {
+					retired.add(segment.getStatistics());
+					if (budget != null) {
+						budget.remove(previous.shares.get(index));
+					}
+				}
+			}
+			if (limits != null) {
+				for (final ExtractableCache<V, K> segment : resized) {
+					segment.trim();
+				}
+			}
+			rebalance();
+		} finally {
+			resizing.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * An immutable triple of a segmenter, segments it routes keys to, and shares of segments.
+	 */
+	private static final class Layout<V extends Identifiable<K>, K> {
+
+		/**
+		 * A segmenter.
+		 */
+		private final CacheSegmenter<? super K> segmenter;
+
+		/**
+		 * Segments.
+		 */
+		private final List<ExtractableCache<V, K>> segments;
+
+		/**
+		 * Shares of a shared budget in the order of segments; empty if cache limits are split.
+		 */
+		private final List<SharedBudget.Share> shares;
+
+		/**
+		 * Creates a new layout.
+		 *
+		 * @param segmenter a segmenter.
+		 * @param segments segments; the list is not copied.
+		 * @param shares shares of segments; the list is not copied.
+		 */
+		private Layout(final CacheSegmenter<? super K> segmenter, final List<ExtractableCache<V, K>> segments, final List<SharedBudget.Share> shares) {
+			this.segmenter = Checks.assertNotNull(segmenter);
+			this.segments = Collections.unmodifiableList(Checks.assertNotNull(segments));
+			this.shares = Collections.unmodifiableList(Checks.assertNotNull(shares));
+		}
+
+	}
+
+	/**
+	 * Cache limits of a segment. Limits given by cache properties are shares of the original number
+	 * of segments; they are rescaled when the number of segments changes. Wrapped limits are read
+	 * each time, so they may vary over time.
+	 */
+	private static final class SegmentLimits implements Limits<CacheLimit> {
+
+		/**
+		 * Limits of a segment for the original number of segments.
+		 */
+		private final Limits<CacheLimit> limits;
+
+		/**
+		 * The original number of segments.
+		 */
+		private final int original;
+
+		/**
+		 * The current number of segments.
+		 */
+		private volatile int shares;
+
+		/**
+		 * Creates new limits of a segment.
+		 *
+		 * @param limits limits of a segment for the original number of segments.
+		 * @param original the original number of segments.
+		 */
+		private SegmentLimits(final Limits<CacheLimit> limits, final int original) {
+			this.limits = Checks.assertNotNull(limits);
+			this.original = Checks.assertPositive(original);
+			this.shares = original;
+		}
+
+		/**
+		 * Sets the current number of segments.
+		 *
+		 * @param shares the current number of segments.
+		 */
+		private void setShares(final int shares) {
+			this.shares = Checks.assertPositive(shares);
+		}
+
+		@Override public Number getLimit(final CacheLimit limit) {
+			final long value = limits.getLimit(limit).longValue();
+			final int current = shares;
+			if (current == original || value > Long.MAX_VALUE / original) {
+				return value;
+			}
+			return value * original / current;
+		}
+
+	}
+
 }
@@ -0,0 +1,66 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.UnexpectedNullException;
+import gems.io.RuntimeIOException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * A codec using the standard Java serialization. It works for any serializable objects, but
+ * it is neither the fastest nor the most compact one; a dedicated codec is advised for large
+ * caches. <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <T> type of encoded objects.
+ */
+public final class SerializingCodec<T extends Serializable> implements Codec<T> {
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UnexpectedNullException if {@code object} is {@code null}.
+	 * @throws RuntimeIOException if the object cannot be serialized.
+	 */
+	@Override public byte[] encode(final T object) {
+		Checks.ensureNotNull(object);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			final ObjectOutputStream output = new ObjectOutputStream(bytes);
+			output.writeObject(object);
+			output.close();
+		} catch (final IOException e) {
+			throw new RuntimeIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UnexpectedNullException if {@code bytes} is {@code null}.
+	 * @throws RuntimeIOException if an object cannot be deserialized.
+	 */
+	@SuppressWarnings({"unchecked"})
+	@Override public T decode(final byte[] bytes) {
+		Checks.ensureNotNull(bytes);
+		try {
+			final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			try {
+				return (T) input.readObject();
+			} finally {
+				input.close();
+			}
+		} catch (final IOException e) {
+			throw new RuntimeIOException(e);
+		} catch (final ClassNotFoundException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Limits;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global cache limits shared by segments of a segmented cache. Each segment gets its own share,
+ * which records the number and the total size of objects cached by the segment, and reserves
+ * them from the global budget at the same time by atomic additions. No locks are taken.
+ * <p/>
+ * A share is given to its segment as cache limits of the segment. While the budget is not
+ * exhausted, limits of a share are its usage plus the remaining budget, so any segment may
+ * grow. Once the budget is exhausted, limits of the share using the largest part of the budget
+ * are lowered by the excess, so only that segment evicts its objects, while limits of other
+ * shares are equal to their usage and they evict nothing.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class SharedBudget {
+
+	/**
+	 * Global cache limits.
+	 */
+	private final Limits<CacheLimit> limits;
+
+	/**
+	 * Global number of cached objects.
+	 */
+	private final AtomicLong items = new AtomicLong();
+
+	/**
+	 * Global total size of cached objects.
+	 */
+	private final AtomicLong weight = new AtomicLong();
+
+	/**
+	 * Current shares.
+	 */
+	private final List<Share> shares = new CopyOnWriteArrayList<Share>();
+
+	/**
+	 * Creates a new budget.
+	 *
+	 * @param limits global cache limits.
+	 */
+	SharedBudget(final Limits<CacheLimit> limits) {
+		this.limits = Checks.assertNotNull(limits);
+	}
+
+	/**
+	 * Creates a new share of the budget. This method never returns {@code null}.
+	 *
+	 * @return a new share of the budget.
+	 */
+	Share newShare() {
+		final Share result = new Share();
+		shares.add(result);
+		return result;
+	}
+
+	/**
+	 * Removes a given share from the budget. Objects recorded by the share have to be removed before.
+	 *
+	 * @param share a share.
+	 */
+	void remove(final Share share) {
+		shares.remove(share);
+	}
+
+	/**
+	 * Returns a share using the largest part of the budget for a given limit, or {@code null}
+	 * if there are no shares.
+	 *
+	 * @param limit a limit.
+	 *
+	 * @return a share using the largest part of the budget.
+	 */
+	Share getLargest(final CacheLimit limit) {
+		Share result = null;
+		for (final Share share : shares) {
+			if (result == null || share.getUsage(limit) > result.getUsage(limit)) {
+				result = share;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a limit exceeded by global usage, or {@code null} if the budget is not exceeded.
+	 *
+	 * @return an exceeded limit, or {@code null}.
+	 */
+	CacheLimit getExceeded() {
+		for (final CacheLimit limit : CacheLimit.values()) {
+			if (getRemaining(limit) < 0L) {
+				return limit;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a remaining part of the budget for a given limit; it is negative if the budget is exceeded.
+	 *
+	 * @param limit a limit.
+	 *
+	 * @return a remaining part of the budget.
+	 */
+	private long getRemaining(final CacheLimit limit) {
+		return limits.getLimit(limit).longValue() - (limit == CacheLimit.ITEMS ? items.get() : weight.get());
+	}
+
+	/**
+	 * A share of the budget given to a segment as its cache limits.
+	 */
+	final class Share implements Limits<CacheLimit> {
+
+		/**
+		 * Number of objects cached by the segment.
+		 */
+		private final AtomicLong shareItems = new AtomicLong();
+
+		/**
+		 * Total size of objects cached by the segment.
+		 */
+		private final AtomicLong shareWeight = new AtomicLong();
+
+		/**
+		 * Creates a new empty share.
+		 */
+		private Share() {
+			// really nothing here
+		}
+
+		/**
+		 * Records a change of objects cached by the segment, reserving or releasing the budget.
+		 *
+		 * @param count a change of number of cached objects.
+		 * @param size a change of total size of cached objects.
+		 */
+		void record(final int count, final long size) {
+			if (count != 0) {
+				shareItems.addAndGet(count);
+				items.addAndGet(count);
+			}
+			if (size != 0L) {
+				shareWeight.addAndGet(size);
+				weight.addAndGet(size);
+			}
+		}
+
+		/**
+		 * Returns a part of the budget used by the segment for a given limit.
+		 *
+		 * @param limit a limit.
+		 *
+		 * @return a used part of the budget.
+		 */
+		long getUsage(final CacheLimit limit) {
+			return limit == CacheLimit.ITEMS ? shareItems.get() : shareWeight.get();
+		}
+
+		@Override public Number getLimit(final CacheLimit limit) {
+			final long usage = getUsage(limit);
+			final long remaining = getRemaining(limit);
+			if (remaining >= 0L) {
+				return usage + remaining;
+			}
+			return getLargest(limit) == this ? Math.max(0L, usage + remaining) : usage;
+		}
+
+	}
+
+}
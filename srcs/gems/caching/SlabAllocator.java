@@ -0,0 +1,301 @@
+package gems.caching;
+
+import gems.Checks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An allocator of byte chunks in direct memory. Memory is reserved in slabs of the same size and
+ * each slab is cut into chunks of a single size class; size classes grow geometrically, so no chunk
+ * wastes more than a quarter of its size. Freed chunks are kept in per-class free lists linked through
+ * the chunks themselves, so the allocator needs no heap memory per chunk. Chunks larger than a slab
+ * are allocated separately and released as soon as they are freed. Slabs are never released; they
+ * are reused for data of the same size class instead.
+ * <p/>
+ * Each chunk is identified by its <em>location</em>, a non-negative number encoding its size class,
+ * slab and offset; up to 2<sup>24</sup> slabs per size class can be addressed. A chunk holds a length
+ * of its data followed by the data. <em>The implementation is not thread-safe. Concurrent reads are
+ * safe only if there are not any concurrent writes.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class SlabAllocator {
+
+	/**
+	 * Size of the smallest chunk in bytes.
+	 */
+	private static final int MIN_CHUNK = 64;
+
+	/**
+	 * Size of data length stored at the beginning of each chunk.
+	 */
+	private static final int HEADER = 4;
+
+	/**
+	 * A location of no chunk, terminating free lists.
+	 */
+	private static final long NONE = -1L;
+
+	/**
+	 * A size class of separately allocated chunks larger than a slab.
+	 */
+	private static final int OVERSIZED = 0xff;
+
+	/**
+	 * Size of each slab in bytes.
+	 */
+	private final int slabSize;
+
+	/**
+	 * Chunk sizes of size classes in ascending order.
+	 */
+	private final int[] chunkSizes;
+
+	/**
+	 * Slabs of particular size classes.
+	 */
+	private final List<List<ByteBuffer>> slabs;
+
+	/**
+	 * Offsets of the first never used chunk in the last slab of particular size classes.
+	 */
+	private final int[] fresh;
+
+	/**
+	 * Heads of free lists of particular size classes.
+	 */
+	private final long[] free;
+
+	/**
+	 * Separately allocated chunks; released ones are {@code null}.
+	 */
+	private final List<ByteBuffer> oversized = new ArrayList<ByteBuffer>();
+
+	/**
+	 * Indexes of released separately allocated chunks.
+	 */
+	private final LinkedList<Integer> releasedOversized = new LinkedList<Integer>();
+
+	/**
+	 * Total number of bytes of direct memory held.
+	 */
+	private long reserved;
+
+	/**
+	 * Creates a new allocator using slabs of a given size.
+	 *
+	 * @param slabSize size of each slab in bytes; it has to be at least 64 and it has to be less than 2<sup>31</sup>.
+	 */
+	SlabAllocator(final int slabSize) {
+		this.slabSize = Checks.assertPositive(slabSize);
+		assert slabSize >= MIN_CHUNK;
+		final List<Integer> sizes = new ArrayList<Integer>();
+		for (long size = MIN_CHUNK; size < slabSize; size = (size + size / 4L + 7L) & ~7L) {
+			sizes.add((int) size);
+		}
+		sizes.add(slabSize);
+		chunkSizes = new int[sizes.size()];
+		slabs = new ArrayList<List<ByteBuffer>>(sizes.size());
+		for (int i = 0; i < chunkSizes.length; i++) {
+			chunkSizes[i] = sizes.get(i);
+			slabs.add(new ArrayList<ByteBuffer>());
+		}
+		fresh = new int[chunkSizes.length];
+		free = new long[chunkSizes.length];
+		Arrays.fill(free, NONE);
+	}
+
+	/**
+	 * Stores given data into a newly allocated chunk and returns its location.
+	 *
+	 * @param data data.
+	 *
+	 * @return a location of a chunk holding the data.
+	 */
+	long store(final byte[] data) {
+		final int length = data.length + HEADER;
+		final long location;
+		final ByteBuffer buffer;
+		if (length > slabSize) {
+			location = allocateOversized(length);
+			buffer = oversized.get(slabOf(location)).duplicate();
+		} else {
+			location = allocate(sizeClassFor(length));
+			buffer = slabs.get(sizeClassOf(location)).get(slabOf(location)).duplicate();
+		}
+		buffer.position(offsetOf(location));
+		buffer.putInt(data.length);
+		buffer.put(data);
+		return location;
+	}
+
+	/**
+	 * Returns data stored in a chunk at a given location.
+	 *
+	 * @param location a location of an allocated chunk.
+	 *
+	 * @return data stored in the chunk.
+	 */
+	byte[] load(final long location) {
+		final ByteBuffer buffer = bufferOf(location).duplicate();
+		buffer.position(offsetOf(location));
+		final byte[] result = new byte[buffer.getInt()];
+		buffer.get(result);
+		return result;
+	}
+
+	/**
+	 * Frees a chunk at a given location. The chunk is returned to the free list of its size
+	 * class, or released if it was allocated separately.
+	 *
+	 * @param location a location of an allocated chunk.
+	 */
+	void free(final long location) {
+		final int sizeClass = sizeClassOf(location);
+		if (sizeClass == OVERSIZED) {
+			final int index = slabOf(location);
+			reserved -= oversized.get(index).capacity();
+			oversized.set(index, null);
+			releasedOversized.push(index);
+			return;
+		}
+		bufferOf(location).putLong(offsetOf(location), free[sizeClass]);
+		free[sizeClass] = location;
+	}
+
+	/**
+	 * Returns number of bytes of direct memory held by the allocator.
+	 *
+	 * @return number of bytes of direct memory held by the allocator.
+	 */
+	long reserved() {
+		return reserved;
+	}
+
+	/**
+	 * Allocates a chunk of a given size class.
+	 *
+	 * @param sizeClass a size class.
+	 *
+	 * @return a location of an allocated chunk.
+	 */
+	private long allocate(final int sizeClass) {
+		if (free[sizeClass] != NONE) {
+			final long result = free[sizeClass];
+			free[sizeClass] = bufferOf(result).getLong(offsetOf(result));
+			return result;
+		}
+		final List<ByteBuffer> classSlabs = slabs.get(sizeClass);
+		if (classSlabs.isEmpty() || fresh[sizeClass] + chunkSizes[sizeClass] > slabSize) {
+			classSlabs.add(ByteBuffer.allocateDirect(slabSize));
+			reserved += slabSize;
+			fresh[sizeClass] = 0;
+		}
+		final long result = locationOf(sizeClass, classSlabs.size() - 1, fresh[sizeClass]);
+		fresh[sizeClass] += chunkSizes[sizeClass];
+		return result;
+	}
+
+	/**
+	 * Allocates a separate chunk of a given size.
+	 *
+	 * @param size size of the chunk in bytes.
+	 *
+	 * @return a location of an allocated chunk.
+	 */
+	private long allocateOversized(final int size) {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+		reserved += size;
+		if (releasedOversized.isEmpty()) {
+			oversized.add(buffer);
+			return locationOf(OVERSIZED, oversized.size() - 1, 0);
+		}
+		final int index = releasedOversized.pop();
+		oversized.set(index, buffer);
+		return locationOf(OVERSIZED, index, 0);
+	}
+
+	/**
+	 * Returns the smallest size class with chunks of at least a given size.
+	 *
+	 * @param size required size in bytes; it must not exceed the slab size.
+	 *
+	 * @return a size class.
+	 */
+	private int sizeClassFor(final int size) {
+		int low = 0;
+		int high = chunkSizes.length - 1;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (chunkSizes[middle] < size) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns a buffer holding a chunk at a given location.
+	 *
+	 * @param location a location.
+	 *
+	 * @return a buffer holding the chunk.
+	 */
+	private ByteBuffer bufferOf(final long location) {
+		final int sizeClass = sizeClassOf(location);
+		return sizeClass == OVERSIZED ? oversized.get(slabOf(location)) : slabs.get(sizeClass).get(slabOf(location));
+	}
+
+	/**
+	 * Encodes a location of a chunk.
+	 *
+	 * @param sizeClass a size class.
+	 * @param slab an index of slab.
+	 * @param offset an offset in the slab.
+	 *
+	 * @return a location.
+	 */
+	private static long locationOf(final int sizeClass, final int slab, final int offset) {
+		return ((long) sizeClass << 56) | ((long) slab << 32) | (offset & 0xffffffffL);
+	}
+
+	/**
+	 * Returns a size class of a given location.
+	 *
+	 * @param location a location.
+	 *
+	 * @return a size class.
+	 */
+	private static int sizeClassOf(final long location) {
+		return (int) (location >>> 56);
+	}
+
+	/**
+	 * Returns an index of slab of a given location.
+	 *
+	 * @param location a location.
+	 *
+	 * @return an index of slab.
+	 */
+	private static int slabOf(final long location) {
+		return (int) ((location >>> 32) & 0xffffffL);
+	}
+
+	/**
+	 * Returns an offset in slab of a given location.
+	 *
+	 * @param location a location.
+	 *
+	 * @return an offset in slab.
+	 */
+	private static int offsetOf(final long location) {
+		return (int) location;
+	}
+
+}
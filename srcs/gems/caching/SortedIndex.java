@@ -0,0 +1,66 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A secondary index keeping keys in a search tree ordered by attribute values. Attribute values
+ * are compared according to their natural ordering.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ * @param <A> type of attribute values.
+ */
+final class SortedIndex<K, V extends Identifiable<K>, A> extends Index<K, V, A> {
+
+	/**
+	 * Keys of values grouped by attribute values.
+	 */
+	private final NavigableMap<A, Set<K>> sorted;
+
+	/**
+	 * Creates a new empty index.
+	 *
+	 * @param attribute an indexed attribute.
+	 */
+	SortedIndex(final Attribute<? super V, A> attribute) {
+		this(attribute, new TreeMap<A, Set<K>>());
+	}
+
+	/**
+	 * Creates a new empty index using a given search tree.
+	 *
+	 * @param attribute an indexed attribute.
+	 * @param sorted an empty search tree.
+	 */
+	private SortedIndex(final Attribute<? super V, A> attribute, final NavigableMap<A, Set<K>> sorted) {
+		super(attribute, sorted);
+		this.sorted = sorted;
+	}
+
+	/**
+	 * {@inheritDoc} Only attribute values within the range are visited, so a query takes a logarithmic
+	 * time plus a time proportional to the number of returned keys. This method never returns {@code null}.
+	 */
+	@Override Collection<K> range(final A from, final A to) {
+		final NavigableMap<A, Set<K>> range;
+		if (from == null) {
+			range = to == null ? sorted : sorted.headMap(to, false);
+		} else {
+			range = to == null ? sorted.tailMap(from, true) : sorted.subMap(from, true, to, false);
+		}
+		final List<K> result = new ArrayList<K>();
+		for (final Set<K> keys : range.values()) {
+			result.addAll(keys);
+		}
+		return result;
+	}
+
+}
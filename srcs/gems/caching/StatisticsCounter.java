@@ -0,0 +1,157 @@
+package gems.caching;
+
+import gems.Limits;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A recorder of cache-wide statistics. Counters are striped, so recording from many threads
+ * at once does not contend on a single memory location, and it takes no locks. Snapshots are
+ * not atomic: values recorded concurrently with taking a snapshot may or may not be included.
+ * <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class StatisticsCounter {
+
+	/**
+	 * A counter of hits.
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * A counter of misses.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * A counter of loads.
+	 */
+	private final LongAdder loads = new LongAdder();
+
+	/**
+	 * A sum of load times in nanoseconds.
+	 */
+	private final LongAdder loadTime = new LongAdder();
+
+	/**
+	 * Counters of evictions indexed by ordinal numbers of their causes.
+	 */
+	private final LongAdder[] evictions = new LongAdder[EvictionCause.values().length];
+
+	/**
+	 * A sum of sizes of cached objects.
+	 */
+	private final LongAdder weight = new LongAdder();
+
+	/**
+	 * A share of a shared budget recording cached objects too, or {@code null}.
+	 */
+	private final SharedBudget.Share share;
+
+	/**
+	 * Creates a new counter with all values equal to zero.
+	 */
+	StatisticsCounter() {
+		this(null);
+	}
+
+	/**
+	 * Creates a new counter with all values equal to zero. If given cache limits are a share of
+	 * a shared budget, additions and removals of cached objects are recorded to the share, too.
+	 *
+	 * @param limits cache limits of the cache.
+	 */
+	StatisticsCounter(final Limits<CacheLimit> limits) {
+		share = limits instanceof SharedBudget.Share ? (SharedBudget.Share) limits : null;
+		for (int i = 0; i < evictions.length; i++) {
+			evictions[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a request satisfied by the cache.
+	 */
+	void recordHit() {
+		hits.increment();
+	}
+
+	/**
+	 * Records a request not satisfied by the cache.
+	 */
+	void recordMiss() {
+		misses.increment();
+	}
+
+	/**
+	 * Records given number of objects loaded in given time.
+	 *
+	 * @param count number of loaded objects.
+	 * @param nanos duration of the load in nanoseconds.
+	 */
+	void recordLoads(final int count, final long nanos) {
+		loads.add(count);
+		loadTime.add(nanos);
+	}
+
+	/**
+	 * Records a removal of a cached object of a given size for a given cause.
+	 *
+	 * @param cause a cause of eviction.
+	 * @param size a size of the removed object.
+	 */
+	void recordEviction(final EvictionCause cause, final long size) {
+		evictions[cause.ordinal()].increment();
+		recordRemoval(size);
+	}
+
+	/**
+	 * Records a new cached object of a given size.
+	 *
+	 * @param size a size of the object.
+	 */
+	void recordAddition(final long size) {
+		weight.add(size);
+		if (share != null) {
+			share.record(1, size);
+		}
+	}
+
+	/**
+	 * Records a removal of a cached object of a given size which is not an eviction.
+	 *
+	 * @param size a size of the object.
+	 */
+	void recordRemoval(final long size) {
+		weight.add(-size);
+		if (share != null) {
+			share.record(-1, -size);
+		}
+	}
+
+	/**
+	 * Records a change of total size of cached objects replaced by other objects.
+	 *
+	 * @param delta a change of size.
+	 */
+	void recordWeight(final long delta) {
+		weight.add(delta);
+		if (share != null) {
+			share.record(0, delta);
+		}
+	}
+
+	/**
+	 * Returns a snapshot of recorded values. This method never returns {@code null}.
+	 *
+	 * @return a snapshot of recorded values.
+	 */
+	CacheStatistics snapshot() {
+		final long[] evicted = new long[evictions.length];
+		for (int i = 0; i < evicted.length; i++) {
+			evicted[i] = evictions[i].sum();
+		}
+		return new CacheStatistics(hits.sum(), misses.sum(), loads.sum(), loadTime.sum(), evicted, weight.sum());
+	}
+
+}
@@ -6,7 +6,18 @@ import gems.filtering.Filter;
 
 import java.util.Collection;
 
-interface Storage<K, V extends Identifiable<K>> extends Iterable<V>, ObjectProvider<V, K> {
+/**
+ * A low level storage of cached objects, which maps keys to values. The storage provides
+ * values by their keys through the {@code ObjectProvider} interface and it iterates over
+ * all stored values. Storages are created by {@code StorageFactory} objects, one for each
+ * flat part of a cache, and they are accessed only by the caching subsystem: concurrent
+ * reads may happen, but never concurrently with a write.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ * @param <V> type of values.
+ */
+public interface Storage<K, V extends Identifiable<K>> extends Iterable<V>, ObjectProvider<V, K> {
 
 	/**
 	 * Inserts a given value into the storage. Implementation have to gurantee that a return
@@ -35,6 +46,8 @@ interface Storage<K, V extends Identifiable<K>> extends Iterable<V>, ObjectProvi
 	/**
 	 * Returns a collection of stored values which satisfy a condistion specified by a given filter.
 	 * This method should never return {@code null}, at least empty collection should be returned.
+	 * If the filter is an {@code AttributeFilter} and the storage has an index of its attribute
+	 * able to answer it, the search is answered from the index instead of scanning all values.
 	 *
 	 * @param filter a filter of returned values.
 	 *
@@ -42,4 +55,15 @@ interface Storage<K, V extends Identifiable<K>> extends Iterable<V>, ObjectProvi
 	 */
 	Collection<V> search(Filter<? super V> filter);
 
+	/**
+	 * Creates a secondary index of a given attribute of stored values. Values already stored are
+	 * indexed immediately, and the index is kept up to date by later writes. An index created
+	 * for the same attribute before is replaced.
+	 *
+	 * @param attribute an indexed attribute.
+	 * @param type a type of the index.
+	 * @param <A> type of attribute values.
+	 */
+	<A> void index(Attribute<? super V, A> attribute, IndexType type);
+
 }
@@ -2,8 +2,23 @@ package gems.caching;
 
 import gems.Identifiable;
 
-interface StorageFactory<K, V extends Identifiable<K>> {
+/**
+ * A factory of storages of cached objects. Caches ask the factory for a new storage for each
+ * flat part of the cache, so a custom tier can be plugged into caches by implementing this
+ * interface together with the {@code Storage} interface.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys identifying cached objects.
+ * @param <V> type of cached objects.
+ */
+public interface StorageFactory<K, V extends Identifiable<K>> {
 
+	/**
+	 * Returns a new storage. A storage of a persistent factory may be reopened with objects
+	 * stored before; otherwise it is empty. This method never returns {@code null}.
+	 *
+	 * @return a new storage.
+	 */
 	Storage<K, V> getStorage();
 
 }
@@ -0,0 +1,153 @@
+package gems.caching;
+
+import gems.Checks;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lossy buffer of events recorded by many threads and drained by a single consumer. Events are
+ * kept in several bounded ring buffers, so called stripes, and each thread records to the stripe
+ * chosen by its ID, so threads rarely contend on the same stripe. Recording never blocks and never
+ * waits: if the stripe is full or another thread is just recording to the same slot, the event is
+ * dropped. The buffer therefore suits events whose loss only degrades precision, like accesses used
+ * for ordering of an eviction queue.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <E> a type of events.
+ */
+final class StripedRingBuffer<E> {
+
+	/**
+	 * Number of slots of each stripe; it has to be a power of two.
+	 */
+	static final int STRIPE_CAPACITY = 16;
+
+	/**
+	 * Stripes.
+	 */
+	private final Stripe<E>[] stripes;
+
+	/**
+	 * Creates a new buffer with a number of stripes suitable for the number of available processors.
+	 */
+	StripedRingBuffer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new buffer with at least a given number of stripes.
+	 *
+	 * @param concurrency an expected number of concurrently recording threads.
+	 *
+	 * @throws gems.NumericValueOutOfRangeException if {@code concurrency} is less than 1.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	StripedRingBuffer(final int concurrency) {
+		Checks.ensurePositive(concurrency);
+		int count = 1;
+		while (count < concurrency && count < 1 << 16) {
+			count <<= 1;
+		}
+		stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new Stripe<E>();
+		}
+	}
+
+	/**
+	 * Records a given event to the stripe of the current thread. The event is dropped if the stripe
+	 * is full or contended.
+	 *
+	 * @param event an event.
+	 *
+	 * @return {@code true} if the event was recorded, {@code false} if it was dropped.
+	 */
+	boolean offer(final E event) {
+		final int hash = Hashing.spread(Long.hashCode(Thread.currentThread().getId()));
+		return stripes[hash & (stripes.length - 1)].offer(Checks.assertNotNull(event));
+	}
+
+	/**
+	 * Moves all recorded events to a given collection. Events of each stripe are moved in order of
+	 * recording. Only one thread may drain the buffer at a time.
+	 *
+	 * @param target a collection.
+	 *
+	 * @return number of moved events.
+	 */
+	int drainTo(final Collection<? super E> target) {
+		int result = 0;
+		for (final Stripe<E> stripe : stripes) {
+			result += stripe.drainTo(target);
+		}
+		return result;
+	}
+
+	/**
+	 * A bounded ring buffer. Producers claim slots by advancing the tail and publish events into
+	 * them afterwards; the consumer empties published slots and advances the head.
+	 */
+	private static final class Stripe<E> {
+
+		/**
+		 * Slots.
+		 */
+		private final AtomicReferenceArray<E> slots = new AtomicReferenceArray<E>(STRIPE_CAPACITY);
+
+		/**
+		 * Number of claimed slots since the stripe was created.
+		 */
+		private final AtomicLong tail = new AtomicLong();
+
+		/**
+		 * Number of emptied slots since the stripe was created. Written by the consumer only.
+		 */
+		private volatile long head;
+
+		/**
+		 * Records a given event.
+		 *
+		 * @param event an event.
+		 *
+		 * @return {@code true} if the event was recorded, {@code false} if it was dropped.
+		 */
+		private boolean offer(final E event) {
+			final long claimed = tail.get();
+			if (claimed - head >= STRIPE_CAPACITY || !tail.compareAndSet(claimed, claimed + 1L)) {
+				return false;
+			}
+			slots.lazySet((int) claimed & (STRIPE_CAPACITY - 1), event);
+			return true;
+		}
+
+		/**
+		 * Moves published events to a given collection. It stops at the first claimed slot
+		 * whose event is not published yet; that event is moved by the next drain.
+		 *
+		 * @param target a collection.
+		 *
+		 * @return number of moved events.
+		 */
+		private int drainTo(final Collection<? super E> target) {
+			final long claimed = tail.get();
+			long position = head;
+			while (position < claimed) {
+				final int slot = (int) position & (STRIPE_CAPACITY - 1);
+				final E event = slots.get(slot);
+				if (event == null) {
+					break;
+				}
+				slots.lazySet(slot, null);
+				target.add(event);
+				position++;
+			}
+			final int result = (int) (position - head);
+			head = position;
+			return result;
+		}
+
+	}
+
+}
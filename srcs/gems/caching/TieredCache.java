@@ -0,0 +1,408 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.Option;
+import gems.UnexpectedNullException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache composed of two tiers. The primary tier is a small and fast cache, typically holding
+ * objects on the heap; the secondary tier is a larger one, typically keeping objects off the heap
+ * or on the disk. Objects are offered to the primary tier. Objects evicted from the primary tier
+ * are demoted into the secondary tier asynchronously, using the thread pool of primary tier
+ * properties. Objects missing in the primary tier are looked up in the secondary tier, and found
+ * ones are promoted back to the primary tier. Objects being demoted are still found meantime.
+ * Tiers are exclusive: an object offered to the primary tier or promoted to it is removed
+ * from the secondary tier, so the secondary tier never serves an object superseded by a newer
+ * one, even if the newer one expires in the primary tier later. Keys are guarded by striped locks
+ * counting offers, so an object found in the secondary tier is promoted only if no object with
+ * the same key has been offered since the lookup started; otherwise it is returned but not promoted.
+ * <p/>
+ * Each tier is created from its own cache properties, so each tier has its own limits, evictor,
+ * storages, and so on. An eviction handler of primary tier properties is still called before
+ * an object is demoted. Hits of each tier and misses of the whole cache are counted.
+ * Cache-wide statistics sum statistics of both tiers, while hits and misses are those of
+ * the whole cache, and evictions are only those losing objects, i.e. evictions from the
+ * secondary tier and expirations in any tier.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+public final class TieredCache<V extends Identifiable<K>, K> implements ManagedCache<V, K> {
+
+	/**
+	 * Number of lock stripes.
+	 */
+	private static final int STRIPES = 64;
+
+	/**
+	 * The primary tier.
+	 */
+	private final ManagedCache<V, K> primary;
+
+	/**
+	 * The secondary tier.
+	 */
+	private final InvalidatableCache<V, K> secondary;
+
+	/**
+	 * Objects evicted from the primary tier and not offered to the secondary tier yet.
+	 */
+	private final ConcurrentMap<K, V> demoting = new ConcurrentHashMap<K, V>();
+
+	/**
+	 * Locks of stripes of keys, serializing offers and promotions of objects with keys of the same stripe.
+	 */
+	private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+	/**
+	 * Counters of offers of objects with keys of each stripe.
+	 */
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+	/**
+	 * A counter of hits of the primary tier.
+	 */
+	private final LongAdder primaryHits = new LongAdder();
+
+	/**
+	 * A counter of hits of the secondary tier.
+	 */
+	private final LongAdder secondaryHits = new LongAdder();
+
+	/**
+	 * A counter of misses.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a new two-tier cache.
+	 *
+	 * @param primary properties of the primary tier.
+	 * @param secondary properties of the secondary tier.
+	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 */
+	public TieredCache(final CacheProperties<V, K> primary, final CacheProperties<V, K> secondary) {
+		Checks.ensureNotNull(primary);
+		this.secondary = newCache(Checks.ensureNotNull(secondary));
+		this.primary = newCache(primary.withEvictionHandler(new DemotingHandler(primary)));
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Creates a new cache configured according to given properties.
+	 *
+	 * @param properties cache properties.
+	 *
+	 * @return a new cache.
+	 */
+	private static <V extends Identifiable<K>, K> InvalidatableCache<V, K> newCache(final CacheProperties<V, K> properties) {
+		final Option<ManagedCache<V, K>> result = new CacheFactory<V, K>().provideManaged(new Option<CacheProperties<V, K>>(properties));
+		if (!result.hasValue() || !(result.getValue() instanceof InvalidatableCache)) {
+			throw new IllegalStateException();
+		}
+		return (InvalidatableCache<V, K>) result.getValue();
+	}
+
+	/**
+	 * Removes an object identified by a given key from the secondary tier and from objects being demoted.
+	 *
+	 * @param key a key.
+	 */
+	private void invalidateSecondary(final K key) {
+		demoting.remove(key);
+		secondary.invalidate(key);
+	}
+
+	/**
+	 * Returns a stripe of a given key.
+	 *
+	 * @param key a key.
+	 *
+	 * @return a stripe of the key.
+	 */
+	private static int stripe(final Object key) {
+		return Hashing.index(Hashing.spread(key.hashCode()), STRIPES);
+	}
+
+	/**
+	 * Locks stripes of keys of given objects in ascending order, so concurrent callers never deadlock.
+	 *
+	 * @param objects objects.
+	 *
+	 * @return locked stripes.
+	 */
+	private BitSet lock(final Collection<? extends V> objects) {
+		final BitSet result = new BitSet(STRIPES);
+		for (final V object : objects) {
+			result.set(stripe(object.getId()));
+		}
+		for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+			locks[i].lock();
+		}
+		return result;
+	}
+
+	/**
+	 * Unlocks given stripes.
+	 *
+	 * @param stripes locked stripes.
+	 */
+	private void unlock(final BitSet stripes) {
+		for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+			locks[i].unlock();
+		}
+	}
+
+	/**
+	 * Removes older objects with the same keys as given objects from the secondary tier and offers
+	 * given objects to the primary tier. New objects are counted as offers of their stripes. Promoted objects are not
+	 * counted, and each of them is skipped if its stripe has been offered to since its lookup started.
+	 *
+	 * @param objects offered objects.
+	 * @param expected versions of stripes by keys of promoted objects, or {@code null} for new objects.
+	 */
+	private void store(final Collection<? extends V> objects, final Map<K, Long> expected) {
+		final BitSet stripes = lock(objects);
+		try {
+			final List<V> stored = new ArrayList<V>(objects.size());
+			for (final V object : objects) {
+				if (expected == null || expected.get(object.getId()) == versions.get(stripe(object.getId()))) {
+					stored.add(object);
+				}
+			}
+			if (stored.isEmpty()) {
+				return;
+			}
+			// older objects are removed first, so objects demoted by the offer itself are kept
+			for (final V object : stored) {
+				invalidateSecondary(object.getId());
+			}
+			if (stored.size() == 1) {
+				primary.offer(stored.get(0));
+			} else {
+				primary.offerAll(stored);
+			}
+			if (expected == null) {
+				for (final V object : stored) {
+					versions.incrementAndGet(stripe(object.getId()));
+				}
+			}
+		} finally {
+			unlock(stripes);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The object is offered to the primary tier and an older object with the same key is removed from the secondary tier.
+	 *
+	 * @throws IllegalArgumentException if {@code object} is {@code null}.
+	 */
+	@Override public void offer(final V object) {
+		if (object == null) {
+			throw new IllegalArgumentException();
+		}
+		store(Collections.singletonList(object), null);
+	}
+
+	/**
+	 * {@inheritDoc} If the object is found in the secondary tier only, it is moved to the primary tier,
+	 * unless an object with the same key has been offered meantime.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}.
+	 */
+	@Override public Option<V> get(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		final long version = versions.get(stripe(key));
+		final Option<V> cached = primary.get(key);
+		if (cached.hasValue()) {
+			primaryHits.increment();
+			return cached;
+		}
+		final V demoted = demoting.get(key);
+		final Option<V> result = demoted != null ? new Option<V>(demoted) : secondary.get(key);
+		if (result.hasValue()) {
+			secondaryHits.increment();
+			store(Collections.singletonList(result.getValue()), Collections.singletonMap(key, version));
+			return new Option<V>(result.getValue());
+		}
+		misses.increment();
+		return new Option<V>(null);
+	}
+
+	/**
+	 * {@inheritDoc} Objects are offered to the primary tier at once, and older objects with the same keys
+	 * are removed from the secondary tier.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		store(objects, null);
+	}
+
+	/**
+	 * {@inheritDoc} Each tier is asked at once for keys missing in the previous one, and objects
+	 * found in the secondary tier only are moved to the primary tier at once, except those whose
+	 * keys have been offered meantime.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<K, V> getAll(final Collection<? extends K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
+		}
+		final Map<K, Long> expected = new HashMap<K, Long>();
+		for (final K key : keys) {
+			if (key == null) {
+				throw new IllegalArgumentException();
+			}
+			expected.put(key, versions.get(stripe(key)));
+		}
+		final Map<K, V> result = primary.getAll(keys);
+		primaryHits.add(result.size());
+		final List<K> missing = new ArrayList<K>();
+		final List<V> promoted = new ArrayList<V>();
+		for (final K key : keys) {
+			if (!result.containsKey(key)) {
+				final V demoted = demoting.get(key);
+				if (demoted == null) {
+					missing.add(key);
+				} else {
+					promoted.add(demoted);
+				}
+			}
+		}
+		if (!missing.isEmpty()) {
+			final Map<K, V> found = secondary.getAll(missing);
+			promoted.addAll(found.values());
+			misses.add(missing.size() - found.size());
+		}
+		secondaryHits.add(promoted.size());
+		for (final V value : promoted) {
+			result.put(value.getId(), value);
+		}
+		store(promoted, expected);
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} Statistics of tiers are kept as a breakdown.
+	 */
+	@Override public CacheStatistics getStatistics() {
+		final CacheStatistics primaryStatistics = primary.getStatistics();
+		final CacheStatistics secondaryStatistics = secondary.getStatistics();
+		final long[] evictions = new long[EvictionCause.values().length];
+		evictions[EvictionCause.SIZE.ordinal()] = secondaryStatistics.getEvictions(EvictionCause.SIZE);
+		evictions[EvictionCause.EXPIRED.ordinal()] = primaryStatistics.getEvictions(EvictionCause.EXPIRED)
+				+ secondaryStatistics.getEvictions(EvictionCause.EXPIRED);
+		return CacheStatistics.sum(Arrays.asList(primaryStatistics, secondaryStatistics))
+				.withRequests(primaryHits.sum() + secondaryHits.sum(), misses.sum())
+				.withEvictions(evictions);
+	}
+
+	/**
+	 * Returns number of hits of the primary tier.
+	 *
+	 * @return number of hits of the primary tier.
+	 */
+	public long getPrimaryHits() {
+		return primaryHits.sum();
+	}
+
+	/**
+	 * Returns number of hits of the secondary tier, i.e. number of promotions.
+	 *
+	 * @return number of hits of the secondary tier.
+	 */
+	public long getSecondaryHits() {
+		return secondaryHits.sum();
+	}
+
+	/**
+	 * Returns number of requests not satisfied by any of tiers.
+	 *
+	 * @return number of misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * An eviction handler of the primary tier, demoting evicted objects to the secondary tier.
+	 */
+	private final class DemotingHandler implements EvictionHandler<V> {
+
+		/**
+		 * Properties of the primary tier.
+		 */
+		private final CacheProperties<V, K> properties;
+
+		/**
+		 * Creates a new handler.
+		 *
+		 * @param properties properties of the primary tier.
+		 */
+		private DemotingHandler(final CacheProperties<V, K> properties) {
+			this.properties = Checks.assertNotNull(properties);
+		}
+
+		/**
+		 * Calls the original handler and schedules demotion of a given object. If the object is superseded
+		 * or promoted while being demoted, it is removed from the secondary tier again.
+		 *
+		 * @param value an evicted object.
+		 *
+		 * @throws IllegalArgumentException if {@code value} is {@code null}.
+		 */
+		@Override public void handle(final V value) {
+			if (value == null) {
+				throw new IllegalArgumentException();
+			}
+			properties.getEvictionHandler().handle(value);
+			demoting.put(value.getId(), value);
+			properties.getThreadPool().execute(new Runnable() {
+
+				@Override public void run() {
+					try {
+						secondary.offer(value);
+					} finally {
+						if (!demoting.remove(value.getId(), value)) {
+							secondary.invalidate(value.getId());
+						}
+					}
+				}
+
+			});
+		}
+
+	}
+
+}
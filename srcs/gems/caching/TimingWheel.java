@@ -0,0 +1,279 @@
+package gems.caching;
+
+import gems.Checks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel keeping timers of keys. Each level of the wheel is a ring of
+ * sixty-four buckets, and each level ticks sixty-four times slower than the previous one:
+ * level zero ticks every millisecond, the last level ticks about every twelve days. A timer
+ * is put into a bucket of the lowest level whose ring spans its remaining time, so scheduling
+ * and cancellation are constant-time operations regardless of number of timers. As time passes,
+ * buckets of higher levels are emptied and their timers cascade down to lower levels; each timer
+ * cascades at most once per level, so expiring any number of timers is amortized constant-time
+ * per timer and no periodical scan of all timers is ever needed.
+ * <p/>
+ * Timers fire with a precision given by the bucket they are in, i.e. a timer due in an hour may
+ * fire a few seconds late, but never early. <em>The implementation is thread-safe.</em>
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of keys.
+ */
+final class TimingWheel<K> {
+
+	/**
+	 * Number of buckets of each level; it has to be a power of two.
+	 */
+	private static final int BUCKETS = 64;
+
+	/**
+	 * Binary logarithms of tick durations of particular levels, in milliseconds.
+	 */
+	private static final int[] SHIFTS = {0, 6, 12, 18, 24, 30};
+
+	/**
+	 * Buckets indexed by level and by bucket index.
+	 */
+	private final Timer<K>[][] wheel;
+
+	/**
+	 * Time the wheel has been advanced to.
+	 */
+	private long time;
+
+	/**
+	 * Number of scheduled timers.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new wheel starting at a given time.
+	 *
+	 * @param time a time the wheel starts at.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	TimingWheel(final long time) {
+		this.time = time;
+		wheel = new Timer[SHIFTS.length][BUCKETS];
+		for (final Timer<K>[] level : wheel) {
+			for (int i = 0; i < level.length; i++) {
+				level[i] = new Timer<K>(null);
+			}
+		}
+	}
+
+	/**
+	 * Returns a time a given duration after a given time, or {@code Long.MAX_VALUE}
+	 * if the duration is {@code ExpirationPolicy.NEVER} or the result overflows.
+	 *
+	 * @param time a time.
+	 * @param duration a duration.
+	 *
+	 * @return a time a given duration after a given time.
+	 */
+	static long deadline(final long time, final long duration) {
+		return duration >= Long.MAX_VALUE - time ? Long.MAX_VALUE : time + duration;
+	}
+
+	/**
+	 * Schedules a new timer of a given key. This method never returns {@code null}.
+	 *
+	 * @param key a key.
+	 * @param deadline a time the timer fires at.
+	 *
+	 * @return a scheduled timer.
+	 */
+	synchronized Timer<K> schedule(final K key, final long deadline) {
+		final Timer<K> result = new Timer<K>(Checks.assertNotNull(key));
+		result.deadline = deadline;
+		link(result);
+		return result;
+	}
+
+	/**
+	 * Reschedules a given timer to a new deadline. If the timer has been already fired
+	 * or cancelled, it is scheduled again.
+	 *
+	 * @param timer a timer.
+	 * @param deadline a new time the timer fires at.
+	 */
+	synchronized void reschedule(final Timer<K> timer, final long deadline) {
+		if (timer.isLinked()) {
+			unlink(timer);
+		}
+		timer.deadline = deadline;
+		link(timer);
+	}
+
+	/**
+	 * Cancels a given timer. Cancelling of already fired or cancelled timer does nothing.
+	 *
+	 * @param timer a timer.
+	 */
+	synchronized void cancel(final Timer<K> timer) {
+		if (timer.isLinked()) {
+			unlink(timer);
+		}
+	}
+
+	/**
+	 * Advances the wheel to a given time and returns keys of all fired timers. Buckets passed
+	 * since the last advance are emptied; due timers fire and others are scheduled again to
+	 * lower levels. This method never returns {@code null}.
+	 *
+	 * @param now a current time.
+	 *
+	 * @return keys of fired timers.
+	 */
+	synchronized Collection<K> advance(final long now) {
+		final long previous = time;
+		if (now <= previous) {
+			return Collections.emptyList();
+		}
+		time = now;
+		final List<K> result = new ArrayList<K>();
+		for (int level = 0; level < SHIFTS.length; level++) {
+			final long previousTicks = previous >>> SHIFTS[level];
+			final long currentTicks = now >>> SHIFTS[level];
+			if (currentTicks <= previousTicks) {
+				break;
+			}
+			final long steps = Math.min(currentTicks - previousTicks + 1L, BUCKETS);
+			for (long ticks = previousTicks; ticks < previousTicks + steps; ticks++) {
+				expire(wheel[level][(int) (ticks & (BUCKETS - 1))], result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns number of scheduled timers.
+	 *
+	 * @return number of scheduled timers.
+	 */
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Empties a given bucket. Due timers are fired, others are scheduled again.
+	 *
+	 * @param sentinel a sentinel of the bucket.
+	 * @param fired a list of keys of fired timers.
+	 */
+	private void expire(final Timer<K> sentinel, final List<K> fired) {
+		Timer<K> timer = sentinel.next;
+		sentinel.prev = sentinel;
+		sentinel.next = sentinel;
+		while (timer != sentinel) {
+			final Timer<K> next = timer.next;
+			timer.prev = null;
+			timer.next = null;
+			size--;
+			if (timer.deadline <= time) {
+				fired.add(timer.key);
+			} else {
+				link(timer);
+			}
+			timer = next;
+		}
+	}
+
+	/**
+	 * Links a given timer to the bucket of the lowest level spanning its remaining time.
+	 *
+	 * @param timer an unlinked timer.
+	 */
+	private void link(final Timer<K> timer) {
+		final long deadline = Math.max(timer.deadline, time);
+		final long remaining = deadline - time;
+		int level = 0;
+		while (level < SHIFTS.length - 1 && remaining >= 1L << SHIFTS[level + 1]) {
+			level++;
+		}
+		final Timer<K> sentinel = wheel[level][(int) ((deadline >>> SHIFTS[level]) & (BUCKETS - 1))];
+		timer.prev = sentinel.prev;
+		timer.next = sentinel;
+		sentinel.prev.next = timer;
+		sentinel.prev = timer;
+		size++;
+	}
+
+	/**
+	 * Unlinks a given linked timer from its bucket.
+	 *
+	 * @param timer a linked timer.
+	 */
+	private void unlink(final Timer<K> timer) {
+		timer.prev.next = timer.next;
+		timer.next.prev = timer.prev;
+		timer.prev = null;
+		timer.next = null;
+		size--;
+	}
+
+	/**
+	 * A timer of a key. Timers are linked directly into buckets, so they are held by their
+	 * owners for rescheduling or cancellation. Sentinels of buckets are timers without a key.
+	 */
+	static final class Timer<K> {
+
+		/**
+		 * A key of the timer.
+		 */
+		private final K key;
+
+		/**
+		 * A time the timer fires at.
+		 */
+		private long deadline;
+
+		/**
+		 * A previous timer in the bucket, or {@code null} if the timer is not scheduled.
+		 */
+		private Timer<K> prev;
+
+		/**
+		 * A next timer in the bucket, or {@code null} if the timer is not scheduled.
+		 */
+		private Timer<K> next;
+
+		/**
+		 * Creates a new timer of a given key. Sentinels are created with {@code null} key
+		 * and linked to themselves.
+		 *
+		 * @param key a key.
+		 */
+		private Timer(final K key) {
+			this.key = key;
+			if (key == null) {
+				prev = this;
+				next = this;
+			}
+		}
+
+		/**
+		 * Checks whether the timer is scheduled.
+		 *
+		 * @return {@code true} if the timer is scheduled, {@code false} otherwise.
+		 */
+		private boolean isLinked() {
+			return prev != null;
+		}
+
+		/**
+		 * Returns a key of the timer.
+		 *
+		 * @return a key of the timer.
+		 */
+		K getKey() {
+			return key;
+		}
+
+	}
+
+}
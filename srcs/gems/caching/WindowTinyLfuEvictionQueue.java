@@ -0,0 +1,275 @@
+package gems.caching;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An eviction queue implementing the <em>Window TinyLFU</em> policy. Newly added items enter
+ * a small admission window ordered by recency, which takes about one percent of capacity. Items
+ * leaving the window become candidates for admission into the main region. When the cache is
+ * over its limits, each candidate competes with the victim of the main region, i.e. with the
+ * least-recently used item of its probation segment, and the one with lower estimated access
+ * frequency is evicted; ties are decided for the victim. Accessing a candidate only raises its
+ * estimated frequency, so it is still admitted only by winning the competition. Items accessed
+ * in the probation segment are promoted to the protected segment taking up to eighty percent
+ * of the main region.
+ * <p/>
+ * Access frequencies are estimated by a {@code FrequencySketch} instead of per-item histories,
+ * so keys which are not cached anymore are remembered for a while without any per-key memory.
+ * Items seen only once are then rejected in favour of popular ones, which makes the policy
+ * resistant to scans flushing the hot set.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+final class WindowTinyLfuEvictionQueue<K> extends EvictionQueue<K> {
+
+	/**
+	 * A region of the admission window.
+	 */
+	private static final int WINDOW = 0;
+
+	/**
+	 * A region of candidates which left the admission window.
+	 */
+	private static final int CANDIDATE = 1;
+
+	/**
+	 * A probation segment of the main region.
+	 */
+	private static final int PROBATION = 2;
+
+	/**
+	 * A protected segment of the main region.
+	 */
+	private static final int PROTECTED = 3;
+
+	/**
+	 * A percentage of capacity taken by the admission window.
+	 */
+	private static final int WINDOW_PERCENTAGE = 1;
+
+	/**
+	 * A percentage of the main region taken by the protected segment.
+	 */
+	private static final int PROTECTED_PERCENTAGE = 80;
+
+	/**
+	 * An estimator of access frequencies.
+	 */
+	private final FrequencySketch sketch = new FrequencySketch();
+
+	/**
+	 * Lists of nodes in particular regions, indexed by region.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final NodeList<K>[] regions = new NodeList[]{new NodeList<K>(), new NodeList<K>(), new NodeList<K>(), new NodeList<K>()};
+
+	/**
+	 * Resizes regions according to a given capacity. Window overflow becomes new candidates,
+	 * the oldest candidates are admitted into the probation segment while the main region has
+	 * free room, and protected overflow is demoted to the probation segment.
+	 *
+	 * @param capacity maximal number of items.
+	 */
+	@Override protected void adapt(final long capacity) {
+		final long effective = Math.max(1L, Math.min(capacity, count()));
+		sketch.ensureCapacity(effective);
+		final long window = Math.max(1L, effective * WINDOW_PERCENTAGE / 100L);
+		while (regions[WINDOW].size() > window) {
+			move((RegionNode<K>) regions[WINDOW].head(), CANDIDATE);
+		}
+		final long main = capacity - regions[WINDOW].size();
+		while (!regions[CANDIDATE].isEmpty() && regions[PROBATION].size() + regions[PROTECTED].size() < main) {
+			move((RegionNode<K>) regions[CANDIDATE].head(), PROBATION);
+		}
+		final long protectedSegment = (effective - window) * PROTECTED_PERCENTAGE / 100L;
+		while (regions[PROTECTED].size() > protectedSegment) {
+			move((RegionNode<K>) regions[PROTECTED].head(), PROBATION);
+		}
+	}
+
+	@Override protected Node<K> newNode(final K key) {
+		return new RegionNode<K>(key);
+	}
+
+	@Override protected void link(final Node<K> node) {
+		sketch.ensureCapacity(count() + 1L);
+		sketch.increment(node.getKey());
+		final RegionNode<K> regionNode = (RegionNode<K>) node;
+		regionNode.region = WINDOW;
+		regions[WINDOW].append(regionNode);
+	}
+
+	@Override protected void unlink(final Node<K> node) {
+		regions[((RegionNode<K>) node).region].remove(node);
+	}
+
+	@Override protected void access(final Node<K> node) {
+		sketch.increment(node.getKey());
+		final RegionNode<K> regionNode = (RegionNode<K>) node;
+		if (regionNode.region != CANDIDATE) {
+			move(regionNode, regionNode.region == WINDOW ? WINDOW : PROTECTED);
+		}
+	}
+
+	/**
+	 * Moves a node to the tail of a given region.
+	 *
+	 * @param node a node.
+	 * @param region a target region.
+	 */
+	private void move(final RegionNode<K> node, final int region) {
+		regions[node.region].remove(node);
+		node.region = region;
+		regions[region].append(node);
+	}
+
+	/**
+	 * Returns an iterator resolving competitions between candidates and victims of the main
+	 * region: each step compares the oldest remaining candidate with the oldest remaining
+	 * victim and returns the one with lower estimated frequency. When one of them runs out,
+	 * the rest of the other is returned. Victims are taken from the probation segment, then
+	 * from the protected segment, and finally from the admission window.
+	 *
+	 * @return an iterator over enqueued nodes in eviction order.
+	 */
+	@Override protected Iterator<Node<K>> victims() {
+		return new Iterator<Node<K>>() {
+
+			private final PeekingIterator<K> candidates = new PeekingIterator<K>(Collections.singletonList(regions[CANDIDATE].iterator()));
+
+			private final PeekingIterator<K> victims = new PeekingIterator<K>(iterators(PROBATION, PROTECTED, WINDOW));
+
+			@Override public boolean hasNext() {
+				return candidates.hasNext() || victims.hasNext();
+			}
+
+			@Override public Node<K> next() {
+				if (candidates.hasNext() && victims.hasNext()) {
+					final int candidateFrequency = sketch.frequency(candidates.peek().getKey());
+					final int victimFrequency = sketch.frequency(victims.peek().getKey());
+					return candidateFrequency > victimFrequency ? victims.next() : candidates.next();
+				}
+				return candidates.hasNext() ? candidates.next() : victims.next();
+			}
+
+			@Override public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * Returns iterators over given regions.
+	 *
+	 * @param order regions in order of iteration.
+	 *
+	 * @return iterators over given regions.
+	 */
+	private List<Iterator<Node<K>>> iterators(final int... order) {
+		final List<Iterator<Node<K>>> result = new ArrayList<Iterator<Node<K>>>(order.length);
+		for (final int region : order) {
+			result.add(regions[region].iterator());
+		}
+		return result;
+	}
+
+	/**
+	 * A node remembering its region.
+	 */
+	private static final class RegionNode<K> extends Node<K> {
+
+		/**
+		 * A region the node belongs to.
+		 */
+		private int region;
+
+		/**
+		 * Creates a new node for a given key.
+		 *
+		 * @param key a key.
+		 */
+		private RegionNode(final K key) {
+			super(key);
+		}
+
+	}
+
+	/**
+	 * An iterator over a sequence of iterators allowing to peek the next node.
+	 */
+	private static final class PeekingIterator<K> {
+
+		/**
+		 * Iterators in order of iteration.
+		 */
+		private final List<Iterator<Node<K>>> iterators;
+
+		/**
+		 * An index of the current iterator.
+		 */
+		private int current;
+
+		/**
+		 * A peeked node or {@code null}.
+		 */
+		private Node<K> peeked;
+
+		/**
+		 * Creates a new iterator over given iterators.
+		 *
+		 * @param iterators iterators in order of iteration.
+		 */
+		private PeekingIterator(final List<Iterator<Node<K>>> iterators) {
+			this.iterators = iterators;
+		}
+
+		/**
+		 * Checks whether there is a next node.
+		 *
+		 * @return {@code true} if there is a next node, {@code false} otherwise.
+		 */
+		private boolean hasNext() {
+			return peek() != null;
+		}
+
+		/**
+		 * Returns the next node without advancing, or {@code null} if there are not any.
+		 *
+		 * @return the next node or {@code null}.
+		 */
+		private Node<K> peek() {
+			while (peeked == null && current < iterators.size()) {
+				if (iterators.get(current).hasNext()) {
+					peeked = iterators.get(current).next();
+				} else {
+					current++;
+				}
+			}
+			return peeked;
+		}
+
+		/**
+		 * Returns the next node and advances.
+		 *
+		 * @return the next node.
+		 *
+		 * @throws NoSuchElementException if there are not any nodes.
+		 */
+		private Node<K> next() {
+			final Node<K> result = peek();
+			if (result == null) {
+				throw new NoSuchElementException();
+			}
+			peeked = null;
+			return result;
+		}
+
+	}
+
+}
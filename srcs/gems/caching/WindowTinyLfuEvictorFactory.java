@@ -0,0 +1,30 @@
+package gems.caching;
+
+/**
+ * Provides <em>Window TinyLFU</em> evictors. New items pass through a small recency-ordered
+ * admission window and then have to beat the least-recently used item of the main region by
+ * estimated access frequency for being admitted. Frequencies are estimated by a compact sketch
+ * rather than by per-item histories, so items accessed only once are rejected in favour of
+ * popular ones even after a long scan, while the sketch needs only a few bytes per cached item.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <K> type of cache objects identifiers.
+ */
+public final class WindowTinyLfuEvictorFactory<K> implements CacheEvictorFactory<K> {
+
+	/**
+	 * Returns a <em>Window TinyLFU</em> evictor. This method never returns {@code null}.
+	 *
+	 * @return a <em>Window TinyLFU</em> evictor.
+	 */
+	public CacheEvictor<K> get() {
+		return new QueueingCacheEvictor<K>(new LeastFrequentlyUsedEvictorFactory<K>().get()) {
+
+			@Override EvictionQueue<K> newQueue() {
+				return new WindowTinyLfuEvictionQueue<K>();
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,432 @@
+package gems.caching;
+
+import gems.Checks;
+import gems.Identifiable;
+import gems.NumericValueOutOfRangeException;
+import gems.Option;
+import gems.UnexpectedNullException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A write-behind cache absorbing writes to a backing store. Offered objects are cached and marked
+ * dirty, and dirty objects are written to the store later in batches by a given batch writer.
+ * Repeated offers of objects with the same key before a flush are coalesced, so only the latest
+ * object is written. Dirty objects are flushed asynchronously, using the thread pool of cache
+ * properties, periodically and whenever their number reaches the batch size. When the number of
+ * dirty objects reaches a maximal number, offering threads flush them synchronously, so writers
+ * are slowed down to the pace of the backing store. A dirty object evicted from the cache is
+ * written synchronously by the evicting thread before it is lost. Expired objects are not
+ * written synchronously, they stay dirty until the next flush.
+ * <p/>
+ * Flushes are serialized, so the store never receives an older object after a newer one with
+ * the same key. If the batch writer fails, objects of the failed batch stay dirty, unless they
+ * have been offered again meantime, and the exception is propagated. The cache should be closed
+ * when it is no longer used, which stops periodic flushing and flushes all dirty objects.
+ * An eviction handler of cache properties is still called for evicted objects.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <V> a type of cached objects.
+ * @param <K> a type of keys identifying cached objects.
+ */
+public final class WriteBehindCache<V extends Identifiable<K>, K> implements ManagedCache<V, K> {
+
+	/**
+	 * A default number of objects written in a batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	/**
+	 * A default period of flushes in milliseconds.
+	 */
+	public static final long DEFAULT_PERIOD = 1000L;
+
+	/**
+	 * A default maximal number of dirty objects.
+	 */
+	public static final int DEFAULT_MAX_DIRTY = 10000;
+
+	/**
+	 * A scheduler of periodic flushes shared by all write-behind caches.
+	 */
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+		@Override public Thread newThread(final Runnable runnable) {
+			final Thread result = new Thread(runnable, "gems-caching-write-behind");
+			result.setDaemon(true);
+			return result;
+		}
+
+	});
+
+	/**
+	 * A cache holding offered objects.
+	 */
+	private final ManagedCache<V, K> cache;
+
+	/**
+	 * A batch writer.
+	 */
+	private final BatchWriter<? super V> writer;
+
+	/**
+	 * Dirty objects by their keys.
+	 */
+	private final ConcurrentMap<K, Dirty<V>> dirty = new ConcurrentHashMap<K, Dirty<V>>();
+
+	/**
+	 * A lock serializing flushes.
+	 */
+	private final Lock flushing = new ReentrantLock();
+
+	/**
+	 * A flag indicating that an asynchronous flush has been requested and not started yet.
+	 */
+	private final AtomicBoolean requested = new AtomicBoolean();
+
+	/**
+	 * A thread pool running asynchronous flushes.
+	 */
+	private final ExecutorService threadPool;
+
+	/**
+	 * A number of objects written in a batch.
+	 */
+	private final int batchSize;
+
+	/**
+	 * A maximal number of dirty objects.
+	 */
+	private final int maxDirty;
+
+	/**
+	 * Periodic flushes, or {@code null} if objects are not flushed periodically.
+	 */
+	private final ScheduledFuture<?> schedule;
+
+	/**
+	 * A counter of written objects.
+	 */
+	private final LongAdder written = new LongAdder();
+
+	/**
+	 * Creates a new write-behind cache with default batch size, period, and maximal number of dirty objects.
+	 *
+	 * @param properties cache properties.
+	 * @param writer a batch writer.
+	 *
+	 * @throws UnexpectedNullException if any of arguments is {@code null}.
+	 */
+	public WriteBehindCache(final CacheProperties<V, K> properties, final BatchWriter<? super V> writer) {
+		this(properties, writer, DEFAULT_BATCH_SIZE, DEFAULT_PERIOD, DEFAULT_MAX_DIRTY);
+	}
+
+	/**
+	 * Creates a new write-behind cache. Setting the period to zero means no periodic flushes.
+	 *
+	 * @param properties cache properties.
+	 * @param writer a batch writer.
+	 * @param batchSize a maximal number of objects written in a batch.
+	 * @param period a period of flushes in milliseconds.
+	 * @param maxDirty a number of dirty objects at which offering threads flush synchronously.
+	 *
+	 * @throws UnexpectedNullException if {@code properties} or {@code writer} is {@code null}.
+	 * @throws NumericValueOutOfRangeException if {@code batchSize} or {@code maxDirty} is not positive,
+	 *         or if {@code period} is negative.
+	 */
+	public WriteBehindCache(
+			final CacheProperties<V, K> properties,
+			final BatchWriter<? super V> writer,
+			final int batchSize,
+			final long period,
+			final int maxDirty
+	) {
+		Checks.ensureNotNull(properties);
+		this.writer = Checks.ensureNotNull(writer);
+		this.batchSize = Checks.ensurePositive(batchSize);
+		this.maxDirty = Checks.ensurePositive(maxDirty);
+		this.threadPool = properties.getThreadPool();
+		this.cache = newCache(properties.withEvictionHandler(new FlushingHandler(properties.getEvictionHandler())));
+		this.schedule = Checks.ensureNonNegative(period) == 0L ? null : SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+
+			@Override public void run() {
+				requestFlush();
+			}
+
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a new cache configured according to given properties.
+	 *
+	 * @param properties cache properties.
+	 *
+	 * @return a new cache.
+	 */
+	private static <V extends Identifiable<K>, K> ManagedCache<V, K> newCache(final CacheProperties<V, K> properties) {
+		final Option<ManagedCache<V, K>> result = new CacheFactory<V, K>().provideManaged(new Option<CacheProperties<V, K>>(properties));
+		if (!result.hasValue()) {
+			throw new IllegalStateException();
+		}
+		return result.getValue();
+	}
+
+	/**
+	 * {@inheritDoc} The object is marked dirty before it is cached.
+	 *
+	 * @throws IllegalArgumentException if {@code object} is {@code null}.
+	 */
+	@Override public void offer(final V object) {
+		if (object == null) {
+			throw new IllegalArgumentException();
+		}
+		markDirty(object);
+		cache.offer(object);
+	}
+
+	/**
+	 * {@inheritDoc} Objects are marked dirty before they are cached.
+	 *
+	 * @throws IllegalArgumentException if {@code objects} is {@code null} or contains {@code null}.
+	 */
+	@Override public void offerAll(final Collection<? extends V> objects) {
+		if (objects == null) {
+			throw new IllegalArgumentException();
+		}
+		for (final V object : objects) {
+			if (object == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		for (final V object : objects) {
+			markDirty(object);
+		}
+		cache.offerAll(objects);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}.
+	 */
+	@Override public Option<V> get(final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException();
+		}
+		return cache.get(key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null} or contains {@code null}.
+	 */
+	@Override public Map<K, V> getAll(final Collection<? extends K> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException();
+		}
+		return cache.getAll(keys);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override public CacheStatistics getStatistics() {
+		return cache.getStatistics();
+	}
+
+	/**
+	 * Returns number of dirty objects not written yet.
+	 *
+	 * @return number of dirty objects.
+	 */
+	public int getDirty() {
+		return dirty.size();
+	}
+
+	/**
+	 * Returns number of objects written to the backing store so far.
+	 *
+	 * @return number of written objects.
+	 */
+	public long getWritten() {
+		return written.sum();
+	}
+
+	/**
+	 * Writes all dirty objects to the backing store synchronously, in batches.
+	 */
+	public void flush() {
+		flushing.lock();
+		try {
+			final List<Dirty<V>> batch = new ArrayList<Dirty<V>>(batchSize);
+			for (final Map.Entry<K, Dirty<V>> entry : dirty.entrySet()) {
+				// an object offered again meantime stays dirty for the next flush
+				if (dirty.remove(entry.getKey(), entry.getValue())) {
+					batch.add(entry.getValue());
+					if (batch.size() == batchSize) {
+						write(batch);
+						batch.clear();
+					}
+				}
+			}
+			if (!batch.isEmpty()) {
+				write(batch);
+			}
+		} finally {
+			flushing.unlock();
+		}
+	}
+
+	/**
+	 * Stops periodic flushes and writes all dirty objects to the backing store. The cache can
+	 * still be used afterwards, but dirty objects are then flushed by thresholds only.
+	 */
+	public void close() {
+		if (schedule != null) {
+			schedule.cancel(false);
+		}
+		flush();
+	}
+
+	/**
+	 * Marks a given object dirty and flushes dirty objects if thresholds are reached.
+	 *
+	 * @param object an object.
+	 */
+	private void markDirty(final V object) {
+		dirty.put(object.getId(), new Dirty<V>(object));
+		final int count = dirty.size();
+		if (count >= maxDirty) {
+			flush();
+		} else if (count >= batchSize) {
+			requestFlush();
+		}
+	}
+
+	/**
+	 * Requests an asynchronous flush, unless one is already requested.
+	 */
+	private void requestFlush() {
+		if (!dirty.isEmpty() && requested.compareAndSet(false, true)) {
+			threadPool.execute(new Runnable() {
+
+				@Override public void run() {
+					requested.set(false);
+					flush();
+				}
+
+			});
+		}
+	}
+
+	/**
+	 * Writes a given batch of dirty objects. If writing fails, the objects are marked dirty
+	 * again, unless they have been offered again meantime. Must be called when flushing.
+	 *
+	 * @param batch a batch of dirty objects.
+	 */
+	private void write(final List<Dirty<V>> batch) {
+		final List<V> objects = new ArrayList<V>(batch.size());
+		for (final Dirty<V> entry : batch) {
+			objects.add(entry.object);
+		}
+		boolean done = false;
+		try {
+			writer.write(objects);
+			written.add(objects.size());
+			done = true;
+		} finally {
+			if (!done) {
+				for (final Dirty<V> entry : batch) {
+					dirty.putIfAbsent(entry.object.getId(), entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A dirty object. Dirty objects are compared by identity, so a flush never removes a newer
+	 * object with the same key, as objects themselves are likely compared by their keys.
+	 *
+	 * @param <V> a type of the object.
+	 */
+	private static final class Dirty<V> {
+
+		/**
+		 * An object.
+		 */
+		private final V object;
+
+		/**
+		 * Creates a new dirty object.
+		 *
+		 * @param object an object.
+		 */
+		private Dirty(final V object) {
+			this.object = Checks.assertNotNull(object);
+		}
+
+	}
+
+	/**
+	 * An eviction handler of the cache, writing evicted dirty objects synchronously.
+	 */
+	private final class FlushingHandler implements EvictionHandler<V> {
+
+		/**
+		 * The original eviction handler.
+		 */
+		private final EvictionHandler<? super V> handler;
+
+		/**
+		 * Creates a new handler.
+		 *
+		 * @param handler the original eviction handler.
+		 */
+		private FlushingHandler(final EvictionHandler<? super V> handler) {
+			this.handler = Checks.assertNotNull(handler);
+		}
+
+		/**
+		 * Calls the original handler and writes a given object if it is dirty.
+		 *
+		 * @param value an evicted object.
+		 *
+		 * @throws IllegalArgumentException if {@code value} is {@code null}.
+		 */
+		@Override public void handle(final V value) {
+			if (value == null) {
+				throw new IllegalArgumentException();
+			}
+			handler.handle(value);
+			flushing.lock();
+			try {
+				final Dirty<V> entry = dirty.get(value.getId());
+				if (entry != null && entry.object == value && dirty.remove(value.getId(), entry)) {
+					write(Collections.singletonList(entry));
+				}
+			} finally {
+				flushing.unlock();
+			}
+		}
+
+	}
+
+}
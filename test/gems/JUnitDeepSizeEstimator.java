@@ -0,0 +1,129 @@
+package gems;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@code DeepSizeEstimator} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitDeepSizeEstimator {
+
+	/**
+	 * A size of a {@code Node} object: a header, an integer, and a reference.
+	 */
+	private static final long NODE = 24L;
+
+	/**
+	 * A maximal time of walks in nanoseconds, generous enough for walks not to be cut off in a cold JVM.
+	 */
+	private static final long MAX_TIME = 1000000000L;
+
+	/**
+	 * A tested fixture.
+	 */
+	private final SizeEstimator<Object> fixture = new DeepSizeEstimator(DeepSizeEstimator.DEFAULT_MAX_DEPTH, MAX_TIME);
+
+	/**
+	 * Checks whether a {@code null} object is forbidden.
+	 */
+	@Test(expected = UnexpectedNullException.class) public void nullObjectIsForbidden() {
+		fixture.estimate(null);
+	}
+
+	/**
+	 * Checks whether a negative depth budget is forbidden.
+	 */
+	@Test(expected = NumericValueOutOfRangeException.class) public void negativeDepthIsForbidden() {
+		new DeepSizeEstimator(-1, DeepSizeEstimator.DEFAULT_MAX_TIME);
+	}
+
+	/**
+	 * Checks whether shallow sizes of objects and primitive arrays are aligned.
+	 */
+	@Test public void shallowSizesAreAligned() {
+		Assert.assertEquals(16L, fixture.estimate(new Object()));
+		Assert.assertEquals(NODE, fixture.estimate(new Node(null)));
+		Assert.assertEquals(96L, fixture.estimate(new long[10]));
+		Assert.assertEquals(24L, fixture.estimate(new byte[1]));
+	}
+
+	/**
+	 * Checks whether cycles are walked once.
+	 */
+	@Test public void cyclesAreCountedOnce() {
+		final Node first = new Node(null);
+		first.next = new Node(first);
+		Assert.assertEquals(2L * NODE, fixture.estimate(first));
+	}
+
+	/**
+	 * Checks whether an object referenced more times is counted once.
+	 */
+	@Test public void sharedReferencesAreCountedOnce() {
+		final Node shared = new Node(null);
+		final Object[] array = {shared, shared, shared};
+		Assert.assertEquals(32L + NODE, fixture.estimate(array));
+	}
+
+	/**
+	 * Checks whether enum constants are not counted.
+	 */
+	@Test public void enumConstantsAreNotCounted() {
+		Assert.assertEquals(24L, fixture.estimate(new Object[] {TimeUnit.SECONDS, TimeUnit.DAYS}));
+	}
+
+	/**
+	 * Checks whether objects beyond the depth budget are not counted.
+	 */
+	@Test public void depthBudgetIsRespected() {
+		final Node chain = new Node(new Node(new Node(null)));
+		Assert.assertEquals(NODE, new DeepSizeEstimator(0, MAX_TIME).estimate(chain));
+		Assert.assertEquals(2L * NODE, new DeepSizeEstimator(1, MAX_TIME).estimate(chain));
+		Assert.assertEquals(3L * NODE, fixture.estimate(chain));
+	}
+
+	/**
+	 * Checks whether elements of collections are counted.
+	 */
+	@Test public void elementsOfCollectionsAreCounted() {
+		final List<Node> list = new ArrayList<Node>();
+		for (int i = 0; i < 100; i++) {
+			list.add(new Node(null));
+		}
+		Assert.assertTrue(fixture.estimate(list) > 100L * (NODE + 4L));
+	}
+
+	/**
+	 * A node of a linked list.
+	 */
+	private static final class Node {
+
+		/**
+		 * A value.
+		 */
+		@SuppressWarnings({"unused"})
+		private final int value = 0;
+
+		/**
+		 * The next node.
+		 */
+		private Node next;
+
+		/**
+		 * Creates a new node.
+		 *
+		 * @param next the next node.
+		 */
+		private Node(final Node next) {
+			this.next = next;
+		}
+
+	}
+
+}
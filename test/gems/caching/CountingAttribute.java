@@ -0,0 +1,39 @@
+package gems.caching;
+
+/**
+ * An attribute of tenant items counting its reads.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ * @param <A> type of attribute values.
+ */
+abstract class CountingAttribute<A> implements Attribute<TenantItem, A> {
+
+	/**
+	 * A number of reads.
+	 */
+	private int calls;
+
+	@Override public final A get(final TenantItem item) {
+		calls++;
+		return extract(item);
+	}
+
+	/**
+	 * Returns a number of reads.
+	 *
+	 * @return a number of reads.
+	 */
+	final int getCalls() {
+		return calls;
+	}
+
+	/**
+	 * Extracts the attribute value of a given item.
+	 *
+	 * @param item an item.
+	 *
+	 * @return the attribute value.
+	 */
+	abstract A extract(TenantItem item);
+
+}
@@ -0,0 +1,23 @@
+package gems.caching;
+
+import gems.AbstractIdentifiable;
+
+/**
+ * A cached object identified by an integer, carrying no other data. Objects with tenants are
+ * {@code TenantItem}s; tests needing objects with other data, e.g. with sizes, declare their own
+ * nested classes.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class Item extends AbstractIdentifiable<Integer> {
+
+	/**
+	 * Creates a new object with a given ID.
+	 *
+	 * @param id an ID.
+	 */
+	Item(final int id) {
+		super(id);
+	}
+
+}
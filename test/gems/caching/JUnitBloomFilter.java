@@ -0,0 +1,49 @@
+package gems.caching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@code BloomFilter} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitBloomFilter {
+
+	/**
+	 * Number of added keys.
+	 */
+	private static final int KEYS = 10000;
+
+	/**
+	 * Checks whether added keys are always found.
+	 */
+	@Test public void addedKeysAreFound() {
+		final BloomFilter fixture = new BloomFilter(KEYS, 0.01);
+		for (int i = 0; i < KEYS; i++) {
+			fixture.add(i);
+		}
+		for (int i = 0; i < KEYS; i++) {
+			Assert.assertTrue(fixture.mightContain(i));
+		}
+		Assert.assertEquals(KEYS, fixture.getCount());
+	}
+
+	/**
+	 * Checks whether false positive answers are close to the given rate.
+	 */
+	@Test public void falsePositivesAreRare() {
+		final BloomFilter fixture = new BloomFilter(KEYS, 0.01);
+		for (int i = 0; i < KEYS; i++) {
+			fixture.add(i);
+		}
+		int falsePositives = 0;
+		for (int i = KEYS; i < 11 * KEYS; i++) {
+			if (fixture.mightContain(i)) {
+				falsePositives++;
+			}
+		}
+		Assert.assertTrue(String.valueOf(falsePositives), falsePositives < 2 * 10 * KEYS / 100);
+	}
+
+}
@@ -0,0 +1,332 @@
+package gems.caching;
+
+import gems.AbstractIdentifiable;
+import gems.Option;
+import gems.SizeEstimator;
+import gems.StaticLimits;
+import gems.filtering.Filter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the {@code BufferedCache} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitBufferedCache {
+
+	/**
+	 * A maximal number of cached items.
+	 */
+	private static final int LIMIT = 10;
+
+	/**
+	 * Maintenance tasks submitted to the thread pool and not run yet.
+	 */
+	private final List<Runnable> pending = new ArrayList<Runnable>();
+
+	/**
+	 * A thread pool deferring tasks until {@code runPending()} is called.
+	 */
+	private final ExecutorService deferring = new ManualExecutorService() {
+
+		@Override public void execute(final Runnable command) {
+			pending.add(command);
+		}
+
+	};
+
+	/**
+	 * A thread pool running tasks on the calling thread.
+	 */
+	private final ExecutorService synchronous = new ManualExecutorService() {
+
+		@Override public void execute(final Runnable command) {
+			command.run();
+		}
+
+	};
+
+	/**
+	 * A thread pool rejecting all tasks.
+	 */
+	private final ExecutorService rejecting = new ManualExecutorService() {
+
+		@Override public void execute(final Runnable command) {
+			throw new RejectedExecutionException();
+		}
+
+	};
+
+	/**
+	 * Evicted items.
+	 */
+	private final List<Item> evicted = Collections.synchronizedList(new ArrayList<Item>());
+
+	/**
+	 * Creates a new builder of cache properties limiting the number of items and recording evicted items.
+	 *
+	 * @param threadPool a thread pool of maintenance.
+	 *
+	 * @return a new builder.
+	 */
+	private CacheProperties.Builder<Item, Integer> createBuilder(final ExecutorService threadPool) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, LIMIT);
+		limits.setLimit(CacheLimit.SIZE, Long.MAX_VALUE);
+		return new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(CacheConcurrency.BUFFERED_MAINTENANCE)
+				.with(threadPool)
+				.with(new EvictionHandler<Item>() {
+
+					@Override public void handle(final Item value) {
+						evicted.add(value);
+					}
+
+				});
+	}
+
+	/**
+	 * Creates a new tested cache.
+	 *
+	 * @param builder a builder of cache properties.
+	 *
+	 * @return a new cache.
+	 */
+	private static ExtractableCache<Item, Integer> createFixture(final CacheProperties.Builder<Item, Integer> builder) {
+		final CacheProperties<Item, Integer> properties = builder.build();
+		return properties.getConcurrency().newCache(properties);
+	}
+
+	/**
+	 * Offers items with keys from a given range.
+	 *
+	 * @param fixture a cache.
+	 * @param from the first key.
+	 * @param to the key after the last one.
+	 */
+	private static void offer(final Cache<Item, Integer> fixture, final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			fixture.offer(new Item(i));
+		}
+	}
+
+	/**
+	 * Returns number of cached items with keys from a given range.
+	 *
+	 * @param fixture a cache.
+	 * @param from the first key.
+	 * @param to the key after the last one.
+	 *
+	 * @return number of cached items.
+	 */
+	private static int count(final Cache<Item, Integer> fixture, final int from, final int to) {
+		int result = 0;
+		for (int i = from; i < to; i++) {
+			if (fixture.get(i).hasValue()) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Runs deferred maintenance tasks.
+	 */
+	private void runPending() {
+		while (!pending.isEmpty()) {
+			pending.remove(0).run();
+		}
+	}
+
+	/**
+	 * Checks whether writes do not evict on their own and maintenance is scheduled once for many writes.
+	 */
+	@Test public void evictionIsDeferredToMaintenance() {
+		final ExtractableCache<Item, Integer> fixture = createFixture(createBuilder(deferring));
+		offer(fixture, 0, 2 * LIMIT);
+		Assert.assertEquals(1, pending.size());
+		Assert.assertTrue(evicted.isEmpty());
+		Assert.assertEquals(2 * LIMIT, count(fixture, 0, 2 * LIMIT));
+		runPending();
+		Assert.assertEquals(LIMIT, evicted.size());
+		Assert.assertEquals(LIMIT, count(fixture, 0, 2 * LIMIT));
+		Assert.assertEquals(LIMIT, fixture.getStatistics().getEvictions());
+	}
+
+	/**
+	 * Checks whether recorded reads are applied to the eviction queue.
+	 */
+	@Test public void readsAreAppliedToEvictionQueue() {
+		final ExtractableCache<Item, Integer> fixture = createFixture(createBuilder(deferring));
+		offer(fixture, 0, LIMIT);
+		fixture.trim();
+		Assert.assertTrue(fixture.get(0).hasValue());
+		fixture.offer(new Item(LIMIT));
+		runPending();
+		Assert.assertEquals(1, evicted.size());
+		Assert.assertEquals(1, evicted.get(0).getId().intValue());
+		Assert.assertTrue(fixture.get(0).hasValue());
+	}
+
+	/**
+	 * Checks whether a writer does maintenance on its own if the write buffer is full.
+	 */
+	@Test public void fullWriteBufferAppliesBackpressure() {
+		final ExtractableCache<Item, Integer> fixture = createFixture(createBuilder(deferring));
+		offer(fixture, 0, BufferedCache.WRITE_BUFFER_CAPACITY + 1);
+		Assert.assertEquals(BufferedCache.WRITE_BUFFER_CAPACITY - LIMIT, evicted.size());
+		fixture.trim();
+		Assert.assertEquals(LIMIT, count(fixture, 0, BufferedCache.WRITE_BUFFER_CAPACITY + 1));
+	}
+
+	/**
+	 * Checks whether maintenance rejected by the thread pool is done by the calling thread.
+	 */
+	@Test public void rejectedMaintenanceRunsOnCaller() {
+		final ExtractableCache<Item, Integer> fixture = createFixture(createBuilder(rejecting));
+		offer(fixture, 0, 2 * LIMIT);
+		Assert.assertEquals(LIMIT, evicted.size());
+		Assert.assertEquals(LIMIT, count(fixture, LIMIT, 2 * LIMIT));
+	}
+
+	/**
+	 * Checks whether generic evictors are supported.
+	 */
+	@Test public void genericEvictorKeepsLimit() {
+		final ExtractableCache<Item, Integer> fixture = createFixture(createBuilder(synchronous).with(new LeastRecentlyUsedEvictorFactory<Integer>().get()));
+		offer(fixture, 0, 10 * LIMIT);
+		Assert.assertEquals(LIMIT, count(fixture, 0, 10 * LIMIT));
+		Assert.assertEquals(9 * LIMIT, evicted.size());
+	}
+
+	/**
+	 * Checks whether replaced objects are accounted once.
+	 */
+	@Test public void replacedObjectsAreAccountedOnce() {
+		final ExtractableCache<Item, Integer> fixture = createFixture(createBuilder(deferring).with(new SizeEstimator<Item>() {
+
+			@Override public long estimate(final Item object) {
+				return object.size;
+			}
+
+		}));
+		for (int size = 1; size <= 5; size++) {
+			fixture.offer(new Item(0, size));
+		}
+		runPending();
+		Assert.assertEquals(5L, fixture.getStatistics().getWeight());
+		final Option<Item> cached = fixture.get(0);
+		Assert.assertTrue(cached.hasValue());
+		Assert.assertEquals(5L, cached.getValue().size);
+		final Collection<Item> extracted = fixture.extract(Filter.ALLOW_ALL);
+		Assert.assertEquals(1, extracted.size());
+		Assert.assertEquals(0L, fixture.getStatistics().getWeight());
+		Assert.assertTrue(evicted.isEmpty());
+	}
+
+	/**
+	 * Checks whether objects written by concurrent threads are evicted down to the limit.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void concurrentWritesKeepLimit() throws InterruptedException {
+		final ExecutorService threadPool = Executors.newFixedThreadPool(2);
+		try {
+			final ExtractableCache<Item, Integer> fixture = createFixture(createBuilder(threadPool));
+			final Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				final int offset = t * 1000;
+				threads[t] = new Thread() {
+
+					@Override public void run() {
+						for (int i = 0; i < 1000; i++) {
+							fixture.offer(new Item(offset + i % 100));
+							fixture.get(offset + i % 50);
+						}
+					}
+
+				};
+				threads[t].start();
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			fixture.trim();
+			Assert.assertEquals(LIMIT, count(fixture, 0, threads.length * 1000));
+			Assert.assertEquals(evicted.size(), fixture.getStatistics().getEvictions());
+		} finally {
+			threadPool.shutdown();
+		}
+	}
+
+	/**
+	 * An executor service without lifecycle.
+	 */
+	private abstract static class ManualExecutorService extends AbstractExecutorService {
+
+		@Override public final void shutdown() {
+		}
+
+		@Override public final List<Runnable> shutdownNow() {
+			return Collections.emptyList();
+		}
+
+		@Override public final boolean isShutdown() {
+			return false;
+		}
+
+		@Override public final boolean isTerminated() {
+			return false;
+		}
+
+		@Override public final boolean awaitTermination(final long timeout, final TimeUnit unit) {
+			return false;
+		}
+
+	}
+
+	/**
+	 * A cached item.
+	 */
+	private static final class Item extends AbstractIdentifiable<Integer> {
+
+		/**
+		 * Size of the item.
+		 */
+		private final long size;
+
+		/**
+		 * Creates a new item of zero size.
+		 *
+		 * @param id an ID.
+		 */
+		private Item(final int id) {
+			this(id, 0L);
+		}
+
+		/**
+		 * Creates a new item.
+		 *
+		 * @param id an ID.
+		 * @param size size of the item.
+		 */
+		private Item(final int id, final long size) {
+			super(id);
+			this.size = size;
+		}
+
+	}
+
+}
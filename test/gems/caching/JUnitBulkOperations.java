@@ -0,0 +1,119 @@
+package gems.caching;
+
+import gems.Option;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for bulk operations of caches.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitBulkOperations {
+
+	/**
+	 * Creates tested caches, i.e. flat caches of all concurrency strategies and segmented ones.
+	 *
+	 * @param items maximal number of objects.
+	 *
+	 * @return tested caches.
+	 */
+	private static List<ManagedCache<Item, Integer>> createFixtures(final long items) {
+		final List<ManagedCache<Item, Integer>> result = new ArrayList<ManagedCache<Item, Integer>>();
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			for (final CacheSegmenter<Object> segmenter : Arrays.<CacheSegmenter<Object>>asList(CacheSegmenter.NULL_SEGMENTER, new HashCodeBasedSegmenter<Object>(4))) {
+				final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+				limits.setLimit(CacheLimit.ITEMS, items);
+				final Option<ManagedCache<Item, Integer>> cache = new CacheFactory<Item, Integer>().provideManaged(new Option<CacheProperties<Item, Integer>>(
+						SynchronousExecutor.with(new CacheProperties.Builder<Item, Integer>(limits), concurrency)
+								.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+								.with(segmenter)
+								.build()
+				));
+				Assert.assertTrue(cache.hasValue());
+				result.add(cache.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates objects with IDs from a given range.
+	 *
+	 * @param from the first ID.
+	 * @param to the ID after the last one.
+	 *
+	 * @return objects with IDs from a given range.
+	 */
+	private static List<Item> createItems(final int from, final int to) {
+		final List<Item> result = new ArrayList<Item>();
+		for (int i = from; i < to; i++) {
+			result.add(new Item(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns IDs from a given range.
+	 *
+	 * @param from the first ID.
+	 * @param to the ID after the last one.
+	 *
+	 * @return IDs from a given range.
+	 */
+	private static List<Integer> createItemIds(final int from, final int to) {
+		final List<Integer> result = new ArrayList<Integer>();
+		for (int i = from; i < to; i++) {
+			result.add(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether objects offered at once are got at once, while missing ones are omitted.
+	 */
+	@Test public void offeredObjectsAreGot() {
+		for (final ManagedCache<Item, Integer> fixture : createFixtures(1000)) {
+			fixture.offerAll(createItems(0, 100));
+			final Map<Integer, Item> result = fixture.getAll(Arrays.asList(0, 50, 99, 100, 200));
+			Assert.assertEquals(3, result.size());
+			for (final int id : new int[]{0, 50, 99}) {
+				Assert.assertEquals(Integer.valueOf(id), result.get(id).getId());
+			}
+			Assert.assertTrue(fixture.get(42).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether limits are satisfied after objects are offered at once.
+	 */
+	@Test public void limitsAreSatisfied() {
+		for (final ManagedCache<Item, Integer> fixture : createFixtures(40)) {
+			fixture.offerAll(createItems(0, 100));
+			final Map<Integer, Item> result = fixture.getAll(createItemIds(0, 100));
+			Assert.assertTrue(String.valueOf(result.size()), result.size() <= 40);
+			Assert.assertFalse(result.isEmpty());
+		}
+	}
+
+	/**
+	 * Checks whether {@code null} objects are forbidden.
+	 */
+	@Test public void nullObjectsAreForbidden() {
+		for (final ManagedCache<Item, Integer> fixture : createFixtures(10)) {
+			try {
+				fixture.offerAll(Arrays.asList(new Item(1), null));
+				Assert.fail();
+			} catch (final IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+}
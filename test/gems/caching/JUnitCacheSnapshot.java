@@ -0,0 +1,269 @@
+package gems.caching;
+
+import gems.Option;
+import gems.StaticLimits;
+import gems.io.RuntimeIOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for the {@code CacheSnapshot} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitCacheSnapshot {
+
+	/**
+	 * A thread pool of tested fixtures.
+	 */
+	private static final ExecutorService THREAD_POOL = Executors.newFixedThreadPool(4);
+
+	/**
+	 * A tested fixture.
+	 */
+	private final CacheSnapshot<Item, Integer> fixture = new CacheSnapshot<Item, Integer>(new ItemCodec(), THREAD_POOL);
+
+	/**
+	 * Creates a new cache holding a given number of objects.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param segmenter a segmenter.
+	 * @param items maximal number of objects.
+	 *
+	 * @return a new cache.
+	 */
+	private static ManagedCache<Item, Integer> createCache(final CacheConcurrency concurrency, final CacheSegmenter<Object> segmenter, final long items) {
+		return createCache(concurrency, segmenter, items, ExpirationPolicy.NULL_EXPIRATION_POLICY);
+	}
+
+	/**
+	 * Creates a new cache holding a given number of objects, which expire according to a given policy.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param segmenter a segmenter.
+	 * @param items maximal number of objects.
+	 * @param policy an expiration policy.
+	 *
+	 * @return a new cache.
+	 */
+	private static ManagedCache<Item, Integer> createCache(
+			final CacheConcurrency concurrency, final CacheSegmenter<Object> segmenter, final long items, final ExpirationPolicy<Object> policy
+	) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, items);
+		final Option<ManagedCache<Item, Integer>> result = new CacheFactory<Item, Integer>().provideManaged(new Option<CacheProperties<Item, Integer>>(
+				new CacheProperties.Builder<Item, Integer>(limits)
+						.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+						.with(concurrency)
+						.with(segmenter)
+						.with(policy)
+						.build()
+		));
+		Assert.assertTrue(result.hasValue());
+		return result.getValue();
+	}
+
+	/**
+	 * Creates a new temporary snapshot file.
+	 *
+	 * @return a new temporary file.
+	 *
+	 * @throws IOException if the file cannot be created.
+	 */
+	private static File createFile() throws IOException {
+		final File result = File.createTempFile("gems-snapshot", ".bin");
+		result.deleteOnExit();
+		return result;
+	}
+
+	/**
+	 * Returns statistics of keys of cached objects of a given cache created by {@code CacheFactory}. No access is recorded.
+	 *
+	 * @param cache a cache.
+	 *
+	 * @return statistics by keys.
+	 */
+	@SuppressWarnings({"unchecked"})
+	private static Map<Integer, CacheItemStatistics<Integer>> getStatistics(final ManagedCache<Item, Integer> cache) {
+		final List<ExtractableCache<Item, Integer>> segments = cache instanceof SegmentedCache
+				? ((SegmentedCache<Item, Integer>) cache).getSegmentList()
+				: Collections.singletonList((ExtractableCache<Item, Integer>) cache);
+		final Map<Integer, CacheItemStatistics<Integer>> result = new HashMap<Integer, CacheItemStatistics<Integer>>();
+		for (final ExtractableCache<Item, Integer> segment : segments) {
+			segment.trim();
+			for (final Map.Entry<Item, CacheItemStatistics<Integer>> entry : segment.snapshot()) {
+				result.put(entry.getKey().getId(), entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether all cached objects are restored together with their hits, for flat and segmented caches.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void cachedObjectsAreRestored() throws Exception {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			for (final CacheSegmenter<Object> segmenter : Arrays.<CacheSegmenter<Object>>asList(CacheSegmenter.NULL_SEGMENTER, new HashCodeBasedSegmenter<Object>(4))) {
+				final ManagedCache<Item, Integer> original = createCache(concurrency, segmenter, 1000);
+				final List<Item> objects = new ArrayList<Item>();
+				for (int i = 0; i < 600; i++) {
+					objects.add(new Item(i));
+				}
+				original.offerAll(objects);
+				for (int i = 0; i < 200; i++) {
+					Assert.assertTrue(original.get(i).hasValue());
+				}
+				final File file = createFile();
+				Assert.assertEquals(600L, fixture.save(original, file).get().longValue());
+				final ManagedCache<Item, Integer> restored = createCache(concurrency, segmenter, 1000);
+				Assert.assertEquals(600L, fixture.restore(restored, file));
+				final Map<Integer, CacheItemStatistics<Integer>> statistics = getStatistics(restored);
+				Assert.assertEquals(600, statistics.size());
+				for (int i = 0; i < 600; i++) {
+					Assert.assertEquals(concurrency.name() + i, i < 200 ? 1L : 0L, statistics.get(i).getHits());
+				}
+				for (int i = 0; i < 600; i++) {
+					final Option<Item> item = restored.get(i);
+					Assert.assertTrue(concurrency.name() + i, item.hasValue());
+					Assert.assertEquals(Integer.valueOf(i), item.getValue().getId());
+				}
+				Assert.assertEquals(0L, restored.getStatistics().getEvictions());
+			}
+		}
+	}
+
+	/**
+	 * Checks whether current limits apply on restoring and recently used objects are kept.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void currentLimitsApply() throws Exception {
+		final ManagedCache<Item, Integer> original = createCache(CacheConcurrency.LOCKED_READS, CacheSegmenter.NULL_SEGMENTER, 100);
+		for (int i = 0; i < 100; i++) {
+			original.offer(new Item(i));
+		}
+		Thread.sleep(5L);
+		for (int i = 90; i < 100; i++) {
+			Assert.assertTrue(original.get(i).hasValue());
+		}
+		final File file = createFile();
+		fixture.save(original, file).get();
+		final ManagedCache<Item, Integer> restored = createCache(CacheConcurrency.LOCKED_READS, CacheSegmenter.NULL_SEGMENTER, 10);
+		Assert.assertEquals(100L, fixture.restore(restored, file));
+		for (int i = 90; i < 100; i++) {
+			Assert.assertTrue(String.valueOf(i), restored.get(i).hasValue());
+		}
+		Assert.assertEquals(90L, restored.getStatistics().getEvictions());
+	}
+
+	/**
+	 * Checks whether restored objects expire when they would in the saved cache unless accessed, keep their
+	 * time to idle when accessed after restoring, do not get a fresh time to live, and objects expired before
+	 * restoring are skipped, for flat and segmented caches.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void restoredObjectsKeepTheirTimeToLive() throws Exception {
+		final ExpirationPolicy<Object> policy = new FixedExpirationPolicy<Object>(2000L, 1000L);
+		final List<ManagedCache<Item, Integer>> originals = new ArrayList<ManagedCache<Item, Integer>>();
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			for (final CacheSegmenter<Object> segmenter : Arrays.<CacheSegmenter<Object>>asList(CacheSegmenter.NULL_SEGMENTER, new HashCodeBasedSegmenter<Object>(4))) {
+				final ManagedCache<Item, Integer> original = createCache(concurrency, segmenter, 100, policy);
+				for (int i = 0; i < 10; i++) {
+					original.offer(new Item(i));
+				}
+				originals.add(original);
+			}
+		}
+		// objects 0-9 are idle for 800 ms when saved, so they have to be accessed within 200 ms after restoring
+		Thread.sleep(800L);
+		final List<File> files = new ArrayList<File>();
+		for (final ManagedCache<Item, Integer> original : originals) {
+			for (int i = 10; i < 20; i++) {
+				original.offer(new Item(i));
+			}
+			final File file = createFile();
+			Assert.assertEquals(20L, fixture.save(original, file).get().longValue());
+			files.add(file);
+		}
+		final List<ManagedCache<Item, Integer>> restored = new ArrayList<ManagedCache<Item, Integer>>();
+		int index = 0;
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			for (final CacheSegmenter<Object> segmenter : Arrays.<CacheSegmenter<Object>>asList(CacheSegmenter.NULL_SEGMENTER, new HashCodeBasedSegmenter<Object>(4))) {
+				final ManagedCache<Item, Integer> cache = createCache(concurrency, segmenter, 100, policy);
+				Assert.assertEquals(20L, fixture.restore(cache, files.get(index++)));
+				restored.add(cache);
+			}
+		}
+		Thread.sleep(100L);
+		for (final ManagedCache<Item, Integer> cache : restored) {
+			for (int i = 0; i < 20; i++) {
+				Assert.assertTrue(String.valueOf(i), cache.get(i).hasValue());
+			}
+		}
+		// the recorded idle deadline of objects 0-9 has passed, but they have been accessed since
+		Thread.sleep(400L);
+		for (final ManagedCache<Item, Integer> cache : restored) {
+			for (int i = 0; i < 10; i++) {
+				Assert.assertTrue(String.valueOf(i), cache.get(i).hasValue());
+			}
+		}
+		// objects 0-9 are past their time to live although accessed, and objects 10-19 are idle for 1300 ms
+		Thread.sleep(900L);
+		for (final ManagedCache<Item, Integer> cache : restored) {
+			for (int i = 0; i < 20; i++) {
+				Assert.assertFalse(String.valueOf(i), cache.get(i).hasValue());
+			}
+		}
+		for (final File file : files) {
+			Assert.assertEquals(0L, fixture.restore(createCache(CacheConcurrency.LOCKED_READS, CacheSegmenter.NULL_SEGMENTER, 100, policy), file));
+		}
+	}
+
+	/**
+	 * Checks whether a file of another format is refused.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test(expected = RuntimeIOException.class) public void foreignFileIsRefused() throws Exception {
+		final File file = createFile();
+		final FileOutputStream output = new FileOutputStream(file);
+		try {
+			output.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+		} finally {
+			output.close();
+		}
+		fixture.restore(createCache(CacheConcurrency.LOCKED_READS, CacheSegmenter.NULL_SEGMENTER, 10), file);
+	}
+
+	/**
+	 * A codec of cached objects, encoding an ID.
+	 */
+	private static final class ItemCodec implements Codec<Item> {
+
+		@Override public byte[] encode(final Item object) {
+			return ByteBuffer.allocate(4).putInt(object.getId()).array();
+		}
+
+		@Override public Item decode(final byte[] bytes) {
+			return new Item(ByteBuffer.wrap(bytes).getInt());
+		}
+
+	}
+
+}
@@ -0,0 +1,191 @@
+package gems.caching;
+
+import gems.ObjectProvider;
+import gems.Option;
+import gems.SizeEstimator;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for cache-wide statistics.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitCacheStatistics {
+
+	/**
+	 * A size of each cached object.
+	 */
+	private static final long SIZE = 3L;
+
+	/**
+	 * A size estimator returning the same size for all objects.
+	 */
+	private static final SizeEstimator<Object> SIZER = new SizeEstimator<Object>() {
+
+		@Override public long estimate(final Object object) {
+			return SIZE;
+		}
+
+	};
+
+	/**
+	 * Creates properties of tested caches.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param evictor an evictor.
+	 * @param segmenter a segmenter.
+	 * @param policy an expiration policy.
+	 *
+	 * @return properties of tested caches.
+	 */
+	private static CacheProperties<Item, Integer> createProperties(
+			final CacheConcurrency concurrency,
+			final CacheEvictor<Integer> evictor,
+			final CacheSegmenter<Object> segmenter,
+			final ExpirationPolicy<Object> policy
+	) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 20);
+		limits.setLimit(CacheLimit.SIZE, 1000);
+		return SynchronousExecutor.with(new CacheProperties.Builder<Item, Integer>(limits).with(evictor), concurrency)
+				.with(segmenter)
+				.with(SIZER)
+				.with(policy)
+				.build();
+	}
+
+	/**
+	 * Creates tested caches for all concurrency strategies, queueing, generic, and sampling evictors,
+	 * and both flat and segmented caches.
+	 *
+	 * @param policy an expiration policy.
+	 *
+	 * @return tested caches.
+	 */
+	private static List<ManagedCache<Item, Integer>> createFixtures(final ExpirationPolicy<Object> policy) {
+		final List<ManagedCache<Item, Integer>> result = new ArrayList<ManagedCache<Item, Integer>>();
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			for (final CacheEvictor<Integer> evictor : Arrays.asList(
+					new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get(),
+					new LeastRecentlyUsedEvictorFactory<Integer>().get(),
+					new SampledEvictorFactory<Integer>().get()
+			)) {
+				result.add(concurrency.newCache(createProperties(concurrency, evictor, CacheSegmenter.NULL_SEGMENTER, policy)));
+				result.add(new SegmentedCache<Item, Integer>(createProperties(concurrency, evictor, new HashCodeBasedSegmenter<Object>(4), policy)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns IDs from zero to a given bound.
+	 *
+	 * @param to the ID after the last one.
+	 *
+	 * @return IDs from zero to a given bound.
+	 */
+	private static List<Integer> createIds(final int to) {
+		final List<Integer> result = new ArrayList<Integer>();
+		for (int i = 0; i < to; i++) {
+			result.add(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether hits, misses, evictions, and total size are consistent with cache content.
+	 */
+	@Test public void requestsEvictionsAndWeightAreCounted() {
+		for (final ManagedCache<Item, Integer> fixture : createFixtures(ExpirationPolicy.NULL_EXPIRATION_POLICY)) {
+			for (final int id : createIds(100)) {
+				fixture.offer(new Item(id));
+			}
+			final int cached = fixture.getAll(createIds(100)).size();
+			final CacheStatistics statistics = fixture.getStatistics();
+			final String message = fixture.getClass().getSimpleName() + ": " + statistics;
+			Assert.assertTrue(message, cached > 0 && cached < 100);
+			Assert.assertEquals(message, cached, statistics.getHits());
+			Assert.assertEquals(message, 100L - cached, statistics.getMisses());
+			Assert.assertEquals(message, cached / 100.0, statistics.getHitRate(), 1e-9);
+			Assert.assertEquals(message, 100L - cached, statistics.getEvictions(EvictionCause.SIZE));
+			Assert.assertEquals(message, 0L, statistics.getEvictions(EvictionCause.EXPIRED));
+			Assert.assertEquals(message, cached * SIZE, statistics.getWeight());
+			if (fixture instanceof SegmentedCache) {
+				Assert.assertEquals(message, 4, statistics.getParts().size());
+			}
+		}
+	}
+
+	/**
+	 * Checks whether expirations are counted apart from evictions.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void expirationsAreCounted() throws InterruptedException {
+		for (final ManagedCache<Item, Integer> fixture : createFixtures(new FixedExpirationPolicy<Object>(50L, ExpirationPolicy.NEVER))) {
+			for (int id = 0; id < 10; id++) {
+				fixture.offer(new Item(id));
+			}
+			Thread.sleep(100L);
+			// expired objects are removed by writers
+			fixture.offerAll(createItems(10, 110));
+			final CacheStatistics statistics = fixture.getStatistics();
+			final String message = fixture.getClass().getSimpleName() + ": " + statistics;
+			Assert.assertEquals(message, 10L, statistics.getEvictions(EvictionCause.EXPIRED));
+			Assert.assertEquals(message, 110L, statistics.getEvictions() + statistics.getWeight() / SIZE);
+		}
+	}
+
+	/**
+	 * Checks whether loads are counted by a caching object provider.
+	 */
+	@Test public void loadsAreCounted() {
+		final CachingObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				CacheConcurrency.LOCKED_READS.newCache(createProperties(
+						CacheConcurrency.LOCKED_READS,
+						new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get(),
+						CacheSegmenter.NULL_SEGMENTER,
+						ExpirationPolicy.NULL_EXPIRATION_POLICY
+				)),
+				new ObjectProvider<Item, Integer>() {
+
+					@Override public Option<Item> provide(final Option<Integer> key) {
+						return new Option<Item>(new Item(key.hasValue() ? key.getValue() : 0));
+					}
+
+				}
+		);
+		fixture.provide(new Option<Integer>(1));
+		fixture.provide(new Option<Integer>(1));
+		fixture.provideAll(Arrays.asList(1, 2, 3));
+		final CacheStatistics statistics = fixture.getStatistics();
+		Assert.assertEquals(2L, statistics.getHits());
+		Assert.assertEquals(3L, statistics.getMisses());
+		Assert.assertEquals(3L, statistics.getLoads());
+		Assert.assertTrue(statistics.getLoadTime() > 0L);
+		Assert.assertEquals(3L * SIZE, statistics.getWeight());
+	}
+
+	/**
+	 * Creates objects with IDs from a given range.
+	 *
+	 * @param from the first ID.
+	 * @param to the ID after the last one.
+	 *
+	 * @return objects with IDs from a given range.
+	 */
+	private static List<Item> createItems(final int from, final int to) {
+		final List<Item> result = new ArrayList<Item>();
+		for (int i = from; i < to; i++) {
+			result.add(new Item(i));
+		}
+		return result;
+	}
+
+}
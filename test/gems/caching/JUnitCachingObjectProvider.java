@@ -0,0 +1,420 @@
+package gems.caching;
+
+import gems.BatchObjectProvider;
+import gems.ObjectProvider;
+import gems.Option;
+import gems.StaticLimits;
+import gems.filtering.Filter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the {@code CachingObjectProvider} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitCachingObjectProvider {
+
+	/**
+	 * Number of concurrent callers.
+	 */
+	private static final int CALLERS = 20;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @return a new cache.
+	 */
+	private static Cache<Item, Integer> createCache() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 100);
+		return CacheConcurrency.LOCKED_READS.newCache(new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.build()
+		);
+	}
+
+	/**
+	 * Calls a given provider for a given key from many threads at once, while the underlying
+	 * provider is blocked until all callers are started.
+	 *
+	 * @param fixture a tested provider.
+	 * @param started a latch the underlying provider waits for.
+	 *
+	 * @return results of calls.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	private static List<Future<Option<Item>>> callConcurrently(
+			final ObjectProvider<Item, Integer> fixture, final CountDownLatch started
+	) throws InterruptedException {
+		final ExecutorService threads = Executors.newFixedThreadPool(CALLERS);
+		final List<Future<Option<Item>>> results = new ArrayList<Future<Option<Item>>>();
+		for (int i = 0; i < CALLERS; i++) {
+			results.add(threads.submit(new Callable<Option<Item>>() {
+
+				@Override public Option<Item> call() {
+					started.countDown();
+					return fixture.provide(new Option<Integer>(1));
+				}
+
+			}));
+		}
+		threads.shutdown();
+		return results;
+	}
+
+	/**
+	 * Checks whether concurrent misses of the same key call the underlying provider once.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void concurrentMissesAreCollapsed() throws Exception {
+		final CountDownLatch started = new CountDownLatch(CALLERS);
+		final AtomicInteger calls = new AtomicInteger();
+		final ObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				createCache(), new BlockingProvider(started, calls, null), Filter.ALLOW_ALL, Filter.ALLOW_ALL, 10000L
+		);
+		for (final Future<Option<Item>> result : callConcurrently(fixture, started)) {
+			final Option<Item> item = result.get();
+			Assert.assertTrue(item.hasValue());
+			Assert.assertEquals(Integer.valueOf(1), item.getValue().getId());
+		}
+		Assert.assertEquals(1, calls.get());
+	}
+
+	/**
+	 * Checks whether an exception thrown by the underlying provider is passed to all waiting callers.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void failuresArePropagatedToAllWaiters() throws Exception {
+		final CountDownLatch started = new CountDownLatch(CALLERS);
+		final AtomicInteger calls = new AtomicInteger();
+		final RuntimeException failure = new IllegalStateException();
+		final ObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				createCache(), new BlockingProvider(started, calls, failure), Filter.ALLOW_ALL, Filter.ALLOW_ALL, 10000L
+		);
+		for (final Future<Option<Item>> result : callConcurrently(fixture, started)) {
+			try {
+				result.get();
+				Assert.fail();
+			} catch (final ExecutionException e) {
+				Assert.assertSame(failure, e.getCause());
+			}
+		}
+		Assert.assertEquals(1, calls.get());
+	}
+
+	/**
+	 * Checks whether callers waiting for a slow load give up after the timeout.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void waitingIsBounded() throws Exception {
+		final CountDownLatch never = new CountDownLatch(1);
+		final CountDownLatch loading = new CountDownLatch(1);
+		final ObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				createCache(),
+				new ObjectProvider<Item, Integer>() {
+
+					@Override public Option<Item> provide(final Option<Integer> key) {
+						loading.countDown();
+						try {
+							never.await();
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return new Option<Item>(new Item(key.hasValue() ? key.getValue() : 0));
+					}
+
+				},
+				Filter.ALLOW_ALL, Filter.ALLOW_ALL, 50L
+		);
+		final Thread loader = new Thread(new Runnable() {
+
+			@Override public void run() {
+				fixture.provide(new Option<Integer>(1));
+			}
+
+		});
+		loader.start();
+		loading.await();
+		try {
+			fixture.provide(new Option<Integer>(1));
+			Assert.fail();
+		} catch (final CachingObjectProvider.LoadTimeoutException e) {
+			// expected
+		} finally {
+			never.countDown();
+			loader.join();
+		}
+		Assert.assertTrue(fixture.provide(new Option<Integer>(1)).hasValue());
+	}
+
+	/**
+	 * Checks whether misses of a bulk request are loaded by a single call of a batch provider.
+	 */
+	@Test public void bulkMissesAreLoadedAtOnce() {
+		final List<Collection<? extends Integer>> calls = new ArrayList<Collection<? extends Integer>>();
+		final CachingObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				createCache(),
+				new BatchObjectProvider<Item, Integer>() {
+
+					@Override public Map<Integer, Item> provideAll(final Collection<? extends Integer> keys) {
+						calls.add(new ArrayList<Integer>(keys));
+						final Map<Integer, Item> result = new HashMap<Integer, Item>();
+						for (final Integer key : keys) {
+							if (key < 10) {
+								result.put(key, new Item(key));
+							}
+						}
+						return result;
+					}
+
+					@Override public Option<Item> provide(final Option<Integer> key) {
+						throw new UnsupportedOperationException();
+					}
+
+				}
+		);
+		Assert.assertEquals(3, fixture.provideAll(Arrays.asList(1, 2, 3, 3, 10)).size());
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 10), calls.get(0));
+		final Map<Integer, Item> result = fixture.provideAll(Arrays.asList(1, 2, 3, 4));
+		Assert.assertEquals(4, result.size());
+		Assert.assertEquals(Integer.valueOf(4), result.get(4).getId());
+		Assert.assertEquals(Arrays.asList(4), calls.get(1));
+		Assert.assertEquals(2, calls.size());
+	}
+
+	/**
+	 * Checks whether bulk requests work with a cache which does not support bulk operations.
+	 */
+	@Test public void plainCachesAreAccessedKeyByKey() {
+		final Map<Integer, Item> cached = new HashMap<Integer, Item>();
+		final CachingObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				new Cache<Item, Integer>() {
+
+					@Override public void offer(final Item object) {
+						cached.put(object.getId(), object);
+					}
+
+					@Override public Option<Item> get(final Integer id) {
+						return new Option<Item>(cached.get(id));
+					}
+
+				},
+				new ObjectProvider<Item, Integer>() {
+
+					@Override public Option<Item> provide(final Option<Integer> key) {
+						return new Option<Item>(key.hasValue() && key.getValue() < 10 ? new Item(key.getValue()) : null);
+					}
+
+				}
+		);
+		Assert.assertEquals(2, fixture.provideAll(Arrays.asList(1, 2, 10)).size());
+		Assert.assertEquals(2, cached.size());
+		Assert.assertEquals(3, fixture.provideAll(Arrays.asList(1, 2, 3)).size());
+		Assert.assertEquals(3, cached.size());
+		Assert.assertEquals(4L, fixture.getStatistics().getLoads());
+		Assert.assertEquals(0L, fixture.getStatistics().getRequests());
+	}
+
+	/**
+	 * Checks whether objects close to their expiration are served while reloaded in the background.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void objectsAreRefreshedAhead() throws Exception {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 100);
+		final ExecutorService threadPool = Executors.newSingleThreadExecutor();
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(new FixedExpirationPolicy<Item>(1000L, ExpirationPolicy.NEVER))
+				.with(threadPool)
+				.build();
+		final Cache<Item, Integer> cache = CacheConcurrency.LOCKED_READS.newCache(properties);
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final ObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				cache,
+				new ObjectProvider<Item, Integer>() {
+
+					@Override public Option<Item> provide(final Option<Integer> key) {
+						if (calls.incrementAndGet() > 1) {
+							try {
+								release.await();
+							} catch (final InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+						return new Option<Item>(new Item(key.hasValue() ? key.getValue() : 0));
+					}
+
+				},
+				Filter.ALLOW_ALL, Filter.ALLOW_ALL, 10000L, new RefreshAhead<Item, Integer>(properties, 500L)
+		);
+		try {
+			Assert.assertTrue(fixture.provide(new Option<Integer>(1)).hasValue());
+			Assert.assertTrue(fixture.provide(new Option<Integer>(1)).hasValue());
+			Assert.assertEquals(1, calls.get());
+			Thread.sleep(600L);
+			Assert.assertTrue(fixture.provide(new Option<Integer>(1)).hasValue());
+			Assert.assertTrue(fixture.provide(new Option<Integer>(1)).hasValue());
+			for (int i = 0; i < 100 && calls.get() < 2; i++) {
+				Thread.sleep(10L);
+			}
+			Assert.assertEquals(2, calls.get());
+			release.countDown();
+			Thread.sleep(600L);
+			Assert.assertTrue(cache.get(1).hasValue());
+		} finally {
+			release.countDown();
+			threadPool.shutdown();
+		}
+	}
+
+	/**
+	 * Checks whether probabilistic early refresh follows the XFetch algorithm.
+	 */
+	@Test public void earlyRefreshIsProbabilistic() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 100);
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits).build();
+		final RefreshAhead<Item, Integer> windowOnly = new RefreshAhead<Item, Integer>(properties, 10L);
+		Assert.assertFalse(windowOnly.isDue(1000L, 1000.0, 989L));
+		Assert.assertTrue(windowOnly.isDue(1000L, 1000.0, 990L));
+		final RefreshAhead<Item, Integer> early = new RefreshAhead<Item, Integer>(properties, 0L, RefreshAhead.DEFAULT_BETA);
+		int due = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (early.isDue(1000L, 100.0, 900L)) {
+				due++;
+			}
+		}
+		// probability of refresh is exp(-1)
+		Assert.assertTrue(String.valueOf(due), due > 3300 && due < 4100);
+		Assert.assertFalse(early.isDue(Long.MAX_VALUE, 100.0, 900L));
+	}
+
+	/**
+	 * Checks whether misses of the underlying provider are cached negatively, both for single and bulk requests.
+	 */
+	@Test public void missesAreCachedNegatively() {
+		final List<Integer> calls = new ArrayList<Integer>();
+		final NegativeCache<Integer> negative = new NegativeCache<Integer>(60000L, 100L, NegativeCache.DEFAULT_FALSE_POSITIVE_RATE);
+		final CachingObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				createCache(),
+				new ObjectProvider<Item, Integer>() {
+
+					@Override public Option<Item> provide(final Option<Integer> key) {
+						Assert.assertTrue(key.hasValue());
+						calls.add(key.getValue());
+						return new Option<Item>(key.getValue() < 10 ? new Item(key.getValue()) : null);
+					}
+
+				},
+				Filter.ALLOW_ALL, Filter.ALLOW_ALL, 10000L, null, negative
+		);
+		Assert.assertFalse(fixture.provide(new Option<Integer>(10)).hasValue());
+		Assert.assertFalse(fixture.provide(new Option<Integer>(10)).hasValue());
+		Assert.assertEquals(Arrays.asList(10), calls);
+		Assert.assertEquals(1, fixture.provideAll(Arrays.asList(1, 10, 11)).size());
+		Assert.assertEquals(Arrays.asList(10, 1, 11), calls);
+		Assert.assertTrue(fixture.provideAll(Arrays.asList(10, 11)).isEmpty());
+		Assert.assertEquals(3, calls.size());
+		Assert.assertTrue(fixture.provide(new Option<Integer>(2)).hasValue());
+		Assert.assertTrue(negative.getFiltered() > 0L);
+	}
+
+	/**
+	 * Checks whether negatively cached keys expire, and whether negative caching works without single-flight loading.
+	 *
+	 * @throws Exception if anything fails.
+	 */
+	@Test public void negativeEntriesExpire() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final CachingObjectProvider<Item, Integer> fixture = new CachingObjectProvider<Item, Integer>(
+				createCache(),
+				new ObjectProvider<Item, Integer>() {
+
+					@Override public Option<Item> provide(final Option<Integer> key) {
+						calls.incrementAndGet();
+						return new Option<Item>(null);
+					}
+
+				},
+				Filter.ALLOW_ALL, Filter.ALLOW_ALL, CachingObjectProvider.DIRECT_LOADING, null, new NegativeCache<Integer>(50L, 100L)
+		);
+		Assert.assertFalse(fixture.provide(new Option<Integer>(1)).hasValue());
+		Assert.assertFalse(fixture.provide(new Option<Integer>(1)).hasValue());
+		Assert.assertEquals(1, calls.get());
+		Thread.sleep(100L);
+		Assert.assertFalse(fixture.provide(new Option<Integer>(1)).hasValue());
+		Assert.assertEquals(2, calls.get());
+	}
+
+	/**
+	 * An underlying provider waiting until all callers are started.
+	 */
+	private static final class BlockingProvider implements ObjectProvider<Item, Integer> {
+
+		/**
+		 * A latch of started callers.
+		 */
+		private final CountDownLatch started;
+
+		/**
+		 * A counter of calls.
+		 */
+		private final AtomicInteger calls;
+
+		/**
+		 * A failure to throw or {@code null}.
+		 */
+		private final RuntimeException failure;
+
+		/**
+		 * Creates a new provider.
+		 *
+		 * @param started a latch of started callers.
+		 * @param calls a counter of calls.
+		 * @param failure a failure to throw or {@code null}.
+		 */
+		private BlockingProvider(final CountDownLatch started, final AtomicInteger calls, final RuntimeException failure) {
+			this.started = started;
+			this.calls = calls;
+			this.failure = failure;
+		}
+
+		@Override public Option<Item> provide(final Option<Integer> key) {
+			calls.incrementAndGet();
+			try {
+				started.await();
+				Thread.sleep(50L);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return new Option<Item>(new Item(key.hasValue() ? key.getValue() : 0));
+		}
+
+	}
+
+}
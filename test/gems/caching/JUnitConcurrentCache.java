@@ -0,0 +1,204 @@
+package gems.caching;
+
+import gems.Option;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for the {@code ConcurrentCache} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitConcurrentCache {
+
+	/**
+	 * Maximal number of items kept in tested caches.
+	 */
+	private static final int CAPACITY = 100;
+
+	/**
+	 * Creates a new tested cache using a given evictor.
+	 *
+	 * @param evictor an evictor.
+	 *
+	 * @return a new tested cache.
+	 */
+	private static Cache<Item, Integer> createFixture(final CacheEvictor<Integer> evictor) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, CAPACITY);
+		return new ConcurrentCache<Item, Integer>(new CacheProperties.Builder<Item, Integer>(limits).with(evictor).build());
+	}
+
+	/**
+	 * Checks whether a {@code null} object is forbidden.
+	 */
+	@Test(expected = IllegalArgumentException.class) public void nullObjectIsForbidden() {
+		createFixture(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get()).offer(null);
+	}
+
+	/**
+	 * Checks whether a {@code null} key is forbidden.
+	 */
+	@Test(expected = IllegalArgumentException.class) public void nullKeyIsForbidden() {
+		createFixture(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get()).get(null);
+	}
+
+	/**
+	 * Checks whether an offered object is returned and it can be replaced.
+	 */
+	@Test public void offeredObjectIsReturned() {
+		final Cache<Item, Integer> fixture = createFixture(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get());
+		Assert.assertFalse(fixture.get(1).hasValue());
+		final Item first = new Item(1);
+		fixture.offer(first);
+		final Option<Item> firstOption = fixture.get(1);
+		Assert.assertTrue(firstOption.hasValue());
+		Assert.assertSame(first, firstOption.getValue());
+		final Item second = new Item(1);
+		fixture.offer(second);
+		final Option<Item> secondOption = fixture.get(1);
+		Assert.assertTrue(secondOption.hasValue());
+		Assert.assertSame(second, secondOption.getValue());
+	}
+
+	/**
+	 * Checks whether storage factories other than the memory one are rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class) public void otherStorageFactoriesAreRejected() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, CAPACITY);
+		new ConcurrentCache<Item, Integer>(new CacheProperties.Builder<Item, Integer>(limits).with(new StorageFactory<Integer, Item>() {
+			@Override public Storage<Integer, Item> getStorage() {
+				return new MemoryStorage<Integer, Item>();
+			}
+		}).build());
+	}
+
+	/**
+	 * Checks whether recently read items survive eviction with a queueing evictor.
+	 */
+	@Test public void recentlyReadItemsSurviveWithQueueingEvictor() {
+		final Cache<Item, Integer> fixture = createFixture(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get());
+		readItemsSurviveImpl(fixture);
+		for (int i = 1; i < CAPACITY; i += 2) {
+			Assert.assertFalse(String.valueOf(i), fixture.get(i).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether frequently read items survive eviction with a comparator-based evictor.
+	 */
+	@Test public void frequentlyReadItemsSurviveWithComparatorEvictor() {
+		readItemsSurviveImpl(createFixture(new LeastFrequentlyUsedEvictorFactory<Integer>().get()));
+	}
+
+	/**
+	 * Fills a given cache, reads a half of items, and then overflows the
+	 * cache by another half. Read items have to stay in the cache.
+	 *
+	 * @param fixture a tested cache.
+	 */
+	private static void readItemsSurviveImpl(final Cache<Item, Integer> fixture) {
+		for (int i = 0; i < CAPACITY; i++) {
+			fixture.offer(new Item(i));
+		}
+		for (int i = 0; i < CAPACITY; i += 2) {
+			Assert.assertTrue(fixture.get(i).hasValue());
+		}
+		for (int i = CAPACITY; i < CAPACITY + CAPACITY / 2; i++) {
+			fixture.offer(new Item(i));
+		}
+		for (int i = 0; i < CAPACITY; i += 2) {
+			Assert.assertTrue(String.valueOf(i), fixture.get(i).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether concurrent readers always get consistent objects while a writer keeps overflowing the cache.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void concurrentReadersSeeConsistentObjects() throws InterruptedException {
+		final Cache<Item, Integer> fixture = createFixture(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get());
+		final AtomicBoolean failed = new AtomicBoolean();
+		final Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread() {
+				@Override public void run() {
+					for (int j = 0; j < 100000; j++) {
+						final Integer key = j % (CAPACITY * 2);
+						final Option<Item> item = fixture.get(key);
+						if (item.hasValue() && !item.getValue().getId().equals(key)) {
+							failed.set(true);
+						}
+					}
+				}
+			};
+			readers[i].start();
+		}
+		for (int j = 0; j < 100000; j++) {
+			fixture.offer(new Item(j % (CAPACITY * 3)));
+		}
+		for (final Thread reader : readers) {
+			reader.join();
+		}
+		Assert.assertFalse(failed.get());
+	}
+
+	/**
+	 * Checks whether a writer applies pending accesses of each victim as a single access, no matter
+	 * how many reads were recorded since the last eviction.
+	 */
+	@Test public void pendingAccessesAreAppliedOnce() {
+		final int[] accesses = new int[1];
+		final Cache<Item, Integer> fixture = createFixture(new QueueingCacheEvictor<Integer>(new LeastRecentlyUsedEvictorFactory<Integer>().get()) {
+
+			@Override EvictionQueue<Integer> newQueue() {
+				return new EvictionQueue<Integer>() {
+
+					private final NodeList<Integer> nodes = new NodeList<Integer>();
+
+					@Override protected Node<Integer> newNode(final Integer key) {
+						return new Node<Integer>(key);
+					}
+
+					@Override protected void link(final Node<Integer> node) {
+						nodes.append(node);
+					}
+
+					@Override protected void unlink(final Node<Integer> node) {
+						nodes.remove(node);
+					}
+
+					@Override protected void access(final Node<Integer> node) {
+						accesses[0]++;
+						nodes.remove(node);
+						nodes.append(node);
+					}
+
+					@Override protected Iterator<Node<Integer>> victims() {
+						return nodes.iterator();
+					}
+
+				};
+			}
+
+		});
+		for (int i = 0; i < CAPACITY; i++) {
+			fixture.offer(new Item(i));
+		}
+		for (int j = 0; j < 100; j++) {
+			for (int i = 0; i < CAPACITY; i++) {
+				Assert.assertTrue(fixture.get(i).hasValue());
+			}
+		}
+		Assert.assertEquals(0, accesses[0]);
+		fixture.offer(new Item(CAPACITY));
+		Assert.assertTrue(accesses[0] <= CAPACITY);
+	}
+
+}
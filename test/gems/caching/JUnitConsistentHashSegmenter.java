@@ -0,0 +1,172 @@
+package gems.caching;
+
+import gems.Option;
+import gems.StaticLimits;
+import gems.UnexpectedNullException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the {@code ConsistentHashSegmenter} class and for resizing of segmented caches.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitConsistentHashSegmenter {
+
+	/**
+	 * A number of tested keys.
+	 */
+	private static final int KEYS = 10000;
+
+	/**
+	 * Checks whether {@code null} is forbidden as key.
+	 */
+	@Test(expected = UnexpectedNullException.class) public void nullKeyIsForbidden() {
+		new ConsistentHashSegmenter<Object>(1).getSegment(null);
+	}
+
+	/**
+	 * Checks whether segment numbers are in range and spread roughly uniformly.
+	 */
+	@Test public void keysAreSpreadUniformly() {
+		final int segments = 8;
+		final CacheSegmenter<Integer> fixture = new ConsistentHashSegmenter<Integer>(segments);
+		final int[] counts = new int[segments];
+		for (int key = 0; key < KEYS; key++) {
+			counts[fixture.getSegment(key)]++;
+		}
+		for (final int count : counts) {
+			Assert.assertTrue(String.valueOf(count), count > KEYS / segments / 2 && count < KEYS / segments * 2);
+		}
+	}
+
+	/**
+	 * Checks whether growing moves keys only to the new segment, and whether shrinking moves only keys of the removed segment.
+	 */
+	@Test public void resizingMovesOnlyAffectedKeys() {
+		final ConsistentHashSegmenter<Integer> small = new ConsistentHashSegmenter<Integer>(4);
+		final ResizableSegmenter<Integer> large = small.resize(5);
+		Assert.assertEquals(5, large.maxSegments());
+		int moved = 0;
+		for (int key = 0; key < KEYS; key++) {
+			final int before = small.getSegment(key);
+			final int after = large.getSegment(key);
+			if (before != after) {
+				Assert.assertEquals(4, after);
+				moved++;
+			}
+			Assert.assertEquals(before, large.resize(4).getSegment(key));
+		}
+		Assert.assertTrue(String.valueOf(moved), moved > 0 && moved < KEYS / 2);
+	}
+
+	/**
+	 * Creates a segmented cache.
+	 *
+	 * @param segmenter a segmenter.
+	 * @param concurrency a concurrency strategy.
+	 *
+	 * @return a segmented cache.
+	 */
+	private static ResizableCache<Item, Integer> createCache(final CacheSegmenter<Object> segmenter, final CacheConcurrency concurrency) {
+		return createCache(segmenter, concurrency, ExpirationPolicy.NULL_EXPIRATION_POLICY);
+	}
+
+	/**
+	 * Creates a segmented cache whose objects expire according to a given policy.
+	 *
+	 * @param segmenter a segmenter.
+	 * @param concurrency a concurrency strategy.
+	 * @param policy an expiration policy.
+	 *
+	 * @return a segmented cache.
+	 */
+	private static ResizableCache<Item, Integer> createCache(
+			final CacheSegmenter<Object> segmenter, final CacheConcurrency concurrency, final ExpirationPolicy<Object> policy
+	) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, KEYS);
+		final Option<ManagedCache<Item, Integer>> cache = new CacheFactory<Item, Integer>().provideManaged(new Option<CacheProperties<Item, Integer>>(
+				new CacheProperties.Builder<Item, Integer>(limits).with(segmenter).with(concurrency).with(policy).build()
+		));
+		Assert.assertTrue(cache.hasValue());
+		return (ResizableCache<Item, Integer>) cache.getValue();
+	}
+
+	/**
+	 * Checks whether cached objects survive growing and shrinking of a segmented cache.
+	 */
+	@Test public void cachedObjectsSurviveResizing() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final ResizableCache<Item, Integer> fixture = createCache(new ConsistentHashSegmenter<Object>(2), concurrency);
+			final List<Integer> keys = new ArrayList<Integer>();
+			for (int key = 0; key < 100; key++) {
+				fixture.offer(new Item(key));
+				keys.add(key);
+			}
+			fixture.resize(4);
+			Assert.assertEquals(4, fixture.getSegments());
+			Assert.assertEquals(100, fixture.getAll(keys).size());
+			fixture.resize(1);
+			Assert.assertEquals(1, fixture.getSegments());
+			Assert.assertEquals(100, fixture.getAll(keys).size());
+			Assert.assertEquals(0L, fixture.getStatistics().getEvictions());
+		}
+	}
+
+	/**
+	 * Checks whether migrated objects keep statistics of their keys and expire as if the cache was not resized.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void migratedObjectsKeepStatisticsAndTimeToLive() throws InterruptedException {
+		final ExpirationPolicy<Object> policy = new ExpirationPolicy<Object>() {
+
+			@Override public long getTimeToLive(final Object object) {
+				return 300L;
+			}
+
+			@Override public long getTimeToIdle(final Object object) {
+				return NEVER;
+			}
+
+		};
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final ResizableCache<Item, Integer> fixture = createCache(new ConsistentHashSegmenter<Object>(2), concurrency, policy);
+			final List<Integer> keys = new ArrayList<Integer>();
+			for (int key = 0; key < 100; key++) {
+				fixture.offer(new Item(key));
+				keys.add(key);
+			}
+			final long offered = System.currentTimeMillis();
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(100, fixture.getAll(keys).size());
+			}
+			Thread.sleep(200L);
+			fixture.resize(4);
+			int objects = 0;
+			for (final ExtractableCache<Item, Integer> segment : ((SegmentedCache<Item, Integer>) fixture).getSegmentList()) {
+				for (final Map.Entry<Item, CacheItemStatistics<Integer>> entry : segment.snapshot()) {
+					Assert.assertEquals(concurrency.name(), 3L, entry.getValue().getHits());
+					Assert.assertTrue(concurrency.name(), entry.getValue().getDateOfBirth() <= offered);
+					objects++;
+				}
+			}
+			Assert.assertEquals(concurrency.name(), 100, objects);
+			Thread.sleep(150L);
+			Assert.assertEquals(concurrency.name(), 0, fixture.getAll(keys).size());
+		}
+	}
+
+	/**
+	 * Checks whether a cache with a segmenter which is not resizable cannot be resized.
+	 */
+	@Test(expected = UnsupportedOperationException.class) public void fixedSegmenterCannotBeResized() {
+		createCache(new HashCodeBasedSegmenter<Object>(2), CacheConcurrency.LOCKED_READS).resize(4);
+	}
+
+}
@@ -0,0 +1,250 @@
+package gems.caching;
+
+import gems.NumericValueOutOfRangeException;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@code EvictionQueue} implementations.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitEvictionQueue {
+
+	/**
+	 * Creates cache limits for given number of items and total size.
+	 *
+	 * @param items maximal number of items.
+	 * @param size maximal total size.
+	 *
+	 * @return cache limits.
+	 */
+	private static StaticLimits<CacheLimit> limits(final long items, final long size) {
+		final StaticLimits<CacheLimit> result = new StaticLimits<CacheLimit>(CacheLimit.class);
+		result.setLimit(CacheLimit.ITEMS, items);
+		result.setLimit(CacheLimit.SIZE, size);
+		return result;
+	}
+
+	/**
+	 * Checks whether a negative size is forbidden.
+	 */
+	@Test(expected = NumericValueOutOfRangeException.class) public void negativeSizeIsForbidden() {
+		new LeastRecentlyUsedEvictionQueue<Integer>().add(1, -1L);
+	}
+
+	/**
+	 * Checks whether nothing is selected if limits are satisfied.
+	 */
+	@Test public void nothingIsSelectedWithinLimits() {
+		final EvictionQueue<Integer> fixture = new LeastRecentlyUsedEvictionQueue<Integer>();
+		fixture.add(1, 10L);
+		fixture.add(2, 10L);
+		Assert.assertTrue(fixture.select(limits(2L, 20L)).isEmpty());
+	}
+
+	/**
+	 * Checks whether number and total size of items are tracked.
+	 */
+	@Test public void countAndWeightAreTracked() {
+		final EvictionQueue<Integer> fixture = new LeastRecentlyUsedEvictionQueue<Integer>();
+		final EvictionQueue.Node<Integer> node = fixture.add(1, 10L);
+		fixture.add(2, 5L);
+		Assert.assertEquals(2L, fixture.count());
+		Assert.assertEquals(15L, fixture.weight());
+		Assert.assertTrue(fixture.update(node, 20L));
+		Assert.assertEquals(25L, fixture.weight());
+		fixture.remove(node);
+		fixture.remove(node);
+		Assert.assertEquals(1L, fixture.count());
+		Assert.assertEquals(5L, fixture.weight());
+		Assert.assertFalse(fixture.update(node, 1L));
+	}
+
+	/**
+	 * Checks whether the least-recently used items are selected.
+	 */
+	@Test public void leastRecentlyUsedItemsAreSelected() {
+		final EvictionQueue<Integer> fixture = new LeastRecentlyUsedEvictionQueue<Integer>();
+		final List<EvictionQueue.Node<Integer>> nodes = new ArrayList<EvictionQueue.Node<Integer>>();
+		for (int i = 0; i < 5; i++) {
+			nodes.add(fixture.add(i, 0L));
+		}
+		fixture.touch(nodes.get(0));
+		fixture.touch(nodes.get(2));
+		Assert.assertEquals(Arrays.asList(1, 3), new ArrayList<Integer>(fixture.select(limits(3L, 0L))));
+		fixture.remove(nodes.get(1));
+		Assert.assertEquals(Collections.singletonList(3), new ArrayList<Integer>(fixture.select(limits(3L, 0L))));
+	}
+
+	/**
+	 * Checks whether the least-frequently used items are selected, and
+	 * the least-recently used one among items with the same frequency.
+	 */
+	@Test public void leastFrequentlyUsedItemsAreSelected() {
+		final EvictionQueue<Integer> fixture = new LeastFrequentlyUsedEvictionQueue<Integer>();
+		final List<EvictionQueue.Node<Integer>> nodes = new ArrayList<EvictionQueue.Node<Integer>>();
+		for (int i = 0; i < 5; i++) {
+			nodes.add(fixture.add(i, 0L));
+		}
+		fixture.touch(nodes.get(0));
+		fixture.touch(nodes.get(0));
+		fixture.touch(nodes.get(3));
+		fixture.touch(nodes.get(1));
+		Assert.assertEquals(Arrays.asList(2, 4, 3, 1), new ArrayList<Integer>(fixture.select(limits(1L, 0L))));
+		fixture.remove(nodes.get(2));
+		fixture.remove(nodes.get(4));
+		Assert.assertEquals(Arrays.asList(3, 1), new ArrayList<Integer>(fixture.select(limits(1L, 0L))));
+	}
+
+	/**
+	 * Checks whether items are selected until size limit is satisfied.
+	 */
+	@Test public void sizeLimitIsSatisfied() {
+		final EvictionQueue<Integer> fixture = new LeastRecentlyUsedEvictionQueue<Integer>();
+		fixture.add(1, 30L);
+		fixture.add(2, 5L);
+		fixture.add(3, 30L);
+		fixture.add(4, 30L);
+		Assert.assertEquals(Arrays.asList(1, 2), new ArrayList<Integer>(fixture.select(limits(10L, 60L))));
+	}
+
+	/**
+	 * Checks whether the window TinyLFU queue keeps most of a frequently used working set while
+	 * items used only once pass through, contrary to the least-recently used queue.
+	 */
+	@Test public void windowTinyLfuResistsScans() {
+		Assert.assertEquals(100, evictionsOfWorkingSetDuringScan(new LeastRecentlyUsedEvictionQueue<Integer>()));
+		Assert.assertTrue(evictionsOfWorkingSetDuringScan(new WindowTinyLfuEvictionQueue<Integer>()) < 25);
+	}
+
+	/**
+	 * Checks whether a single access of a candidate leaving the admission window, as when a cache applies
+	 * pending accesses of its victim, does not admit the candidate by itself: a scan of items accessed
+	 * once more as candidates must not evict any item of a working set used more often. The last item
+	 * added before the scan is not used again, so the working set is not in the admission window.
+	 */
+	@Test public void windowTinyLfuAdmitsAccessedCandidatesByFrequency() {
+		final WindowTinyLfuEvictionQueue<Integer> fixture = new WindowTinyLfuEvictionQueue<Integer>();
+		final StaticLimits<CacheLimit> limits = limits(100L, Long.MAX_VALUE);
+		final Map<Integer, EvictionQueue.Node<Integer>> nodes = new HashMap<Integer, EvictionQueue.Node<Integer>>();
+		for (int i = 0; i < 100; i++) {
+			nodes.put(i, fixture.add(i, 0L));
+		}
+		for (int i = 0; i < 3 * 99; i++) {
+			fixture.touch(nodes.get(i % 99));
+		}
+		final Set<Integer> pending = new HashSet<Integer>();
+		for (int i = 100; i < 200; i++) {
+			nodes.put(i, fixture.add(i, 0L));
+			pending.add(i);
+			while (fixture.exceeds(limits)) {
+				final EvictionQueue.Node<Integer> victim = fixture.head();
+				if (pending.remove(victim.getKey())) {
+					fixture.touch(victim);
+				} else {
+					fixture.remove(nodes.remove(victim.getKey()));
+				}
+			}
+		}
+		for (int i = 0; i < 99; i++) {
+			Assert.assertTrue(String.valueOf(i), nodes.containsKey(i));
+		}
+	}
+
+	/**
+	 * Checks whether the adaptive replacement queue remembers keys of evicted items, and whether
+	 * adding a remembered key enlarges the target size of items seen once.
+	 */
+	@Test public void adaptiveReplacementAdaptsToGhostHits() {
+		final AdaptiveReplacementEvictionQueue<Integer> fixture = new AdaptiveReplacementEvictionQueue<Integer>();
+		final Map<Integer, EvictionQueue.Node<Integer>> nodes = new HashMap<Integer, EvictionQueue.Node<Integer>>();
+		for (int i = 1; i <= 3; i++) {
+			nodes.put(i, fixture.add(i, 0L));
+		}
+		fixture.touch(nodes.get(2));
+		Assert.assertEquals(Collections.singletonList(1), new ArrayList<Integer>(fixture.select(limits(2L, 0L))));
+		fixture.remove(nodes.remove(1));
+		Assert.assertEquals(0L, fixture.getTarget());
+		fixture.add(1, 0L);
+		Assert.assertEquals(1L, fixture.getTarget());
+		Assert.assertEquals(Collections.singletonList(2), new ArrayList<Integer>(fixture.select(limits(2L, 0L))));
+	}
+
+	/**
+	 * Checks whether ghost lists of the adaptive replacement queue stay bounded by number of cached items
+	 * if the cache is limited by total size of items only.
+	 */
+	@Test public void adaptiveReplacementGhostsAreBoundedBySizeLimit() {
+		final AdaptiveReplacementEvictionQueue<Integer> fixture = new AdaptiveReplacementEvictionQueue<Integer>();
+		final StaticLimits<CacheLimit> limits = limits(Integer.MAX_VALUE, 100L);
+		final Map<Integer, EvictionQueue.Node<Integer>> nodes = new HashMap<Integer, EvictionQueue.Node<Integer>>();
+		for (int i = 0; i < 10000; i++) {
+			nodes.put(i, fixture.add(i, 1L));
+			for (final Integer key : fixture.select(limits)) {
+				fixture.remove(nodes.remove(key));
+			}
+		}
+		Assert.assertEquals(100L, fixture.count());
+		Assert.assertTrue(String.valueOf(fixture.getGhostCount()), fixture.getGhostCount() <= 100);
+	}
+
+	/**
+	 * Checks whether the CLOCK-Pro queue makes an item hot if its key is added again in its test period,
+	 * and whether such an addition enlarges the target number of cold items.
+	 */
+	@Test public void clockProPromotesItemsAddedInTestPeriod() {
+		final ClockProEvictionQueue<Integer> fixture = new ClockProEvictionQueue<Integer>();
+		final Map<Integer, EvictionQueue.Node<Integer>> nodes = new HashMap<Integer, EvictionQueue.Node<Integer>>();
+		for (int i = 1; i <= 3; i++) {
+			nodes.put(i, fixture.add(i, 0L));
+			Assert.assertTrue(fixture.select(limits(3L, 0L)).isEmpty());
+		}
+		nodes.put(4, fixture.add(4, 0L));
+		Assert.assertEquals(Collections.singletonList(3), new ArrayList<Integer>(fixture.select(limits(3L, 0L))));
+		fixture.remove(nodes.remove(3));
+		Assert.assertEquals(1L, fixture.getColdTarget());
+		nodes.put(3, fixture.add(3, 0L));
+		Assert.assertEquals(Collections.singletonList(4), new ArrayList<Integer>(fixture.select(limits(3L, 0L))));
+		Assert.assertEquals(2L, fixture.getColdTarget());
+	}
+
+	/**
+	 * Fills a given queue with a working set of a hundred items, then adds ten thousand
+	 * items used only once while the working set is used round-robin, and returns how
+	 * many items of the working set were selected for eviction.
+	 *
+	 * @param fixture a queue.
+	 *
+	 * @return number of evicted items of the working set.
+	 */
+	private static int evictionsOfWorkingSetDuringScan(final EvictionQueue<Integer> fixture) {
+		final StaticLimits<CacheLimit> limits = limits(100L, Long.MAX_VALUE);
+		final Map<Integer, EvictionQueue.Node<Integer>> nodes = new HashMap<Integer, EvictionQueue.Node<Integer>>();
+		int result = 0;
+		for (int i = 0; i < 10100; i++) {
+			if (i >= 100 && nodes.containsKey(i % 100)) {
+				fixture.touch(nodes.get(i % 100));
+			}
+			nodes.put(i, fixture.add(i, 0L));
+			for (final Integer key : fixture.select(limits)) {
+				fixture.remove(nodes.remove(key));
+				if (key < 100) {
+					result++;
+				}
+			}
+		}
+		return result;
+	}
+
+}
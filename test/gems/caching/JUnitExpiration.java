@@ -0,0 +1,96 @@
+package gems.caching;
+
+import gems.NumericValueOutOfRangeException;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for expiration of cached objects.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitExpiration {
+
+	/**
+	 * A short duration used in tests, in milliseconds.
+	 */
+	private static final long DURATION = 100L;
+
+	/**
+	 * Creates a new tested cache.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param policy an expiration policy.
+	 *
+	 * @return a new tested cache.
+	 */
+	private static Cache<Item, Integer> createFixture(final CacheConcurrency concurrency, final ExpirationPolicy<? super Item> policy) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 100);
+		return concurrency.newCache(new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(policy)
+				.build()
+		);
+	}
+
+	/**
+	 * Checks whether a non-positive duration is forbidden.
+	 */
+	@Test(expected = NumericValueOutOfRangeException.class) public void nonPositiveDurationIsForbidden() {
+		new FixedExpirationPolicy<Item>(0L, ExpirationPolicy.NEVER);
+	}
+
+	/**
+	 * Checks whether objects expire after their time to live.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void objectsExpireAfterTimeToLive() throws InterruptedException {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final Cache<Item, Integer> fixture = createFixture(concurrency, new FixedExpirationPolicy<Item>(DURATION, ExpirationPolicy.NEVER));
+			fixture.offer(new Item(1));
+			Assert.assertTrue(concurrency.name(), fixture.get(1).hasValue());
+			Thread.sleep(2L * DURATION);
+			Assert.assertFalse(concurrency.name(), fixture.get(1).hasValue());
+			fixture.offer(new Item(1));
+			Assert.assertTrue(concurrency.name(), fixture.get(1).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether objects accessed often do not expire after their time to idle,
+	 * while objects not accessed do.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void objectsExpireAfterTimeToIdle() throws InterruptedException {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final Cache<Item, Integer> fixture = createFixture(concurrency, new FixedExpirationPolicy<Item>(ExpirationPolicy.NEVER, 4L * DURATION));
+			fixture.offer(new Item(1));
+			fixture.offer(new Item(2));
+			for (int i = 0; i < 6; i++) {
+				Thread.sleep(DURATION);
+				Assert.assertTrue(concurrency.name(), fixture.get(1).hasValue());
+				fixture.offer(new Item(3 + i));
+			}
+			Assert.assertFalse(concurrency.name(), fixture.get(2).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether objects never expire by default.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void objectsNeverExpireByDefault() throws InterruptedException {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final Cache<Item, Integer> fixture = createFixture(concurrency, ExpirationPolicy.NULL_EXPIRATION_POLICY);
+			fixture.offer(new Item(1));
+			Thread.sleep(DURATION);
+			Assert.assertTrue(concurrency.name(), fixture.get(1).hasValue());
+		}
+	}
+
+}
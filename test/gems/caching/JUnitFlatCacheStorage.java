@@ -0,0 +1,88 @@
+package gems.caching;
+
+import gems.Option;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Unit tests for {@code FlatCacheStorage} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitFlatCacheStorage {
+
+	/**
+	 * A number of stored objects; it is large enough to grow the table several times.
+	 */
+	private static final int COUNT = 1000;
+
+	/**
+	 * A tested fixture.
+	 */
+	private FlatCacheStorage<Integer, Item> fixture;
+
+	/**
+	 * Creates a new fixture for each test.
+	 */
+	@Before public void setUp() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, COUNT);
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits).build();
+		fixture = new FlatCacheStorage<Integer, Item>(properties, new StatisticsCounter());
+	}
+
+	/**
+	 * Checks whether all stored objects are found after the table grows.
+	 */
+	@Test public void objectsAreFoundAfterGrowth() {
+		for (int i = 0; i < COUNT; i++) {
+			fixture.put(new Item(i));
+		}
+		for (int i = 0; i < COUNT; i++) {
+			final Option<Item> value = fixture.get(i);
+			Assert.assertTrue(value.hasValue());
+			Assert.assertEquals(Integer.valueOf(i), value.getValue().getId());
+		}
+		Assert.assertFalse(fixture.get(COUNT).hasValue());
+		Assert.assertEquals(COUNT, fixture.itemsForEviction().size());
+	}
+
+	/**
+	 * Checks whether statistics of an evicted object survive its eviction.
+	 */
+	@Test public void statisticsSurviveEviction() {
+		fixture.put(new Item(1));
+		fixture.get(1);
+		fixture.get(1);
+		Assert.assertEquals(1, fixture.evict(Collections.singletonList(1)));
+		Assert.assertFalse(fixture.get(1).hasValue());
+		Assert.assertTrue(fixture.itemsForEviction().isEmpty());
+		Assert.assertEquals(0, fixture.evict(Collections.singletonList(1)));
+		fixture.put(new Item(1));
+		final CacheItemStatistics<Integer> statistics = fixture.itemsForEviction().iterator().next();
+		Assert.assertEquals(2L, statistics.getHits());
+		Assert.assertEquals(1L, statistics.getMisses());
+		Assert.assertEquals(1L, statistics.getEvictions());
+	}
+
+	/**
+	 * Checks whether keys of evicted objects are dropped once they outnumber cached objects.
+	 */
+	@Test public void keysOfEvictedObjectsAreReclaimed() {
+		fixture.put(new Item(COUNT));
+		for (int i = 0; i < COUNT; i++) {
+			fixture.put(new Item(i));
+			Assert.assertEquals(1, fixture.evict(Collections.singletonList(i)));
+		}
+		fixture.put(new Item(0));
+		Assert.assertEquals(2, fixture.itemsForEviction().size());
+		for (final CacheItemStatistics<Integer> statistics : fixture.itemsForEviction()) {
+			Assert.assertEquals(0L, statistics.getEvictions());
+		}
+	}
+
+}
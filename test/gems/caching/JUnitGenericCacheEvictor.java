@@ -0,0 +1,112 @@
+package gems.caching;
+
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for {@code GenericCacheEvictor} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitGenericCacheEvictor {
+
+	/**
+	 * A number of evaluated items.
+	 */
+	private static final int COUNT = 1000;
+
+	/**
+	 * A tested fixture.
+	 */
+	private final CacheEvictor<Integer> fixture = new GenericCacheEvictor<Integer>(new LeastRecentlyUsedEvictionComparator<Integer>());
+
+	/**
+	 * Creates cache limits for given number of items and total size.
+	 *
+	 * @param items maximal number of items.
+	 * @param size maximal total size.
+	 *
+	 * @return cache limits.
+	 */
+	private static StaticLimits<CacheLimit> limits(final long items, final long size) {
+		final StaticLimits<CacheLimit> result = new StaticLimits<CacheLimit>(CacheLimit.class);
+		result.setLimit(CacheLimit.ITEMS, items);
+		result.setLimit(CacheLimit.SIZE, size);
+		return result;
+	}
+
+	/**
+	 * Creates statistics of items with distinct last accesses in random order and random sizes.
+	 *
+	 * @return statistics of items.
+	 */
+	private static List<CacheItemStatistics<Integer>> createStatistics() {
+		final Random random = new Random(42L);
+		final List<CacheItemStatistics<Integer>> result = new ArrayList<CacheItemStatistics<Integer>>();
+		for (int i = 0; i < COUNT; i++) {
+			result.add(CacheItemStatistics.snapshot(i, 0L, i, 0L, 1L + random.nextInt(10)));
+		}
+		Collections.shuffle(result, random);
+		return result;
+	}
+
+	/**
+	 * Selects items for eviction by sorting all of them and walking them in order.
+	 *
+	 * @param statistics statistics of items.
+	 * @param limits cache limits.
+	 *
+	 * @return keys of items to evict.
+	 */
+	private static Set<Integer> expected(final List<CacheItemStatistics<Integer>> statistics, final StaticLimits<CacheLimit> limits) {
+		final List<CacheItemStatistics<Integer>> sorted = new ArrayList<CacheItemStatistics<Integer>>(statistics);
+		Collections.sort(sorted, new LeastRecentlyUsedEvictionComparator<Integer>());
+		final Set<Integer> result = new HashSet<Integer>();
+		int count = 0;
+		long size = 0L;
+		for (final CacheItemStatistics<Integer> item : sorted) {
+			if (count + 1 <= limits.getLimit(CacheLimit.ITEMS).longValue() && size + item.getSize() <= limits.getLimit(CacheLimit.SIZE).longValue()) {
+				count++;
+				size += item.getSize();
+			} else {
+				result.add(item.getId());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether nothing is selected if limits are satisfied.
+	 */
+	@Test public void nothingIsSelectedWithinLimits() {
+		Assert.assertTrue(fixture.evict(createStatistics(), limits(COUNT, Long.MAX_VALUE)).isEmpty());
+	}
+
+	/**
+	 * Checks whether selection matches sorting all items for limits requiring few, some, and most items to be evicted.
+	 */
+	@Test public void selectionMatchesFullSort() {
+		final List<CacheItemStatistics<Integer>> statistics = createStatistics();
+		for (final long[] limit : new long[][] {
+				{COUNT - 1, Long.MAX_VALUE},
+				{COUNT - 100, Long.MAX_VALUE},
+				{10, Long.MAX_VALUE},
+				{0, Long.MAX_VALUE},
+				{COUNT, 5000L},
+				{COUNT, 100L},
+				{COUNT - 10, 5400L},
+		}) {
+			final StaticLimits<CacheLimit> limits = limits(limit[0], limit[1]);
+			Assert.assertEquals(expected(statistics, limits), new HashSet<Integer>(fixture.evict(statistics, limits)));
+		}
+	}
+
+}
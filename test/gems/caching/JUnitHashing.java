@@ -0,0 +1,46 @@
+package gems.caching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@code Hashing} utility class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitHashing {
+
+	/**
+	 * Specifies a max number of buckets for which is index range tested.
+	 */
+	private static final int REPETITIONS = 512;
+
+	/**
+	 * Checks whether indexes are in range, including extremal hash codes.
+	 */
+	@Test public void indexIsInRange() {
+		final int[] hashes = {0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+		for (int bound = 1; bound <= REPETITIONS; bound++) {
+			for (final int hash : hashes) {
+				final int index = Hashing.index(Hashing.spread(hash), bound);
+				Assert.assertTrue(index >= 0);
+				Assert.assertTrue(index < bound);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether consecutive hash codes are spread over all buckets more or less uniformly.
+	 */
+	@Test public void consecutiveHashCodesAreSpread() {
+		final int buckets = 16;
+		final int[] counts = new int[buckets];
+		for (int hash = 0; hash < buckets * 1024; hash++) {
+			counts[Hashing.index(Hashing.spread(hash << 8), buckets)]++;
+		}
+		for (final int count : counts) {
+			Assert.assertTrue(String.valueOf(count), count > 768 && count < 1280);
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package gems.caching;
+
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Hit-ratio comparisons of {@code EvictionQueue} implementations on synthetic traces modelled
+ * after the standard ones: a Zipf-distributed trace, a loop larger than the cache, a popular
+ * working set mixed with scans, a trace alternating frequency-heavy and recency-heavy phases,
+ * and a sliding working set favouring pure recency.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitHitRatio {
+
+	/**
+	 * A capacity of simulated caches.
+	 */
+	private static final long CAPACITY = 500L;
+
+	/**
+	 * A length of generated traces.
+	 */
+	private static final int LENGTH = 100000;
+
+	/**
+	 * Checks whether adaptive queues beat the least-recently used queue on a Zipf-distributed trace.
+	 */
+	@Test public void zipfTrace() {
+		final int[] trace = zipf(new Random(1L), LENGTH, 10000, 0);
+		final double lru = hitRatio(new LeastRecentlyUsedEvictionQueue<Integer>(), trace);
+		Assert.assertTrue(hitRatio(new AdaptiveReplacementEvictionQueue<Integer>(), trace) > lru + 0.05);
+		Assert.assertTrue(hitRatio(new ClockProEvictionQueue<Integer>(), trace) > lru + 0.03);
+	}
+
+	/**
+	 * Checks whether the CLOCK-Pro queue keeps most of a loop larger than the cache, which the least-recently
+	 * used queue always misses. The adaptive replacement queue misses it too, so it is not compared here.
+	 */
+	@Test public void loopTrace() {
+		final int[] trace = new int[LENGTH];
+		for (int i = 0; i < trace.length; i++) {
+			trace[i] = i % 600;
+		}
+		final double lru = hitRatio(new LeastRecentlyUsedEvictionQueue<Integer>(), trace);
+		Assert.assertEquals(0.0, lru, 0.0);
+		Assert.assertTrue(hitRatio(new ClockProEvictionQueue<Integer>(), trace) > 0.75);
+	}
+
+	/**
+	 * Checks whether adaptive queues keep a popular working set while it alternates with scans of keys used only once.
+	 */
+	@Test public void scanTrace() {
+		final int[] popular = zipf(new Random(2L), LENGTH, 10000, 0);
+		final int[] trace = new int[LENGTH];
+		int scanned = 1000000;
+		for (int i = 0; i < trace.length; i++) {
+			trace[i] = i / 500 % 2 == 0 ? popular[i] : scanned++;
+		}
+		final double lru = hitRatio(new LeastRecentlyUsedEvictionQueue<Integer>(), trace);
+		Assert.assertTrue(hitRatio(new AdaptiveReplacementEvictionQueue<Integer>(), trace) > lru + 0.08);
+		Assert.assertTrue(hitRatio(new ClockProEvictionQueue<Integer>(), trace) > lru + 0.08);
+	}
+
+	/**
+	 * Checks whether adaptive queues beat the least-recently used queue on a trace alternating a Zipf-distributed
+	 * phase and a phase of a small working set drifting slowly.
+	 */
+	@Test public void phaseTrace() {
+		final int[] popular = zipf(new Random(3L), LENGTH, 10000, 0);
+		final int[] trace = new int[LENGTH];
+		for (int i = 0; i < trace.length; i++) {
+			trace[i] = i / 25000 % 2 == 0 ? popular[i] : 50000 + i % 400 + i / 2000 * 37 % 300;
+		}
+		final double lru = hitRatio(new LeastRecentlyUsedEvictionQueue<Integer>(), trace);
+		Assert.assertTrue(hitRatio(new AdaptiveReplacementEvictionQueue<Integer>(), trace) > lru);
+		Assert.assertTrue(hitRatio(new ClockProEvictionQueue<Integer>(), trace) > lru);
+	}
+
+	/**
+	 * Checks whether adaptive queues stay close to the least-recently used queue on a sliding working set,
+	 * where recency is all that matters.
+	 */
+	@Test public void slidingTrace() {
+		final Random random = new Random(4L);
+		final int[] trace = new int[LENGTH];
+		for (int i = 0; i < trace.length; i++) {
+			trace[i] = i / 10 + random.nextInt(400);
+		}
+		final double lru = hitRatio(new LeastRecentlyUsedEvictionQueue<Integer>(), trace);
+		Assert.assertTrue(hitRatio(new AdaptiveReplacementEvictionQueue<Integer>(), trace) > lru - 0.03);
+		Assert.assertTrue(hitRatio(new ClockProEvictionQueue<Integer>(), trace) > lru - 0.03);
+	}
+
+	/**
+	 * Generates a trace of keys following the Zipf distribution with the exponent of 0.9.
+	 *
+	 * @param random a source of randomness.
+	 * @param length a length of the trace.
+	 * @param keys a number of distinct keys.
+	 * @param offset the most popular key.
+	 *
+	 * @return a trace.
+	 */
+	private static int[] zipf(final Random random, final int length, final int keys, final int offset) {
+		final double[] distribution = new double[keys];
+		double sum = 0.0;
+		for (int i = 0; i < keys; i++) {
+			sum += 1.0 / Math.pow(i + 1, 0.9);
+			distribution[i] = sum;
+		}
+		final int[] result = new int[length];
+		for (int i = 0; i < length; i++) {
+			final int found = Arrays.binarySearch(distribution, random.nextDouble() * sum);
+			result[i] = offset + (found < 0 ? -found - 1 : found);
+		}
+		return result;
+	}
+
+	/**
+	 * Replays a given trace on a given queue of the simulated capacity and returns the hit ratio.
+	 * A missed key is added and victims are removed, a hit key is touched.
+	 *
+	 * @param fixture a queue.
+	 * @param trace a trace.
+	 *
+	 * @return the ratio of hits to all requests.
+	 */
+	private static double hitRatio(final EvictionQueue<Integer> fixture, final int[] trace) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, CAPACITY);
+		limits.setLimit(CacheLimit.SIZE, Long.MAX_VALUE);
+		final Map<Integer, EvictionQueue.Node<Integer>> nodes = new HashMap<Integer, EvictionQueue.Node<Integer>>();
+		int hits = 0;
+		for (final int key : trace) {
+			final EvictionQueue.Node<Integer> node = nodes.get(key);
+			if (node != null) {
+				fixture.touch(node);
+				hits++;
+				continue;
+			}
+			nodes.put(key, fixture.add(key, 0L));
+			for (final Integer victim : fixture.select(limits)) {
+				fixture.remove(nodes.remove(victim));
+			}
+		}
+		return (double) hits / trace.length;
+	}
+
+}
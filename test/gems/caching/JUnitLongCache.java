@@ -0,0 +1,256 @@
+package gems.caching;
+
+import gems.AbstractLongIdentifiable;
+import gems.Option;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for caches of objects identified by primitive keys.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitLongCache {
+
+	/**
+	 * A maximal number of cached items.
+	 */
+	private static final int LIMIT = 100;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param builder a builder of cache properties.
+	 *
+	 * @return a new cache.
+	 */
+	private static LongCache<Item> createCache(final CacheProperties.Builder<Item, Long> builder) {
+		final Option<LongCache<Item>> cache = new LongCacheFactory<Item>().provide(new Option<CacheProperties<Item, Long>>(builder.build()));
+		Assert.assertTrue(cache.hasValue());
+		return cache.getValue();
+	}
+
+	/**
+	 * Creates a new builder of cache properties limiting a number of cached items.
+	 *
+	 * @return a new builder.
+	 */
+	private static CacheProperties.Builder<Item, Long> createBuilder() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, LIMIT);
+		return new CacheProperties.Builder<Item, Long>(limits);
+	}
+
+	/**
+	 * Returns items for given range of keys.
+	 *
+	 * @param from the first key.
+	 * @param to the key after the last one.
+	 *
+	 * @return items.
+	 */
+	private static List<Item> createItems(final long from, final long to) {
+		final List<Item> result = new ArrayList<Item>();
+		for (long id = from; id < to; id++) {
+			result.add(new Item(id));
+		}
+		return result;
+	}
+
+	@Test public void offeredObjectIsFound() {
+		final LongCache<Item> cache = createCache(createBuilder());
+		final Item item = new Item(Long.MIN_VALUE);
+		cache.offer(item);
+		Assert.assertSame(item, cache.getOrNull(Long.MIN_VALUE));
+		final Option<Item> found = cache.get(Long.MIN_VALUE);
+		Assert.assertTrue(found.hasValue());
+		Assert.assertSame(item, found.getValue());
+		Assert.assertNull(cache.getOrNull(0L));
+		Assert.assertEquals(2L, cache.getStatistics().getHits());
+		Assert.assertEquals(1L, cache.getStatistics().getMisses());
+	}
+
+	@Test public void offerReplacesObject() {
+		final LongCache<Item> cache = createCache(createBuilder());
+		cache.offer(new Item(1L));
+		final Item replacement = new Item(1L);
+		cache.offer(replacement);
+		Assert.assertSame(replacement, cache.getOrNull(1L));
+	}
+
+	@Test public void tableGrowsAndKeepsObjects() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 10000);
+		final LongCache<Item> cache = createCache(new CacheProperties.Builder<Item, Long>(limits));
+		cache.offerAll(createItems(0L, 10000L));
+		for (long id = 0L; id < 10000L; id++) {
+			Assert.assertNotNull(cache.getOrNull(id));
+		}
+		final Map<Long, Item> found = cache.getAll(Arrays.asList(1L, 2L, 20000L));
+		Assert.assertEquals(2, found.size());
+	}
+
+	@Test public void queueingEvictorEvictsLeastRecentlyUsed() {
+		final List<Item> evicted = new ArrayList<Item>();
+		final LongCache<Item> cache = createCache(createBuilder()
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Long>().get())
+				.with(new EvictionHandler<Item>() {
+
+					@Override public void handle(final Item value) {
+						evicted.add(value);
+					}
+
+				})
+		);
+		cache.offerAll(createItems(0L, LIMIT));
+		Assert.assertNotNull(cache.getOrNull(0L));
+		cache.offer(new Item(LIMIT));
+		Assert.assertEquals(1, evicted.size());
+		Assert.assertEquals(1L, evicted.get(0).getLongId());
+		Assert.assertNotNull(cache.getOrNull(0L));
+		Assert.assertNull(cache.getOrNull(1L));
+		Assert.assertEquals(1L, cache.getStatistics().getEvictions());
+	}
+
+	@Test public void readsAreAppliedToQueueOnceByWriter() {
+		final int[] accesses = new int[1];
+		final LongCache<Item> cache = createCache(createBuilder().with(new QueueingCacheEvictor<Long>(new LeastRecentlyUsedEvictorFactory<Long>().get()) {
+
+			@Override EvictionQueue<Long> newQueue() {
+				return new EvictionQueue<Long>() {
+
+					private final NodeList<Long> nodes = new NodeList<Long>();
+
+					@Override protected Node<Long> newNode(final Long key) {
+						return new Node<Long>(key);
+					}
+
+					@Override protected void link(final Node<Long> node) {
+						nodes.append(node);
+					}
+
+					@Override protected void unlink(final Node<Long> node) {
+						nodes.remove(node);
+					}
+
+					@Override protected void access(final Node<Long> node) {
+						accesses[0]++;
+						nodes.remove(node);
+						nodes.append(node);
+					}
+
+					@Override protected Iterator<Node<Long>> victims() {
+						return nodes.iterator();
+					}
+
+				};
+			}
+
+		}));
+		cache.offerAll(createItems(0L, LIMIT));
+		for (int i = 0; i < 100; i++) {
+			for (long id = 0L; id < LIMIT; id++) {
+				Assert.assertNotNull(cache.getOrNull(id));
+			}
+		}
+		Assert.assertEquals(0, accesses[0]);
+		cache.offer(new Item(LIMIT));
+		Assert.assertTrue(accesses[0] <= LIMIT);
+		Assert.assertEquals(1L, cache.getStatistics().getEvictions());
+	}
+
+	@Test public void sampledEvictorKeepsLimit() {
+		final LongCache<Item> cache = createCache(createBuilder().with(new SampledEvictorFactory<Long>().get()));
+		cache.offerAll(createItems(0L, 10L * LIMIT));
+		int cached = 0;
+		for (long id = 0L; id < 10L * LIMIT; id++) {
+			if (cache.getOrNull(id) != null) {
+				cached++;
+			}
+		}
+		Assert.assertTrue(cached <= LIMIT);
+		Assert.assertTrue(cached > 0);
+	}
+
+	@Test public void genericEvictorKeepsLimit() {
+		final LongCache<Item> cache = createCache(createBuilder().with(new LeastRecentlyUsedEvictorFactory<Long>().get()));
+		for (final Item item : createItems(0L, 2L * LIMIT)) {
+			cache.offer(item);
+		}
+		int cached = 0;
+		for (long id = 0L; id < 2L * LIMIT; id++) {
+			if (cache.getOrNull(id) != null) {
+				cached++;
+			}
+		}
+		Assert.assertTrue(cached <= LIMIT);
+	}
+
+	@Test public void segmentsSplitLimits() {
+		final LongCache<Item> cache = createCache(createBuilder()
+				.with(new HashCodeBasedSegmenter<Long>(4))
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Long>().get())
+		);
+		final List<Item> items = createItems(0L, 10L * LIMIT);
+		cache.offerAll(items);
+		int cached = 0;
+		for (final Item item : items) {
+			if (cache.getOrNull(item.getLongId()) != null) {
+				cached++;
+			}
+		}
+		Assert.assertTrue(cached <= LIMIT);
+		Assert.assertTrue(cached > LIMIT / 2);
+		Assert.assertEquals(4, cache.getStatistics().getParts().size());
+	}
+
+	@Test public void consistentHashSegmenterRoutesWithoutBoxing() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 8 * LIMIT);
+		final LongCache<Item> cache = createCache(new CacheProperties.Builder<Item, Long>(limits).with(new ConsistentHashSegmenter<Long>(8)));
+		cache.offerAll(createItems(0L, LIMIT));
+		for (long id = 0L; id < LIMIT; id++) {
+			Assert.assertEquals(id, cache.getOrNull(id).getLongId());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void sharedBudgetIsRejected() {
+		createCache(createBuilder().with(new HashCodeBasedSegmenter<Long>(4)).with(CacheBudget.SHARED));
+	}
+
+	@Test public void emptyPropertiesProvideNullCache() {
+		final Option<LongCache<Item>> cache = new LongCacheFactory<Item>().provide(new Option<CacheProperties<Item, Long>>(null));
+		Assert.assertTrue(cache.hasValue());
+		Assert.assertTrue(cache.getValue() instanceof NullLongCache);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void offerRejectsNull() {
+		createCache(createBuilder()).offer(null);
+	}
+
+	/**
+	 * A cached item.
+	 */
+	private static final class Item extends AbstractLongIdentifiable {
+
+		/**
+		 * Creates a new item.
+		 *
+		 * @param id an ID.
+		 */
+		private Item(final long id) {
+			super(id);
+		}
+
+	}
+
+}
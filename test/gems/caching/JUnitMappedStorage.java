@@ -0,0 +1,300 @@
+package gems.caching;
+
+import gems.AbstractIdentifiable;
+import gems.Option;
+import gems.StaticLimits;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * Unit tests for the {@code MappedStorage} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitMappedStorage {
+
+	/**
+	 * Size of segments used in tests.
+	 */
+	private static final int SEGMENT_SIZE = 4096;
+
+	/**
+	 * An executor running compactions immediately in the calling thread.
+	 */
+	private static final Executor SYNCHRONOUS = new Executor() {
+
+		@Override public void execute(final Runnable command) {
+			command.run();
+		}
+
+	};
+
+	/**
+	 * A temporary directory of storages.
+	 */
+	private File directory;
+
+	/**
+	 * Creates a temporary directory.
+	 *
+	 * @throws IOException if the directory cannot be created.
+	 */
+	@Before public void createDirectory() throws IOException {
+		directory = File.createTempFile("gems", "mapped");
+		Assert.assertTrue(directory.delete());
+		Assert.assertTrue(directory.mkdir());
+	}
+
+	/**
+	 * Deletes the temporary directory.
+	 */
+	@After public void deleteDirectory() {
+		delete(directory);
+	}
+
+	/**
+	 * Deletes a given file or directory recursively.
+	 *
+	 * @param file a file or directory.
+	 */
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Creates a new tested storage in the temporary directory.
+	 *
+	 * @return a new tested storage.
+	 */
+	private MappedStorage<Integer, Item> createFixture() {
+		return new MappedStorage<Integer, Item>(directory, new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS);
+	}
+
+	/**
+	 * Returns a value identified by a given key, checking it is stored.
+	 *
+	 * @param fixture a storage.
+	 * @param key a key.
+	 *
+	 * @return a stored value.
+	 */
+	private static Item valueOf(final Storage<Integer, Item> fixture, final int key) {
+		final Option<Item> result = fixture.provide(new Option<Integer>(key));
+		Assert.assertTrue(String.valueOf(key), result.hasValue());
+		return result.getValue();
+	}
+
+	/**
+	 * Checks whether stored values are provided, replaced, and removed.
+	 */
+	@Test public void valuesAreStoredReplacedAndRemoved() {
+		final MappedStorage<Integer, Item> fixture = createFixture();
+		Assert.assertFalse(fixture.provide(new Option<Integer>(1)).hasValue());
+		fixture.put(new Item(1, 10));
+		fixture.put(new Item(2, 20));
+		Assert.assertEquals(10, valueOf(fixture, 1).size);
+		fixture.put(new Item(1, 30));
+		Assert.assertEquals(30, valueOf(fixture, 1).size);
+		fixture.remove(1);
+		fixture.remove(1);
+		Assert.assertFalse(fixture.provide(new Option<Integer>(1)).hasValue());
+		Assert.assertEquals(20, valueOf(fixture, 2).size);
+	}
+
+	/**
+	 * Checks whether values larger than a segment are stored.
+	 */
+	@Test public void oversizedValuesAreStored() {
+		final MappedStorage<Integer, Item> fixture = createFixture();
+		fixture.put(new Item(1, 3 * SEGMENT_SIZE));
+		fixture.put(new Item(2, 10));
+		Assert.assertEquals(3 * SEGMENT_SIZE, valueOf(fixture, 1).size);
+		Assert.assertEquals(10, valueOf(fixture, 2).size);
+	}
+
+	/**
+	 * Checks whether a reopened storage contains the latest values.
+	 */
+	@Test public void reopenedStorageContainsLatestValues() {
+		final MappedStorage<Integer, Item> original = createFixture();
+		for (int i = 0; i < 500; i++) {
+			original.put(new Item(i, i));
+		}
+		original.put(new Item(7, 777));
+		original.remove(8);
+		final MappedStorage<Integer, Item> fixture = createFixture();
+		Assert.assertEquals(777, valueOf(fixture, 7).size);
+		Assert.assertFalse(fixture.provide(new Option<Integer>(8)).hasValue());
+		for (int i = 9; i < 500; i++) {
+			Assert.assertEquals(i, valueOf(fixture, i).size);
+		}
+	}
+
+	/**
+	 * Checks whether sparse segments are compacted and their files are deleted.
+	 */
+	@Test public void sparseSegmentsAreCompacted() {
+		final MappedStorage<Integer, Item> fixture = createFixture();
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 100; i++) {
+				fixture.put(new Item(i, 100));
+			}
+		}
+		Assert.assertTrue(String.valueOf(fixture.segments()), fixture.segments() <= 8);
+		Assert.assertEquals(fixture.segments(), directory.listFiles().length);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(100, valueOf(fixture, i).size);
+		}
+		Assert.assertEquals(100, valueOf(createFixture(), 99).size);
+	}
+
+	/**
+	 * Checks whether a cache created again on the same directory does not start cold.
+	 */
+	@Test public void reopenedCacheIsWarm() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 1000);
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(new MappedStorageFactory<Integer, Item>(directory, new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS))
+				.build();
+		final Cache<Item, Integer> original = CacheConcurrency.LOCKED_READS.newCache(properties);
+		for (int i = 0; i < 100; i++) {
+			original.offer(new Item(i, i));
+		}
+		final Cache<Item, Integer> fixture = CacheConcurrency.LOCKED_READS.newCache(new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(new MappedStorageFactory<Integer, Item>(directory, new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS))
+				.build()
+		);
+		for (int i = 0; i < 100; i++) {
+			final Option<Item> cached = fixture.get(i);
+			Assert.assertTrue(String.valueOf(i), cached.hasValue());
+			Assert.assertEquals(i, cached.getValue().size);
+		}
+	}
+
+	/**
+	 * Checks whether a cache created again on the same directory with lower limits keeps only as many objects as the limits allow.
+	 */
+	@Test public void reopenedCacheIsEvictedDownToLimits() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 1000);
+		final Cache<Item, Integer> original = CacheConcurrency.LOCKED_READS.newCache(new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(new MappedStorageFactory<Integer, Item>(directory, new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS))
+				.build()
+		);
+		for (int i = 0; i < 100; i++) {
+			original.offer(new Item(i, i));
+		}
+		limits.setLimit(CacheLimit.ITEMS, 10);
+		final Cache<Item, Integer> fixture = CacheConcurrency.LOCKED_READS.newCache(new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(new MappedStorageFactory<Integer, Item>(directory, new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS))
+				.build()
+		);
+		int cached = 0;
+		for (int i = 0; i < 100; i++) {
+			if (fixture.get(i).hasValue()) {
+				cached++;
+			}
+		}
+		Assert.assertEquals(10, cached);
+	}
+
+	/**
+	 * Checks whether a storage created again on the same directory keeps its persisted number of partitions,
+	 * even if another number is requested, so all objects are still found.
+	 */
+	@Test public void reopenedStorageKeepsItsPartitions() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 1000);
+		final ParallelCacheStorage<Integer, Item> original = new ParallelCacheStorage<Integer, Item>(
+				createProperties(limits), new StatisticsCounter(), 4
+		);
+		for (int i = 0; i < 100; i++) {
+			original.put(new Item(i, i));
+		}
+		final ParallelCacheStorage<Integer, Item> fixture = new ParallelCacheStorage<Integer, Item>(
+				createProperties(limits), new StatisticsCounter(), 2
+		);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue(String.valueOf(i), fixture.get(i).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether a directory with data but without a persisted number of partitions is not reopened.
+	 */
+	@Test(expected = IllegalStateException.class) public void unknownLayoutIsRefused() {
+		new MappedStorage<Integer, Item>(new File(directory, "0"), new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS).put(new Item(1, 1));
+		new MappedStorageFactory<Integer, Item>(directory, new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS).getStorage();
+	}
+
+	/**
+	 * Creates cache properties using a new factory of mapped storages in the temporary directory.
+	 *
+	 * @param limits cache limits.
+	 *
+	 * @return cache properties.
+	 */
+	private CacheProperties<Item, Integer> createProperties(final StaticLimits<CacheLimit> limits) {
+		return new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(new MappedStorageFactory<Integer, Item>(directory, new ItemCodec(), SEGMENT_SIZE, SYNCHRONOUS))
+				.build();
+	}
+
+	/**
+	 * A codec of stored objects, encoding an ID followed by a payload of zeros.
+	 */
+	private static final class ItemCodec implements Codec<Item> {
+
+		@Override public byte[] encode(final Item object) {
+			return ByteBuffer.allocate(4 + object.size).putInt(object.getId()).array();
+		}
+
+		@Override public Item decode(final byte[] bytes) {
+			return new Item(ByteBuffer.wrap(bytes).getInt(), bytes.length - 4);
+		}
+
+	}
+
+	/**
+	 * A stored object.
+	 */
+	private static final class Item extends AbstractIdentifiable<Integer> {
+
+		/**
+		 * Size of payload.
+		 */
+		private final int size;
+
+		/**
+		 * Creates a new object with a given ID and a payload of a given size.
+		 *
+		 * @param id an ID.
+		 * @param size size of payload.
+		 */
+		private Item(final int id, final int size) {
+			super(id);
+			this.size = size;
+		}
+
+	}
+
+}
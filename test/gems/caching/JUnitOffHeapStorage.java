@@ -0,0 +1,200 @@
+package gems.caching;
+
+import gems.AbstractIdentifiable;
+import gems.NumericValueOutOfRangeException;
+import gems.Option;
+import gems.StaticLimits;
+import gems.filtering.Filter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit tests for the {@code OffHeapStorage} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitOffHeapStorage {
+
+	/**
+	 * Size of slabs used in tests.
+	 */
+	private static final int SLAB_SIZE = 4096;
+
+	/**
+	 * Creates a new tested storage.
+	 *
+	 * @return a new tested storage.
+	 */
+	private static OffHeapStorage<Integer, Item> createFixture() {
+		return new OffHeapStorage<Integer, Item>(new ItemCodec(), SLAB_SIZE);
+	}
+
+	/**
+	 * Returns a value identified by a given key, checking it is stored.
+	 *
+	 * @param fixture a storage.
+	 * @param key a key.
+	 *
+	 * @return a stored value.
+	 */
+	private static Item valueOf(final Storage<Integer, Item> fixture, final int key) {
+		final Option<Item> result = fixture.provide(new Option<Integer>(key));
+		Assert.assertTrue(String.valueOf(key), result.hasValue());
+		return result.getValue();
+	}
+
+	/**
+	 * Checks whether too small slabs are forbidden.
+	 */
+	@Test(expected = NumericValueOutOfRangeException.class) public void tooSmallSlabsAreForbidden() {
+		new OffHeapStorageFactory<Integer, Item>(new ItemCodec(), 63);
+	}
+
+	/**
+	 * Checks whether the serializing codec decodes an equal object.
+	 */
+	@Test public void serializingCodecDecodesEqualObject() {
+		final Codec<String> codec = new SerializingCodec<String>();
+		Assert.assertEquals("gems", codec.decode(codec.encode("gems")));
+	}
+
+	/**
+	 * Checks whether stored values are provided, replaced, and removed.
+	 */
+	@Test public void valuesAreStoredReplacedAndRemoved() {
+		final OffHeapStorage<Integer, Item> fixture = createFixture();
+		Assert.assertFalse(fixture.provide(new Option<Integer>(1)).hasValue());
+		fixture.put(new Item(1, 10));
+		fixture.put(new Item(2, 20));
+		Assert.assertEquals(10, valueOf(fixture, 1).payload.length);
+		fixture.put(new Item(1, 3000));
+		Assert.assertEquals(3000, valueOf(fixture, 1).payload.length);
+		Assert.assertEquals(2, fixture.size());
+		fixture.remove(1);
+		fixture.remove(1);
+		Assert.assertFalse(fixture.provide(new Option<Integer>(1)).hasValue());
+		Assert.assertTrue(fixture.provide(new Option<Integer>(2)).hasValue());
+		Assert.assertEquals(1, fixture.size());
+	}
+
+	/**
+	 * Checks whether values larger than a slab are stored.
+	 */
+	@Test public void oversizedValuesAreStored() {
+		final OffHeapStorage<Integer, Item> fixture = createFixture();
+		fixture.put(new Item(1, 3 * SLAB_SIZE));
+		Assert.assertEquals(3 * SLAB_SIZE, valueOf(fixture, 1).payload.length);
+		final long reserved = fixture.reserved();
+		fixture.remove(1);
+		Assert.assertTrue(fixture.reserved() < reserved - 3 * SLAB_SIZE);
+	}
+
+	/**
+	 * Checks whether memory of removed values is reused and the index grows as needed.
+	 */
+	@Test public void memoryIsReused() {
+		final OffHeapStorage<Integer, Item> fixture = createFixture();
+		for (int i = 0; i < 1000; i++) {
+			fixture.put(new Item(i, 100));
+		}
+		final long reserved = fixture.reserved();
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 1000; i++) {
+				fixture.remove(i);
+			}
+			for (int i = 0; i < 1000; i++) {
+				fixture.put(new Item(i, 100));
+			}
+		}
+		Assert.assertEquals(reserved, fixture.reserved());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(Integer.valueOf(i), valueOf(fixture, i).getId());
+		}
+	}
+
+	/**
+	 * Checks whether iteration and search go through all stored values.
+	 */
+	@Test public void allValuesAreIterated() {
+		final OffHeapStorage<Integer, Item> fixture = createFixture();
+		for (int i = 0; i < 100; i++) {
+			fixture.put(new Item(i, i));
+		}
+		fixture.remove(50);
+		final Set<Integer> ids = new HashSet<Integer>();
+		for (final Item item : fixture) {
+			ids.add(item.getId());
+		}
+		Assert.assertEquals(99, ids.size());
+		Assert.assertFalse(ids.contains(50));
+		Assert.assertEquals(1, fixture.search(new Filter<Item>() {
+
+			@Override public boolean allows(final Item item) {
+				return item.getId() == 99;
+			}
+
+		}).size());
+	}
+
+	/**
+	 * Checks whether a cache keeps its objects in off-heap storages set by cache properties.
+	 */
+	@Test public void cacheUsesOffHeapStorage() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 10);
+		final Cache<Item, Integer> cache = CacheConcurrency.LOCKED_READS.newCache(new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(new OffHeapStorageFactory<Integer, Item>(new ItemCodec(), SLAB_SIZE))
+				.build()
+		);
+		final Item original = new Item(1, 100);
+		cache.offer(original);
+		final Option<Item> cached = cache.get(1);
+		Assert.assertTrue(cached.hasValue());
+		Assert.assertNotSame(original, cached.getValue());
+		Assert.assertEquals(100, cached.getValue().payload.length);
+	}
+
+	/**
+	 * A codec of stored objects, encoding an ID followed by a payload.
+	 */
+	private static final class ItemCodec implements Codec<Item> {
+
+		@Override public byte[] encode(final Item object) {
+			return ByteBuffer.allocate(4 + object.payload.length).putInt(object.getId()).put(object.payload).array();
+		}
+
+		@Override public Item decode(final byte[] bytes) {
+			return new Item(ByteBuffer.wrap(bytes).getInt(), bytes.length - 4);
+		}
+
+	}
+
+	/**
+	 * A stored object.
+	 */
+	private static final class Item extends AbstractIdentifiable<Integer> {
+
+		/**
+		 * A payload.
+		 */
+		private final byte[] payload;
+
+		/**
+		 * Creates a new object with a given ID and a payload of a given size.
+		 *
+		 * @param id an ID.
+		 * @param size size of payload.
+		 */
+		private Item(final int id, final int size) {
+			super(id);
+			payload = new byte[size];
+		}
+
+	}
+
+}
@@ -0,0 +1,80 @@
+package gems.caching;
+
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@code ParallelCacheStorage} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitParallelCacheStorage {
+
+	/**
+	 * A number of partitions of tested fixtures.
+	 */
+	private static final int PARTITIONS = 8;
+
+	/**
+	 * Checks whether partitions together keep exactly as many objects as cache limits allow,
+	 * even if the limits are not divisible by the number of partitions.
+	 */
+	@Test public void sharesOfPartitionsSumUpToLimits() {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, 10);
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.build();
+		final ParallelCacheStorage<Integer, Item> fixture = new ParallelCacheStorage<Integer, Item>(properties, new StatisticsCounter(), PARTITIONS);
+		for (int i = 0; i < 100; i++) {
+			fixture.put(new Item(i));
+		}
+		fixture.evict(fixture.selectForEviction(limits));
+		Assert.assertEquals(10, fixture.itemsForEviction().size());
+	}
+
+	/**
+	 * Checks whether a cache using a queueing evictor fills up to its limits, even if its items are spread
+	 * unevenly among partitions.
+	 */
+	@Test public void queueingEvictorFillsUpToLimits() {
+		assertFillsUpToLimits(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get());
+	}
+
+	/**
+	 * Checks whether a cache using a W-TinyLFU evictor fills up to its limits, even if its items are spread
+	 * unevenly among partitions.
+	 */
+	@Test public void windowTinyLfuEvictorFillsUpToLimits() {
+		assertFillsUpToLimits(new WindowTinyLfuEvictorFactory<Integer>().get());
+	}
+
+	/**
+	 * Checks whether a cache using a sampling evictor fills up to its limits, even if its items are spread
+	 * unevenly among partitions.
+	 */
+	@Test public void samplingEvictorFillsUpToLimits() {
+		assertFillsUpToLimits(new SampledEvictorFactory<Integer>().get());
+	}
+
+	/**
+	 * Fills a storage with as many items as cache limits allow and asserts that none of them is evicted.
+	 *
+	 * @param evictor a cache evictor.
+	 */
+	private static void assertFillsUpToLimits(final CacheEvictor<Integer> evictor) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, PARTITIONS);
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits)
+				.with(evictor)
+				.build();
+		final ParallelCacheStorage<Integer, Item> fixture = new ParallelCacheStorage<Integer, Item>(properties, new StatisticsCounter(), PARTITIONS);
+		for (int i = 0; i < PARTITIONS; i++) {
+			fixture.put(new Item(i));
+			Assert.assertTrue(fixture.selectForEviction(limits).isEmpty());
+		}
+		Assert.assertEquals(PARTITIONS, fixture.itemsForEviction().size());
+	}
+
+}
@@ -0,0 +1,120 @@
+package gems.caching;
+
+import gems.NumericValueOutOfRangeException;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Unit tests for sampling evictors.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitSampledEvictor {
+
+	/**
+	 * A number of cached items.
+	 */
+	private static final int COUNT = 1000;
+
+	/**
+	 * A maximal number of cached items.
+	 */
+	private static final int LIMIT = 100;
+
+	/**
+	 * Creates cache limits for a given number of items.
+	 *
+	 * @param items maximal number of items.
+	 *
+	 * @return cache limits.
+	 */
+	private static StaticLimits<CacheLimit> limits(final long items) {
+		final StaticLimits<CacheLimit> result = new StaticLimits<CacheLimit>(CacheLimit.class);
+		result.setLimit(CacheLimit.ITEMS, items);
+		result.setLimit(CacheLimit.SIZE, Long.MAX_VALUE);
+		return result;
+	}
+
+	/**
+	 * Checks whether a non-positive number of samples is forbidden.
+	 */
+	@Test(expected = NumericValueOutOfRangeException.class) public void zeroSamplesAreForbidden() {
+		new SampledEvictorFactory<Integer>(new LeastRecentlyUsedEvictionComparator<Integer>(), 0);
+	}
+
+	/**
+	 * Checks whether nothing is selected if limits are satisfied.
+	 */
+	@Test public void nothingIsSelectedWithinLimits() {
+		final List<CacheItemStatistics<Integer>> statistics = new ArrayList<CacheItemStatistics<Integer>>();
+		for (int i = 0; i < LIMIT; i++) {
+			statistics.add(CacheItemStatistics.snapshot(i, 0L, i, 0L, 0L));
+		}
+		Assert.assertTrue(new SampledEvictorFactory<Integer>().get().evict(statistics, limits(LIMIT)).isEmpty());
+	}
+
+	/**
+	 * Checks whether exactly as many distinct items as necessary are selected, and whether
+	 * they are mostly less recently used than the average.
+	 */
+	@Test public void leastRecentlyUsedItemsAreSelected() {
+		final List<CacheItemStatistics<Integer>> statistics = new ArrayList<CacheItemStatistics<Integer>>();
+		for (int i = 0; i < COUNT; i++) {
+			statistics.add(CacheItemStatistics.snapshot(i, 0L, i, 0L, 0L));
+		}
+		final CacheEvictor<Integer> fixture = new SampledEvictorFactory<Integer>(new LeastRecentlyUsedEvictionComparator<Integer>()).get();
+		final Collection<Integer> selected = fixture.evict(statistics, limits(COUNT - LIMIT));
+		Assert.assertEquals(LIMIT, selected.size());
+		Assert.assertEquals(LIMIT, new HashSet<Integer>(selected).size());
+		long sum = 0L;
+		for (final int key : selected) {
+			sum += key;
+		}
+		Assert.assertTrue(sum / LIMIT < COUNT / 4);
+	}
+
+	/**
+	 * Checks whether a cache storage selects victims from its own samples.
+	 */
+	@Test public void storageSelectsFromSamples() {
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits(LIMIT))
+				.with(new SampledEvictorFactory<Integer>().get())
+				.build();
+		final FlatCacheStorage<Integer, Item> fixture = new FlatCacheStorage<Integer, Item>(properties, new StatisticsCounter());
+		for (int i = 0; i < COUNT; i++) {
+			fixture.put(new Item(i));
+		}
+		final Collection<Integer> selected = fixture.selectForEviction(limits(LIMIT));
+		Assert.assertEquals(COUNT - LIMIT, new HashSet<Integer>(selected).size());
+		Assert.assertEquals(COUNT - LIMIT, fixture.evict(selected));
+		Assert.assertTrue(fixture.selectForEviction(limits(LIMIT)).isEmpty());
+	}
+
+	/**
+	 * Checks whether a cache storage samples only cached objects after many of them are evicted.
+	 */
+	@Test public void storageSamplesOnlyCachedObjects() {
+		final CacheProperties<Item, Integer> properties = new CacheProperties.Builder<Item, Integer>(limits(LIMIT))
+				.with(new SampledEvictorFactory<Integer>().get())
+				.build();
+		final FlatCacheStorage<Integer, Item> fixture = new FlatCacheStorage<Integer, Item>(properties, new StatisticsCounter());
+		for (int i = 0; i < LIMIT; i++) {
+			fixture.put(new Item(-1 - i));
+		}
+		for (int round = 0; round < 4; round++) {
+			for (int i = 0; i < COUNT; i++) {
+				fixture.put(new Item(round * COUNT + i));
+			}
+			final Collection<Integer> selected = fixture.selectForEviction(limits(LIMIT));
+			Assert.assertEquals(COUNT, new HashSet<Integer>(selected).size());
+			Assert.assertEquals(COUNT, fixture.evict(selected));
+		}
+	}
+
+}
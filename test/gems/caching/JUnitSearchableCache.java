@@ -0,0 +1,200 @@
+package gems.caching;
+
+import gems.Option;
+import gems.StaticLimits;
+import gems.filtering.Filter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit tests for searches of caches created by {@code CacheFactory}.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitSearchableCache {
+
+	/**
+	 * A number of cached items.
+	 */
+	private static final int ITEMS = 100;
+
+	/**
+	 * A number of tenants.
+	 */
+	private static final int TENANTS = 10;
+
+	/**
+	 * Creates a new cache holding a given number of items, which holds items with IDs from 0 to {@code ITEMS};
+	 * the tenant of an item is its ID modulo {@code TENANTS}.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param segmenter a segmenter.
+	 * @param items maximal number of items.
+	 *
+	 * @return a new cache.
+	 */
+	private static SearchableCache<TenantItem, Integer> createFixture(final CacheConcurrency concurrency, final CacheSegmenter<Object> segmenter, final long items) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, items);
+		final Option<ManagedCache<TenantItem, Integer>> cache = new CacheFactory<TenantItem, Integer>().provideManaged(new Option<CacheProperties<TenantItem, Integer>>(
+				SynchronousExecutor.with(new CacheProperties.Builder<TenantItem, Integer>(limits), concurrency)
+						.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+						.with(segmenter)
+						.build()
+		));
+		Assert.assertTrue(cache.hasValue());
+		final SearchableCache<TenantItem, Integer> result = (SearchableCache<TenantItem, Integer>) cache.getValue();
+		for (int i = 0; i < ITEMS; i++) {
+			result.offer(new TenantItem(i, "tenant" + i % TENANTS));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns IDs of given items.
+	 *
+	 * @param items items.
+	 *
+	 * @return IDs of the items.
+	 */
+	private static Set<Integer> idsOf(final Collection<TenantItem> items) {
+		final Set<Integer> result = new HashSet<Integer>();
+		for (final TenantItem item : items) {
+			result.add(item.getId());
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether an index of a segmented cache answers searches across all segments, including segments created by resizing.
+	 */
+	@Test public void indexAnswersSearchesAcrossSegments() {
+		final SearchableCache<TenantItem, Integer> fixture = createFixture(CacheConcurrency.LOCKED_READS, new ConsistentHashSegmenter<Object>(4), 10 * ITEMS);
+		final CountingAttribute<String> tenant = new CountingAttribute<String>() {
+
+			@Override String extract(final TenantItem item) {
+				return item.getTenant();
+			}
+
+		};
+		fixture.index(tenant, IndexType.HASH);
+		int indexed = tenant.getCalls();
+		Assert.assertEquals(ITEMS, indexed);
+		Assert.assertEquals(ITEMS / TENANTS, fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant3")).size());
+		Assert.assertEquals(indexed, tenant.getCalls());
+		((ResizableCache<TenantItem, Integer>) fixture).resize(8);
+		fixture.offer(new TenantItem(ITEMS, "tenant3"));
+		indexed = tenant.getCalls();
+		final Set<Integer> found = idsOf(fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant3")));
+		Assert.assertEquals(indexed, tenant.getCalls());
+		Assert.assertEquals(ITEMS / TENANTS + 1, found.size());
+		Assert.assertTrue(found.contains(ITEMS));
+	}
+
+	/**
+	 * Checks whether a sorted index of a segmented cache answers range searches across all segments.
+	 */
+	@Test public void sortedIndexAnswersRangeSearchesAcrossSegments() {
+		final SearchableCache<TenantItem, Integer> fixture = createFixture(CacheConcurrency.LOCKED_READS, new HashCodeBasedSegmenter<Object>(4), 10 * ITEMS);
+		final CountingAttribute<Integer> id = new CountingAttribute<Integer>() {
+
+			@Override Integer extract(final TenantItem item) {
+				return item.getId();
+			}
+
+		};
+		fixture.index(id, IndexType.SORTED);
+		final int indexed = id.getCalls();
+		final Set<Integer> found = idsOf(fixture.search(new RangeFilter<TenantItem, Integer>(id, 10, 20)));
+		Assert.assertEquals(indexed, id.getCalls());
+		Assert.assertEquals(10, found.size());
+		Assert.assertTrue(found.contains(10));
+		Assert.assertFalse(found.contains(20));
+	}
+
+	/**
+	 * Checks whether searches skip evicted items.
+	 */
+	@Test public void searchSkipsEvictedItems() {
+		final SearchableCache<TenantItem, Integer> fixture = createFixture(CacheConcurrency.LOCKED_READS, CacheSegmenter.NULL_SEGMENTER, TENANTS);
+		final CountingAttribute<String> tenant = new CountingAttribute<String>() {
+
+			@Override String extract(final TenantItem item) {
+				return item.getTenant();
+			}
+
+		};
+		fixture.index(tenant, IndexType.SORTED);
+		Assert.assertEquals(TENANTS, fixture.search(new RangeFilter<TenantItem, String>(tenant, null, null)).size());
+		Assert.assertEquals(TENANTS, fixture.search(Filter.ALLOW_ALL).size());
+	}
+
+	/**
+	 * Checks whether caches of all concurrency strategies answer searches without an index.
+	 */
+	@Test public void searchWorksWithoutIndex() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final SearchableCache<TenantItem, Integer> fixture = createFixture(concurrency, new HashCodeBasedSegmenter<Object>(4), 10 * ITEMS);
+			final CountingAttribute<String> tenant = new CountingAttribute<String>() {
+
+				@Override String extract(final TenantItem item) {
+					return item.getTenant();
+				}
+
+			};
+			final Collection<TenantItem> found = fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant0"));
+			Assert.assertEquals(concurrency.name(), ITEMS / TENANTS, found.size());
+			for (final TenantItem item : found) {
+				Assert.assertEquals(0, item.getId() % TENANTS);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether caches of all concurrency strategies keep indexes up to date on additions,
+	 * replacements, invalidations and evictions.
+	 */
+	@Test public void indexesFollowWritesOfAllConcurrencyStrategies() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final SearchableCache<TenantItem, Integer> fixture = createFixture(concurrency, new HashCodeBasedSegmenter<Object>(4), ITEMS + TENANTS);
+			final CountingAttribute<String> tenant = new CountingAttribute<String>() {
+
+				@Override String extract(final TenantItem item) {
+					return item.getTenant();
+				}
+
+			};
+			fixture.index(tenant, IndexType.HASH);
+			fixture.offer(new TenantItem(ITEMS, "tenant3"));
+			fixture.offer(new TenantItem(3, "tenant4"));
+			((InvalidatableCache<TenantItem, Integer>) fixture).invalidate(13);
+			final int indexed = tenant.getCalls();
+			Set<Integer> found = idsOf(fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant3")));
+			Assert.assertTrue(concurrency.name(), tenant.getCalls() - indexed <= found.size());
+			Assert.assertEquals(concurrency.name(), ITEMS / TENANTS - 1, found.size());
+			Assert.assertTrue(concurrency.name(), found.contains(ITEMS));
+			Assert.assertFalse(concurrency.name(), found.contains(3));
+			Assert.assertFalse(concurrency.name(), found.contains(13));
+			for (int i = 2 * ITEMS; i < 4 * ITEMS; i++) {
+				fixture.offer(new TenantItem(i, "tenant3"));
+			}
+			found = idsOf(fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant3")));
+			Assert.assertEquals(concurrency.name(), fixture.search(Filter.ALLOW_ALL).size(), found.size());
+			for (final Integer id : found) {
+				Assert.assertTrue(concurrency.name(), id >= 2 * ITEMS);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a {@code null} attribute is refused.
+	 */
+	@Test(expected = IllegalArgumentException.class) public void nullAttributeIsRefused() {
+		createFixture(CacheConcurrency.LOCKED_READS, CacheSegmenter.NULL_SEGMENTER, ITEMS).index(null, IndexType.HASH);
+	}
+
+}
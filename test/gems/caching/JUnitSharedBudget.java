@@ -0,0 +1,114 @@
+package gems.caching;
+
+import gems.Option;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for segmented caches sharing cache limits as a global budget.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitSharedBudget {
+
+	/**
+	 * A maximal number of cached items.
+	 */
+	private static final int LIMIT = 100;
+
+	/**
+	 * The first key not routed to the hot segment.
+	 */
+	private static final int COLD = 1000;
+
+	/**
+	 * A segmenter routing keys less than {@code COLD} to the first segment and other keys to the second one.
+	 */
+	private static final CacheSegmenter<Object> SKEWED_SEGMENTER = new AbstractCacheSegmenter<Object>(4) {
+
+		@Override public int getSegment(final Object key) {
+			return (Integer) key < COLD ? 0 : 1;
+		}
+
+	};
+
+	/**
+	 * Creates a segmented cache with skewed keys.
+	 *
+	 * @param budget a way of distributing cache limits.
+	 * @param concurrency a concurrency strategy.
+	 *
+	 * @return a segmented cache.
+	 */
+	private static ManagedCache<Item, Integer> createCache(final CacheBudget budget, final CacheConcurrency concurrency) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, LIMIT);
+		final Option<ManagedCache<Item, Integer>> cache = new CacheFactory<Item, Integer>().provideManaged(new Option<CacheProperties<Item, Integer>>(
+				SynchronousExecutor.with(new CacheProperties.Builder<Item, Integer>(limits).with(SKEWED_SEGMENTER), concurrency).with(budget).build()
+		));
+		Assert.assertTrue(cache.hasValue());
+		return cache.getValue();
+	}
+
+	/**
+	 * Returns keys from a given range.
+	 *
+	 * @param from the first key.
+	 * @param to the key after the last one.
+	 *
+	 * @return keys from a given range.
+	 */
+	private static List<Integer> createKeys(final int from, final int to) {
+		final List<Integer> result = new ArrayList<Integer>();
+		for (int key = from; key < to; key++) {
+			result.add(key);
+		}
+		return result;
+	}
+
+	/**
+	 * Offers objects for given keys to a given cache.
+	 *
+	 * @param cache a cache.
+	 * @param keys keys.
+	 */
+	private static void offer(final Cache<Item, Integer> cache, final List<Integer> keys) {
+		for (final int key : keys) {
+			cache.offer(new Item(key));
+		}
+	}
+
+	/**
+	 * Checks whether a hot segment uses the budget not used by cold segments, unlike with split limits.
+	 */
+	@Test public void hotSegmentUsesWholeBudget() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final ManagedCache<Item, Integer> split = createCache(CacheBudget.SPLIT, concurrency);
+			final ManagedCache<Item, Integer> shared = createCache(CacheBudget.SHARED, concurrency);
+			offer(split, createKeys(0, LIMIT));
+			offer(shared, createKeys(0, LIMIT));
+			Assert.assertTrue(split.getAll(createKeys(0, LIMIT)).size() <= LIMIT / 2);
+			Assert.assertEquals(LIMIT, shared.getAll(createKeys(0, LIMIT)).size());
+		}
+	}
+
+	/**
+	 * Checks whether the global budget is respected and whether objects are evicted from the segment using most of it.
+	 */
+	@Test public void largestSegmentEvicts() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final ManagedCache<Item, Integer> fixture = createCache(CacheBudget.SHARED, concurrency);
+			offer(fixture, createKeys(0, 2 * LIMIT));
+			offer(fixture, Arrays.asList(COLD, COLD + 1));
+			Assert.assertEquals(2, fixture.getAll(Arrays.asList(COLD, COLD + 1)).size());
+			Assert.assertEquals(LIMIT - 2, fixture.getAll(createKeys(0, 2 * LIMIT)).size());
+			Assert.assertEquals(LIMIT + 2L, fixture.getStatistics().getEvictions());
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package gems.caching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit tests for secondary indexes of storages.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitStorageIndex {
+
+	/**
+	 * A number of stored items.
+	 */
+	private static final int ITEMS = 100;
+
+	/**
+	 * A number of tenants.
+	 */
+	private static final int TENANTS = 10;
+
+	/**
+	 * Creates a new storage holding items with IDs from 0 to {@code ITEMS}; the tenant of an item is its ID modulo {@code TENANTS}.
+	 *
+	 * @return a new storage.
+	 */
+	private static Storage<Integer, TenantItem> createFixture() {
+		final Storage<Integer, TenantItem> result = new MemoryStorageFactory<Integer, TenantItem>().getStorage();
+		for (int i = 0; i < ITEMS; i++) {
+			result.put(new TenantItem(i, "tenant" + i % TENANTS));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns IDs of given items.
+	 *
+	 * @param items items.
+	 *
+	 * @return IDs of the items.
+	 */
+	private static Set<Integer> idsOf(final Collection<TenantItem> items) {
+		final Set<Integer> result = new HashSet<Integer>();
+		for (final TenantItem item : items) {
+			result.add(item.getId());
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether a hash index answers equality searches without reading attributes of stored items.
+	 */
+	@Test public void hashIndexAnswersEqualitySearch() {
+		final Storage<Integer, TenantItem> fixture = createFixture();
+		final CountingAttribute<String> tenant = new CountingAttribute<String>() {
+
+			@Override String extract(final TenantItem item) {
+				return item.getTenant();
+			}
+
+		};
+		fixture.index(tenant, IndexType.HASH);
+		final int indexed = tenant.getCalls();
+		final Collection<TenantItem> found = fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant3"));
+		Assert.assertEquals(indexed, tenant.getCalls());
+		Assert.assertEquals(ITEMS / TENANTS, found.size());
+		for (final TenantItem item : found) {
+			Assert.assertEquals(3, item.getId() % TENANTS);
+		}
+		Assert.assertTrue(fixture.search(new EqualityFilter<TenantItem, String>(tenant, "nobody")).isEmpty());
+	}
+
+	/**
+	 * Checks whether a hash index falls back to a scan for range searches.
+	 */
+	@Test public void hashIndexScansForRangeSearch() {
+		final Storage<Integer, TenantItem> fixture = createFixture();
+		final CountingAttribute<Integer> id = new CountingAttribute<Integer>() {
+
+			@Override Integer extract(final TenantItem item) {
+				return item.getId();
+			}
+
+		};
+		fixture.index(id, IndexType.HASH);
+		final int indexed = id.getCalls();
+		Assert.assertEquals(10, fixture.search(new RangeFilter<TenantItem, Integer>(id, 10, 20)).size());
+		Assert.assertEquals(indexed + ITEMS, id.getCalls());
+	}
+
+	/**
+	 * Checks whether a sorted index answers range searches with half-open and unbounded ranges.
+	 */
+	@Test public void sortedIndexAnswersRangeSearch() {
+		final Storage<Integer, TenantItem> fixture = createFixture();
+		final CountingAttribute<Integer> id = new CountingAttribute<Integer>() {
+
+			@Override Integer extract(final TenantItem item) {
+				return item.getId();
+			}
+
+		};
+		fixture.index(id, IndexType.SORTED);
+		final int indexed = id.getCalls();
+		Assert.assertEquals(10, fixture.search(new RangeFilter<TenantItem, Integer>(id, 10, 20)).size());
+		Assert.assertTrue(idsOf(fixture.search(new RangeFilter<TenantItem, Integer>(id, 10, 20))).contains(10));
+		Assert.assertFalse(idsOf(fixture.search(new RangeFilter<TenantItem, Integer>(id, 10, 20))).contains(20));
+		Assert.assertEquals(5, fixture.search(new RangeFilter<TenantItem, Integer>(id, null, 5)).size());
+		Assert.assertEquals(5, fixture.search(new RangeFilter<TenantItem, Integer>(id, ITEMS - 5, null)).size());
+		Assert.assertEquals(1, fixture.search(new EqualityFilter<TenantItem, Integer>(id, 42)).size());
+		Assert.assertEquals(indexed, id.getCalls());
+	}
+
+	/**
+	 * Checks whether indexes follow replaced and removed values.
+	 */
+	@Test public void indexFollowsWrites() {
+		final Storage<Integer, TenantItem> fixture = createFixture();
+		final CountingAttribute<String> tenant = new CountingAttribute<String>() {
+
+			@Override String extract(final TenantItem item) {
+				return item.getTenant();
+			}
+
+		};
+		fixture.index(tenant, IndexType.SORTED);
+		fixture.put(new TenantItem(3, "tenant4"));
+		fixture.remove(13);
+		fixture.put(new TenantItem(ITEMS, "tenant3"));
+		fixture.put(new TenantItem(ITEMS + 1, null));
+		final Set<Integer> found = idsOf(fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant3")));
+		Assert.assertEquals(ITEMS / TENANTS - 1, found.size());
+		Assert.assertFalse(found.contains(3));
+		Assert.assertFalse(found.contains(13));
+		Assert.assertTrue(found.contains(ITEMS));
+		Assert.assertEquals(ITEMS / TENANTS + 1, fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant4")).size());
+		Assert.assertEquals(ITEMS + 1, fixture.search(new EqualityFilter<TenantItem, String>(tenant, null)).iterator().next().getId().intValue());
+		Assert.assertEquals(ITEMS, fixture.search(new RangeFilter<TenantItem, String>(tenant, null, null)).size());
+	}
+
+	/**
+	 * Checks whether attribute filters work as ordinary filters without an index.
+	 */
+	@Test public void filtersWorkWithoutIndex() {
+		final Storage<Integer, TenantItem> fixture = createFixture();
+		final CountingAttribute<String> tenant = new CountingAttribute<String>() {
+
+			@Override String extract(final TenantItem item) {
+				return item.getTenant();
+			}
+
+		};
+		Assert.assertEquals(ITEMS / TENANTS, fixture.search(new EqualityFilter<TenantItem, String>(tenant, "tenant0")).size());
+		Assert.assertEquals(ITEMS, tenant.getCalls());
+	}
+
+	/**
+	 * Checks whether inverted ranges are forbidden.
+	 */
+	@Test(expected = IllegalArgumentException.class) public void invertedRangeIsForbidden() {
+		new RangeFilter<TenantItem, Integer>(new CountingAttribute<Integer>() {
+
+			@Override Integer extract(final TenantItem item) {
+				return item.getId();
+			}
+
+		}, 2, 1);
+	}
+
+}
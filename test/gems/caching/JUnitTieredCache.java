@@ -0,0 +1,387 @@
+package gems.caching;
+
+import gems.AbstractIdentifiable;
+import gems.Option;
+import gems.SizeEstimator;
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the {@code TieredCache} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitTieredCache {
+
+	/**
+	 * Time to live of objects with a version other than zero in the primary tier, in milliseconds.
+	 */
+	private static final long DURATION = 50L;
+
+	/**
+	 * An expiration policy letting objects with a version other than zero expire.
+	 */
+	private static final ExpirationPolicy<Item> VERSIONED_EXPIRE = new ExpirationPolicy<Item>() {
+
+		@Override public long getTimeToLive(final Item object) {
+			return object.version == 0 ? ExpirationPolicy.NEVER : DURATION;
+		}
+
+		@Override public long getTimeToIdle(final Item object) {
+			return ExpirationPolicy.NEVER;
+		}
+
+	};
+
+	/**
+	 * Creates properties of a tier holding a given number of objects.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param items maximal number of objects.
+	 * @param handler an eviction handler.
+	 *
+	 * @return properties of a tier.
+	 */
+	private static CacheProperties<Item, Integer> createProperties(
+			final CacheConcurrency concurrency, final long items, final EvictionHandler<? super Item> handler
+	) {
+		return createProperties(concurrency, items, handler, ExpirationPolicy.NULL_EXPIRATION_POLICY);
+	}
+
+	/**
+	 * Creates properties of a tier holding a given number of objects which expire according to a given policy.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param items maximal number of objects.
+	 * @param handler an eviction handler.
+	 * @param policy an expiration policy.
+	 *
+	 * @return properties of a tier.
+	 */
+	private static CacheProperties<Item, Integer> createProperties(
+			final CacheConcurrency concurrency, final long items, final EvictionHandler<? super Item> handler, final ExpirationPolicy<? super Item> policy
+	) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, items);
+		return new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(concurrency)
+				.with(handler)
+				.with(policy)
+				.with(SynchronousExecutor.INSTANCE)
+				.build();
+	}
+
+	/**
+	 * Creates a tiered cache whose primary tier holds a single object and lets objects with a version other
+	 * than zero expire, while the secondary tier holds a hundred objects which never expire.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 *
+	 * @return a tiered cache.
+	 */
+	private static TieredCache<Item, Integer> createExpiringFixture(final CacheConcurrency concurrency) {
+		return new TieredCache<Item, Integer>(
+				createProperties(concurrency, 1, EvictionHandler.NULL_EVICTION_HANDLER, VERSIONED_EXPIRE),
+				createProperties(concurrency, 100, EvictionHandler.NULL_EVICTION_HANDLER)
+		);
+	}
+
+	/**
+	 * Checks whether an offered object supersedes a demoted object with the same key, i.e. whether the demoted
+	 * object is not served after the offered one expires in the primary tier.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void offeredObjectSupersedesDemotedOne() throws InterruptedException {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final TieredCache<Item, Integer> fixture = createExpiringFixture(concurrency);
+			fixture.offer(new Item(1));
+			fixture.offer(new Item(2));
+			fixture.offer(new Item(1, 1));
+			Thread.sleep(2L * DURATION);
+			Assert.assertFalse(concurrency.name(), fixture.get(1).hasValue());
+			Assert.assertTrue(concurrency.name(), fixture.get(2).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether a promoted object is removed from the secondary tier, i.e. whether it is not served
+	 * after an object offered later with the same key expires in the primary tier.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void promotedObjectLeavesSecondaryTier() throws InterruptedException {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final TieredCache<Item, Integer> fixture = createExpiringFixture(concurrency);
+			fixture.offer(new Item(1));
+			fixture.offer(new Item(2));
+			Assert.assertTrue(concurrency.name(), fixture.get(1).hasValue());
+			fixture.offerAll(Collections.singletonList(new Item(1, 1)));
+			Thread.sleep(2L * DURATION);
+			Assert.assertFalse(concurrency.name(), fixture.get(1).hasValue());
+		}
+	}
+
+	/**
+	 * Checks whether objects evicted from the primary tier are demoted to the secondary tier
+	 * and promoted back on access, and whether hits of tiers are counted.
+	 */
+	@Test public void evictedObjectsAreDemotedAndPromoted() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final List<Integer> evicted = new ArrayList<Integer>();
+			final TieredCache<Item, Integer> fixture = new TieredCache<Item, Integer>(
+					createProperties(concurrency, 10, new EvictionHandler<Item>() {
+
+						@Override public void handle(final Item value) {
+							evicted.add(value.getId());
+						}
+
+					}),
+					createProperties(concurrency, 100, EvictionHandler.NULL_EVICTION_HANDLER)
+			);
+			for (int i = 0; i < 50; i++) {
+				fixture.offer(new Item(i));
+			}
+			Assert.assertFalse(concurrency.name(), evicted.isEmpty());
+			for (int i = 0; i < 50; i++) {
+				Assert.assertTrue(concurrency.name() + i, fixture.get(i).hasValue());
+			}
+			Assert.assertTrue(concurrency.name(), fixture.getSecondaryHits() > 0L);
+			Assert.assertTrue(concurrency.name(), fixture.get(49).hasValue());
+			Assert.assertEquals(concurrency.name(), 50L, fixture.getPrimaryHits() + fixture.getSecondaryHits() - 1L);
+			Assert.assertTrue(concurrency.name(), fixture.getPrimaryHits() > 0L);
+			Assert.assertFalse(concurrency.name(), fixture.get(50).hasValue());
+			Assert.assertEquals(concurrency.name(), 1L, fixture.getMisses());
+		}
+	}
+
+	/**
+	 * Checks whether objects offered at once are demoted, not lost, if the primary tier cannot hold all of them.
+	 */
+	@Test public void objectsOfferedBeyondPrimaryLimitsAreDemoted() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final TieredCache<Item, Integer> fixture = new TieredCache<Item, Integer>(
+					createProperties(concurrency, 4, EvictionHandler.NULL_EVICTION_HANDLER),
+					createProperties(concurrency, 100, EvictionHandler.NULL_EVICTION_HANDLER)
+			);
+			final List<Item> objects = new ArrayList<Item>();
+			for (int i = 0; i < 20; i++) {
+				objects.add(new Item(i));
+			}
+			fixture.offerAll(objects);
+			for (int i = 0; i < 20; i++) {
+				Assert.assertTrue(concurrency.name() + i, fixture.get(i).hasValue());
+			}
+		}
+	}
+
+	/**
+	 * Checks whether an object larger than the size limit of the primary tier is demoted, not lost.
+	 */
+	@Test public void objectLargerThanPrimaryIsDemoted() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+			limits.setLimit(CacheLimit.SIZE, 10);
+			final TieredCache<Item, Integer> fixture = new TieredCache<Item, Integer>(
+					new CacheProperties.Builder<Item, Integer>(limits)
+							.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+							.with(concurrency)
+							.with(new SizeEstimator<Item>() {
+
+								@Override public long estimate(final Item object) {
+									return object.version;
+								}
+
+							})
+							.with(SynchronousExecutor.INSTANCE)
+							.build(),
+					createProperties(concurrency, 100, EvictionHandler.NULL_EVICTION_HANDLER)
+			);
+			fixture.offer(new Item(1, 100));
+			final Option<Item> cached = fixture.get(1);
+			Assert.assertTrue(concurrency.name(), cached.hasValue());
+			Assert.assertEquals(concurrency.name(), 100, cached.getValue().version);
+		}
+	}
+
+	/**
+	 * Checks whether objects evicted from both tiers are lost.
+	 */
+	@Test public void objectsEvictedFromBothTiersAreLost() {
+		final TieredCache<Item, Integer> fixture = new TieredCache<Item, Integer>(
+				createProperties(CacheConcurrency.LOCKED_READS, 10, EvictionHandler.NULL_EVICTION_HANDLER),
+				createProperties(CacheConcurrency.LOCKED_READS, 10, EvictionHandler.NULL_EVICTION_HANDLER)
+		);
+		for (int i = 0; i < 100; i++) {
+			fixture.offer(new Item(i));
+		}
+		Assert.assertFalse(fixture.get(0).hasValue());
+		Assert.assertTrue(fixture.get(99).hasValue());
+	}
+
+	/**
+	 * Checks whether an object offered while an older object with the same key is being promoted is not
+	 * overwritten by the older object in the primary tier.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test public void concurrentlyOfferedObjectIsNotOverwrittenByPromotion() throws InterruptedException {
+		final CountDownLatch reading = new CountDownLatch(1);
+		final CountDownLatch stored = new CountDownLatch(1);
+		final TieredCache<Item, Integer> fixture = new TieredCache<Item, Integer>(
+				createHookedProperties(1, new HookedStorage(null, stored)),
+				createHookedProperties(100, new HookedStorage(reading, stored))
+		);
+		fixture.offer(new Item(1));
+		fixture.offer(new Item(2));
+		final Thread offering = new Thread(new Runnable() {
+
+			@Override public void run() {
+				try {
+					reading.await();
+					fixture.offer(new Item(1, 1));
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+		});
+		offering.start();
+		Assert.assertTrue(fixture.get(1).hasValue());
+		offering.join();
+		Assert.assertEquals(1, fixture.get(1).getValue().version);
+	}
+
+	/**
+	 * Creates properties of a tier holding a given number of objects in a given storage.
+	 *
+	 * @param items maximal number of objects.
+	 * @param storage a storage of objects.
+	 *
+	 * @return properties of a tier.
+	 */
+	private static CacheProperties<Item, Integer> createHookedProperties(final long items, final Storage<Integer, Item> storage) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, items);
+		return new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(CacheConcurrency.LOCKED_READS)
+				.with(SynchronousExecutor.INSTANCE)
+				.with(new StorageFactory<Integer, Item>() {
+
+					@Override public Storage<Integer, Item> getStorage() {
+						return storage;
+					}
+
+				})
+				.build();
+	}
+
+	/**
+	 * A storage of a tier holding a single partition, which lets a test interleave reads and writes
+	 * of the object with ID one. If a latch of reading is given, a read of the object counts it down
+	 * once and waits until an object with version one is stored, but at most for a while, since the
+	 * store may wait for the read to finish. Otherwise, storing an object with version one counts down
+	 * the latch of storing.
+	 */
+	private static final class HookedStorage extends AbstractStorage<Integer, Item> {
+
+		/**
+		 * Stored objects.
+		 */
+		private final Map<Integer, Item> map = new HashMap<Integer, Item>();
+
+		/**
+		 * A latch counted down by a read, or {@code null}.
+		 */
+		private final CountDownLatch reading;
+
+		/**
+		 * A latch counted down by a store.
+		 */
+		private final CountDownLatch stored;
+
+		/**
+		 * Creates a new storage.
+		 *
+		 * @param reading a latch counted down by a read, or {@code null}.
+		 * @param stored a latch counted down by a store.
+		 */
+		private HookedStorage(final CountDownLatch reading, final CountDownLatch stored) {
+			this.reading = reading;
+			this.stored = stored;
+		}
+
+		@Override void store(final Item value) {
+			map.put(value.getId(), value);
+			if (reading == null && value.version == 1) {
+				stored.countDown();
+			}
+		}
+
+		@Override void discard(final Integer key) {
+			map.remove(key);
+		}
+
+		@Override public Option<Item> provide(final Option<Integer> key) {
+			if (reading != null && key.hasValue() && key.getValue() == 1 && reading.getCount() > 0L) {
+				reading.countDown();
+				try {
+					stored.await(200L, TimeUnit.MILLISECONDS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return new Option<Item>(key.hasValue() ? map.get(key.getValue()) : null);
+		}
+
+		@Override public Iterator<Item> iterator() {
+			return new ArrayList<Item>(map.values()).iterator();
+		}
+
+	}
+
+	/**
+	 * A cached object.
+	 */
+	private static final class Item extends AbstractIdentifiable<Integer> {
+
+		/**
+		 * A version of the object.
+		 */
+		private final int version;
+
+		/**
+		 * Creates a new object with a given ID and version zero.
+		 *
+		 * @param id an ID.
+		 */
+		private Item(final int id) {
+			this(id, 0);
+		}
+
+		/**
+		 * Creates a new object with a given ID and version.
+		 *
+		 * @param id an ID.
+		 * @param version a version.
+		 */
+		private Item(final int id, final int version) {
+			super(id);
+			this.version = version;
+		}
+
+	}
+
+}
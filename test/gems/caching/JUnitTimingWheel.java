@@ -0,0 +1,81 @@
+package gems.caching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for the {@code TimingWheel} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitTimingWheel {
+
+	/**
+	 * Checks whether timers fire not earlier than at their deadlines.
+	 */
+	@Test public void timersFireAtDeadlines() {
+		final TimingWheel<Integer> fixture = new TimingWheel<Integer>(1000L);
+		fixture.schedule(1, 1010L);
+		fixture.schedule(2, 1100L);
+		fixture.schedule(3, 5000L);
+		fixture.schedule(4, 1000L + 3600000L);
+		Assert.assertEquals(4, fixture.size());
+		Assert.assertTrue(fixture.advance(1009L).isEmpty());
+		Assert.assertEquals(Collections.singletonList(1), fixture.advance(1010L));
+		Assert.assertTrue(fixture.advance(1099L).isEmpty());
+		Assert.assertEquals(Collections.singletonList(2), fixture.advance(1100L));
+		Assert.assertTrue(fixture.advance(4999L).isEmpty());
+		Assert.assertEquals(Collections.singletonList(3), fixture.advance(5000L));
+		Assert.assertTrue(fixture.advance(1000L + 3599999L).isEmpty());
+		Assert.assertEquals(Collections.singletonList(4), fixture.advance(1000L + 3600000L));
+		Assert.assertEquals(0, fixture.size());
+	}
+
+	/**
+	 * Checks whether all due timers fire after a long gap.
+	 */
+	@Test public void dueTimersFireAfterLongGap() {
+		final TimingWheel<Integer> fixture = new TimingWheel<Integer>(0L);
+		for (int i = 0; i < 1000; i++) {
+			fixture.schedule(i, i * 997L);
+		}
+		final List<Integer> fired = new ArrayList<Integer>(fixture.advance(500000L));
+		Collections.sort(fired);
+		Assert.assertEquals(502, fired.size());
+		Assert.assertEquals(Integer.valueOf(501), fired.get(fired.size() - 1));
+		Assert.assertEquals(498, fixture.size());
+	}
+
+	/**
+	 * Checks whether cancelled timers do not fire and rescheduled timers fire at their new deadlines.
+	 */
+	@Test public void cancelledAndRescheduledTimers() {
+		final TimingWheel<Integer> fixture = new TimingWheel<Integer>(0L);
+		final TimingWheel.Timer<Integer> cancelled = fixture.schedule(1, 100L);
+		final TimingWheel.Timer<Integer> rescheduled = fixture.schedule(2, 100L);
+		fixture.schedule(3, 100L);
+		fixture.cancel(cancelled);
+		fixture.cancel(cancelled);
+		fixture.reschedule(rescheduled, 200000L);
+		Assert.assertEquals(Collections.singletonList(3), fixture.advance(100L));
+		Assert.assertTrue(fixture.advance(199999L).isEmpty());
+		Assert.assertEquals(Arrays.asList(2), new ArrayList<Integer>(fixture.advance(200000L)));
+		fixture.reschedule(rescheduled, 200001L);
+		Assert.assertEquals(Collections.singletonList(2), fixture.advance(300000L));
+	}
+
+	/**
+	 * Checks whether a timer scheduled in the past fires on the next advance.
+	 */
+	@Test public void overdueTimerFiresOnNextAdvance() {
+		final TimingWheel<Integer> fixture = new TimingWheel<Integer>(1000L);
+		fixture.schedule(1, 10L);
+		Assert.assertEquals(Collections.singletonList(1), fixture.advance(1001L));
+	}
+
+}
@@ -0,0 +1,162 @@
+package gems.caching;
+
+import gems.StaticLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Unit tests for the {@code WriteBehindCache} class.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+public final class JUnitWriteBehindCache {
+
+	/**
+	 * Batches written by the tested fixture.
+	 */
+	private final List<List<Item>> batches = new ArrayList<List<Item>>();
+
+	/**
+	 * A writer recording written batches.
+	 */
+	private final BatchWriter<Item> recorder = new BatchWriter<Item>() {
+
+		@Override public void write(final Collection<? extends Item> objects) {
+			batches.add(new ArrayList<Item>(objects));
+		}
+
+	};
+
+	/**
+	 * Creates properties of a cache holding a given number of objects.
+	 *
+	 * @param concurrency a concurrency strategy.
+	 * @param items maximal number of objects.
+	 *
+	 * @return cache properties.
+	 */
+	private static CacheProperties<Item, Integer> createProperties(final CacheConcurrency concurrency, final long items) {
+		final StaticLimits<CacheLimit> limits = new StaticLimits<CacheLimit>(CacheLimit.class);
+		limits.setLimit(CacheLimit.ITEMS, items);
+		return new CacheProperties.Builder<Item, Integer>(limits)
+				.with(new LinkedLeastRecentlyUsedEvictorFactory<Integer>().get())
+				.with(concurrency)
+				.with(SynchronousExecutor.INSTANCE)
+				.build();
+	}
+
+	/**
+	 * Returns number of written objects.
+	 *
+	 * @return number of written objects.
+	 */
+	private int countWritten() {
+		int result = 0;
+		for (final List<Item> batch : batches) {
+			result += batch.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether repeated offers of objects with the same key are coalesced into a single write of the latest object.
+	 */
+	@Test public void repeatedWritesAreCoalesced() {
+		final WriteBehindCache<Item, Integer> fixture = new WriteBehindCache<Item, Integer>(
+				createProperties(CacheConcurrency.LOCKED_READS, 100), recorder, 10, 0L, 100
+		);
+		final Item latest = new Item(1);
+		fixture.offer(new Item(1));
+		fixture.offer(new Item(1));
+		fixture.offer(latest);
+		Assert.assertTrue(batches.isEmpty());
+		Assert.assertEquals(1, fixture.getDirty());
+		fixture.flush();
+		Assert.assertEquals(1, batches.size());
+		Assert.assertSame(latest, batches.get(0).get(0));
+		Assert.assertEquals(0, fixture.getDirty());
+		Assert.assertTrue(fixture.get(1).hasValue());
+	}
+
+	/**
+	 * Checks whether dirty objects are flushed in batches when the batch size is reached.
+	 */
+	@Test public void batchSizeTriggersFlush() {
+		final WriteBehindCache<Item, Integer> fixture = new WriteBehindCache<Item, Integer>(
+				createProperties(CacheConcurrency.LOCKED_READS, 100), recorder, 10, 0L, 100
+		);
+		for (int i = 0; i < 25; i++) {
+			fixture.offer(new Item(i));
+		}
+		Assert.assertEquals(2, batches.size());
+		Assert.assertEquals(10, batches.get(0).size());
+		Assert.assertEquals(5, fixture.getDirty());
+		fixture.close();
+		Assert.assertEquals(25, countWritten());
+		Assert.assertEquals(25L, fixture.getWritten());
+	}
+
+	/**
+	 * Checks whether offering threads flush dirty objects when their maximal number is reached.
+	 */
+	@Test public void maxDirtyAppliesBackpressure() {
+		final WriteBehindCache<Item, Integer> fixture = new WriteBehindCache<Item, Integer>(
+				createProperties(CacheConcurrency.LOCKED_READS, 100), recorder, 10, 0L, 5
+		);
+		final List<Item> objects = new ArrayList<Item>();
+		for (int i = 0; i < 5; i++) {
+			objects.add(new Item(i));
+		}
+		fixture.offerAll(objects);
+		Assert.assertEquals(0, fixture.getDirty());
+		Assert.assertEquals(1, batches.size());
+		Assert.assertEquals(5, countWritten());
+	}
+
+	/**
+	 * Checks whether evicted dirty objects are written synchronously.
+	 */
+	@Test public void evictedObjectsAreWritten() {
+		for (final CacheConcurrency concurrency : CacheConcurrency.values()) {
+			batches.clear();
+			final WriteBehindCache<Item, Integer> fixture = new WriteBehindCache<Item, Integer>(
+					createProperties(concurrency, 2), recorder, 100, 0L, 100
+			);
+			for (int i = 0; i < 3; i++) {
+				fixture.offer(new Item(i));
+			}
+			Assert.assertEquals(concurrency.name(), 1, batches.size());
+			Assert.assertEquals(concurrency.name(), Integer.valueOf(0), batches.get(0).get(0).getId());
+			Assert.assertEquals(concurrency.name(), 2, fixture.getDirty());
+		}
+	}
+
+	/**
+	 * Checks whether objects stay dirty when the writer fails.
+	 */
+	@Test public void failedObjectsStayDirty() {
+		final WriteBehindCache<Item, Integer> fixture = new WriteBehindCache<Item, Integer>(
+				createProperties(CacheConcurrency.LOCKED_READS, 100), new BatchWriter<Item>() {
+
+					@Override public void write(final Collection<? extends Item> objects) {
+						throw new IllegalStateException();
+					}
+
+				}, 10, 0L, 100
+		);
+		fixture.offer(new Item(1));
+		fixture.offer(new Item(2));
+		try {
+			fixture.flush();
+			Assert.fail();
+		} catch (final IllegalStateException e) {
+			Assert.assertEquals(2, fixture.getDirty());
+			Assert.assertEquals(0L, fixture.getWritten());
+		}
+	}
+
+}
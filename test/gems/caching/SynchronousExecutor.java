@@ -0,0 +1,70 @@
+package gems.caching;
+
+import gems.Identifiable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread pool running tasks in calling threads, so caches with buffered maintenance evict synchronously
+ * and tests can check cache limits right after writes. It is never shut down.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class SynchronousExecutor extends AbstractExecutorService {
+
+	/**
+	 * The only instance.
+	 */
+	static final ExecutorService INSTANCE = new SynchronousExecutor();
+
+	/**
+	 * Prevents creation of other instances.
+	 */
+	private SynchronousExecutor() {
+	}
+
+	/**
+	 * Sets a given concurrency strategy to a given builder of cache properties. If the strategy is
+	 * {@code CacheConcurrency.BUFFERED_MAINTENANCE}, the thread pool is set to this executor too;
+	 * other strategies keep the thread pool of the builder.
+	 *
+	 * @param builder a builder of cache properties.
+	 * @param concurrency a concurrency strategy.
+	 * @param <V> type of cached objects.
+	 * @param <K> type of keys.
+	 *
+	 * @return the builder.
+	 */
+	static <V extends Identifiable<K>, K> CacheProperties.Builder<V, K> with(final CacheProperties.Builder<V, K> builder, final CacheConcurrency concurrency) {
+		builder.with(concurrency);
+		return concurrency == CacheConcurrency.BUFFERED_MAINTENANCE ? builder.with(INSTANCE) : builder;
+	}
+
+	@Override public void execute(final Runnable command) {
+		command.run();
+	}
+
+	@Override public void shutdown() {
+	}
+
+	@Override public List<Runnable> shutdownNow() {
+		return Collections.emptyList();
+	}
+
+	@Override public boolean isShutdown() {
+		return false;
+	}
+
+	@Override public boolean isTerminated() {
+		return false;
+	}
+
+	@Override public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+		return false;
+	}
+
+}
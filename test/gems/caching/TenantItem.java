@@ -0,0 +1,37 @@
+package gems.caching;
+
+import gems.AbstractIdentifiable;
+
+/**
+ * A cached object identified by an integer and belonging to a tenant.
+ *
+ * @author <a href="mailto:jozef.babjak@gmail.com">Jozef BABJAK</a>
+ */
+final class TenantItem extends AbstractIdentifiable<Integer> {
+
+	/**
+	 * A tenant of the item.
+	 */
+	private final String tenant;
+
+	/**
+	 * Creates a new item.
+	 *
+	 * @param id an ID.
+	 * @param tenant a tenant.
+	 */
+	TenantItem(final int id, final String tenant) {
+		super(id);
+		this.tenant = tenant;
+	}
+
+	/**
+	 * Returns a tenant of the item.
+	 *
+	 * @return a tenant of the item.
+	 */
+	String getTenant() {
+		return tenant;
+	}
+
+}